@@ -0,0 +1,191 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles java files for Zenit in a JVM of another JDK than the one Zenit runs on, see
+ * main.zenit.javacodecompiler.CompileWorkers.
+ * <p>
+ * Zenit compiles this file with the javac of the JDK the first time it starts a worker for
+ * it, so it is written for Java 8. The worker reads compile requests from standard input and
+ * writes the results to standard output, one at a time, and keeps its compiler and file
+ * manager between requests. It exits when standard input is closed.
+ * </p>
+ * <p>
+ * A request is the file to compile, the folder for class files and the source path, both
+ * empty if not used, and the class path. A result is {@link #COMPILED}, {@link #ERRORS} or
+ * {@link #FAILED}, followed by the diagnostics or the reason the compiler failed. A diagnostic
+ * is its severity, file, code, row, column, start and end offsets, and message.
+ * </p>
+ */
+public class CompileWorker {
+
+	static final int COMPILED = 0;
+	static final int ERRORS = 1;
+	static final int FAILED = 2;
+
+	private static final int MAX_MESSAGE_LENGTH = 16_000;
+
+	private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+	private StandardJavaFileManager fileManager;
+	private final Map<File, Long> libraryVersions = new HashMap<File, Long>();
+
+	public static void main(String[] args) throws IOException {
+		// Standard output carries the results, anything else printed goes to standard error
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(FileDescriptor.out)));
+		System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+		CompileWorker worker = new CompileWorker();
+		while (true) {
+			String file;
+			try {
+				file = in.readUTF();
+			} catch (EOFException e) {
+				return;
+			}
+			String directory = in.readUTF();
+			String sourcepath = in.readUTF();
+			List<File> classpath = new ArrayList<File>();
+			for (int i = in.readInt(); i > 0; i--) {
+				classpath.add(new File(in.readUTF()));
+			}
+
+			worker.compile(new File(file), directory, sourcepath, classpath, out);
+			out.flush();
+		}
+	}
+
+	private void compile(File file, String directory, String sourcepath, List<File> classpath,
+			DataOutputStream out) throws IOException {
+		if (compiler == null) {
+			out.writeInt(FAILED);
+			out.writeUTF("The JDK has no compiler");
+			return;
+		}
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		boolean success;
+		try {
+			StandardJavaFileManager manager = getFileManager(classpath);
+			File output = directory.isEmpty() ? null : new File(directory);
+			if (output != null) {
+				output.mkdirs();
+			}
+			manager.setLocation(StandardLocation.CLASS_OUTPUT,
+					output != null ? Collections.singletonList(output) : null);
+			manager.setLocation(StandardLocation.SOURCE_PATH,
+					sourcepath.isEmpty() ? null : Collections.singletonList(new File(sourcepath)));
+			manager.setLocation(StandardLocation.CLASS_PATH, classpath);
+
+			Iterable<? extends JavaFileObject> units = manager.getJavaFileObjects(file);
+			success = compiler.getTask(null, manager, diagnostics, null, null, units).call();
+		} catch (IOException | RuntimeException e) {
+			out.writeInt(FAILED);
+			out.writeUTF(shorten(String.valueOf(e)));
+			return;
+		}
+
+		List<Diagnostic<? extends JavaFileObject>> reported = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() != Diagnostic.Kind.NOTE && diagnostic.getKind() != Diagnostic.Kind.OTHER
+					&& diagnostic.getPosition() != Diagnostic.NOPOS && diagnostic.getSource() != null) {
+				reported.add(diagnostic);
+			}
+		}
+
+		out.writeInt(success ? COMPILED : ERRORS);
+		out.writeInt(reported.size());
+		for (Diagnostic<? extends JavaFileObject> diagnostic : reported) {
+			int[] range = range(diagnostic);
+			out.writeBoolean(diagnostic.getKind() == Diagnostic.Kind.ERROR);
+			out.writeUTF(new File(diagnostic.getSource().toUri()).getPath());
+			out.writeUTF(diagnostic.getCode() != null ? diagnostic.getCode() : "");
+			out.writeInt(range[0]);
+			out.writeInt(range[1]);
+			out.writeInt(range[2]);
+			out.writeInt(range[3]);
+			out.writeUTF(shorten(diagnostic.getMessage(null)));
+		}
+	}
+
+	/**
+	 * @return The file manager of earlier compiles, or a new one if a library on the class
+	 * path has been changed since.
+	 */
+	private StandardJavaFileManager getFileManager(List<File> classpath) throws IOException {
+		boolean changed = false;
+		for (File library : classpath) {
+			if (library.isFile()) {
+				Long known = libraryVersions.put(library, library.lastModified());
+				changed |= known != null && known != library.lastModified();
+			}
+		}
+
+		if (fileManager != null && changed) {
+			fileManager.close();
+			fileManager = null;
+		}
+		if (fileManager == null) {
+			fileManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+		}
+		return fileManager;
+	}
+
+	/**
+	 * @return The row and column where a diagnostic starts, with the column in characters of
+	 * its line, and its start and end offsets, -1 if unknown.
+	 */
+	private static int[] range(Diagnostic<? extends JavaFileObject> diagnostic) {
+		int position = (int) diagnostic.getPosition();
+		int start = diagnostic.getStartPosition() != Diagnostic.NOPOS ? (int) diagnostic.getStartPosition() : position;
+		int end = diagnostic.getEndPosition() != Diagnostic.NOPOS ? (int) diagnostic.getEndPosition() : -1;
+		int row = (int) diagnostic.getLineNumber();
+		int column = (int) diagnostic.getColumnNumber() - 1;
+
+		try {
+			CharSequence text = diagnostic.getSource().getCharContent(true);
+			start = Math.min(start, position);
+			for (int i = start; i < position; i++) {
+				char c = text.charAt(i);
+				if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+					row--;
+				}
+			}
+			int lineStart = start;
+			while (lineStart > 0 && text.charAt(lineStart - 1) != '\n' && text.charAt(lineStart - 1) != '\r') {
+				lineStart--;
+			}
+			column = start - lineStart;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			start = position;
+		}
+		return new int[] { row, column, start, end };
+	}
+
+	private static String shorten(String message) {
+		return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+	}
+}
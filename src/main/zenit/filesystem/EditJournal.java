@@ -0,0 +1,491 @@
+package main.zenit.filesystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import main.zenit.zencodearea.PieceTable;
+
+/**
+ * An append-only journal of the unsaved edits of one tab, so that they can be restored if
+ * the program crashes before the file is saved.
+ * <p>
+ * Edits are recorded on the JavaFX application thread, which only adds them to a queue.
+ * Consecutive typing and backspacing is coalesced into one edit. A single background thread
+ * writes the queued edits of all journals every {@link #getFlushInterval()} milliseconds,
+ * at most {@link #getMaxBytesPerSecond()} bytes per second, so journaling never waits for
+ * the disk.
+ * </p>
+ * <p>
+ * A journal starts with a header holding the path of the edited file and the length and
+ * CRC-32 of its text before the first edit. The edits follow in frames of a length, a
+ * CRC-32 and the binary edit records, so a frame that was only partly written when the
+ * program crashed is detected and ignored. The journal is deleted when the tab has no
+ * unsaved changes any more. Journals left behind are replayed by {@link #recover(Path)}.
+ * </p>
+ */
+public class EditJournal {
+
+	private static final int MAGIC = 0x5A4A4E4C; // "ZJNL"
+	private static final byte VERSION = 1;
+	private static final String EXTENSION = ".journal";
+
+	private static final Set<EditJournal> dirty = ConcurrentHashMap.newKeySet();
+	private static ScheduledExecutorService writer;
+
+	private final Path path;
+	private final File file;
+
+	private final ArrayDeque<Edit> pending = new ArrayDeque<>();
+	private String base;
+	private boolean started;
+	private boolean created;
+	private boolean deleteRequested;
+	private volatile long generation;
+
+	/**
+	 * Creates a journal for a tab. Nothing is written until the first edit is recorded.
+	 * @param directory The folder of the journals, see {@link #getDirectory(File)}
+	 * @param file The file edited in the tab, or {@code null} for an untitled tab
+	 */
+	public EditJournal(Path directory, File file) {
+		String name = file == null ? "Untitled" : file.getName();
+		this.path = directory.resolve(name + "." + UUID.randomUUID() + EXTENSION);
+		this.file = file;
+	}
+
+	/**
+	 * Returns the folder that holds the journals of a workspace. The folder is hidden, so it
+	 * is not shown in the file tree.
+	 * @param workspace The workspace folder
+	 * @return The journal folder, which may not exist yet
+	 */
+	public static Path getDirectory(File workspace) {
+		return workspace.toPath().resolve(".zenit").resolve("journal");
+	}
+
+	/**
+	 * Returns the time between two writes, set with the system property
+	 * {@code zenit.journalIntervalMillis}. Defaults to 300 milliseconds.
+	 */
+	public static long getFlushInterval() {
+		return Math.max(10, Long.getLong("zenit.journalIntervalMillis", 300));
+	}
+
+	/**
+	 * Returns the most bytes written per second, set with the system property
+	 * {@code zenit.journalMaxBytesPerSecond}. Defaults to 4 MB.
+	 */
+	public static long getMaxBytesPerSecond() {
+		return Math.max(1024, Long.getLong("zenit.journalMaxBytesPerSecond", 4 * 1024 * 1024));
+	}
+
+	/**
+	 * @return The file of this journal.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Indicates whether edits have been recorded since the journal was created or reset.
+	 * @return {@code true} if the journal has a base text
+	 */
+	public synchronized boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * Starts the journal, with the text before the first unsaved edit.
+	 * @param text The text the recorded edits apply to
+	 */
+	public synchronized void start(String text) {
+		base = text;
+		started = true;
+	}
+
+	/**
+	 * Records an edit. The journal has to be started first, see {@link #start(String)}.
+	 * @param position Where the edit starts
+	 * @param removed The number of characters removed at the position
+	 * @param inserted The text inserted at the position
+	 */
+	public synchronized void record(int position, int removed, String inserted) {
+		if (!started) {
+			throw new IllegalStateException("The journal has not been started");
+		}
+		Edit last = pending.peekLast();
+
+		if (last != null && last.removed == 0 && removed == 0 && position == last.position + last.inserted.length()) {
+			last.inserted += inserted; // Typing
+		} else if (last != null && last.inserted.isEmpty() && inserted.isEmpty() && position + removed == last.position) {
+			last.position = position; // Backspacing
+			last.removed += removed;
+		} else {
+			pending.add(new Edit(position, removed, inserted));
+		}
+		dirty.add(this);
+		startWriter();
+	}
+
+	/**
+	 * Forgets all recorded edits, e.g. after the file was saved, and deletes the journal
+	 * file in the background. The next edit starts the journal again.
+	 */
+	public synchronized void reset() {
+		generation++;
+		pending.clear();
+		base = null;
+		started = false;
+		if (created) {
+			created = false;
+			deleteRequested = true;
+			dirty.add(this);
+			startWriter();
+		}
+	}
+
+	/**
+	 * Writes what has been recorded so far, at most a number of bytes unless a single
+	 * record is larger. Called on the writer thread.
+	 * @return The number of bytes written
+	 */
+	private long flush(long budget) throws IOException {
+		boolean delete;
+		String header;
+		List<Edit> batch = new ArrayList<>();
+		long batchGeneration;
+
+		synchronized (this) {
+			delete = deleteRequested;
+			deleteRequested = false;
+			header = started && !created ? base : null;
+			if (header != null) {
+				created = true;
+				base = null;
+			}
+			long size = 0;
+			while (!pending.isEmpty() && (batch.isEmpty() || size + pending.peek().size() <= budget)) {
+				Edit edit = pending.poll();
+				size += edit.size();
+				batch.add(edit);
+			}
+			batchGeneration = generation;
+		}
+
+		if (delete) {
+			Files.deleteIfExists(path);
+		}
+		long written = 0;
+		if (header != null) {
+			Files.createDirectories(path.getParent());
+			Files.deleteIfExists(path);
+			written += append(header(header), true);
+		}
+		if (!batch.isEmpty() && batchGeneration == generation) {
+			written += append(frame(batch), false);
+		}
+		return written;
+	}
+
+	private synchronized boolean hasWork() {
+		return deleteRequested || !pending.isEmpty() || (started && !created);
+	}
+
+	private long append(byte[] bytes, boolean create) throws IOException {
+		StandardOpenOption mode = create ? StandardOpenOption.CREATE_NEW : StandardOpenOption.APPEND;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, mode)) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			if (TextFileIO.isFsyncEnabled()) {
+				channel.force(false);
+			}
+		}
+		return bytes.length;
+	}
+
+	private byte[] header(String text) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeUTF(file == null ? "" : file.getAbsolutePath());
+		out.writeInt(text.length());
+		out.writeInt(checksum(text));
+		return bytes.toByteArray();
+	}
+
+	private static byte[] frame(List<Edit> batch) throws IOException {
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(records);
+		for (Edit edit : batch) {
+			byte[] inserted = edit.inserted.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, edit.position);
+			writeVarInt(out, edit.removed);
+			writeVarInt(out, inserted.length);
+			out.write(inserted);
+		}
+		byte[] payload = records.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 8);
+		DataOutputStream frame = new DataOutputStream(bytes);
+		frame.writeInt(payload.length);
+		frame.writeInt((int) crc.getValue());
+		frame.write(payload);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Starts the writer thread the first time an edit is recorded.
+	 */
+	private static synchronized void startWriter() {
+		if (writer != null) {
+			return;
+		}
+		writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "edit-journal");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		long interval = getFlushInterval();
+		writer.scheduleWithFixedDelay(EditJournal::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes the queued edits of all journals, within the byte budget of one interval.
+	 */
+	private static void flushAll() {
+		long budget = getMaxBytesPerSecond() * getFlushInterval() / 1000;
+
+		for (EditJournal journal : new ArrayList<>(dirty)) {
+			dirty.remove(journal);
+			try {
+				if (budget > 0) {
+					budget -= journal.flush(budget);
+				}
+			} catch (IOException ex) {
+				System.err.println("EditJournal.flushAll: " + journal.path + ": " + ex.getMessage());
+			}
+			if (journal.hasWork()) {
+				dirty.add(journal);
+			}
+		}
+	}
+
+	/**
+	 * Writes everything that has been recorded by all journals and waits until it is
+	 * written, e.g. before a test reads the journals.
+	 */
+	public static void flushNow() {
+		ScheduledExecutorService executor;
+		synchronized (EditJournal.class) {
+			executor = writer;
+		}
+		if (executor == null) {
+			return;
+		}
+		try {
+			executor.submit(() -> {
+				while (!dirty.isEmpty()) {
+					for (EditJournal journal : new ArrayList<>(dirty)) {
+						dirty.remove(journal);
+						try {
+							journal.flush(Long.MAX_VALUE);
+						} catch (IOException ex) {
+							System.err.println("EditJournal.flushNow: " + journal.path + ": " + ex.getMessage());
+						}
+					}
+				}
+			}).get();
+		} catch (Exception ex) {
+			System.err.println("EditJournal.flushNow: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Replays the journals left in a folder by a previous run and deletes them. Journals
+	 * whose file has been changed since the first unsaved edit can't be replayed and are
+	 * only deleted.
+	 * @param directory The folder of the journals, see {@link #getDirectory(File)}
+	 * @return The unsaved texts found, in no particular order
+	 */
+	public static List<Recovered> recover(Path directory) {
+		List<Recovered> recovered = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return recovered;
+		}
+
+		try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+			for (Path journal : journals) {
+				try {
+					Recovered text = replay(journal);
+					if (text != null) {
+						recovered.add(text);
+					}
+				} catch (IOException ex) {
+					System.err.println("EditJournal.recover: " + journal + ": " + ex.getMessage());
+				}
+				try {
+					Files.deleteIfExists(journal);
+				} catch (IOException ex) {
+					System.err.println("EditJournal.recover: " + journal + ": " + ex.getMessage());
+				}
+			}
+		} catch (IOException ex) {
+			System.err.println("EditJournal.recover: " + ex.getMessage());
+		}
+		return recovered;
+	}
+
+	private static Recovered replay(Path journal) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(journal))) {
+			if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+				throw new IOException("Not an edit journal");
+			}
+			String filePath = in.readUTF();
+			int length = in.readInt();
+			int checksum = in.readInt();
+
+			File file = filePath.isEmpty() ? null : new File(filePath);
+			String base = file == null ? "" : file.isFile() ? TextFileIO.read(file.toPath()) : null;
+			if (base == null || base.length() != length || checksum(base) != checksum) {
+				System.err.println("EditJournal.recover: " + filePath + " has changed, the unsaved edits are lost");
+				return null;
+			}
+
+			PieceTable text = new PieceTable(base);
+			byte[] payload;
+			while ((payload = readFrame(in)) != null) {
+				DataInputStream records = new DataInputStream(new ByteArrayInputStream(payload));
+				while (records.available() > 0) {
+					int position = readVarInt(records);
+					int removed = readVarInt(records);
+					byte[] inserted = records.readNBytes(readVarInt(records));
+					text.replace(position, position + removed, new String(inserted, StandardCharsets.UTF_8));
+				}
+			}
+			String restored = text.getText();
+			return restored.equals(base) ? null : new Recovered(file, restored);
+		} catch (IndexOutOfBoundsException ex) {
+			throw new IOException("The edits don't match the file", ex);
+		}
+	}
+
+	/**
+	 * @return The records of the next frame, or {@code null} at the end of the journal or
+	 * at a frame that was not completely written.
+	 */
+	private static byte[] readFrame(DataInputStream in) throws IOException {
+		try {
+			int length = in.readInt();
+			int checksum = in.readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] payload = in.readNBytes(length);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			return payload.length == length && (int) crc.getValue() == checksum ? payload : null;
+		} catch (EOFException ex) {
+			return null;
+		}
+	}
+
+	private static int checksum(String text) {
+		CRC32 crc = new CRC32();
+		crc.update(text.getBytes(StandardCharsets.UTF_8));
+		return (int) crc.getValue();
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed record");
+	}
+
+	/**
+	 * One edit: a number of characters removed at a position and a text inserted there.
+	 */
+	private static class Edit {
+		private int position;
+		private int removed;
+		private String inserted;
+
+		private Edit(int position, int removed, String inserted) {
+			this.position = position;
+			this.removed = removed;
+			this.inserted = inserted;
+		}
+
+		private long size() {
+			return 15 + inserted.length() * 3L;
+		}
+	}
+
+	/**
+	 * An unsaved text restored from a journal.
+	 */
+	public static class Recovered {
+		private final File file;
+		private final String text;
+
+		private Recovered(File file, String text) {
+			this.file = file;
+			this.text = text;
+		}
+
+		/**
+		 * @return The edited file, or {@code null} if the tab was untitled
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return The text of the tab, with the unsaved edits
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package main.zenit.filesystem;
+
+import java.io.File;
+
+/**
+ * Is told about the files that {@link FileController} creates, saves, renames and deletes,
+ * e.g. to keep an index of the workspace up to date, see
+ * {@link FileController#addFileChangeListener(FileChangeListener)}.
+ */
+public interface FileChangeListener {
+
+	/**
+	 * Called after a file or folder was created or written, or is the new name of a renamed
+	 * file.
+	 * @param file The file or folder
+	 */
+	void fileChanged(File file);
+
+	/**
+	 * Called after a file or folder was deleted, or renamed to another name.
+	 * @param file The file or folder
+	 */
+	void fileRemoved(File file);
+}
@@ -1,11 +1,10 @@
 package main.zenit.filesystem;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import main.zenit.filesystem.helpers.CodeSnippets;
 import main.zenit.filesystem.metadata.Metadata;
@@ -18,6 +17,7 @@ import main.zenit.filesystem.metadata.Metadata;
 public class FileController {
 	
 	private File workspace; //Used as a base-file for all files
+	private final List<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
 
 	//Constructors
 	
@@ -35,6 +35,45 @@ public class FileController {
 	public File getWorkspace() {
 		return workspace;
 	}
+
+	/**
+	 * Adds a listener that is told about the files created, saved, renamed and deleted
+	 * through this controller, e.g. the index of the workspace.
+	 * @param listener The listener to add
+	 */
+	public void addFileChangeListener(FileChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with {@link #addFileChangeListener(FileChangeListener)}.
+	 * @param listener The listener to remove
+	 */
+	public void removeFileChangeListener(FileChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Tells the listeners that a file or folder was created or written.
+	 */
+	private void fireChanged(File file) {
+		if (file != null) {
+			for (FileChangeListener listener : listeners) {
+				listener.fileChanged(file);
+			}
+		}
+	}
+
+	/**
+	 * Tells the listeners that a file or folder was deleted or renamed.
+	 */
+	private void fireRemoved(File file) {
+		if (file != null) {
+			for (FileChangeListener listener : listeners) {
+				listener.fileRemoved(file);
+			}
+		}
+	}
 	
 	/**
 	 * Creates a new .java file from the File-objects using 
@@ -49,7 +88,9 @@ public class FileController {
 	public File createFile(File file, String content, int typeCode) {
 		if (file != null) {
 			try {
-				return JavaFileHandler.createFile(file, content, typeCode, workspace.getAbsolutePath());
+				File created = JavaFileHandler.createFile(file, content, typeCode, workspace.getAbsolutePath());
+				fireChanged(created);
+				return created;
 			} catch (IOException ex) {
 				System.out.println(ex.getMessage());
 			}
@@ -98,7 +139,7 @@ public class FileController {
 	}
 	
 	/**
-	 * Reads a file line by line.
+	 * Reads a file with {@link TextFileIO}. Line separators are converted to {@code \n}.
 	 * @param file The File to read.
 	 * @return A String containing all the lines of the File content. 
 	 * Null if the file could not be read.
@@ -108,27 +149,12 @@ public class FileController {
 			return "";
 		}
 		
-		try (
-			var fileReader = new FileReader(file);
-			var bufferedReader = new BufferedReader(fileReader);
-		) {
-			StringBuilder builder = new StringBuilder();
-
-			String line;
-			while ((line = bufferedReader.readLine()) != null) {
-				builder.append(line);
-				builder.append(System.lineSeparator());
-			}
-
-			return builder.toString();
-		} catch (FileNotFoundException ex) {
-			ex.printStackTrace();
-
-			// TODO: give the user feedback that the file could not be found
+		try {
+			return TextFileIO.read(file.toPath());
 		} catch (IOException ex) {
-			ex.printStackTrace();
+			System.err.println("FileController.readFile: " + ex.getMessage());
 
-			// TODO: handle IO exception
+			// TODO: give the user feedback that the file could not be read
 		}
 		return null;
 	}
@@ -137,13 +163,51 @@ public class FileController {
 	 * Tries to write {@code content} to {@code file}. Prints error message if content
 	 * can't be written.
 	 * @param file The file to write over.
-	 * @param dsd The content to write to disk
+	 * @param content The content to write to disk
 	 */
 	public boolean writeFile(File file, String content) {
+		return writeFile(file, content, Charset.forName(FileHandler.textEncoding));
+	}
+
+	/**
+	 * Tries to write {@code content} to {@code file} with the given charset. The file is
+	 * replaced atomically and keeps its line separators, see
+	 * {@link TextFileIO#write(java.nio.file.Path, String, Charset)}. Prints error message if
+	 * content can't be written.
+	 * @param file The file to write over.
+	 * @param content The content to write to disk
+	 * @param charset The charset to encode the content with
+	 * @return {@code true} if the file was written, otherwise {@code false}
+	 */
+	public boolean writeFile(File file, String content, Charset charset) {
 
 		if (file != null && content != null) {
 			try {
-				JavaFileHandler.saveFile(file, content); //Tries to save file
+				JavaFileHandler.saveFile(file, content, charset); //Tries to save file
+				fireChanged(file);
+				return true;
+			} catch (IOException ex) {
+				System.err.println("FileController.writeFile: " + ex.getMessage());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tries to write {@code content} to {@code file} in the format the file was read with, so
+	 * that it keeps its charset, byte order mark and line separators. The file is replaced
+	 * atomically. Prints error message if content can't be written.
+	 * @param file The file to write over.
+	 * @param content The content to write to disk
+	 * @param format The format of the file, see {@link TextFileReader}
+	 * @return {@code true} if the file was written, otherwise {@code false}
+	 */
+	public boolean writeFile(File file, String content, TextFormat format) {
+
+		if (file != null && content != null) {
+			try {
+				JavaFileHandler.saveFile(file, content, format); //Tries to save file
+				fireChanged(file);
 				return true;
 			} catch (IOException ex) {
 				System.err.println("FileController.writeFile: " + ex.getMessage());
@@ -172,6 +236,10 @@ public class FileController {
 				} else {
 					newFile = JavaFileHandler.renameFile(file, newName);
 				}
+				if (newFile != null) {
+					fireRemoved(file);
+					fireChanged(newFile);
+				}
 			} catch (IOException ex) {
 				System.err.println("FileController.renameFile: " + ex.getMessage());
 			}
@@ -198,6 +266,7 @@ public class FileController {
 				} else {
 					JavaFileHandler.deleteFile(file);
 				}
+				fireRemoved(file);
 				success = true;
 			} catch (IOException ex) {
 				System.err.println("FileController.deleteFile: " + ex.getMessage());
@@ -236,6 +305,7 @@ public class FileController {
 			try {
 				File file = new File(workspace + "/" + projectName);
 				ProjectHandler.createNewProject(file, mainClass);
+				fireChanged(file);
 				return file;
 			} catch (IOException ex) {
 				System.err.println("FileController.createProject: IOException: " + 
@@ -266,6 +336,7 @@ public class FileController {
 	 */
 	public File importProject(File source) throws IOException {
 			File target = ProjectHandler.importProject(source, workspace);
+			fireChanged(target);
 			return target;
 	}
 	
@@ -362,13 +433,15 @@ public class FileController {
 		return MetadataFileHandler.changeSourcepath(directory, projectFile, internal);
 	}
 	
+	/**
+	 * Checks if a class file declares a main method, using the editor content if the file
+	 * is open in a tab.
+	 * @param classFile The file to check
+	 * @return {@code true} if the file contains a main method, otherwise {@code false}
+	 */
 	public boolean containMainMethod(File classFile) {
-		String content;
 		try {
-			content = JavaFileHandler.readFile(classFile);
-			if (content.contains("public static void main")) {
-				return true;
-			}
+			return MainMethodDetector.containsMainMethod(classFile.toPath());
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -0,0 +1,294 @@
+package main.zenit.filesystem;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Application-wide watcher that reports when open files are modified on disk, e.g. by
+ * another program or a version control checkout.
+ * <p>
+ * The parent directory of every watched file is registered with a {@link WatchService}, and
+ * a single daemon thread notifies the listener of a file when it is created or modified.
+ * Listeners are called on the watcher thread and are also called for changes made by Zenit
+ * itself, so they should compare the file with what they expect before acting.
+ * </p>
+ * <p>
+ * Whole folders can be watched too, see {@link #watchFolder(Path, Predicate, Consumer)}. Every
+ * subfolder is registered, including those created later, and the listener of the folder is
+ * told about every file or subfolder that is created, modified or deleted in it.
+ * </p>
+ */
+public final class FileWatcher {
+	private static final FileWatcher INSTANCE = new FileWatcher();
+
+	private final Map<Path, Runnable> listeners = new ConcurrentHashMap<>();
+	private final Map<Path, FolderListener> folders = new ConcurrentHashMap<>();
+	private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+	private WatchService service;
+
+	private FileWatcher() {
+	}
+
+	/**
+	 * @return The watcher shared by all open files.
+	 */
+	public static FileWatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts watching a file, replacing the previous listener of the file.
+	 *
+	 * @param file The file to watch.
+	 * @param listener Called on the watcher thread when the file is created or modified.
+	 */
+	public synchronized void watch(Path file, Runnable listener) {
+		Path path = file.toAbsolutePath().normalize();
+		Path directory = path.getParent();
+		listeners.put(path, listener);
+
+		if (directory == null || directories.containsKey(directory)) {
+			return;
+		}
+
+		try {
+			start();
+			register(directory);
+		} catch (IOException ex) {
+			System.err.println("FileWatcher.watch: Can't watch " + directory + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Starts watching a folder and the subfolders that are included, replacing the previous
+	 * listener of the folder.
+	 *
+	 * @param folder The folder to watch.
+	 * @param included Whether a file or subfolder is watched, called with its name only.
+	 * @param listener Called on the watcher thread with a file or subfolder that was created,
+	 * modified or deleted, or with a folder whose changes were lost and should be read again.
+	 */
+	public synchronized void watchFolder(Path folder, Predicate<File> included, Consumer<Path> listener) {
+		Path root = folder.toAbsolutePath().normalize();
+		folders.put(root, new FolderListener(included, listener));
+
+		try {
+			start();
+			registerTree(root, included);
+		} catch (IOException ex) {
+			System.err.println("FileWatcher.watchFolder: Can't watch " + root + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Stops watching a folder and its subfolders, except those still watched for a file.
+	 *
+	 * @param folder The folder to stop watching.
+	 */
+	public synchronized void unwatchFolder(Path folder) {
+		Path root = folder.toAbsolutePath().normalize();
+		folders.remove(root);
+
+		directories.entrySet().removeIf(entry -> {
+			if (entry.getKey().startsWith(root) && !isWatched(entry.getKey())) {
+				entry.getValue().cancel();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	/**
+	 * Stops watching a file. The directory of the file is no longer watched once none of its
+	 * files are.
+	 *
+	 * @param file The file to stop watching.
+	 */
+	public synchronized void unwatch(Path file) {
+		Path path = file.toAbsolutePath().normalize();
+		Path directory = path.getParent();
+		listeners.remove(path);
+
+		if (directory != null && !isWatched(directory)) {
+			WatchKey key = directories.remove(directory);
+			if (key != null) {
+				key.cancel();
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if a watched file is in the directory or a watched folder contains
+	 * it.
+	 */
+	private boolean isWatched(Path directory) {
+		return listeners.keySet().stream().anyMatch(watched -> directory.equals(watched.getParent()))
+				|| folders.keySet().stream().anyMatch(directory::startsWith);
+	}
+
+	/**
+	 * Returns the listener of the watched folder containing a file or subfolder, if every
+	 * folder from the watched one down to the path is included.
+	 */
+	private FolderListener getFolderListener(Path path) {
+		for (Map.Entry<Path, FolderListener> folder : folders.entrySet()) {
+			if (path.startsWith(folder.getKey()) && !path.equals(folder.getKey())) {
+				boolean included = true;
+				for (Path name : folder.getKey().relativize(path)) {
+					included &= folder.getValue().included.test(name.toFile());
+				}
+				if (included) {
+					return folder.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	private void register(Path directory) throws IOException {
+		if (!directories.containsKey(directory)) {
+			directories.put(directory, directory.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+		}
+	}
+
+	/**
+	 * Registers a folder and the subfolders that are included.
+	 */
+	private void registerTree(Path folder, Predicate<File> included) throws IOException {
+		register(folder);
+		File[] files = folder.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory() && included.test(file) && !Files.isSymbolicLink(file.toPath())) {
+				registerTree(file.toPath(), included);
+			}
+		}
+	}
+
+	/**
+	 * Creates the watch service and its thread the first time a file is watched.
+	 */
+	private void start() throws IOException {
+		if (service != null) {
+			return;
+		}
+		service = FileSystems.getDefault().newWatchService();
+
+		Thread thread = new Thread(this::run, "file-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for changes and notifies the listeners of the changed files, each once per batch
+	 * of events. Subfolders created in a watched folder are registered before its listener is
+	 * told about them.
+	 */
+	private void run() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = service.take();
+			} catch (InterruptedException ex) {
+				return;
+			}
+
+			Path directory = (Path) key.watchable();
+			Set<Path> changed = new LinkedHashSet<>();
+			Set<Path> folderChanges = new LinkedHashSet<>();
+
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					listeners.keySet().stream().filter(path -> directory.equals(path.getParent())).forEach(changed::add);
+					folderChanges.add(directory);
+				} else {
+					Path path = directory.resolve((Path) event.context());
+					if (event.kind() != ENTRY_DELETE) {
+						changed.add(path);
+					}
+					// A subfolder is modified whenever its content is, which its own key reports
+					if (event.kind() != ENTRY_MODIFY || !Files.isDirectory(path)) {
+						folderChanges.add(path);
+					}
+				}
+			}
+			if (!key.reset()) {
+				directories.remove(directory, key);
+			}
+
+			for (Path path : changed) {
+				Runnable listener = listeners.get(path);
+				if (listener != null) {
+					try {
+						listener.run();
+					} catch (RuntimeException ex) {
+						ex.printStackTrace();
+					}
+				}
+			}
+			notifyFolders(folderChanges);
+		}
+	}
+
+	private void notifyFolders(Set<Path> paths) {
+		List<Runnable> notifications = new ArrayList<>();
+		synchronized (this) {
+			for (Path path : paths) {
+				FolderListener folder = folders.containsKey(path) ? folders.get(path) : getFolderListener(path);
+				if (folder == null) {
+					continue;
+				}
+				if (Files.isDirectory(path) && !Files.isSymbolicLink(path)) {
+					try {
+						registerTree(path, folder.included);
+					} catch (IOException ex) {
+						System.err.println("FileWatcher.notifyFolders: Can't watch " + path + ": " + ex.getMessage());
+					}
+				}
+				notifications.add(() -> folder.listener.accept(path));
+			}
+		}
+
+		for (Runnable notification : notifications) {
+			try {
+				notification.run();
+			} catch (RuntimeException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * The listener of a watched folder and the files and subfolders it includes.
+	 */
+	private static class FolderListener {
+		private final Predicate<File> included;
+		private final Consumer<Path> listener;
+
+		private FolderListener(Predicate<File> included, Consumer<Path> listener) {
+			this.included = included;
+			this.listener = listener;
+		}
+	}
+}
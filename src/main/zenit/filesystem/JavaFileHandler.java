@@ -1,13 +1,8 @@
 package main.zenit.filesystem;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
 
 import main.zenit.exceptions.TypeCodeException;
 import main.zenit.filesystem.helpers.CodeSnippets;
@@ -61,10 +56,7 @@ public class JavaFileHandler extends FileHandler {
 				}
 			}
 			
-			try (BufferedWriter br = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), textEncoding))) {
-				br.write(content);
-				br.flush();
-			}
+			TextFileIO.write(file.toPath(), content, Charset.forName(textEncoding));
 
 			return file;
 		} catch (IOException e) {
@@ -80,18 +72,8 @@ public class JavaFileHandler extends FileHandler {
 	 * @throws IOException Throw IOException if file could be read.
 	 */
 	protected static String readFile(File file) throws IOException {
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(
-				new FileInputStream(file), textEncoding))) {
-			
-			String currentString = br.readLine();
-			String stringBuilder = "";
-
-			while (currentString != null) {
-				stringBuilder += currentString + "\n";
-				currentString = br.readLine();
-			}
-			return stringBuilder;
-			
+		try {
+			return TextFileIO.read(file.toPath());
 		} catch (IOException ex) {
 			throw new IOException("File couldn't be read");
 		}
@@ -105,10 +87,38 @@ public class JavaFileHandler extends FileHandler {
 	 * can't be saved.
 	 */
 	protected static void saveFile(File file, String content) throws IOException {
-		try (BufferedWriter br = new BufferedWriter(new OutputStreamWriter(
-				new FileOutputStream(file), textEncoding))) {
-			br.write(content);
-			br.flush();
+		saveFile(file, content, Charset.forName(textEncoding));
+	}
+
+	/**
+	 * Tries to save {@code content} to disk in {@code file} with the given charset. The file is
+	 * replaced atomically, see {@link TextFileIO#write(java.nio.file.Path, String, Charset)}.
+	 * @param file The file to write over with {@code content}.
+	 * @param content The new content of the file
+	 * @param charset The charset to encode the content with
+	 * @throws IOException Throws {@link java.io.IOException IOException} if file
+	 * can't be saved.
+	 */
+	protected static void saveFile(File file, String content, Charset charset) throws IOException {
+		try {
+			TextFileIO.write(file.toPath(), content, charset);
+		} catch (IOException ex) {
+			throw new IOException(ex.getMessage());
+		}
+	}
+
+	/**
+	 * Tries to save {@code content} to disk in {@code file} in the format the file was read
+	 * with, see {@link TextFileIO#write(java.nio.file.Path, String, TextFormat)}.
+	 * @param file The file to write over with {@code content}.
+	 * @param content The new content of the file
+	 * @param format The charset, byte order mark and line separator of the file
+	 * @throws IOException Throws {@link java.io.IOException IOException} if file
+	 * can't be saved.
+	 */
+	protected static void saveFile(File file, String content, TextFormat format) throws IOException {
+		try {
+			TextFileIO.write(file.toPath(), content, format);
 		} catch (IOException ex) {
 			throw new IOException(ex.getMessage());
 		}
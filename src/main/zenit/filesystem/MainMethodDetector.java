@@ -0,0 +1,82 @@
+package main.zenit.filesystem;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds out which Java files declare a main method, e.g. for the run indicator in the file
+ * tree.
+ * <p>
+ * A file declares a main method if it contains {@code public static void main} taking a
+ * single {@code String} array, written as {@code String[] args}, {@code String args[]} or
+ * {@code String... args}, with any parameter name and an optional {@code final}.
+ * </p>
+ * <p>
+ * Files that are open in an editor are answered from what the editor last published, see
+ * {@link #publish(Path, boolean)}, which the editor takes from the parse tree of its content.
+ * Other files are read from disk and matched as text, which is cheaper than parsing them but
+ * also finds a main method that is commented out.
+ * </p>
+ */
+public final class MainMethodDetector {
+
+	private static final Pattern MAIN_METHOD = Pattern.compile(
+			"\\b(?:public\\s+static|static\\s+public)\\s+(?:final\\s+)?void\\s+main\\s*\\(\\s*"
+			+ "(?:final\\s+)?(?:java\\.lang\\.)?String\\s*"
+			+ "(?:\\[\\s*\\]\\s*\\w+|\\.\\.\\.\\s*\\w+|\\w+\\s*\\[\\s*\\])\\s*\\)");
+
+	/**
+	 * Whether the files open in an editor declare a main method, by absolute path.
+	 */
+	private static final Map<Path, Boolean> openDocuments = new ConcurrentHashMap<>();
+
+	private MainMethodDetector() {
+	}
+
+	/**
+	 * @param text Java source code.
+	 * @return {@code true} if the text declares a main method.
+	 */
+	public static boolean declaresMainMethod(CharSequence text) {
+		return MAIN_METHOD.matcher(text).find();
+	}
+
+	/**
+	 * Checks if a file declares a main method, using the editor content if the file is open.
+	 *
+	 * @param filePath The file to check.
+	 * @return {@code true} if the file declares a main method.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static boolean containsMainMethod(Path filePath) throws IOException {
+		Boolean open = openDocuments.get(filePath.toAbsolutePath());
+		if (open != null) {
+			return open;
+		}
+		return declaresMainMethod(TextFileReader.readString(filePath));
+	}
+
+	/**
+	 * Registers whether the editor content of an open file declares a main method.
+	 *
+	 * @param filePath The file that is open in an editor.
+	 * @param hasMainMethod {@code true} if the editor content declares a main method.
+	 * @return {@code true} if the file's answer changed.
+	 */
+	public static boolean publish(Path filePath, boolean hasMainMethod) {
+		Boolean previous = openDocuments.put(filePath.toAbsolutePath(), hasMainMethod);
+		return previous == null || previous != hasMainMethod;
+	}
+
+	/**
+	 * Stops following the editor content of a file, e.g. when its tab is closed.
+	 *
+	 * @param filePath The file to forget.
+	 */
+	public static void forget(Path filePath) {
+		openDocuments.remove(filePath.toAbsolutePath());
+	}
+}
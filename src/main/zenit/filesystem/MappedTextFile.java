@@ -0,0 +1,324 @@
+package main.zenit.filesystem;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Read-only view of a text file that is too large to be loaded into a code area.
+ * <p>
+ * The file is memory mapped with {@link FileChannel#map(FileChannel.MapMode, long, long)},
+ * so its content stays outside the Java heap. The file is split into rows at line breaks,
+ * and lines longer than {@link #MAX_ROW_BYTES} are wrapped into several rows. Only the byte
+ * offset of every {@link #PAGE_ROWS}th row is kept in memory, and the rows are decoded one
+ * page at a time when they are asked for. A small number of decoded pages is cached.
+ * </p>
+ * <p>
+ * Files larger than {@link #getLargeFileThreshold()} bytes should be opened with this class.
+ * The threshold can be changed with the system property {@code zenit.largeFileThreshold}.
+ * </p>
+ * <p>
+ * Closing drops the mapping, but the JVM only unmaps it when it is garbage collected. Until
+ * then the file stays mapped, and on Windows it can't be deleted or replaced.
+ * </p>
+ */
+public class MappedTextFile implements Closeable {
+
+	/**
+	 * The number of rows decoded at a time.
+	 */
+	public static final int PAGE_ROWS = 256;
+
+	/**
+	 * The maximum length of a row in bytes, longer lines are wrapped.
+	 */
+	public static final int MAX_ROW_BYTES = 4096;
+
+	private static final long DEFAULT_LARGE_FILE_THRESHOLD = 10L * 1024 * 1024;
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+	private static final int CACHED_PAGES = 16;
+
+	private final File file;
+	private final long size;
+	private MappedByteBuffer[] segments;
+	private boolean closed;
+	private boolean indexing;
+
+	private long[] pageStarts = new long[16];
+	private int rowCount = -1;
+
+	private final Map<Integer, String[]> pages = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String[]> eldest) {
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * Maps a file into memory. The file is not read until {@link #index()} is called.
+	 * @param file The file to map
+	 * @throws IOException If the file can't be opened or mapped
+	 */
+	public MappedTextFile(File file) throws IOException {
+		this.file = file;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			size = channel.size();
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+			for (int i = 0; i < segments.length; i++) {
+				long position = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(SEGMENT_SIZE, size - position));
+			}
+		}
+	}
+
+	/**
+	 * Returns the size in bytes above which files are opened read-only with this class,
+	 * {@code zenit.largeFileThreshold} if set, otherwise 10 MB.
+	 */
+	public static long getLargeFileThreshold() {
+		return Long.getLong("zenit.largeFileThreshold", DEFAULT_LARGE_FILE_THRESHOLD);
+	}
+
+	/**
+	 * Checks if a file is too large to be edited in a code area.
+	 * @param file The file to check
+	 * @return {@code true} if the file is larger than the large file threshold,
+	 * otherwise {@code false}
+	 */
+	public static boolean isLargeFile(File file) {
+		return file != null && file.isFile() && file.length() > getLargeFileThreshold();
+	}
+
+	/**
+	 * Returns the mapped file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the size of the file in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Scans the file once for row breaks, keeping the offset of the first row of every page.
+	 * Meant to run on a background thread; stops with a {@link CancellationException} if the
+	 * thread is interrupted or the file is closed.
+	 * @return The number of rows in the file
+	 */
+	public int index() {
+		synchronized (this) {
+			if (rowCount >= 0) {
+				return rowCount;
+			}
+			if (closed) {
+				throw new CancellationException(file.getName() + " is closed");
+			}
+			indexing = true;
+		}
+
+		try {
+			return scan();
+		} finally {
+			synchronized (this) {
+				indexing = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Scans the file for {@link #index()}, which keeps it from being closed meanwhile.
+	 */
+	private int scan() {
+
+		long[] starts = new long[16];
+		int rows = 1;
+		long rowStart = 0;
+		byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+
+		for (long offset = 0; offset < size; offset += buffer.length) {
+			if (Thread.currentThread().isInterrupted() || isClosing()) {
+				throw new CancellationException("Indexing of " + file.getName() + " was interrupted");
+			}
+
+			int length = (int) Math.min(buffer.length, size - offset);
+			read(offset, buffer, length);
+
+			for (int i = 0; i < length; i++) {
+				long position = offset + i;
+				long next = rowBreak(buffer[i], position, rowStart);
+
+				if (next != -1) {
+					if (rows % PAGE_ROWS == 0) {
+						int page = rows / PAGE_ROWS;
+						if (page == starts.length) {
+							starts = Arrays.copyOf(starts, starts.length * 2);
+						}
+						starts[page] = next;
+					}
+					rows++;
+					rowStart = next;
+				}
+			}
+		}
+
+		synchronized (this) {
+			pageStarts = starts;
+			rowCount = rows;
+		}
+		return rows;
+	}
+
+	private synchronized boolean isClosing() {
+		return closed;
+	}
+
+	/**
+	 * Returns the number of rows, or -1 if the file has not been indexed yet.
+	 */
+	public synchronized int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the text of a row, without its line break. The page holding the row is
+	 * decoded if it is not cached.
+	 * @param row The index of the row, starting at 0
+	 * @return The text of the row
+	 */
+	public synchronized String getRow(int row) {
+		if (segments == null) {
+			throw new IllegalStateException(file.getName() + " is closed");
+		}
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+		}
+
+		int page = row / PAGE_ROWS;
+		String[] rows = pages.get(page);
+
+		if (rows == null) {
+			rows = decodePage(page);
+			pages.put(page, rows);
+		}
+		return rows[row % PAGE_ROWS];
+	}
+
+	/**
+	 * Decodes all rows of a page.
+	 */
+	private String[] decodePage(int page) {
+		int firstRow = page * PAGE_ROWS;
+		int lastPage = (rowCount - 1) / PAGE_ROWS;
+		long start = pageStarts[page];
+		long end = page < lastPage ? pageStarts[page + 1] : size;
+
+		byte[] bytes = new byte[(int) (end - start)];
+		read(start, bytes, bytes.length);
+
+		String[] rows = new String[Math.min(PAGE_ROWS, rowCount - firstRow)];
+		int row = 0;
+		int rowStart = 0;
+
+		for (int i = 0; i < bytes.length && row < rows.length - 1; i++) {
+			long next = rowBreak(bytes[i], start + i, start + rowStart);
+
+			if (next != -1) {
+				int rowEnd = (int) (next - start);
+				rows[row++] = decodeRow(bytes, rowStart, rowEnd);
+				rowStart = rowEnd;
+			}
+		}
+		rows[row] = decodeRow(bytes, rowStart, bytes.length);
+
+		return rows;
+	}
+
+	/**
+	 * Decodes the bytes of a row as UTF-8, leaving out the line break.
+	 */
+	private static String decodeRow(byte[] bytes, int from, int to) {
+		if (to > from && bytes[to - 1] == '\n') {
+			to--;
+			if (to > from && bytes[to - 1] == '\r') {
+				to--;
+			}
+		}
+		return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decides if a new row starts at or after a byte. A row ends after a line feed, and a row
+	 * that has reached {@link #MAX_ROW_BYTES} is wrapped before the next byte that does not
+	 * continue a UTF-8 character.
+	 * @param value The byte
+	 * @param position The position of the byte in the file
+	 * @param rowStart The position of the first byte of the current row
+	 * @return The position of the next row, or -1 if the byte is part of the current row
+	 */
+	private static long rowBreak(byte value, long position, long rowStart) {
+		if (value == '\n') {
+			return position + 1;
+		}
+		if (position - rowStart >= MAX_ROW_BYTES && (value & 0xC0) != 0x80) {
+			return position;
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies bytes from the mapped file.
+	 */
+	private void read(long position, byte[] destination, int length) {
+		int copied = 0;
+
+		while (copied < length) {
+			long from = position + copied;
+			MappedByteBuffer segment = segments[(int) (from / SEGMENT_SIZE)];
+			int index = (int) (from % SEGMENT_SIZE);
+			int count = Math.min(length - copied, segment.limit() - index);
+
+			segment.get(index, destination, copied, count);
+			copied += count;
+		}
+	}
+
+	/**
+	 * Releases the mapped file, after waiting for {@link #index()} to stop if it is running.
+	 * The mapping itself is freed when it is garbage collected, see the class comment.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		boolean interrupted = false;
+		while (indexing) {
+			try {
+				wait();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		segments = null;
+		pages.clear();
+	}
+}
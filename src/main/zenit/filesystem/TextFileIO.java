@@ -0,0 +1,180 @@
+package main.zenit.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reading and writing of text files, shared by {@link FileController} and the file handlers.
+ * <p>
+ * Text in memory always uses {@code \n} line separators. Files are read with
+ * {@link TextFileReader}, which converts every line separator to {@code \n}, and written back
+ * in their {@link TextFormat}: with the byte order mark they had and the line separator they
+ * used, unless {@code zenit.lineSeparator} sets one, see {@link #getLineSeparator(TextFormat)}.
+ * </p>
+ * <p>
+ * Files are never overwritten in place. The text is written to a temporary file in the same
+ * folder, which then replaces the file with an atomic move, so a crash while saving leaves
+ * either the old or the new file. A symbolic link is followed, so that the file it points to
+ * is replaced and the link is kept. With the system property {@code zenit.fsync=true} the
+ * temporary file is also forced to disk before the move.
+ * </p>
+ */
+public final class TextFileIO {
+
+	private TextFileIO() {
+	}
+
+	/**
+	 * Returns the line separator written to new files, set with the system property
+	 * {@code zenit.lineSeparator} to {@code lf} or {@code crlf}. Defaults to the line
+	 * separator of the operating system.
+	 */
+	public static String getLineSeparator() {
+		return getLineSeparator(null);
+	}
+
+	/**
+	 * Returns the line separator written to a file: the one set with the system property
+	 * {@code zenit.lineSeparator}, otherwise the one the file already uses, so that saving
+	 * doesn't convert its lines. New files and files without line separators get the line
+	 * separator of the operating system.
+	 * @param format The format of the file, may be {@code null}
+	 */
+	public static String getLineSeparator(TextFormat format) {
+		String policy = System.getProperty("zenit.lineSeparator", "");
+
+		switch (policy.toLowerCase()) {
+		case "lf": return "\n";
+		case "crlf": return "\r\n";
+		default:
+			if (format != null && format.getLineSeparator() != null) {
+				return format.getLineSeparator();
+			}
+			return System.lineSeparator();
+		}
+	}
+
+	/**
+	 * @return {@code true} if saved files are forced to disk before they replace the old file.
+	 */
+	public static boolean isFsyncEnabled() {
+		return Boolean.getBoolean("zenit.fsync");
+	}
+
+	/**
+	 * Reads a whole text file.
+	 * @param path The file to read
+	 * @return The text of the file, with {@code \n} line separators
+	 * @throws IOException If the file can't be read
+	 */
+	public static String read(Path path) throws IOException {
+		return TextFileReader.readString(path);
+	}
+
+	/**
+	 * Atomically replaces the content of a file, creating the file if it doesn't exist. An
+	 * existing file keeps its line separator, and its byte order mark if it is written with
+	 * the same charset.
+	 * @param path The file to write
+	 * @param text The text to write
+	 * @param charset The charset to encode the text with
+	 * @throws IOException If the file can't be written, the file is left unchanged
+	 */
+	public static void write(Path path, String text, Charset charset) throws IOException {
+		TextFormat existing = TextFileReader.detectFormat(path);
+		if (existing == null) {
+			write(path, text, TextFormat.of(charset));
+		} else {
+			write(path, text, new TextFormat(charset,
+					existing.hasByteOrderMark() && existing.getCharset().equals(charset), existing.getLineSeparator()));
+		}
+	}
+
+	/**
+	 * Atomically replaces the content of a file, creating the file if it doesn't exist.
+	 * @param path The file to write
+	 * @param text The text to write, line separators are converted to
+	 * {@link #getLineSeparator(TextFormat)}
+	 * @param format The charset, byte order mark and line separator to write the text with
+	 * @throws IOException If the file can't be written, the file is left unchanged
+	 */
+	public static void write(Path path, String text, TextFormat format) throws IOException {
+		Path target = path.toAbsolutePath();
+		if (Files.exists(target)) {
+			// Replacing a symbolic link would turn it into a regular file
+			target = target.toRealPath();
+		}
+		String content = withLineSeparators(text, getLineSeparator(format));
+		if (format.hasByteOrderMark() && !content.startsWith("\uFEFF")) {
+			content = "\uFEFF" + content;
+		}
+		ByteBuffer bytes = format.getCharset().encode(content);
+		Path temporary = Files.createTempFile(target.getParent(), "." + target.getFileName() + ".", ".tmp");
+
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+				if (isFsyncEnabled()) {
+					channel.force(true);
+				}
+			}
+			copyPermissions(target, temporary);
+
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (isFsyncEnabled()) {
+				forceDirectory(target.getParent());
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Converts all line separators of a text.
+	 * @param text The text to convert
+	 * @param lineSeparator The line separator to use
+	 * @return The text with every {@code \r\n}, {@code \r} and {@code \n} replaced
+	 */
+	public static String withLineSeparators(String text, String lineSeparator) {
+		String normalized = text.indexOf('\r') == -1 ? text : text.replace("\r\n", "\n").replace('\r', '\n');
+		return lineSeparator.equals("\n") ? normalized : normalized.replace("\n", lineSeparator);
+	}
+
+	/**
+	 * Gives the new file the permissions of the file it replaces, where the file system
+	 * supports POSIX permissions.
+	 */
+	private static void copyPermissions(Path from, Path to) {
+		try {
+			if (Files.exists(from)) {
+				Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+			}
+		} catch (UnsupportedOperationException | IOException ex) {
+			// The temporary file keeps the default permissions
+		}
+	}
+
+	/**
+	 * Forces the entry of a moved file to disk. Not supported on every platform.
+	 */
+	private static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ex) {
+			// Directories can't be opened on all platforms
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package main.zenit.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Reads text files in chunks with NIO, so that a file can be shown while it is still being
+ * read and reading can be stopped half way.
+ * <p>
+ * The charset is detected from the first chunk of the file: a byte order mark selects UTF-8
+ * or UTF-16, otherwise the file is read as UTF-8 if the chunk is valid UTF-8 and as
+ * windows-1252 if it is not. Line separators are converted to {@code \n}. The charset, the
+ * byte order mark and the first line separator are returned as a {@link TextFormat}, so that
+ * the file can be written back the same way.
+ * </p>
+ * <p>
+ * Bytes later in the file that the detected charset can't decode are read as U+FFFD, and
+ * the format tells that it happened, see {@link TextFormat#hasReplacedBytes()}.
+ * </p>
+ */
+public final class TextFileReader {
+
+	/**
+	 * The number of bytes read at a time.
+	 */
+	public static final int CHUNK_SIZE = 256 * 1024;
+
+	private static final Charset FALLBACK_CHARSET = Charset.forName("windows-1252");
+
+	private TextFileReader() {
+	}
+
+	/**
+	 * Reads a file, passing the text to a consumer one chunk at a time. Stops with a
+	 * {@link CancellationException} if the calling thread is interrupted.
+	 *
+	 * @param path The file to read.
+	 * @param chunks Receives the text of the file in order, in chunks of at most
+	 * {@link #CHUNK_SIZE} characters.
+	 * @return The charset the file was read with.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static Charset read(Path path, Consumer<String> chunks) throws IOException {
+		return readWithFormat(path, chunks).getCharset();
+	}
+
+	/**
+	 * Reads a file like {@link #read(Path, Consumer)}.
+	 *
+	 * @param path The file to read.
+	 * @param chunks Receives the text of the file in order.
+	 * @return The charset, byte order mark and line separator of the file, and whether bytes
+	 * had to be replaced.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static TextFormat readWithFormat(Path path, Consumer<String> chunks) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+			boolean endOfInput = fill(channel, bytes);
+			bytes.flip();
+
+			Charset charset = detectCharset(bytes);
+			int byteOrderMark = byteOrderMarkLength(bytes, charset);
+			bytes.position(bytes.position() + byteOrderMark);
+
+			CharsetDecoder decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT);
+			CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+			LineSeparators separators = new LineSeparators();
+			boolean replaced = false;
+
+			while (true) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Reading of " + path.getFileName() + " was interrupted");
+				}
+
+				CoderResult result = decoder.decode(bytes, chars, endOfInput);
+				if (result.isError()) {
+					if (!chars.hasRemaining()) {
+						emit(chars, separators, chunks);
+					}
+					chars.put(decoder.replacement().charAt(0));
+					bytes.position(bytes.position() + result.length());
+					replaced = true;
+					continue;
+				}
+				if (result.isOverflow()) {
+					emit(chars, separators, chunks);
+					continue;
+				}
+				if (endOfInput) {
+					break;
+				}
+
+				emit(chars, separators, chunks);
+				bytes.compact();
+				endOfInput = fill(channel, bytes);
+				bytes.flip();
+			}
+
+			while (decoder.flush(chars).isOverflow()) {
+				emit(chars, separators, chunks);
+			}
+			emit(chars, separators, chunks);
+
+			return new TextFormat(charset, byteOrderMark > 0, separators.first, replaced);
+		}
+	}
+
+	/**
+	 * Detects the format of a file from its first chunk, without reading the rest.
+	 *
+	 * @param path The file.
+	 * @return The format of the file, or {@code null} if it doesn't exist or can't be read.
+	 */
+	public static TextFormat detectFormat(Path path) {
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+			fill(channel, bytes);
+			bytes.flip();
+
+			Charset charset = detectCharset(bytes);
+			int byteOrderMark = byteOrderMarkLength(bytes, charset);
+			bytes.position(bytes.position() + byteOrderMark);
+
+			CharBuffer chars = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE)
+					.decode(bytes);
+			LineSeparators separators = new LineSeparators();
+			separators.normalize(chars);
+			return new TextFormat(charset, byteOrderMark > 0, separators.first);
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a whole file into a string, see {@link #read(Path, Consumer)}.
+	 *
+	 * @param path The file to read.
+	 * @return The text of the file, with {@code \n} line separators.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static String readString(Path path) throws IOException {
+		StringBuilder text = new StringBuilder();
+		read(path, text::append);
+		return text.toString();
+	}
+
+	/**
+	 * Detects the charset of a file from its first bytes. The position of the buffer is not
+	 * changed.
+	 *
+	 * @param head The first bytes of the file.
+	 * @return UTF-8, UTF-16BE or UTF-16LE if the bytes start with the byte order mark of the
+	 * charset, UTF-8 if the bytes are valid UTF-8, otherwise windows-1252.
+	 */
+	public static Charset detectCharset(ByteBuffer head) {
+		if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+			return StandardCharsets.UTF_8;
+		} else if (startsWith(head, 0xFE, 0xFF)) {
+			return StandardCharsets.UTF_16BE;
+		} else if (startsWith(head, 0xFF, 0xFE)) {
+			return StandardCharsets.UTF_16LE;
+		}
+
+		// A character cut off at the end of the buffer is not an error when more input may follow
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		ByteBuffer bytes = head.duplicate();
+		CharBuffer chars = CharBuffer.allocate(Math.min(head.remaining(), 8192) + 1);
+		while (true) {
+			CoderResult result = decoder.decode(bytes, chars.clear(), false);
+			if (result.isError()) {
+				return FALLBACK_CHARSET;
+			} else if (result.isUnderflow()) {
+				return StandardCharsets.UTF_8;
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the byte order mark a file starts with.
+	 *
+	 * @param head The first bytes of the file.
+	 * @param charset The charset of the file, see {@link #detectCharset(ByteBuffer)}.
+	 * @return The number of bytes of the byte order mark, 0 if there is none.
+	 */
+	public static int byteOrderMarkLength(ByteBuffer head, Charset charset) {
+		if (charset == StandardCharsets.UTF_8 && startsWith(head, 0xEF, 0xBB, 0xBF)) {
+			return 3;
+		} else if (charset == StandardCharsets.UTF_16BE || charset == StandardCharsets.UTF_16LE) {
+			return 2;
+		}
+		return 0;
+	}
+
+	private static boolean startsWith(ByteBuffer buffer, int... values) {
+		if (buffer.remaining() < values.length) {
+			return false;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if ((buffer.get(buffer.position() + i) & 0xFF) != values[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads until the buffer is full or the file ends.
+	 *
+	 * @return {@code true} if the end of the file was reached.
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			if (channel.read(bytes) == -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void emit(CharBuffer chars, LineSeparators separators, Consumer<String> chunks) {
+		chars.flip();
+		if (chars.hasRemaining()) {
+			chunks.accept(separators.normalize(chars));
+		}
+		chars.clear();
+	}
+
+	/**
+	 * Converts {@code \r\n} and {@code \r} to {@code \n}, also when a {@code \r\n} is split
+	 * between two chunks. Remembers the first line separator.
+	 */
+	private static class LineSeparators {
+		private boolean afterCarriageReturn;
+		private String first;
+		private int separators;
+
+		private String normalize(CharBuffer chars) {
+			StringBuilder text = new StringBuilder(chars.remaining());
+
+			while (chars.hasRemaining()) {
+				char c = chars.get();
+				if (c == '\n' && afterCarriageReturn) {
+					afterCarriageReturn = false;
+					if (separators == 1) {
+						first = "\r\n";
+					}
+					continue;
+				}
+				if (c == '\n' || c == '\r') {
+					separators++;
+					if (first == null) {
+						first = String.valueOf(c);
+					}
+				}
+				afterCarriageReturn = c == '\r';
+				text.append(afterCarriageReturn ? '\n' : c);
+			}
+			return text.toString();
+		}
+	}
+}
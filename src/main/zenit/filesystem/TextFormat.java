@@ -0,0 +1,92 @@
+package main.zenit.filesystem;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How a text file is encoded on disk: its charset, whether it starts with a byte order mark,
+ * and the line separator it uses. Detected by {@link TextFileReader} and used by
+ * {@link TextFileIO} to write the file back the way it was.
+ * <p>
+ * A file that has bytes the charset can't decode, e.g. after the first chunk the charset was
+ * detected from, is read with U+FFFD in their place. Saving it writes U+FFFD instead of the
+ * original bytes, see {@link #hasReplacedBytes()}.
+ * </p>
+ */
+public final class TextFormat {
+
+	private final Charset charset;
+	private final boolean byteOrderMark;
+	private final String lineSeparator;
+	private final boolean replacedBytes;
+
+	/**
+	 * @param charset The charset of the text
+	 * @param byteOrderMark {@code true} if the file starts with a byte order mark
+	 * @param lineSeparator The first line separator of the file, {@code null} if it has none
+	 */
+	public TextFormat(Charset charset, boolean byteOrderMark, String lineSeparator) {
+		this(charset, byteOrderMark, lineSeparator, false);
+	}
+
+	/**
+	 * @param charset The charset of the text
+	 * @param byteOrderMark {@code true} if the file starts with a byte order mark
+	 * @param lineSeparator The first line separator of the file, {@code null} if it has none
+	 * @param replacedBytes {@code true} if bytes that couldn't be decoded were replaced
+	 */
+	public TextFormat(Charset charset, boolean byteOrderMark, String lineSeparator, boolean replacedBytes) {
+		this.charset = charset;
+		this.byteOrderMark = byteOrderMark;
+		this.lineSeparator = lineSeparator;
+		this.replacedBytes = replacedBytes;
+	}
+
+	/**
+	 * @param charset The charset of the text
+	 * @return The format of a new file, without byte order mark or line separator
+	 */
+	public static TextFormat of(Charset charset) {
+		return new TextFormat(charset, false, null);
+	}
+
+	/**
+	 * @return The format of a new file, UTF-8 without byte order mark.
+	 */
+	public static TextFormat getDefault() {
+		return of(StandardCharsets.UTF_8);
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * @return {@code true} if the file starts with a byte order mark.
+	 */
+	public boolean hasByteOrderMark() {
+		return byteOrderMark;
+	}
+
+	/**
+	 * @return The first line separator of the file, {@code null} if it has none.
+	 */
+	public String getLineSeparator() {
+		return lineSeparator;
+	}
+
+	/**
+	 * @return {@code true} if the file had bytes that couldn't be decoded with the charset,
+	 * which were read as U+FFFD and are lost when the text is saved.
+	 */
+	public boolean hasReplacedBytes() {
+		return replacedBytes;
+	}
+
+	/**
+	 * @return This format, for a file whose replaced bytes have been saved as U+FFFD.
+	 */
+	public TextFormat withoutReplacedBytes() {
+		return new TextFormat(charset, byteOrderMark, lineSeparator, false);
+	}
+}
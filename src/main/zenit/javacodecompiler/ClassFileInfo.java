@@ -0,0 +1,288 @@
+package main.zenit.javacodecompiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What {@link IncrementalBuild} needs to know about a class file: the classes it refers to,
+ * and what other classes can see of it.
+ * <p>
+ * The dependencies are the classes named in the constant pool and in the type descriptors
+ * and signatures of the class. The signature is everything a class that uses this one is
+ * compiled against: its modifiers, super types and the members that aren't private, with
+ * their types, generic signatures and the exceptions they throw, and the access flags of its
+ * nested classes. The super types are also kept on their own, since a class that calls an
+ * inherited method only refers to the subclass it calls it through. The constant values of
+ * static final fields are kept apart, since javac copies them into the classes that use them
+ * without referring to the class they are declared in.
+ * </p>
+ */
+final class ClassFileInfo {
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_SYNTHETIC = 0x1000;
+
+	private final String name;
+	private final Set<String> dependencies;
+	private final Set<String> supertypes;
+	private final List<String> signature;
+	private final List<String> constants;
+
+	private ClassFileInfo(String name, Set<String> dependencies, Set<String> supertypes, List<String> signature,
+			List<String> constants) {
+		this.name = name;
+		this.dependencies = dependencies;
+		this.supertypes = supertypes;
+		this.signature = signature;
+		this.constants = constants;
+	}
+
+	/**
+	 * Reads a class file.
+	 * @param bytes The contents of the file
+	 * @return What the class depends on and what it shows
+	 * @throws IOException If the bytes aren't a class file
+	 */
+	static ClassFileInfo read(byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (in.readInt() != 0xCAFEBABE) {
+			throw new IOException("Not a class file");
+		}
+		in.readUnsignedShort();
+		in.readUnsignedShort();
+
+		int count = in.readUnsignedShort();
+		int[] tags = new int[count];
+		Object[] values = new Object[count];
+		for (int i = 1; i < count; i++) {
+			tags[i] = in.readUnsignedByte();
+			switch (tags[i]) {
+			case 1:
+				values[i] = in.readUTF();
+				break;
+			case 7: case 8: case 16: case 19: case 20:
+				values[i] = in.readUnsignedShort();
+				break;
+			case 15:
+				in.readUnsignedByte();
+				in.readUnsignedShort();
+				break;
+			case 3:
+				values[i] = in.readInt();
+				break;
+			case 4:
+				values[i] = in.readFloat();
+				break;
+			case 5:
+				values[i++] = in.readLong();
+				break;
+			case 6:
+				values[i++] = in.readDouble();
+				break;
+			case 9: case 10: case 11: case 12: case 17: case 18:
+				in.readInt();
+				break;
+			default:
+				throw new IOException("Unknown constant " + tags[i]);
+			}
+		}
+
+		Set<String> dependencies = new HashSet<>();
+		for (int i = 1; i < count; i++) {
+			if (tags[i] == 7) {
+				addClass(dependencies, (String) values[(Integer) values[i]]);
+			} else if (tags[i] == 1) {
+				addDescriptorClasses(dependencies, (String) values[i]);
+			}
+		}
+
+		List<String> signature = new ArrayList<>();
+		List<String> constants = new ArrayList<>();
+
+		int access = in.readUnsignedShort();
+		String name = (String) values[(Integer) values[in.readUnsignedShort()]];
+		int superClass = in.readUnsignedShort();
+		Set<String> supertypes = new HashSet<>();
+		StringBuilder header = new StringBuilder("class ").append(access).append(' ').append(name);
+		if (superClass != 0) {
+			String superName = (String) values[(Integer) values[superClass]];
+			header.append(" extends ").append(superName);
+			addClass(supertypes, superName);
+		}
+		for (int i = in.readUnsignedShort(); i > 0; i--) {
+			String interfaceName = (String) values[(Integer) values[in.readUnsignedShort()]];
+			header.append(" implements ").append(interfaceName);
+			addClass(supertypes, interfaceName);
+		}
+
+		for (String kind : new String[] { "field", "method" }) {
+			for (int i = in.readUnsignedShort(); i > 0; i--) {
+				int memberAccess = in.readUnsignedShort();
+				String member = kind + " " + memberAccess + " " + values[in.readUnsignedShort()] + " "
+						+ values[in.readUnsignedShort()];
+				boolean visible = (memberAccess & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0;
+
+				for (int j = in.readUnsignedShort(); j > 0; j--) {
+					String attribute = (String) values[in.readUnsignedShort()];
+					int length = in.readInt();
+					if (visible && attribute.equals("Signature")) {
+						member += " " + values[in.readUnsignedShort()];
+					} else if (visible && attribute.equals("Exceptions")) {
+						for (int k = in.readUnsignedShort(); k > 0; k--) {
+							member += " throws " + values[(Integer) values[in.readUnsignedShort()]];
+						}
+					} else if (visible && attribute.equals("ConstantValue")) {
+						constants.add(member + " = " + values[in.readUnsignedShort()]);
+					} else {
+						in.skipBytes(length);
+					}
+				}
+				if (visible) {
+					signature.add(member);
+				}
+			}
+		}
+
+		for (int i = in.readUnsignedShort(); i > 0; i--) {
+			String attribute = (String) values[in.readUnsignedShort()];
+			int length = in.readInt();
+			if (attribute.equals("Signature")) {
+				header.append(' ').append(values[in.readUnsignedShort()]);
+			} else if (attribute.equals("InnerClasses")) {
+				readInnerClasses(in, values, name, signature);
+			} else {
+				in.skipBytes(length);
+			}
+		}
+		signature.add(header.toString());
+
+		dependencies.remove(name);
+		Collections.sort(signature);
+		Collections.sort(constants);
+		return new ClassFileInfo(name, dependencies, supertypes, signature, constants);
+	}
+
+	/**
+	 * Adds the access flags of the class itself and of the classes nested in it, which are
+	 * only declared here: a nested class made private is package-private in its own header.
+	 * Entries of nested classes of other classes that the class only uses are skipped.
+	 */
+	private static void readInnerClasses(DataInputStream in, Object[] values, String name,
+			List<String> signature) throws IOException {
+		for (int i = in.readUnsignedShort(); i > 0; i--) {
+			int inner = in.readUnsignedShort();
+			int outer = in.readUnsignedShort();
+			in.readUnsignedShort();
+			int flags = in.readUnsignedShort();
+
+			String innerName = (String) values[(Integer) values[inner]];
+			String outerName = outer != 0 ? (String) values[(Integer) values[outer]] : null;
+			if (innerName.equals(name) || name.equals(outerName)) {
+				signature.add("inner " + flags + " " + innerName);
+			}
+		}
+	}
+
+	/**
+	 * @return The internal name of the class, e.g. {@code main/Main$Inner}.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The internal names of the classes the class refers to, except those of the JDK.
+	 */
+	Set<String> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * @return The internal names of the super class and interfaces, except those of the JDK.
+	 */
+	Set<String> getSupertypes() {
+		return supertypes;
+	}
+
+	/**
+	 * @return The sorted declarations other classes can see.
+	 */
+	List<String> getSignature() {
+		return signature;
+	}
+
+	/**
+	 * @return The sorted constant values of the fields other classes can see.
+	 */
+	List<String> getConstants() {
+		return constants;
+	}
+
+	/**
+	 * Hashes lines, e.g. the signatures or constants of the classes of a source file.
+	 * @return The first 8 bytes of their SHA-256 hash
+	 */
+	static long hash(List<String> lines) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String line : lines) {
+				digest.update(line.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) '\n');
+			}
+			byte[] bytes = digest.digest();
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = hash << 8 | (bytes[i] & 0xFF);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Adds a class named by a class constant, which is an array descriptor for array types.
+	 */
+	private static void addClass(Set<String> dependencies, String name) {
+		if (name.startsWith("[")) {
+			addDescriptorClasses(dependencies, name);
+		} else if (!isJDKClass(name)) {
+			dependencies.add(name);
+		}
+	}
+
+	/**
+	 * Adds the classes named {@code Lname;} in a descriptor or generic signature. Other strings
+	 * may add a class that doesn't exist, which only means that the class is never found.
+	 */
+	private static void addDescriptorClasses(Set<String> dependencies, String descriptor) {
+		int start = descriptor.indexOf('L');
+		while (start != -1) {
+			int end = start + 1;
+			while (end < descriptor.length() && descriptor.charAt(end) != ';' && descriptor.charAt(end) != '<') {
+				end++;
+			}
+			if (end == descriptor.length()) {
+				return;
+			}
+			String name = descriptor.substring(start + 1, end);
+			if (!name.isEmpty() && !isJDKClass(name) && name.indexOf(' ') == -1) {
+				dependencies.add(name);
+			}
+			start = descriptor.indexOf('L', end);
+		}
+	}
+
+	private static boolean isJDKClass(String name) {
+		return name.startsWith("java/") || name.startsWith("javax/") || name.startsWith("jdk/")
+				|| name.startsWith("sun/");
+	}
+}
@@ -73,11 +73,22 @@ public class CommandBuilder {
 	}
 	
 	private void mergeLibraries() {
+		libraries = mergeLibraries(internalLibraries, externalLibraries);
+	}
+
+	/**
+	 * Merges the internal and external libraries of a project into one class path.
+	 * @param internalLibraries The internal libraries, may be {@code null}
+	 * @param externalLibraries The external libraries, may be {@code null}
+	 * @return The internal libraries followed by the external ones, or {@code null} if
+	 * there are none
+	 */
+	static String[] mergeLibraries(String[] internalLibraries, String[] externalLibraries) {
 		int intLength = 0;
 		int extLength = 0;
 		
 		if (internalLibraries == null && externalLibraries == null) {
-			return;
+			return null;
 		}
 		
 		if (internalLibraries != null) {
@@ -86,7 +97,7 @@ public class CommandBuilder {
 		if (externalLibraries != null) {
 			extLength = externalLibraries.length;
 		}
-		libraries = new String[intLength + extLength];
+		String[] libraries = new String[intLength + extLength];
 		for (int i = 0; i < libraries.length; i++) {
 			if (i < intLength) {
 				libraries[i] = internalLibraries[i];
@@ -94,6 +105,7 @@ public class CommandBuilder {
 				libraries[i] = externalLibraries[i-intLength];
 			}
 		}
+		return libraries;
 	}
 
 	public String generateCommand() {
@@ -0,0 +1,202 @@
+package main.zenit.javacodecompiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs the background compiles of each project one at a time, so that compiles started by
+ * quick saves don't write to the same class folder at the same time or report their errors in
+ * the wrong order.
+ * <p>
+ * A project has at most one compile running and one waiting. A new compile replaces the one
+ * that is waiting, and cancels the one that is running, since it compiles older sources. A
+ * cancelled compile stops where it checks {@link #checkCancelled()}, or through the action it
+ * registered with {@link #whenCancelled(Runnable)}, e.g. killing its javac process.
+ * </p>
+ * <p>
+ * Every compile gets a version, which grows with every compile of the project. Its errors are
+ * only shown if no newer compile of the project has been started since, see
+ * {@link #isLatest(File, long)}.
+ * </p>
+ */
+public final class CompileScheduler {
+	private static final CompileScheduler INSTANCE = new CompileScheduler();
+
+	/**
+	 * The compile the current thread runs, if it was started by a scheduler.
+	 */
+	private static final ThreadLocal<Job> CURRENT = new ThreadLocal<>();
+
+	private final Map<File, Project> projects = new HashMap<>();
+	private final ExecutorService executor;
+
+	private CompileScheduler() {
+		AtomicInteger count = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "compile-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return The scheduler shared by all projects.
+	 */
+	public static CompileScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Schedules a compile of a project. It runs when the compile of the project that is
+	 * running, if any, has stopped, unless another compile is scheduled before that.
+	 * @param projectFile The folder of the project
+	 * @param compile Compiles the project, given the version of the compile
+	 * @return The version of the compile
+	 */
+	public synchronized long submit(File projectFile, LongConsumer compile) {
+		Project project = projects.computeIfAbsent(getKey(projectFile), key -> new Project());
+		Job job = new Job(project, ++project.latest, compile);
+
+		if (project.running == null) {
+			start(job);
+		} else {
+			project.pending = job;
+			project.running.cancel();
+		}
+		return job.version;
+	}
+
+	/**
+	 * @param projectFile The folder of the project
+	 * @param version The version of a compile of the project
+	 * @return {@code true} if no newer compile of the project has been scheduled
+	 */
+	public synchronized boolean isLatest(File projectFile, long version) {
+		Project project = projects.get(getKey(projectFile));
+		return project == null || project.latest == version;
+	}
+
+	/**
+	 * @return {@code true} if the compile that the current thread runs has been cancelled.
+	 */
+	public static boolean isCancelled() {
+		Job job = CURRENT.get();
+		return job != null && job.cancelled;
+	}
+
+	/**
+	 * Stops the compile that the current thread runs if it has been cancelled.
+	 * @throws CancellationException If the compile has been cancelled
+	 */
+	public static void checkCancelled() {
+		if (isCancelled()) {
+			throw new CancellationException("A newer compile has been started");
+		}
+	}
+
+	/**
+	 * Runs an action when the compile that the current thread runs is cancelled, or right
+	 * away if it has been cancelled already. Does nothing outside of a scheduled compile.
+	 * @param action Stops the compile, e.g. by killing a process
+	 */
+	public static void whenCancelled(Runnable action) {
+		Job job = CURRENT.get();
+		if (job == null) {
+			return;
+		}
+		synchronized (INSTANCE) {
+			if (!job.cancelled) {
+				job.onCancel.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	private void start(Job job) {
+		job.project.running = job;
+		executor.execute(job);
+	}
+
+	/**
+	 * Starts the compile that was waiting for a compile that has stopped.
+	 */
+	private synchronized void finished(Job job) {
+		Project project = job.project;
+		project.running = null;
+		if (project.pending != null) {
+			Job next = project.pending;
+			project.pending = null;
+			start(next);
+		}
+	}
+
+	private static File getKey(File projectFile) {
+		return projectFile.getAbsoluteFile().toPath().normalize().toFile();
+	}
+
+	/**
+	 * The compiles of a project.
+	 */
+	private static class Project {
+		private long latest;
+		private Job running;
+		private Job pending;
+	}
+
+	/**
+	 * A scheduled compile.
+	 */
+	private class Job implements Runnable {
+		private final Project project;
+		private final long version;
+		private final LongConsumer compile;
+		private volatile boolean cancelled;
+		private final List<Runnable> onCancel = new ArrayList<>();
+
+		private Job(Project project, long version, LongConsumer compile) {
+			this.project = project;
+			this.version = version;
+			this.compile = compile;
+		}
+
+		@Override
+		public void run() {
+			CURRENT.set(this);
+			try {
+				if (!cancelled) {
+					compile.accept(version);
+				}
+			} catch (CancellationException e) {
+				// A newer compile runs next
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			} finally {
+				CURRENT.remove();
+				finished(this);
+			}
+		}
+
+		/**
+		 * Must be called with the scheduler locked.
+		 */
+		private void cancel() {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			for (Runnable action : onCancel) {
+				action.run();
+			}
+			onCancel.clear();
+		}
+	}
+}
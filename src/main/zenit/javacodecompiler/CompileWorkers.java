@@ -0,0 +1,379 @@
+package main.zenit.javacodecompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import main.zenit.filesystem.jreversions.JDKVerifier;
+import main.zenit.filesystem.jreversions.JREVersions;
+
+/**
+ * Compiles java files in long-lived JVMs of the JDKs that projects use, when that isn't the
+ * JDK Zenit runs on, see {@link InProcessCompiler}.
+ * <p>
+ * There is a worker JVM per JDK. It runs a small program, compiled for the JDK from
+ * {@code CompileWorker.java} the first time, that receives compile requests through its
+ * standard input and keeps its compiler between them, so that only the first compile of a
+ * JDK pays for starting a JVM and loading javac. A worker compiles one file at a time. The
+ * compiled workers are kept in {@code zenit.compileWorkerFolder} ({@code .zenit/compileworker}
+ * in the user's home by default), not in the folder Zenit is started from.
+ * </p>
+ * <p>
+ * At most {@code zenit.compileWorkers} workers (2 by default) run at the same time; a worker
+ * for another JDK replaces the one used least recently, if it isn't compiling. Workers are
+ * stopped after being idle for {@code zenit.compileWorkerIdleTimeout} seconds (300 by
+ * default), and exit by themselves when Zenit does. A worker that crashes is started again
+ * and gets the request once more. When no worker can compile, {@link #compile} throws an
+ * exception and the caller runs javac instead.
+ * </p>
+ */
+public final class CompileWorkers {
+	private static final CompileWorkers INSTANCE = new CompileWorkers(
+			Integer.getInteger("zenit.compileWorkers", 2),
+			Long.getLong("zenit.compileWorkerIdleTimeout", 300));
+
+	/**
+	 * Changed when {@code CompileWorker.java} changes, so that the worker is compiled again.
+	 */
+	private static final String WORKER_VERSION = "2";
+	private static final String WORKER_SOURCE = "/zenit/javacodecompiler/CompileWorker.java";
+	private static final File WORKER_FOLDER = new File(System.getProperty("zenit.compileWorkerFolder",
+			System.getProperty("user.home") + File.separator + ".zenit" + File.separator + "compileworker"));
+
+	private static final int COMPILED = 0;
+	private static final int FAILED = 2;
+
+	private final int maxWorkers;
+	private final long idleTimeoutMillis;
+
+	/**
+	 * The workers by JDK, the least recently used first.
+	 */
+	private final Map<String, Worker> workers = new LinkedHashMap<>(16, 0.75f, true);
+	private final ScheduledExecutorService reaper;
+
+	private CompileWorkers(int maxWorkers, long idleTimeoutSeconds) {
+		this.maxWorkers = maxWorkers;
+		this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+
+		reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "compile-workers");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, Math.min(idleTimeoutSeconds, 30));
+		reaper.scheduleWithFixedDelay(this::stopExpiredWorkers, period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return The workers shared by all projects.
+	 */
+	public static CompileWorkers getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Compiles a file with the javac of a JDK in the worker of the JDK, starting the worker if
+	 * it isn't running. The paths are those of {@link InProcessCompiler#compile}.
+	 * @param JDKPath The JDK of the project, or {@code null} for the default JDK
+	 * @param file The file to compile
+	 * @param projectFile The folder that the other paths are resolved in, the folder of the
+	 * file if {@code null}
+	 * @param directory The folder to write class files to, next to the sources if
+	 * {@code null}
+	 * @param sourcepath The folder to find other sources in, may be {@code null}
+	 * @param libraries The jar files and folders on the class path, may be {@code null}
+	 * @param buffer Receives the errors and warnings, may be {@code null}
+	 * @return {@code true} if the file was compiled without errors
+	 * @throws IOException If no worker could compile the file
+	 * @throws java.util.concurrent.CancellationException If the compile has been cancelled by
+	 * {@link CompileScheduler}
+	 */
+	public boolean compile(String JDKPath, File file, File projectFile, String directory, String sourcepath,
+			String[] libraries, DebugErrorBuffer buffer) throws IOException {
+		if (JDKPath == null) {
+			File defaultJDK = JREVersions.getDefaultJDKFile();
+			if (defaultJDK == null) {
+				throw new IOException("No JDK is set");
+			}
+			JDKPath = defaultJDK.getPath();
+		}
+
+		File base = InProcessCompiler.getBase(file, projectFile);
+		List<String> request = new ArrayList<>();
+		request.add(file.getAbsolutePath());
+		request.add(directory != null ? InProcessCompiler.resolve(base, directory).getAbsolutePath() : "");
+		request.add(sourcepath != null ? InProcessCompiler.resolve(base, sourcepath).getAbsolutePath() : "");
+		for (File library : InProcessCompiler.getClasspath(base, libraries)) {
+			request.add(library.getAbsolutePath());
+		}
+
+		// A worker can't be stopped in the middle of a compile without losing it, so a
+		// cancelled compile is only kept from starting
+		CompileScheduler.checkCancelled();
+		Worker worker = acquire(JDKPath);
+		try {
+			List<DebugError> errors = new ArrayList<>();
+			boolean success = worker.compile(request, errors);
+			if (buffer != null) {
+				for (DebugError error : errors) {
+					buffer.put(error);
+				}
+			}
+			return success;
+		} finally {
+			release(worker);
+		}
+	}
+
+	/**
+	 * @return The number of workers that are running.
+	 */
+	public synchronized int getWorkerCount() {
+		int count = 0;
+		for (Worker worker : workers.values()) {
+			if (worker.isRunning()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Stops every worker that isn't compiling.
+	 */
+	public void stopIdleWorkers() {
+		stopWorkers(true);
+	}
+
+	/**
+	 * Stops the workers that haven't compiled for the idle timeout.
+	 */
+	private void stopExpiredWorkers() {
+		stopWorkers(false);
+	}
+
+	private synchronized void stopWorkers(boolean idle) {
+		long now = System.currentTimeMillis();
+		for (Iterator<Worker> iterator = workers.values().iterator(); iterator.hasNext(); ) {
+			Worker worker = iterator.next();
+			if (worker.users == 0 && (idle || now - worker.lastUsed >= idleTimeoutMillis)) {
+				iterator.remove();
+				worker.stop();
+			}
+		}
+	}
+
+	/**
+	 * @return The worker of a JDK, after making room for it if it is new.
+	 * @throws IOException If there are too many workers and all of them are compiling
+	 */
+	private synchronized Worker acquire(String JDKPath) throws IOException {
+		Worker worker = workers.get(JDKPath);
+
+		if (worker == null) {
+			if (workers.size() >= maxWorkers) {
+				Worker leastRecent = null;
+				for (Worker candidate : workers.values()) {
+					if (candidate.users == 0) {
+						leastRecent = candidate;
+						break;
+					}
+				}
+				if (leastRecent == null) {
+					throw new IOException("All " + maxWorkers + " compile workers are busy");
+				}
+				workers.remove(leastRecent.JDKPath);
+				leastRecent.stop();
+			}
+			worker = new Worker(JDKPath);
+			workers.put(JDKPath, worker);
+		}
+		worker.users++;
+		return worker;
+	}
+
+	private synchronized void release(Worker worker) {
+		worker.users--;
+		worker.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return The path to a tool of a JDK, without the quotes added for the shell.
+	 */
+	private static String getExecutable(String JDKPath, String tool) throws IOException {
+		String path = JDKVerifier.getExecutablePath(JDKPath, tool);
+		if (path == null) {
+			throw new IOException("No " + tool + " in " + JDKPath);
+		}
+		return path.replace("\"", "");
+	}
+
+	/**
+	 * Compiles the worker program with the javac of a JDK, unless it has been compiled already.
+	 * @return The folder of the compiled worker
+	 */
+	private static File prepareWorker(String JDKPath) throws IOException {
+		File folder = new File(WORKER_FOLDER, WORKER_VERSION + "-" + Integer.toHexString(JDKPath.hashCode()));
+		if (new File(folder, "CompileWorker.class").isFile()) {
+			return folder;
+		}
+		folder.mkdirs();
+
+		File source = new File(folder, "CompileWorker.java");
+		try (InputStream in = CompileWorkers.class.getResourceAsStream(WORKER_SOURCE)) {
+			if (in == null) {
+				throw new IOException("Missing " + WORKER_SOURCE);
+			}
+			Files.copy(in, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		Process javac = new ProcessBuilder(getExecutable(JDKPath, "javac"), "-encoding", "UTF-8", "-nowarn",
+				"-d", folder.getAbsolutePath(), source.getAbsolutePath())
+				.redirectErrorStream(true).start();
+		String output = new String(javac.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		try {
+			if (javac.waitFor() != 0) {
+				throw new IOException("Could not compile the compile worker: " + output);
+			}
+		} catch (InterruptedException e) {
+			javac.destroy();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compiling the compile worker");
+		}
+		return folder;
+	}
+
+	/**
+	 * A worker JVM of a JDK. Its fields {@code users} and {@code lastUsed} are guarded by the
+	 * {@link CompileWorkers}, the process by the worker itself.
+	 */
+	private static class Worker {
+		private final String JDKPath;
+		private int users;
+		private long lastUsed = System.currentTimeMillis();
+
+		private volatile Process process;
+		private DataOutputStream requests;
+		private DataInputStream results;
+
+		private Worker(String JDKPath) {
+			this.JDKPath = JDKPath;
+		}
+
+		/**
+		 * Sends a request to the worker and reads the result, starting the worker again if it
+		 * isn't running or crashes during the request.
+		 * @return {@code true} if the file was compiled without errors
+		 */
+		private synchronized boolean compile(List<String> request, List<DebugError> errors) throws IOException {
+			for (int attempt = 1; ; attempt++) {
+				if (process == null || !process.isAlive()) {
+					start();
+				}
+
+				int status;
+				try {
+					requests.writeUTF(request.get(0));
+					requests.writeUTF(request.get(1));
+					requests.writeUTF(request.get(2));
+					requests.writeInt(request.size() - 3);
+					for (String library : request.subList(3, request.size())) {
+						requests.writeUTF(library);
+					}
+					requests.flush();
+
+					status = results.readInt();
+					if (status == FAILED) {
+						throw new WorkerException(results.readUTF());
+					}
+					errors.clear();
+					for (int i = results.readInt(); i > 0; i--) {
+						DebugError.Severity severity = results.readBoolean()
+								? DebugError.Severity.ERROR : DebugError.Severity.WARNING;
+						String place = results.readUTF();
+						String code = results.readUTF();
+						int row = results.readInt();
+						int column = results.readInt();
+						int startOffset = results.readInt();
+						int endOffset = results.readInt();
+						errors.add(new DebugError(place, severity, code.isEmpty() ? null : code, results.readUTF(),
+								row, column, startOffset, endOffset));
+					}
+				} catch (WorkerException e) {
+					throw e;
+				} catch (IOException e) {
+					stop();
+					if (attempt == 2) {
+						throw e;
+					}
+					System.err.println("CompileWorkers.compile: The worker of " + JDKPath
+							+ " stopped, starting it again: " + e);
+					continue;
+				}
+				return status == COMPILED;
+			}
+		}
+
+		private void start() throws IOException {
+			File folder = prepareWorker(JDKPath);
+			process = new ProcessBuilder(getExecutable(JDKPath, "java"), "-XX:+UseSerialGC",
+					"-cp", folder.getAbsolutePath(), "CompileWorker")
+					.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			results = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		}
+
+		private boolean isRunning() {
+			Process running = process;
+			return running != null && running.isAlive();
+		}
+
+		/**
+		 * Closes the input of the worker so that it exits, and kills it if it doesn't.
+		 */
+		private synchronized void stop() {
+			if (process == null) {
+				return;
+			}
+			try {
+				requests.close();
+				if (!process.waitFor(2, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (IOException e) {
+				process.destroyForcibly();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+			process = null;
+		}
+	}
+
+	/**
+	 * The compiler of a worker failed on a request, while the worker itself still runs.
+	 */
+	private static class WorkerException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private WorkerException(String message) {
+			super(message);
+		}
+	}
+}
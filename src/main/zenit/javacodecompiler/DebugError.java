@@ -1,21 +1,64 @@
 package main.zenit.javacodecompiler;
 
+import java.io.File;
+
+/**
+ * An error or warning reported by javac about a source file.
+ * <p>
+ * The row and column are where the problem starts. Diagnostics of a compiler that runs in
+ * Zenit or in a compile worker also have the range of offsets they cover in the file and the
+ * code of the diagnostic, e.g. {@code compiler.err.cant.resolve.location}. Those read from the
+ * output of a javac process have neither.
+ * </p>
+ */
 public class DebugError {
-	
+
+	/**
+	 * How serious a problem is.
+	 */
+	public enum Severity {
+		ERROR,
+		WARNING
+	}
+
 	private String place;
 	private String problemType;
 	private String problem;
 	private int row;
 	private int column;
-	
+	private Severity severity;
+	private String code;
+	private int startOffset;
+	private int endOffset;
+
 	public DebugError(String place, String problemType, String problem, int row, int column) {
+		this(place, problemType.contains("warning") ? Severity.WARNING : Severity.ERROR, null, problem, row,
+				column, -1, -1);
+	}
+
+	/**
+	 * @param place The path of the source file
+	 * @param severity Whether it is an error or a warning
+	 * @param code The code of the diagnostic, or {@code null} if unknown
+	 * @param problem The message
+	 * @param row The row the problem starts at, starting at 1
+	 * @param column The column the problem starts at, starting at 0
+	 * @param startOffset The offset in the file the problem starts at, -1 if unknown
+	 * @param endOffset The offset in the file after the problem, -1 if unknown
+	 */
+	public DebugError(String place, Severity severity, String code, String problem, int row, int column,
+			int startOffset, int endOffset) {
 		this.place = place;
-		this.problemType = problemType;
+		this.problemType = severity == Severity.WARNING ? "warning" : "error";
+		this.severity = severity;
+		this.code = code;
 		this.problem = problem;
 		this.row = row;
 		this.column = column;
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
 	}
-	
+
 	public String toString() {
 		return "Place: " + place + "\nProblem type: " + problemType + "\nError: " + problem +
 				"\n" + row + ":" + column;
@@ -25,6 +68,13 @@ public class DebugError {
 		return place;
 	}
 
+	/**
+	 * @return The source file the problem is in.
+	 */
+	public File getFile() {
+		return new File(place);
+	}
+
 	public String getProblemType() {
 		return problemType;
 	}
@@ -40,7 +90,36 @@ public class DebugError {
 	public int getColumn() {
 		return column;
 	}
-	
-	
 
+	public Severity getSeverity() {
+		return severity;
+	}
+
+	/**
+	 * @return The code of the diagnostic, or {@code null} if unknown.
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return The offset in the file the problem starts at, -1 if unknown.
+	 */
+	public int getStartOffset() {
+		return startOffset;
+	}
+
+	/**
+	 * @return The offset in the file after the problem, -1 if unknown.
+	 */
+	public int getEndOffset() {
+		return endOffset;
+	}
+
+	/**
+	 * @return The number of characters the problem covers, 0 if unknown.
+	 */
+	public int getLength() {
+		return startOffset >= 0 && endOffset > startOffset ? endOffset - startOffset : 0;
+	}
 }
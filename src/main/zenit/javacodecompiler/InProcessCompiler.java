@@ -0,0 +1,322 @@
+package main.zenit.javacodecompiler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+import main.zenit.filesystem.jreversions.JREVersions;
+
+/**
+ * Compiles java files with the compiler of the JDK that Zenit runs on, inside its own JVM,
+ * instead of starting a javac process for every background compile.
+ * <p>
+ * The compiler and its file manager are created once and kept for the following compiles,
+ * so the compiler code is already loaded and optimized and the jar files of the platform and
+ * of the libraries are already open. The file manager is replaced when a library changes on
+ * disk. Compiles run one at a time since the file manager is shared.
+ * </p>
+ * <p>
+ * The files of a project, with a folder for class files and one for sources, are compiled by
+ * the {@link IncrementalBuild} of the project, which only compiles what changed.
+ * </p>
+ * <p>
+ * Only a project whose JDK is the one Zenit runs on, or has the same version, is compiled
+ * here, see {@link #isUsable(String)}. The errors and warnings javac reports are put into a
+ * {@link DebugErrorBuffer} as they are reported, with the range of the file they cover.
+ * </p>
+ */
+public final class InProcessCompiler {
+
+	private static final Object LOCK = new Object();
+	private static final Map<String, Boolean> MATCHING_JDKS = new ConcurrentHashMap<>();
+
+	private static JavaCompiler compiler;
+	private static StandardJavaFileManager fileManager;
+	private static Map<File, Long> libraryVersions = new HashMap<>();
+
+	/**
+	 * The incremental builds of projects, by class and source folder.
+	 */
+	private static final Map<String, IncrementalBuild> builds = new HashMap<>();
+
+	private InProcessCompiler() {
+	}
+
+	/**
+	 * Checks if files of a project can be compiled in Zenit's JVM: the JDK Zenit runs on has
+	 * a compiler, and the project uses that JDK, one of the same version or, like
+	 * {@link CommandBuilder}, the default JDK when it has none.
+	 * @param JDKPath The JDK of the project, or {@code null} for the default JDK
+	 * @return {@code true} if {@link #compile} can be used for the project
+	 */
+	public static boolean isUsable(String JDKPath) {
+		if (!Boolean.parseBoolean(System.getProperty("zenit.inProcessCompiler", "true"))
+				|| getCompiler() == null) {
+			return false;
+		}
+		if (JDKPath == null) {
+			File defaultJDK = JREVersions.getDefaultJDKFile();
+			if (defaultJDK == null) {
+				return true;
+			}
+			JDKPath = defaultJDK.getPath();
+		}
+		return MATCHING_JDKS.computeIfAbsent(JDKPath, InProcessCompiler::isRunningJDK);
+	}
+
+	/**
+	 * Compiles a file, and the files it uses from the source path. A file in the source
+	 * folder of a project is compiled along with the other files that changed since the last
+	 * build instead.
+	 * @param file The file to compile
+	 * @param projectFile The folder that the other paths are resolved in, the folder of the
+	 * file if {@code null}
+	 * @param directory The folder to write class files to, next to the sources if
+	 * {@code null}
+	 * @param sourcepath The folder to find other sources in, may be {@code null}
+	 * @param libraries The jar files and folders on the class path, may be {@code null}
+	 * @param buffer Receives the errors and warnings, may be {@code null}
+	 * @return {@code true} if the file was compiled without errors
+	 */
+	public static boolean compile(File file, File projectFile, String directory, String sourcepath,
+			String[] libraries, DebugErrorBuffer buffer) {
+		File base = getBase(file, projectFile);
+		List<File> classpath = getClasspath(base, libraries);
+
+		DiagnosticListener<JavaFileObject> diagnostics = diagnostic -> {
+			DebugError error = toDebugError(diagnostic);
+			if (error != null && buffer != null) {
+				buffer.put(error);
+			}
+		};
+		boolean success;
+
+		synchronized (LOCK) {
+			if (getCompiler() == null) {
+				System.err.println("InProcessCompiler.compile: Zenit doesn't run on a JDK with a compiler");
+				return false;
+			}
+			try {
+				StandardJavaFileManager manager = getFileManager(classpath);
+
+				File output = directory != null ? resolve(base, directory).getAbsoluteFile() : null;
+				if (output != null) {
+					output.mkdirs();
+				}
+				File sources = sourcepath != null ? resolve(base, sourcepath).getAbsoluteFile() : null;
+				manager.setLocation(StandardLocation.CLASS_OUTPUT, output != null ? List.of(output) : null);
+				manager.setLocation(StandardLocation.SOURCE_PATH, sources != null ? List.of(sources) : null);
+
+				if (output != null && sources != null && isIncremental()
+						&& file.getAbsoluteFile().toPath().startsWith(sources.toPath())) {
+					// The classes of earlier builds are used instead of compiling their sources
+					List<File> buildClasspath = new ArrayList<>();
+					buildClasspath.add(output);
+					buildClasspath.addAll(classpath);
+					manager.setLocation(StandardLocation.CLASS_PATH, buildClasspath);
+
+					IncrementalBuild build = builds.computeIfAbsent(output.getPath() + File.pathSeparator + sources,
+							key -> new IncrementalBuild(base.getAbsoluteFile(), sources, output));
+					success = build.build(compiler, manager, diagnostics, file);
+				} else {
+					manager.setLocation(StandardLocation.CLASS_PATH, classpath);
+					Iterable<? extends JavaFileObject> units = manager.getJavaFileObjects(file.getAbsoluteFile());
+					success = call(compiler.getTask(null, manager, diagnostics, null, null, units));
+				}
+			} catch (IOException | RuntimeException e) {
+				if (CompileScheduler.isCancelled()) {
+					return false;
+				}
+				System.err.println("InProcessCompiler.compile: " + file + ": " + e.getMessage());
+				return false;
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Runs a compile task that stops at the next file it parses, analyzes or generates once
+	 * its compile has been cancelled by {@link CompileScheduler}.
+	 * @return {@code true} if the files were compiled without errors
+	 */
+	static boolean call(JavaCompiler.CompilationTask task) {
+		if (task instanceof JavacTask) {
+			((JavacTask) task).addTaskListener(new TaskListener() {
+				@Override
+				public void started(TaskEvent e) {
+					CompileScheduler.checkCancelled();
+				}
+			});
+		}
+		return task.call();
+	}
+
+	/**
+	 * @return {@code true} unless {@code zenit.incrementalBuild} is {@code false}.
+	 */
+	private static boolean isIncremental() {
+		return Boolean.parseBoolean(System.getProperty("zenit.incrementalBuild", "true"));
+	}
+
+	private static JavaCompiler getCompiler() {
+		synchronized (LOCK) {
+			if (compiler == null) {
+				compiler = ToolProvider.getSystemJavaCompiler();
+			}
+			return compiler;
+		}
+	}
+
+	/**
+	 * @return The file manager of earlier compiles, or a new one if there was none or a
+	 * library on the class path has been changed since.
+	 */
+	private static StandardJavaFileManager getFileManager(List<File> classpath) throws IOException {
+		Map<File, Long> versions = new HashMap<>();
+		for (File library : classpath) {
+			if (library.isFile()) {
+				versions.put(library, library.lastModified());
+			}
+		}
+
+		boolean changed = false;
+		for (Map.Entry<File, Long> version : versions.entrySet()) {
+			Long known = libraryVersions.get(version.getKey());
+			changed |= known != null && !known.equals(version.getValue());
+		}
+
+		if (fileManager != null && changed) {
+			fileManager.close();
+			fileManager = null;
+			libraryVersions = new HashMap<>();
+		}
+		if (fileManager == null) {
+			fileManager = compiler.getStandardFileManager(null, Locale.getDefault(), null);
+		}
+		libraryVersions.putAll(versions);
+		return fileManager;
+	}
+
+	/**
+	 * Converts a diagnostic to an error at the start of the range it covers, with the column
+	 * counted in characters of the line.
+	 * @return The error, or {@code null} for a note or a diagnostic without a position
+	 */
+	static DebugError toDebugError(Diagnostic<? extends JavaFileObject> diagnostic) {
+		if (diagnostic.getKind() == Diagnostic.Kind.NOTE || diagnostic.getKind() == Diagnostic.Kind.OTHER
+				|| diagnostic.getPosition() == Diagnostic.NOPOS || diagnostic.getSource() == null) {
+			return null;
+		}
+
+		int position = (int) diagnostic.getPosition();
+		int start = diagnostic.getStartPosition() != Diagnostic.NOPOS ? (int) diagnostic.getStartPosition() : position;
+		int end = diagnostic.getEndPosition() != Diagnostic.NOPOS ? (int) diagnostic.getEndPosition() : -1;
+		int row = (int) diagnostic.getLineNumber();
+		int column = (int) diagnostic.getColumnNumber() - 1;
+
+		try {
+			CharSequence text = diagnostic.getSource().getCharContent(true);
+			start = Math.min(start, position);
+			// The line number is that of the position, the range may start on an earlier line
+			for (int i = start; i < position; i++) {
+				char c = text.charAt(i);
+				if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+					row--;
+				}
+			}
+			int lineStart = start;
+			while (lineStart > 0 && text.charAt(lineStart - 1) != '\n' && text.charAt(lineStart - 1) != '\r') {
+				lineStart--;
+			}
+			column = start - lineStart;
+		} catch (IOException | IndexOutOfBoundsException e) {
+			// Keep the position and the column javac counted, with tabs expanded
+			start = position;
+		}
+
+		String place = new File(diagnostic.getSource().toUri()).getPath();
+		DebugError.Severity severity = diagnostic.getKind() == Diagnostic.Kind.ERROR
+				? DebugError.Severity.ERROR : DebugError.Severity.WARNING;
+		return new DebugError(place, severity, diagnostic.getCode(), diagnostic.getMessage(null), row, column,
+				start, end);
+	}
+
+	/**
+	 * @return The folder that the paths of a project are relative to, like the folder javac
+	 * runs in.
+	 */
+	static File getBase(File file, File projectFile) {
+		return projectFile != null ? projectFile : file.getAbsoluteFile().getParentFile();
+	}
+
+	/**
+	 * @return The libraries, or the base folder if there are none, like the default class
+	 * path of javac.
+	 */
+	static List<File> getClasspath(File base, String[] libraries) {
+		List<File> classpath = new ArrayList<>();
+		if (libraries != null && libraries.length > 0) {
+			for (String library : libraries) {
+				classpath.add(resolve(base, library));
+			}
+		} else {
+			classpath.add(base);
+		}
+		return classpath;
+	}
+
+	static File resolve(File base, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(base, path);
+	}
+
+	/**
+	 * Checks if a JDK is the one Zenit runs on, its home folder or on macOS the bundle the home
+	 * folder is in, or has the same version according to its release file.
+	 */
+	private static boolean isRunningJDK(String JDKPath) {
+		try {
+			File runningHome = new File(System.getProperty("java.home")).getCanonicalFile();
+			File JDK = new File(JDKPath.replace("\"", ""));
+			File[] homes = { JDK, new File(JDK, "Contents" + File.separator + "Home") };
+
+			for (File home : homes) {
+				if (home.exists() && home.getCanonicalFile().equals(runningHome)) {
+					return true;
+				}
+				File release = new File(home, "release");
+				if (release.isFile()) {
+					Properties properties = new Properties();
+					try (BufferedReader reader = Files.newBufferedReader(release.toPath())) {
+						properties.load(reader);
+					}
+					String version = properties.getProperty("JAVA_VERSION", "").replace("\"", "");
+					return version.equals(System.getProperty("java.version"));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			System.err.println("InProcessCompiler.isRunningJDK: " + JDKPath + ": " + e.getMessage());
+		}
+		return false;
+	}
+}
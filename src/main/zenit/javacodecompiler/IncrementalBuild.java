@@ -0,0 +1,427 @@
+package main.zenit.javacodecompiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Compiles the sources of a project that changed since the last build, and the sources that
+ * depend on what changed, instead of every source the saved file leads javac to.
+ * <p>
+ * The build remembers which class files each source produced, which classes those refer to,
+ * and a hash of their signatures, see {@link ClassFileInfo}. A build compiles the sources that
+ * were changed, added or failed to compile last time, and the sources whose class files are
+ * missing. When the signature of a compiled source changed, the sources that refer to its
+ * classes, or to the classes of the project that extend or implement them, are compiled next,
+ * until no signature changes. A changed constant value compiles
+ * every source, since the classes that use it don't refer to its class. The class files of
+ * deleted sources, and those a source no longer produces, e.g. of a renamed inner class, are
+ * deleted.
+ * </p>
+ * <p>
+ * The dependency graph is kept in {@code .zenit/build} in the project folder, so that the
+ * first build after Zenit starts is incremental too. A project without one is built whole.
+ * </p>
+ */
+final class IncrementalBuild {
+	private static final int MAGIC = 0x5A42444C;
+	private static final int VERSION = 2;
+
+	private final File projectFile;
+	private final File sourceFolder;
+	private final File outputFolder;
+	private final File graphFile;
+
+	/**
+	 * The sources of the last build by path, {@code null} until the graph has been read.
+	 */
+	private Map<String, Source> sources;
+
+	/**
+	 * @param projectFile The folder of the project
+	 * @param sourceFolder The folder of the sources
+	 * @param outputFolder The folder of the class files
+	 */
+	IncrementalBuild(File projectFile, File sourceFolder, File outputFolder) {
+		this.projectFile = projectFile;
+		this.sourceFolder = sourceFolder;
+		this.outputFolder = outputFolder;
+		this.graphFile = new File(new File(projectFile, ".zenit"), "build");
+	}
+
+	/**
+	 * Compiles what changed since the last build, at least the saved file. The locations of
+	 * the file manager have to be set to the folders of this build.
+	 * @param compiler The compiler to use
+	 * @param fileManager The file manager to use
+	 * @param diagnostics Receives the diagnostics of every source that is compiled
+	 * @param saved The file that was saved
+	 * @return {@code true} if every compiled source was compiled without errors
+	 * @throws IOException If the class files can't be read or deleted
+	 * @throws java.util.concurrent.CancellationException If the compile is cancelled, see
+	 * {@link CompileScheduler}
+	 */
+	boolean build(JavaCompiler compiler, StandardJavaFileManager fileManager,
+			DiagnosticListener<? super JavaFileObject> diagnostics, File saved) throws IOException {
+		try {
+			return buildChanges(compiler, fileManager, diagnostics, saved);
+		} catch (RuntimeException e) {
+			// The graph may be half updated, so the saved one is read again by the next build
+			sources = null;
+			throw e;
+		}
+	}
+
+	private boolean buildChanges(JavaCompiler compiler, StandardJavaFileManager fileManager,
+			DiagnosticListener<? super JavaFileObject> diagnostics, File saved) throws IOException {
+		if (sources == null) {
+			sources = readGraph();
+		}
+
+		Set<String> current = new HashSet<>();
+		Set<String> dirty = new LinkedHashSet<>();
+		collectSources(sourceFolder, current);
+		for (String path : current) {
+			Source source = sources.get(path);
+			if (source == null || source.isChanged(new File(path), outputFolder)) {
+				dirty.add(path);
+			}
+		}
+		String savedPath = saved.getAbsolutePath();
+		if (current.contains(savedPath)) {
+			dirty.add(savedPath);
+		}
+
+		// Deleted sources take their class files with them, and whatever used those
+		Set<String> removedClasses = new HashSet<>();
+		for (String path : new ArrayList<>(sources.keySet())) {
+			if (!current.contains(path)) {
+				Source source = sources.remove(path);
+				removedClasses.addAll(source.classes);
+				deleteClasses(source.classes);
+			}
+		}
+		dirty.addAll(getDependents(removedClasses));
+
+		boolean success = true;
+		Set<String> compiled = new HashSet<>();
+		while (!dirty.isEmpty()) {
+			Set<String> changedClasses = new HashSet<>();
+			boolean constantsChanged = false;
+			Map<String, List<String>> outputs = new HashMap<>();
+
+			List<File> files = new ArrayList<>();
+			for (String path : dirty) {
+				files.add(new File(path));
+			}
+			Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(files);
+			boolean round = InProcessCompiler.call(compiler.getTask(null, new OutputRecorder(fileManager, outputs),
+					diagnostics, null, null, units));
+			success &= round;
+			compiled.addAll(dirty);
+
+			// Implicitly compiled sources from the source path are recorded as well
+			Set<String> recorded = new HashSet<>(dirty);
+			recorded.addAll(outputs.keySet());
+			for (String path : recorded) {
+				File file = new File(path);
+				List<String> classes = outputs.get(path);
+				Source previous = sources.get(path);
+
+				if (classes == null && !round) {
+					// Not generated because of errors, so it is compiled again next time
+					if (previous != null) {
+						previous.modified = -1;
+					} else {
+						sources.put(path, new Source(-1, 0, 0, 0, new ArrayList<>(), new HashSet<>(), new HashSet<>()));
+					}
+					continue;
+				}
+				if (classes == null) {
+					classes = new ArrayList<>();
+				}
+
+				Source source = describe(file, classes);
+				sources.put(path, source);
+
+				if (previous != null) {
+					List<String> orphans = new ArrayList<>(previous.classes);
+					orphans.removeAll(classes);
+					deleteClasses(orphans);
+
+					if (previous.signature != source.signature) {
+						changedClasses.addAll(previous.classes);
+						changedClasses.addAll(classes);
+					}
+					constantsChanged |= previous.constants != source.constants;
+				}
+			}
+
+			dirty = new LinkedHashSet<>();
+			if (constantsChanged) {
+				dirty.addAll(current);
+			} else {
+				dirty.addAll(getDependents(addSubclasses(changedClasses)));
+			}
+			dirty.removeAll(compiled);
+			dirty.retainAll(current);
+		}
+
+		writeGraph();
+		return success;
+	}
+
+	/**
+	 * @return The sources that refer to any of the classes.
+	 */
+	private Set<String> getDependents(Set<String> classes) {
+		Set<String> dependents = new LinkedHashSet<>();
+		if (classes.isEmpty()) {
+			return dependents;
+		}
+		for (Map.Entry<String, Source> entry : sources.entrySet()) {
+			for (String dependency : entry.getValue().dependencies) {
+				if (classes.contains(dependency)) {
+					dependents.add(entry.getKey());
+					break;
+				}
+			}
+		}
+		return dependents;
+	}
+
+	/**
+	 * Adds the classes of the project that extend or implement any of the classes, directly
+	 * or through other classes. A call to an inherited method refers to the class it is called
+	 * through, not to the class that declares it.
+	 * @return The classes, with their subclasses
+	 */
+	private Set<String> addSubclasses(Set<String> classes) {
+		boolean added = !classes.isEmpty();
+		while (added) {
+			added = false;
+			for (Source source : sources.values()) {
+				if (!classes.containsAll(source.classes) && !Collections.disjoint(source.supertypes, classes)) {
+					added |= classes.addAll(source.classes);
+				}
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Reads the class files of a compiled source.
+	 * @param classes The internal names of the classes it produced
+	 */
+	private Source describe(File file, List<String> classes) throws IOException {
+		List<String> signature = new ArrayList<>();
+		List<String> constants = new ArrayList<>();
+		Set<String> dependencies = new HashSet<>();
+		Set<String> supertypes = new HashSet<>();
+
+		for (String name : classes) {
+			ClassFileInfo info = ClassFileInfo.read(Files.readAllBytes(getClassFile(outputFolder, name).toPath()));
+			signature.addAll(info.getSignature());
+			constants.addAll(info.getConstants());
+			dependencies.addAll(info.getDependencies());
+			supertypes.addAll(info.getSupertypes());
+		}
+		dependencies.removeAll(classes);
+		supertypes.removeAll(classes);
+		return new Source(file.lastModified(), file.length(), ClassFileInfo.hash(signature),
+				ClassFileInfo.hash(constants), classes, dependencies, supertypes);
+	}
+
+	private void deleteClasses(List<String> classes) throws IOException {
+		for (String name : classes) {
+			Files.deleteIfExists(getClassFile(outputFolder, name).toPath());
+		}
+	}
+
+	private static File getClassFile(File outputFolder, String name) {
+		return new File(outputFolder, name.replace('/', File.separatorChar) + ".class");
+	}
+
+	private static void collectSources(File folder, Set<String> sources) {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				collectSources(file, sources);
+			} else if (file.getName().endsWith(".java")) {
+				sources.add(file.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Reads the graph of the last build. A missing or outdated graph, or one of other
+	 * folders, is read as empty, so that every source is compiled.
+	 */
+	private Map<String, Source> readGraph() {
+		Map<String, Source> graph = new HashMap<>();
+		if (!graphFile.isFile()) {
+			return graph;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile.toPath())))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !in.readUTF().equals(sourceFolder.getAbsolutePath())
+					|| !in.readUTF().equals(outputFolder.getAbsolutePath())) {
+				return graph;
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String path = in.readUTF();
+				long modified = in.readLong();
+				long size = in.readLong();
+				long signature = in.readLong();
+				long constants = in.readLong();
+				List<String> classes = new ArrayList<>();
+				for (int j = in.readInt(); j > 0; j--) {
+					classes.add(in.readUTF());
+				}
+				Set<String> dependencies = new HashSet<>();
+				for (int j = in.readInt(); j > 0; j--) {
+					dependencies.add(in.readUTF());
+				}
+				Set<String> supertypes = new HashSet<>();
+				for (int j = in.readInt(); j > 0; j--) {
+					supertypes.add(in.readUTF());
+				}
+				graph.put(path, new Source(modified, size, signature, constants, classes, dependencies, supertypes));
+			}
+		} catch (IOException e) {
+			System.err.println("IncrementalBuild.readGraph: " + projectFile + ": " + e.getMessage());
+			graph.clear();
+		}
+		return graph;
+	}
+
+	private void writeGraph() throws IOException {
+		graphFile.getParentFile().mkdirs();
+		Path temporary = graphFile.toPath().resolveSibling(graphFile.getName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(sourceFolder.getAbsolutePath());
+			out.writeUTF(outputFolder.getAbsolutePath());
+			out.writeInt(sources.size());
+			for (Map.Entry<String, Source> entry : sources.entrySet()) {
+				Source source = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(source.modified);
+				out.writeLong(source.size);
+				out.writeLong(source.signature);
+				out.writeLong(source.constants);
+				out.writeInt(source.classes.size());
+				for (String name : source.classes) {
+					out.writeUTF(name);
+				}
+				out.writeInt(source.dependencies.size());
+				for (String dependency : source.dependencies) {
+					out.writeUTF(dependency);
+				}
+				out.writeInt(source.supertypes.size());
+				for (String supertype : source.supertypes) {
+					out.writeUTF(supertype);
+				}
+			}
+		}
+		Files.move(temporary, graphFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * What the last build knows about a source file.
+	 */
+	private static class Source {
+		/**
+		 * The time the source was modified when it was compiled, -1 if it failed to compile.
+		 */
+		private long modified;
+		private final long size;
+		private final long signature;
+		private final long constants;
+		private final List<String> classes;
+		private final Set<String> dependencies;
+		/**
+		 * The classes of the project that the classes of the source extend or implement.
+		 */
+		private final Set<String> supertypes;
+
+		private Source(long modified, long size, long signature, long constants, List<String> classes,
+				Set<String> dependencies, Set<String> supertypes) {
+			this.modified = modified;
+			this.size = size;
+			this.signature = signature;
+			this.constants = constants;
+			this.classes = classes;
+			this.dependencies = dependencies;
+			this.supertypes = supertypes;
+		}
+
+		/**
+		 * @return {@code true} if the source has to be compiled again: it changed, failed to
+		 * compile, or one of its class files is missing.
+		 */
+		private boolean isChanged(File file, File outputFolder) {
+			if (modified != file.lastModified() || size != file.length()) {
+				return true;
+			}
+			for (String name : classes) {
+				if (!getClassFile(outputFolder, name).isFile()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Records the classes javac writes for each source file.
+	 */
+	private static class OutputRecorder extends ForwardingJavaFileManager<StandardJavaFileManager> {
+		private final Map<String, List<String>> outputs;
+
+		private OutputRecorder(StandardJavaFileManager fileManager, Map<String, List<String>> outputs) {
+			super(fileManager);
+			this.outputs = outputs;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+				FileObject sibling) throws IOException {
+			if (location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS && sibling != null
+					&& sibling.toUri().getScheme().equals("file")) {
+				String source = new File(sibling.toUri()).getAbsolutePath();
+				outputs.computeIfAbsent(source, path -> new ArrayList<>()).add(className.replace('.', '/'));
+			}
+			return super.getJavaFileForOutput(location, className, kind, sibling);
+		}
+	}
+}
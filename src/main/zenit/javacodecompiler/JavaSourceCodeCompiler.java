@@ -1,6 +1,7 @@
 package main.zenit.javacodecompiler;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 
@@ -16,6 +17,9 @@ import main.zenit.ui.MainController;
  * the background or compile and run, redirecting process streams.
  * 
  * Uses {@link CommandBuilder} to build commands and runs them using {@link TerminalHelpers}.
+ * Background compiles of projects that use the JDK Zenit runs on are instead done in Zenit's
+ * JVM by {@link InProcessCompiler}. Background compiles of a project run one at a time, see
+ * {@link CompileScheduler}.
  * 
  * Java Virtual Machine needs to be installed on the machine for the compiler to work. 
  * Also the correct compiler and java_home paths must be configured.
@@ -60,23 +64,33 @@ public class JavaSourceCodeCompiler {
 	}
 	
 	/**
-	 * Starts a new thread to compile.
+	 * Schedules a compile with {@link CompileScheduler}, which cancels the compile of the
+	 * project that is running, if any.
 	 */
 	public void startCompile() {
-		new Compile().start();	
+		File project = getProjectFolder();
+		CompileScheduler.getInstance().submit(project, version -> new Compile(project, version).run());
 	}
 	
 	/**
 	 * Starts a new thread to compile and run.
 	 */
 	public void startCompileAndRun() {
-		new CompileAndRun().start();
+		new Thread(new CompileAndRun()).start();
+	}
+
+	/**
+	 * @return The folder of the project, or the folder of the file if it has no metadata-file.
+	 */
+	private File getProjectFolder() {
+		File folder = metadataFile != null ? metadataFile : file;
+		return folder.getAbsoluteFile().getParentFile();
 	}
 	
 	/**
 	 * Class for creating commands for compiling, and redirecting process-streams.
 	 */
-	private class Compile extends Thread {
+	private class Compile implements Runnable {
 		protected String JDKPath = null;
 		protected String sourcepath;
 		protected String directory;
@@ -84,24 +98,48 @@ public class JavaSourceCodeCompiler {
 		protected File projectFile;
 		protected String[] internalLibraries;
 		protected String[] externalLibraries;
+		private final File scheduledProject;
+		private final long version;
+
+		private Compile() {
+			this(null, 0);
+		}
+
+		/**
+		 * @param scheduledProject The project folder the compile was scheduled for
+		 * @param version The version of the compile, see {@link CompileScheduler}
+		 */
+		private Compile(File scheduledProject, long version) {
+			this.scheduledProject = scheduledProject;
+			this.version = version;
+		}
 
 		/**
-		 * Only to be called via {@link Thread#start()}.
 		 * Decodes metadata, and runs {@link #compileInPackage()}.
 		 * If no metadata is provided, runs {@link #compile()}.
+		 * Background compiles run {@link #compileInProcess()} when the JDK allows it, otherwise
+		 * {@link #compileInWorker()}. Their errors are only handled if no newer compile has
+		 * been scheduled since.
 		 */
 		public void run() {
 			if (metadataFile != null) {
 				decodeMetadata();
 				createProjectPath();
-				compileInPackage();
-			} else {
-				compile();
+			}
+
+			if (inBackground && InProcessCompiler.isUsable(JDKPath)) {
+				compileInProcess();
+			} else if (!inBackground || !compileInWorker()) {
+				if (metadataFile != null) {
+					compileInPackage();
+				} else {
+					compile();
+				}
 			}
 			
-			if (inBackground && buffer instanceof DebugErrorBuffer) {
+			if (inBackground && buffer instanceof DebugErrorBuffer && !CompileScheduler.isCancelled()) {
 				DebugErrorBuffer deb = (DebugErrorBuffer) buffer;
-				cont.errorHandler(deb);
+				cont.errorHandler(deb, scheduledProject, version);
 			}	
 		}
 		
@@ -166,6 +204,48 @@ public class JavaSourceCodeCompiler {
 			return process;
 		}
 
+		/**
+		 * Compiles the file with the same options as {@link #compile()} or
+		 * {@link #compileInPackage()}, but in Zenit's JVM using {@link InProcessCompiler},
+		 * and puts the errors into the buffer.
+		 * @return {@code true} if the file was compiled without errors.
+		 */
+		protected boolean compileInProcess() {
+			DebugErrorBuffer deb = null;
+			if (buffer != null && buffer instanceof DebugErrorBuffer) {
+				deb = (DebugErrorBuffer) buffer;
+			}
+
+			if (metadataFile == null) {
+				return InProcessCompiler.compile(file, null, null, null, null, deb);
+			}
+
+			String[] libraries = CommandBuilder.mergeLibraries(internalLibraries, externalLibraries);
+			return InProcessCompiler.compile(file, projectFile, directory, sourcepath, libraries, deb);
+		}
+
+		/**
+		 * Compiles the file like {@link #compileInProcess()}, but in the worker JVM of the
+		 * project's JDK using {@link CompileWorkers}, and puts the errors into the buffer.
+		 * @return {@code false} if no worker could compile the file, so that javac has to.
+		 */
+		protected boolean compileInWorker() {
+			DebugErrorBuffer deb = null;
+			if (buffer != null && buffer instanceof DebugErrorBuffer) {
+				deb = (DebugErrorBuffer) buffer;
+			}
+
+			String[] libraries = CommandBuilder.mergeLibraries(internalLibraries, externalLibraries);
+			try {
+				CompileWorkers.getInstance().compile(JDKPath, file, projectFile, directory, sourcepath,
+						libraries, deb);
+				return true;
+			} catch (IOException e) {
+				System.err.println("JavaSourceCodeCompiler.compileInWorker: " + e.getMessage());
+				return false;
+			}
+		}
+
 		/**
 		 * Executes a command in a directory using {@link TerminalHelpers}.
 		 * @param command Command to be executed.
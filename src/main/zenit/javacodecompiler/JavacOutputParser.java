@@ -0,0 +1,97 @@
+package main.zenit.javacodecompiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the errors and warnings from the output of a javac process, a line at a time while
+ * javac is still running.
+ * <p>
+ * A diagnostic starts with a line {@code path:row: error: message}, where the path may
+ * contain colons, e.g. a drive letter. The message may continue on the following lines, up
+ * to the line of source code and the line with a caret under the column. Lines after the
+ * caret, like the symbol that can't be found, belong to the message too, until the next
+ * diagnostic or the summary. Notes and other lines are skipped.
+ * </p>
+ */
+public class JavacOutputParser {
+	private static final Pattern HEADER = Pattern.compile("(.+\\.java):(\\d+): (error|warning): (.*)");
+	private static final Pattern SUMMARY = Pattern.compile("\\d+ (error|warning)s?|Note: .*");
+
+	private final File directory;
+	private final Consumer<DebugError> onError;
+
+	private Matcher header;
+	private final List<String> lines = new ArrayList<>();
+	private int column = -1;
+
+	/**
+	 * @param directory The folder javac runs in, that relative paths are resolved in, may be
+	 * {@code null}
+	 * @param onError Receives each diagnostic once all of its lines have been read
+	 */
+	public JavacOutputParser(File directory, Consumer<DebugError> onError) {
+		this.directory = directory;
+		this.onError = onError;
+	}
+
+	/**
+	 * Reads the next line of the output.
+	 * @param line The line, without the line break
+	 */
+	public void line(String line) {
+		Matcher next = HEADER.matcher(line);
+		if (next.matches()) {
+			finish();
+			header = next;
+		} else if (SUMMARY.matcher(line).matches()) {
+			finish();
+		} else if (header != null) {
+			if (column == -1 && !line.isBlank() && line.strip().equals("^")) {
+				column = line.indexOf('^');
+				// The line before the caret is the source code, not the message
+				if (!lines.isEmpty()) {
+					lines.remove(lines.size() - 1);
+				}
+			} else {
+				lines.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Passes on the diagnostic that is being read, e.g. when the output ends.
+	 */
+	public void finish() {
+		if (header == null) {
+			return;
+		}
+
+		StringBuilder problem = new StringBuilder(header.group(4));
+		for (String line : lines) {
+			problem.append('\n').append(line.strip());
+		}
+
+		File file = new File(header.group(1));
+		if (!file.isAbsolute() && directory != null) {
+			file = new File(directory, header.group(1));
+		}
+		DebugError.Severity severity = header.group(3).equals("warning")
+				? DebugError.Severity.WARNING : DebugError.Severity.ERROR;
+
+		try {
+			onError.accept(new DebugError(file.getPath(), severity, null, problem.toString(),
+					Integer.parseInt(header.group(2)), Math.max(column, 0), -1, -1));
+		} catch (NumberFormatException e) {
+			System.err.println("JavacOutputParser.finish: " + e.getMessage());
+		}
+
+		header = null;
+		lines.clear();
+		column = -1;
+	}
+}
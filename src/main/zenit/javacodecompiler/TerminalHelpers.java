@@ -4,7 +4,6 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
 
 /**
  * Contains static helper methods to run shellscripts in terminal
@@ -24,6 +23,10 @@ public class TerminalHelpers {
 	 * @param directory The directory to run the command in
 	 */
 	protected static Process runCommand(String command, File directory) {
+		return runCommand(command, directory, false);
+	}
+	
+	private static Process runCommand(String command, File directory, boolean discardOutput) {
 		try {
 			ProcessBuilder builder = new ProcessBuilder();
 			if (System.getProperty("os.name").startsWith("Windows")) {
@@ -33,6 +36,9 @@ public class TerminalHelpers {
 			}
 
 			builder.directory(directory);
+			if (discardOutput) {
+				builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+			}
 
 			Process process = builder.start();
 			
@@ -49,52 +55,38 @@ public class TerminalHelpers {
 		return runBackgroundCommand(command, null, buffer);
 	}
 	
+	/**
+	 * Runs a javac command in {@code directory} and puts the errors it prints into
+	 * {@code buffer}. The errors are read with a {@link JavacOutputParser} while the process
+	 * runs, so that it can't block on a full pipe, and its standard output is discarded. The
+	 * process is killed if its compile is cancelled by {@link CompileScheduler}.
+	 * @param command The command to be run in terminal
+	 * @param directory The directory to run the command in
+	 * @param buffer Receives the errors, may be {@code null}
+	 * @return The finished process
+	 */
 	protected static Process runBackgroundCommand(String command, File directory, DebugErrorBuffer buffer) {
-		Process process = runCommand(command, directory);
+		Process process = runCommand(command, directory, true);
+		if (process == null) {
+			return null;
+		}
+		CompileScheduler.whenCancelled(process::destroyForcibly);
+
+		JavacOutputParser parser = new JavacOutputParser(directory, error -> {
+			if (buffer != null) {
+				buffer.put(error);
+			}
+		});
 		
 		try {
-			process.waitFor();
-			
 			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
 			String line;
-			String place;
-			String problemType;
-			String problem;
-			int row;
-			int column;
-			
-			ArrayList<DebugError> errors = new ArrayList<>();
-			DebugError error;
-			
-			try {
-				while ((line = reader.readLine()) != null) {
-
-					int colon1Index = line.indexOf(':');
-					int colon2Index = line.indexOf(':', colon1Index + 1);
-					int colon3Index = line.indexOf(':', colon2Index + 1);
-
-					place = line.substring(0, colon1Index);
-					row = Integer.parseInt(line.substring(colon1Index + 1, colon2Index));
-					problemType = line.substring(colon2Index + 1, colon3Index);
-					problem = line.substring(colon3Index + 2);
-
-					line = reader.readLine();
-					line = reader.readLine();
-					column = line.indexOf('^');
-
-					error = new DebugError(place, problemType, problem, row, column);
-					errors.add(error);
-				}
-			} catch (NumberFormatException | IndexOutOfBoundsException ex) {
-
-			}
-			
-			if (buffer != null) {
-				for (DebugError de : errors) {
-					buffer.put(de);
-				}
+			while ((line = reader.readLine()) != null) {
+				parser.line(line);
 			}
+			parser.finish();
 			
+			process.waitFor();
 		} catch (IOException | InterruptedException ex) {
 			ex.printStackTrace();
 		}
@@ -0,0 +1,414 @@
+package main.zenit.searchinfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import main.zenit.filesystem.MappedTextFile;
+import main.zenit.filesystem.TextFileReader;
+
+/**
+ * Searches every file of a folder for a word, e.g. of the workspace.
+ * <p>
+ * The folders are walked in parallel on a fork-join pool shared by all searches, one task
+ * per folder. The bin folders, class files and hidden files that the file tree leaves out are
+ * skipped, and so are binary files and files too large to be edited, see
+ * {@link MappedTextFile#isLargeFile(File)}. Small files are read into a buffer owned by the
+ * worker thread, larger files are memory mapped, so that a search doesn't allocate a new
+ * buffer for every file.
+ * </p>
+ * <p>
+ * The matches of each file are passed on as soon as the file has been searched, in a worker
+ * thread. A search can be cancelled at any time, it then stops before the next file.
+ * </p>
+ */
+public class FindInFiles {
+	/**
+	 * Files up to this size are read into the buffer of the worker thread, larger ones mapped.
+	 */
+	private static final int POOLED_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The search stops when it has found this many matches.
+	 */
+	public static final int MAX_MATCHES = 100_000;
+
+	private static final int MAX_PREVIEW_LENGTH = 200;
+	private static final int BINARY_CHECK_LENGTH = 8192;
+
+	/**
+	 * The threads that search and read files, shared with the {@link TrigramIndex}.
+	 */
+	static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+			pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("find-in-files-" + thread.getPoolIndex());
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}, null, false);
+
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+	/**
+	 * Number of files a task searches without splitting its part of a list of files.
+	 */
+	private static final int FILES_PER_TASK = 8;
+
+	private final File folder;
+	private final List<File> files;
+	private final TextMatcher matcher;
+	private final Consumer<List<Match>> onMatches;
+	private final Runnable onFinished;
+	private final AtomicInteger searchedFiles = new AtomicInteger();
+	private final AtomicInteger matchCount = new AtomicInteger();
+	private volatile boolean cancelled;
+
+	/**
+	 * @param folder The folder to search
+	 * @param word The word to find, not empty
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 * @param onMatches Receives the matches of each file that has any, in a worker thread
+	 * @param onFinished Is run in a worker thread when the search has finished or was
+	 * cancelled
+	 */
+	public FindInFiles(File folder, String word, boolean caseSensitive, Consumer<List<Match>> onMatches,
+			Runnable onFinished) {
+		this(folder, null, word, caseSensitive, onMatches, onFinished);
+	}
+
+	/**
+	 * Creates a search of some files only, e.g. the files that the {@link TrigramIndex} found
+	 * might contain the word.
+	 * @param files The files to search
+	 * @param word The word to find, not empty
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 * @param onMatches Receives the matches of each file that has any, in a worker thread
+	 * @param onFinished Is run in a worker thread when the search has finished or was
+	 * cancelled
+	 */
+	public FindInFiles(List<File> files, String word, boolean caseSensitive, Consumer<List<Match>> onMatches,
+			Runnable onFinished) {
+		this(null, files, word, caseSensitive, onMatches, onFinished);
+	}
+
+	private FindInFiles(File folder, List<File> files, String word, boolean caseSensitive,
+			Consumer<List<Match>> onMatches, Runnable onFinished) {
+		this.folder = folder;
+		this.files = files;
+		this.matcher = new TextMatcher(word, caseSensitive);
+		this.onMatches = onMatches;
+		this.onFinished = onFinished;
+	}
+
+	/**
+	 * Checks if a file or folder is searched, like the file tree shows it.
+	 * @param file The file or folder to check
+	 * @return {@code false} for bin folders, class files and hidden files
+	 */
+	public static boolean isSearched(File file) {
+		String name = file.getName();
+		return !name.startsWith(".") && !name.equals("bin") && !name.endsWith(".class");
+	}
+
+	/**
+	 * Starts the search in the background.
+	 */
+	public void start() {
+		POOL.execute(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				try {
+					if (files != null) {
+						new FileListSearch(0, files.size()).invoke();
+					} else {
+						new FolderSearch(folder).invoke();
+					}
+				} finally {
+					onFinished.run();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops the search. Files that are being searched are finished, but their matches are
+	 * not passed on.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return {@code true} if the search was cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return {@code true} if the search stopped because it found {@link #MAX_MATCHES} matches.
+	 */
+	public boolean isLimited() {
+		return matchCount.get() >= MAX_MATCHES;
+	}
+
+	/**
+	 * @return The number of files searched so far.
+	 */
+	public int getSearchedFileCount() {
+		return searchedFiles.get();
+	}
+
+	private boolean isStopped() {
+		return cancelled || isLimited();
+	}
+
+	/**
+	 * Searches the files of a folder and forks a task for each of its folders.
+	 */
+	private class FolderSearch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final File folder;
+
+		private FolderSearch(File folder) {
+			this.folder = folder;
+		}
+
+		@Override
+		protected void compute() {
+			File[] files = folder.listFiles();
+			if (files == null || isStopped()) {
+				return;
+			}
+
+			List<FolderSearch> folders = new ArrayList<>();
+			for (File file : files) {
+				if (!isSearched(file)) {
+					continue;
+				}
+				if (file.isDirectory()) {
+					FolderSearch search = new FolderSearch(file);
+					search.fork();
+					folders.add(search);
+				} else if (!isStopped()) {
+					search(file);
+				}
+			}
+			for (FolderSearch search : folders) {
+				search.join();
+			}
+		}
+	}
+
+	/**
+	 * Searches a part of the list of files, splitting it in two if it is long.
+	 */
+	private class FileListSearch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		private FileListSearch(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > FILES_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new FileListSearch(from, middle), new FileListSearch(middle, to));
+				return;
+			}
+			for (int i = from; i < to && !isStopped(); i++) {
+				search(files.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Searches a file and passes on its matches.
+	 */
+	private void search(File file) {
+		try {
+			CharBuffer text = readText(file);
+			if (text == null) {
+				return;
+			}
+
+
+			List<Match> matches = new ArrayList<>();
+			int line = 1;
+			int lineStart = 0;
+			int scanned = 0;
+
+			for (int start = matcher.indexOf(text, 0); start != -1 && !isStopped();
+					start = matcher.indexOf(text, start + matcher.length())) {
+				for (; scanned < start; scanned++) {
+					if (text.get(scanned) == '\n') {
+						line++;
+						lineStart = scanned + 1;
+					}
+				}
+				matches.add(new Match(file, line, start - lineStart, preview(text, lineStart, start)));
+				matchCount.incrementAndGet();
+			}
+
+			if (!matches.isEmpty() && !cancelled) {
+				onMatches.accept(matches);
+			}
+		} catch (IOException e) {
+			System.err.println("FindInFiles.search: " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads and decodes a text file into the buffers of the current thread. The text is only
+	 * valid until the thread reads the next file.
+	 * @param file The file to read
+	 * @return The text of the file, or {@code null} if it isn't a file, is too large to be
+	 * edited or is a binary file
+	 * @throws IOException If the file can't be read
+	 */
+	static CharBuffer readText(File file) throws IOException {
+		if (!file.isFile() || MappedTextFile.isLargeFile(file)) {
+			return null;
+		}
+		Buffers buffers = BUFFERS.get();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int size = (int) channel.size();
+			ByteBuffer bytes;
+
+			if (size <= POOLED_BUFFER_SIZE) {
+				bytes = buffers.bytes;
+				bytes.clear().limit(size);
+				while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+				}
+				bytes.flip();
+			} else {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+
+			// The charset is detected from the first chunk, like when the file is opened
+			ByteBuffer head = bytes.slice(0, Math.min(bytes.limit(), TextFileReader.CHUNK_SIZE));
+			Charset charset = TextFileReader.detectCharset(head);
+			int byteOrderMark = TextFileReader.byteOrderMarkLength(head, charset);
+
+			// UTF-16 text is full of zero bytes, but only read with a byte order mark
+			for (int i = 0, end = Math.min(bytes.limit(), BINARY_CHECK_LENGTH); i < end && byteOrderMark == 0; i++) {
+				if (bytes.get(i) == 0) {
+					return null;
+				}
+			}
+			return buffers.decode(bytes.position(byteOrderMark), charset);
+		}
+	}
+
+	/**
+	 * @return The line of a match, shortened around the match if it is long.
+	 */
+	private static String preview(CharBuffer text, int lineStart, int matchStart) {
+		int lineEnd = lineStart;
+		while (lineEnd < text.limit() && text.get(lineEnd) != '\n') {
+			lineEnd++;
+		}
+		if (lineEnd > lineStart && text.get(lineEnd - 1) == '\r') {
+			lineEnd--;
+		}
+
+		int from = lineStart;
+		if (lineEnd - lineStart > MAX_PREVIEW_LENGTH) {
+			from = Math.max(lineStart, matchStart - MAX_PREVIEW_LENGTH / 2);
+		}
+		int to = Math.min(lineEnd, from + MAX_PREVIEW_LENGTH);
+		return text.subSequence(from, to).toString().strip();
+	}
+
+	/**
+	 * The buffers a worker thread reads and decodes files with.
+	 */
+	private static class Buffers {
+		private final ByteBuffer bytes = ByteBuffer.allocateDirect(POOLED_BUFFER_SIZE);
+		private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+		private final CharBuffer pooledChars = CharBuffer.allocate(POOLED_BUFFER_SIZE);
+
+		/**
+		 * Decodes bytes into the pooled characters, or into new ones for a mapped file that
+		 * doesn't fit, so that the pool doesn't grow to the largest file.
+		 */
+		private CharBuffer decode(ByteBuffer bytes, Charset charset) {
+			CharBuffer chars = bytes.remaining() <= pooledChars.capacity()
+					? pooledChars.clear() : CharBuffer.allocate(bytes.remaining());
+			CharsetDecoder decoder = decoders.computeIfAbsent(charset, key -> key.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE));
+			decoder.reset();
+			decoder.decode(bytes, chars, true);
+			decoder.flush(chars);
+			return chars.flip();
+		}
+	}
+
+	/**
+	 * An occurrence of the word in a file.
+	 */
+	public static class Match {
+		private final File file;
+		private final int line;
+		private final int column;
+		private final String preview;
+
+		private Match(File file, int line, int column, String preview) {
+			this.file = file;
+			this.line = line;
+			this.column = column;
+			this.preview = preview;
+		}
+
+		/**
+		 * @return The file the word was found in.
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return The line of the match, starting at 1.
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return The column of the match, starting at 0.
+		 */
+		public int getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return The text of the line, shortened if it is long.
+		 */
+		public String getPreview() {
+			return preview;
+		}
+	}
+}
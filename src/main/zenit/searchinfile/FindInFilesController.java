@@ -0,0 +1,255 @@
+package main.zenit.searchinfile;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+import main.zenit.searchinfile.FindInFiles.Match;
+import main.zenit.ui.MainController;
+
+/**
+ * Window that searches every file of the workspace for a word, see {@link FindInFiles}.
+ * <p>
+ * Once the {@link TrigramIndex} of the workspace is ready, only the files it finds might
+ * contain the word are searched, otherwise every file.
+ * </p>
+ * <p>
+ * Matches are added to a virtualized list while the search is running, a batch per pulse of
+ * the JavaFX application thread, so only the rows in view are turned into nodes no matter how
+ * many matches there are. Starting a new search or closing the window cancels the running
+ * search. Double-clicking a match, or pressing enter on it, opens the file at the match.
+ * </p>
+ */
+public class FindInFilesController extends AnchorPane {
+
+	private final File workspace;
+	private final TrigramIndex index;
+	private final MainController mainController;
+
+	private final TextField fldInputField = new TextField();
+	private final CheckBox chkMatchCase = new CheckBox("Match case");
+	private final Button btnStop = new Button("Stop");
+	private final Label lblStatus = new Label();
+	private final ObservableList<Match> matches = FXCollections.observableArrayList();
+	private final ListView<Match> lstMatches = new ListView<>(matches);
+
+	private FindInFiles search;
+	private Results results;
+
+	private Stage window;
+
+	/**
+	 * Opens the window.
+	 * @param workspace The folder to search
+	 * @param index The index of the folder, may be null
+	 * @param mainController Opens the files of the matches
+	 */
+	public FindInFilesController(File workspace, TrigramIndex index, MainController mainController) {
+		this.workspace = workspace;
+		this.index = index;
+		this.mainController = mainController;
+
+		fldInputField.setPromptText("Find in " + workspace.getName() + "...");
+		fldInputField.setOnAction(event -> find());
+		chkMatchCase.setOnAction(event -> find());
+		btnStop.setDisable(true);
+		btnStop.setOnAction(event -> stop());
+
+		HBox bar = new HBox(8, fldInputField, chkMatchCase, btnStop);
+		HBox.setHgrow(fldInputField, Priority.ALWAYS);
+		bar.setPadding(new Insets(8));
+
+		lstMatches.setCellFactory(list -> new MatchCell());
+		lstMatches.setPlaceholder(new Label("Press enter to search"));
+		lstMatches.setOnMouseClicked(event -> {
+			if (event.getClickCount() == 2) {
+				open(lstMatches.getSelectionModel().getSelectedItem());
+			}
+		});
+		lstMatches.setOnKeyPressed(event -> {
+			if (event.getCode() == KeyCode.ENTER) {
+				open(lstMatches.getSelectionModel().getSelectedItem());
+			}
+		});
+		lblStatus.setPadding(new Insets(2, 8, 4, 8));
+
+		AnchorPane.setTopAnchor(bar, 0.0);
+		AnchorPane.setLeftAnchor(bar, 0.0);
+		AnchorPane.setRightAnchor(bar, 0.0);
+		AnchorPane.setTopAnchor(lstMatches, 44.0);
+		AnchorPane.setLeftAnchor(lstMatches, 0.0);
+		AnchorPane.setRightAnchor(lstMatches, 0.0);
+		AnchorPane.setBottomAnchor(lstMatches, 24.0);
+		AnchorPane.setLeftAnchor(lblStatus, 0.0);
+		AnchorPane.setBottomAnchor(lblStatus, 0.0);
+		getChildren().addAll(bar, lstMatches, lblStatus);
+
+		window = new Stage();
+		Scene scene = new Scene(this, 720, 480);
+		scene.getStylesheets().add(mainController.getActiveStylesheet());
+		window.setScene(scene);
+		window.setTitle("Find in Files");
+		window.setOnHidden(event -> stop());
+		window.show();
+		fldInputField.requestFocus();
+	}
+
+	/**
+	 * Cancels the running search and starts a new one for the word in the input field.
+	 */
+	private void find() {
+		stop();
+		matches.clear();
+
+		String word = fldInputField.getText();
+		if (word.isEmpty()) {
+			lblStatus.setText("");
+			return;
+		}
+
+		Results found = new Results();
+		boolean matchCase = chkMatchCase.isSelected();
+		results = found;
+		search = null;
+
+		lblStatus.setText("Searching...");
+		btnStop.setDisable(false);
+		if (index == null) {
+			start(found, null, word, matchCase);
+			return;
+		}
+
+		// The index checks that its candidates still exist, which is kept off this thread
+		FindInFiles.POOL.execute(() -> {
+			List<File> candidates = index.getCandidates(word);
+			Platform.runLater(() -> {
+				if (found == results) {
+					start(found, candidates, word, matchCase);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Starts searching the candidates, or every file if there are none.
+	 */
+	private void start(Results found, List<File> candidates, String word, boolean matchCase) {
+		Runnable onFinished = () -> Platform.runLater(() -> finished(found));
+		FindInFiles started = candidates == null
+				? new FindInFiles(workspace, word, matchCase, found::add, onFinished)
+				: new FindInFiles(candidates, word, matchCase, found::add, onFinished);
+		found.search = started;
+		search = started;
+		search.start();
+	}
+
+	/**
+	 * Cancels the running search, keeping the matches found so far.
+	 */
+	private void stop() {
+		if (search != null) {
+			search.cancel();
+		} else if (results != null) {
+			// The candidates are still being looked up, the search is never started
+			results = null;
+			lblStatus.setText("");
+			btnStop.setDisable(true);
+		}
+	}
+
+	/**
+	 * Shows the matches found since the last pulse.
+	 */
+	private void show(Results found) {
+		found.scheduled.set(false);
+		if (found != results) {
+			return;
+		}
+
+		for (List<Match> batch = found.pending.poll(); batch != null; batch = found.pending.poll()) {
+			matches.addAll(batch);
+		}
+		if (!found.search.isCancelled()) {
+			lblStatus.setText("Searching... " + matches.size() + " matches in "
+					+ found.search.getSearchedFileCount() + " files");
+		}
+	}
+
+	private void finished(Results found) {
+		show(found);
+		if (found != results) {
+			return;
+		}
+
+		FindInFiles finished = found.search;
+		String status = matches.size() + " matches in " + finished.getSearchedFileCount() + " files";
+		if (finished.isLimited()) {
+			status += ", stopped at " + FindInFiles.MAX_MATCHES + " matches";
+		} else if (finished.isCancelled()) {
+			status += ", stopped";
+		}
+		lblStatus.setText(status);
+		btnStop.setDisable(true);
+	}
+
+	private void open(Match match) {
+		if (match != null) {
+			mainController.openFile(match.getFile(), match.getLine(), match.getColumn());
+		}
+	}
+
+	/**
+	 * The matches of one search that are not shown yet. They are added in the worker threads
+	 * and shown in the next pulse of the JavaFX application thread.
+	 */
+	private class Results {
+		private final Queue<List<Match>> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private FindInFiles search;
+
+		private void add(List<Match> batch) {
+			pending.add(batch);
+			if (scheduled.compareAndSet(false, true)) {
+				Platform.runLater(() -> show(this));
+			}
+		}
+	}
+
+	/**
+	 * Shows a match as the path of its file in the workspace, its line and the line's text.
+	 */
+	private class MatchCell extends ListCell<Match> {
+		@Override
+		protected void updateItem(Match match, boolean empty) {
+			super.updateItem(match, empty);
+
+			if (empty || match == null) {
+				setText(null);
+			} else {
+				Path root = workspace.toPath().toAbsolutePath().normalize();
+				Path file = match.getFile().toPath().toAbsolutePath().normalize();
+				String path = file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+				setText(path + ":" + match.getLine() + "    " + match.getPreview());
+			}
+		}
+	}
+}
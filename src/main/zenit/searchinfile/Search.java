@@ -2,18 +2,30 @@ package main.zenit.searchinfile;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntConsumer;
 
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import main.zenit.ui.MainController;
-import main.zenit.util.Tuple;
+import main.zenit.zencodearea.AnalysisScheduler;
+import main.zenit.zencodearea.DocumentSnapshot;
 import main.zenit.zencodearea.ZenCodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.reactfx.Subscription;
 
 /**
  * The Search class lets you search for a word then either
  * highlights it yellow or grey, depending on what background you have,
  * or replaces it with another word of your choosing
+ * <p>
+ * While the word is typed, see {@link #search(String, IntConsumer)}, the text is searched in
+ * the background and the previous {@link SearchHits} are reused: a longer word is only checked
+ * at the offsets of the shorter one, and edits of the text only search the edited part again.
+ * Only the matches in view are highlighted, the others when they are scrolled into view.
+ * </p>
  * 
  * @author Fredrik Eklundh
  *
@@ -23,21 +35,18 @@ public class Search {
 
 	private ZenCodeArea zenCodeArea;
 	
-	private Scanner txtscan = null;
-	
 	private File file;
 	
-	private List<Integer> line;
-	private List<Integer> wordPos;
-	public List<Tuple<Integer, Integer>> absolutePos;
+	private SearchHits hits = SearchHits.empty();
+	private final BitSet styled = new BitSet();
+	private String text;
+	private long textVersion;
+	private long searchVersion;
+	private Subscription tracking;
+	private IntConsumer onCount = count -> {};
 
-	private int numberOfTimes = 0;
-	private int numberOfLines = -1;
-	private int lineLenght = 0;
 	private int i = 0;
 	
-	private String searchWord = "";
-	
 	private boolean isDarkMode;	
 	public boolean caseSensetive = false;
 	
@@ -57,52 +66,182 @@ public class Search {
 
 	}
 	
+	/**
+	 * Highlights every occurrence of a word in the text of the code area and moves the caret
+	 * to the first one. The text is searched as it is in the editor, including unsaved edits,
+	 * in the calling thread.
+	 * 
+	 * @param word The word to search for
+	 * @return The number of occurrences
+	 */
 	public int searchInFile(String word) {
-		line = new ArrayList<>();
-		wordPos = new ArrayList<>();
-		absolutePos = new ArrayList<>();
-		
-		numberOfTimes = 0;
-		numberOfLines = -1;
-		lineLenght = 0;
+		clearZen();
+		hits = SearchHits.find(word, caseSensetive, zenCodeArea.getText());
 		i = 0;
-		
-		if(word.length() < 1) {
-			return 0;
+
+		for (int start : hits.getMatches()) {
+			zenCodeArea.setStyle(start, start + word.length(), getStyle());
+			styled.set(start);
 		}
-		
-		try {
-			txtscan = new Scanner(file);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}	
-		
-		//caseSensetive needs to be change from the panel
-		searchWord = word;
-		if (caseSensetive == false) {
-			notCaseSensetive();
-		} else {
-			caseSensetive();   
+		moveToMatch();
+		return hits.getCount();
+	}
+
+	/**
+	 * Searches for a word as it is typed, without blocking the JavaFX application thread.
+	 * <p>
+	 * The search runs on the {@link AnalysisScheduler} and replaces the search for the
+	 * previous word if that has not finished yet. When it is done, the matches in view are
+	 * highlighted and the caret is moved to the first match. The matches then follow the edits
+	 * of the text until {@link #cleanZen()} is called.
+	 * </p>
+	 * 
+	 * @param word The word to search for
+	 * @param onCount Receives the number of matches whenever it changes
+	 */
+	public void search(String word, IntConsumer onCount) {
+		this.onCount = onCount;
+		track();
+
+		long version = ++searchVersion;
+		if (word.isEmpty()) {
+			AnalysisScheduler.getInstance().cancel(this);
+			show(SearchHits.empty());
+			return;
 		}
 
-		if (numberOfTimes > 0) {
-			for (int i = 0; i < numberOfTimes; i++) {
-				int start = zenCodeArea.getAbsolutePosition(line.get(i), wordPos.get(i));
-				int end = start + searchWord.length();
-				
-				absolutePos.add(new Tuple<>(start, end));
-				zenCodeArea.setStyle(
-					line.get(i), 
-					wordPos.get(i), 
-					wordPos.get(i) + searchWord.length(), 
-					List.of(isDarkMode ? "search-dark-mode" : "search-light-mode")
-				);
+		if (text == null) {
+			text = zenCodeArea.getText();
+		}
+		SearchHits base = hits;
+		String searched = text;
+		long searchedVersion = textVersion;
+		boolean caseSensitive = caseSensetive;
+
+		FutureTask<Void> task = new FutureTask<>(() -> {
+			SearchHits found = base.search(word, caseSensitive, searched);
+			Platform.runLater(() -> searched(found, version, searchedVersion));
+			return null;
+		});
+		AnalysisScheduler.getInstance().submit(this, version, true, task);
+	}
+
+	/**
+	 * Shows the result of a background search, unless the word or the text changed meanwhile.
+	 */
+	private void searched(SearchHits found, long version, long searchedVersion) {
+		if (version != searchVersion || tracking == null) {
+			return;
+		}
+		if (searchedVersion != textVersion) {
+			search(found.getWord(), onCount);
+			return;
+		}
+		show(found);
+	}
+
+	/**
+	 * Replaces the shown hits, highlighting the new matches in view and moving the caret to
+	 * the first one.
+	 */
+	private void show(SearchHits found) {
+		clearZen();
+		hits = found;
+		i = 0;
+		styleVisible(false);
+		moveToMatch();
+		onCount.accept(hits.getCount());
+	}
+
+	/**
+	 * Follows the edits and the viewport of the code area while searching as you type.
+	 */
+	private void track() {
+		if (tracking != null) {
+			return;
+		}
+		ChangeListener<DocumentSnapshot> highlighted = (observable, oldSnapshot, newSnapshot) -> styleVisible(true);
+		zenCodeArea.snapshotProperty().addListener(highlighted);
+
+		tracking = zenCodeArea.plainTextChanges().subscribe(this::textChanged)
+				.and(zenCodeArea.viewportDirtyEvents().subscribe(event -> styleVisible(false)))
+				.and(() -> zenCodeArea.snapshotProperty().removeListener(highlighted));
+	}
+
+	/**
+	 * Moves the hits along with an edit, searching only the edited part of the text again.
+	 */
+	private void textChanged(PlainTextChange change) {
+		text = null;
+		textVersion++;
+
+		int length = hits.getWord().length();
+		if (length == 0) {
+			return;
+		}
+		int position = change.getPosition();
+		int removed = change.getRemovalEnd() - position;
+		int inserted = change.getInsertionEnd() - position;
+		int from = Math.max(0, position - length + 1);
+		int to = Math.min(zenCodeArea.getLength(), position + inserted + length - 1);
+
+		hits = hits.edited(position, removed, inserted, from < to ? zenCodeArea.getText(from, to) : "", from);
+		shiftStyled(position, removed, inserted, length);
+		i = Math.max(0, Math.min(i, hits.getCount() - 1));
+		styleVisible(false);
+		onCount.accept(hits.getCount());
+	}
+
+	/**
+	 * Moves the offsets of the highlighted matches along with an edit. Matches that overlap
+	 * the edit are restyled by the syntax highlighting of the edited paragraphs.
+	 */
+	private void shiftStyled(int position, int removed, int inserted, int length) {
+		int keep = Math.max(0, position - length + 1);
+		int next = styled.nextSetBit(position + removed);
+		BitSet moved = new BitSet();
+		for (; next >= 0; next = styled.nextSetBit(next + 1)) {
+			moved.set(next + inserted - removed);
+		}
+		styled.clear(keep, styled.length());
+		styled.or(moved);
+	}
+
+	/**
+	 * Highlights the matches in view.
+	 * @param again {@code true} to highlight matches that are already highlighted, e.g. after
+	 * the syntax highlighting was applied.
+	 */
+	private void styleVisible(boolean again) {
+		int visibleCount = zenCodeArea.getVisibleParagraphs().size();
+		if (hits.getCount() == 0 || visibleCount == 0) {
+			return;
+		}
+		int firstParagraph = zenCodeArea.visibleParToAllParIndex(0);
+		int lastParagraph = zenCodeArea.visibleParToAllParIndex(visibleCount - 1);
+		int from = zenCodeArea.getAbsolutePosition(firstParagraph, 0);
+		int to = zenCodeArea.getAbsolutePosition(lastParagraph, zenCodeArea.getParagraphLength(lastParagraph));
+
+		int[] matches = hits.getMatches();
+		int length = hits.getWord().length();
+		for (int index = hits.indexOfMatchEndingAfter(from); index < matches.length && matches[index] < to; index++) {
+			int start = matches[index];
+			if (again || !styled.get(start)) {
+				zenCodeArea.setStyle(start, start + length, getStyle());
+				styled.set(start);
 			}
-			
-			zenCodeArea.moveTo(absolutePos.get(0).fst());
+		}
+	}
+
+	private List<String> getStyle() {
+		return List.of(isDarkMode ? "search-dark-mode" : "search-light-mode");
+	}
+
+	private void moveToMatch() {
+		if (hits.getCount() > 0) {
+			zenCodeArea.moveTo(hits.getMatches()[i]);
 			zenCodeArea.requestFollowCaret();
 		}
-		return numberOfTimes;
 	}
 
 	/**
@@ -110,35 +249,40 @@ public class Search {
 	 * @author Fredrik Eklundh, Pontus Laos
 	 */
 	public void clearZen() {
-		if (absolutePos != null) {
-			for (int i = 0; i < absolutePos.size(); i++) {
-				zenCodeArea.clearStyle(absolutePos.get(i).fst(), absolutePos.get(i).snd());
-				//zenCodeArea.update();
-			}
+		int length = hits.getWord().length();
+		for (int start = styled.nextSetBit(0); start >= 0; start = styled.nextSetBit(start + 1)) {
+			zenCodeArea.restoreHighlighting(start, start + length);
 		}
+		styled.clear();
 	}
 	
 	/**
 	 * When you close the search panel the highlight disappears
 	 */
 	public void cleanZen() {
-		int carPos = zenCodeArea.getCaretPosition();
-		zenCodeArea.appendText(" ");
-		zenCodeArea.deletePreviousChar();
-		zenCodeArea.moveTo(carPos);
+		AnalysisScheduler.getInstance().cancel(this);
+		if (tracking != null) {
+			tracking.unsubscribe();
+			tracking = null;
+		}
+		clearZen();
 	}
 	
 	/**
-	 * Replaces every occurrence of a certain word with another word.
+	 * Replaces every occurrence of a certain word with another word, as one edit of the
+	 * code area.
 	 * 
 	 * @param wordBefore
 	 * @param wordAfter
-	 * @param absolutePos
 	 */	
 	public void replaceAll(String wordAfter) {
-		for (int i = absolutePos.size() -1; i >= 0; i--) {
-			zenCodeArea.replaceText(absolutePos.get(i).fst(), absolutePos.get(i).snd(), wordAfter);
-		}
+		zenCodeArea.edit(document -> {
+			int[] matches = hits.getMatches();
+			int length = hits.getWord().length();
+			for (int i = matches.length -1; i >= 0; i--) {
+				document.replace(matches[i], matches[i] + length, wordAfter);
+			}
+		});
 	}
 	
 	/**
@@ -146,25 +290,24 @@ public class Search {
 	 * 
 	 * @param wordBefore
 	 * @param wordAfter
-	 * @param absolutePos
 	 */
 	public void replaceOne(String wordAfter) {
-		zenCodeArea.replaceText(absolutePos.get(i).fst(), absolutePos.get(i).snd(), wordAfter);
+		int start = hits.getMatches()[i];
+		zenCodeArea.replaceText(start, start + hits.getWord().length(), wordAfter);
 	}
 	
 	/**
 	 * Jumps down/to the next occurrence of the highlighted word
 	 */
 	public int jumpDown() {
-		if (i < absolutePos.size() - 1) {
+		if (i < hits.getCount() - 1) {
 			i++;
 		}else {
 			i = 0;
 			
 		}
 		
-		zenCodeArea.moveTo(absolutePos.get(i).fst());
-		zenCodeArea.requestFollowCaret();
+		moveToMatch();
 		return i;
 	}
 	
@@ -175,57 +318,10 @@ public class Search {
 		if(i > 0) {
 			i--;
 		}else {
-			i = absolutePos.size() - 1;
+			i = hits.getCount() - 1;
 		}
 		
-		zenCodeArea.moveTo(absolutePos.get(i).fst());
-		zenCodeArea.requestFollowCaret();	
+		moveToMatch();	
 		return i;
 	}
-	
-	/**
-	 * Making the search ignore if it's capital letters or lowercase
-	 */
-	private void notCaseSensetive() {
-		
-		while (txtscan.hasNextLine()) {
-			String str = txtscan.nextLine().toLowerCase();
-			numberOfLines++;
-			lineLenght = 0;
-			while (str.indexOf(searchWord.toLowerCase()) != -1) {
-				numberOfTimes++;
-
-				line.add(numberOfLines);
-
-				wordPos.add(str.indexOf(searchWord.toLowerCase()) + lineLenght);
-
-				lineLenght += str.length() - str.substring(str.indexOf(searchWord.toLowerCase()) + searchWord.length()).length();
-
-				str = str.substring(str.indexOf(searchWord.toLowerCase()) + searchWord.length());
-			}
-		}
-	}
-	
-	/**
-	 * This search makes a different if it's capital letters or lowercase
-	 */
-	private void caseSensetive() {
-		
-		while (txtscan.hasNextLine()) {
-			String str = txtscan.nextLine();
-			numberOfLines++;
-			lineLenght = 0;
-			while (str.indexOf(searchWord) != -1) {
-				numberOfTimes++;
-
-				line.add(numberOfLines);
-
-				wordPos.add(str.indexOf(searchWord) + lineLenght);
-
-				lineLenght += str.length() - str.substring(str.indexOf(searchWord) + searchWord.length()).length();
-
-				str = str.substring(str.indexOf(searchWord) + searchWord.length());
-			}
-		}
-	}
 }
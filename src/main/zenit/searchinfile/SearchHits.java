@@ -0,0 +1,229 @@
+package main.zenit.searchinfile;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The occurrences of a word in a text, kept so that the next search can start from them.
+ * <p>
+ * Every occurrence is kept, also those that overlap, since every occurrence of a longer word
+ * starts at an occurrence of the word it begins with. When the word grows while the user is
+ * typing it, only those offsets are checked again instead of the whole text. When the text is
+ * edited, the occurrences around the edit are found again and the others are moved along.
+ * The matches that are highlighted do not overlap, see {@link #getMatches()}.
+ * </p>
+ * <p>
+ * Instances are immutable, so a search can run in the background while the previous hits are
+ * still shown. A search that runs in a thread that gets interrupted stops with a
+ * {@link CancellationException}.
+ * </p>
+ */
+public final class SearchHits {
+	/**
+	 * Number of characters or occurrences checked between two checks for cancellation.
+	 */
+	private static final int STEP = 65_536;
+
+	private static final int[] NONE = new int[0];
+
+	private final String word;
+	private final boolean caseSensitive;
+	private final int[] occurrences;
+	private final int[] matches;
+
+	private SearchHits(String word, boolean caseSensitive, int[] occurrences) {
+		this.word = word;
+		this.caseSensitive = caseSensitive;
+		this.occurrences = occurrences;
+		this.matches = withoutOverlaps(occurrences, word.length());
+	}
+
+	/**
+	 * @return Hits of an empty word, which has no occurrences.
+	 */
+	public static SearchHits empty() {
+		return new SearchHits("", false, NONE);
+	}
+
+	/**
+	 * Finds every occurrence of a word by searching the whole text.
+	 * @param word The word to find
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 * @param text The text to search
+	 * @return The hits of the word
+	 */
+	public static SearchHits find(String word, boolean caseSensitive, CharSequence text) {
+		if (word.isEmpty()) {
+			return empty();
+		}
+		TextMatcher matcher = new TextMatcher(word, caseSensitive);
+		IntList found = new IntList();
+
+		for (int from = 0; from < text.length(); from += STEP) {
+			checkCancelled();
+			int to = Math.min(from + STEP, text.length());
+			for (int start = matcher.indexOf(text, from, to); start != -1; start = matcher.indexOf(text, start + 1, to)) {
+				found.add(start);
+			}
+		}
+		return new SearchHits(word, caseSensitive, found.toArray());
+	}
+
+	/**
+	 * Finds every occurrence of a word in the same text these hits were found in. If the word
+	 * begins with the word of these hits, only the occurrences of that word are checked,
+	 * otherwise the whole text is searched.
+	 * @param word The word to find
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 * @param text The text these hits were found in
+	 * @return The hits of the word
+	 */
+	public SearchHits search(String word, boolean caseSensitive, CharSequence text) {
+		if (!canRefine(word, caseSensitive)) {
+			return find(word, caseSensitive, text);
+		}
+		TextMatcher matcher = new TextMatcher(word, caseSensitive);
+		IntList found = new IntList();
+
+		for (int i = 0; i < occurrences.length; i++) {
+			if (i % STEP == 0) {
+				checkCancelled();
+			}
+			if (matcher.matchesAt(text, occurrences[i])) {
+				found.add(occurrences[i]);
+			}
+		}
+		return new SearchHits(word, caseSensitive, found.toArray());
+	}
+
+	/**
+	 * @param word The word to find
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 * @return {@code true} if the word can be found by checking these hits only
+	 */
+	public boolean canRefine(String word, boolean caseSensitive) {
+		return !this.word.isEmpty()
+				&& this.caseSensitive == caseSensitive
+				&& word.length() >= this.word.length()
+				&& word.regionMatches(!caseSensitive, 0, this.word, 0, this.word.length());
+	}
+
+	/**
+	 * Moves the hits along with an edit of the text. Occurrences that overlap the replaced
+	 * characters are dropped, those after them are moved, and the occurrences that overlap the
+	 * inserted characters are found in the given part of the edited text.
+	 * @param position The offset of the edit
+	 * @param removedLength The number of characters the edit removed
+	 * @param insertedLength The number of characters the edit inserted
+	 * @param region A part of the edited text, from at least {@code position - length + 1} to
+	 * {@code position + insertedLength + length - 1}, where length is the length of the word
+	 * @param regionStart The offset of the part in the edited text
+	 * @return The hits in the edited text
+	 */
+	public SearchHits edited(int position, int removedLength, int insertedLength, CharSequence region,
+			int regionStart) {
+		if (word.isEmpty()) {
+			return this;
+		}
+		int length = word.length();
+		int delta = insertedLength - removedLength;
+		IntList edited = new IntList();
+
+		int i = 0;
+		while (i < occurrences.length && occurrences[i] + length <= position) {
+			edited.add(occurrences[i++]);
+		}
+		while (i < occurrences.length && occurrences[i] < position + removedLength) {
+			i++;
+		}
+
+		TextMatcher matcher = new TextMatcher(word, caseSensitive);
+		int from = Math.max(position - length + 1, regionStart);
+		int to = position + insertedLength;
+		for (int start = matcher.indexOf(region, from - regionStart, to - regionStart); start != -1;
+				start = matcher.indexOf(region, start + 1, to - regionStart)) {
+			edited.add(start + regionStart);
+		}
+
+		while (i < occurrences.length) {
+			edited.add(occurrences[i++] + delta);
+		}
+		return new SearchHits(word, caseSensitive, edited.toArray());
+	}
+
+	/**
+	 * @return The word that was searched for.
+	 */
+	public String getWord() {
+		return word;
+	}
+
+	/**
+	 * @return {@code false} if the case of letters was ignored.
+	 */
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
+	/**
+	 * @return The offsets of the occurrences that are highlighted, in order. Each one starts
+	 * after the end of the previous one.
+	 */
+	public int[] getMatches() {
+		return matches;
+	}
+
+	/**
+	 * @return The number of highlighted occurrences.
+	 */
+	public int getCount() {
+		return matches.length;
+	}
+
+	/**
+	 * @param offset An offset in the text
+	 * @return The index of the first match that ends after the offset, or the number of
+	 * matches if there is none.
+	 */
+	public int indexOfMatchEndingAfter(int offset) {
+		int index = Arrays.binarySearch(matches, offset - word.length() + 1);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	private static int[] withoutOverlaps(int[] occurrences, int length) {
+		IntList matches = new IntList();
+		int end = 0;
+		for (int start : occurrences) {
+			if (start >= end) {
+				matches.add(start);
+				end = start + length;
+			}
+		}
+		return matches.size == occurrences.length ? occurrences : matches.toArray();
+	}
+
+	private static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("The search was cancelled");
+		}
+	}
+
+	/**
+	 * A growable list of offsets that are not boxed.
+	 */
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private int[] toArray() {
+			return size == 0 ? NONE : Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -95,9 +95,12 @@ public class SearchInFileController extends AnchorPane {
 		this.search = search;
 	}
 	
-	private void makeNewSearch(String searchWord) {
+	/**
+	 * Shows the number of matches, e.g. when a search has finished or the text was edited.
+	 */
+	private void showOccurrences(int occurrences) {
 		
-		occurrences = search.searchInFile(searchWord);
+		this.occurrences = occurrences;
 
 		if(occurrences < 1) {
 			if(fldInputField.getText().length() > 0) {
@@ -112,10 +115,8 @@ public class SearchInFileController extends AnchorPane {
 	}
 
 	private void initialize() {
-		fldInputField.textProperty().addListener((observable, oldValue, newValue) -> {	
-			search.clearZen();
-			makeNewSearch(fldInputField.getText());
-		});
+		fldInputField.textProperty().addListener((observable, oldValue, newValue) ->
+			search.search(newValue, this::showOccurrences));
 
 		fldInputField.setPromptText("Search...");
 		fldReplaceWord.setPromptText("Replace with...");
@@ -0,0 +1,133 @@
+package main.zenit.searchinfile;
+
+import java.util.Arrays;
+
+/**
+ * Finds a word in a text with the Boyer–Moore–Horspool algorithm, in a single pass and
+ * without copying the text.
+ * <p>
+ * When the search ignores case, characters are folded to lower case one at a time while
+ * they are compared, so neither the text nor its lines are converted to lower case first.
+ * Matches do not overlap: after a match the search continues after its end.
+ * </p>
+ */
+public final class TextMatcher {
+
+	private static final int TABLE_SIZE = 256;
+
+	private final char[] pattern;
+	private final boolean caseSensitive;
+	private final int[] shifts = new int[TABLE_SIZE];
+
+	/**
+	 * @param word The word to find, not empty
+	 * @param caseSensitive {@code false} to ignore the case of letters
+	 */
+	public TextMatcher(String word, boolean caseSensitive) {
+		if (word.isEmpty()) {
+			throw new IllegalArgumentException("The word to find is empty");
+		}
+		this.caseSensitive = caseSensitive;
+		pattern = new char[word.length()];
+		for (int i = 0; i < pattern.length; i++) {
+			pattern[i] = fold(word.charAt(i));
+		}
+
+		// Characters that share a slot of the table get the smallest shift of them, which
+		// is always safe
+		int last = pattern.length - 1;
+		Arrays.fill(shifts, pattern.length);
+		for (int i = 0; i < last; i++) {
+			shifts[pattern[i] % TABLE_SIZE] = last - i;
+		}
+	}
+
+	/**
+	 * @return The length of the word.
+	 */
+	public int length() {
+		return pattern.length;
+	}
+
+	/**
+	 * Finds the next occurrence of the word.
+	 * @param text The text to search
+	 * @param from The offset to start searching at
+	 * @return The offset of the next occurrence, or -1 if there is none
+	 */
+	public int indexOf(CharSequence text, int from) {
+		return indexOf(text, from, text.length());
+	}
+
+	/**
+	 * Finds the next occurrence of the word that starts before an offset, so that a long text
+	 * can be searched a part at a time.
+	 * @param text The text to search
+	 * @param from The offset to start searching at
+	 * @param to The offset the occurrence has to start before
+	 * @return The offset of the next occurrence, or -1 if there is none
+	 */
+	public int indexOf(CharSequence text, int from, int to) {
+		int last = pattern.length - 1;
+		int end = Math.min(to, text.length() - last);
+
+		for (int start = Math.max(from, 0); start < end; ) {
+			char c = fold(text.charAt(start + last));
+			if (c == pattern[last]) {
+				int i = last - 1;
+				while (i >= 0 && fold(text.charAt(start + i)) == pattern[i]) {
+					i--;
+				}
+				if (i < 0) {
+					return start;
+				}
+			}
+			start += shifts[c % TABLE_SIZE];
+		}
+		return -1;
+	}
+
+	/**
+	 * @param text The text to check
+	 * @param offset The offset to check at
+	 * @return {@code true} if the word occurs in the text at the offset
+	 */
+	public boolean matchesAt(CharSequence text, int offset) {
+		if (offset < 0 || offset + pattern.length > text.length()) {
+			return false;
+		}
+		for (int i = pattern.length - 1; i >= 0; i--) {
+			if (fold(text.charAt(offset + i)) != pattern[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the occurrences of the word.
+	 * @param text The text to search
+	 * @return The number of occurrences that do not overlap
+	 */
+	public int count(CharSequence text) {
+		int count = 0;
+		for (int start = indexOf(text, 0); start != -1; start = indexOf(text, start + pattern.length)) {
+			count++;
+		}
+		return count;
+	}
+
+	private char fold(char c) {
+		return caseSensitive ? c : foldCase(c);
+	}
+
+	/**
+	 * @return The character in lower case, the same for every case of a letter.
+	 */
+	static char foldCase(char c) {
+		if (c < 128) {
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+}
@@ -0,0 +1,858 @@
+package main.zenit.searchinfile;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import main.zenit.filesystem.FileChangeListener;
+import main.zenit.filesystem.FileWatcher;
+import main.zenit.filesystem.MappedTextFile;
+
+/**
+ * Index of the trigrams, the sequences of three characters, in the text files of a workspace.
+ * <p>
+ * A file can only contain a word if it contains every trigram of the word, so Find in Files
+ * asks the index for the files that do, see {@link #getCandidates(String)}, and only searches
+ * those. Trigrams are indexed in lower case, so the candidates are the same with or without
+ * case sensitivity. The index covers the files that {@link FindInFiles} would search.
+ * </p>
+ * <p>
+ * The index is kept in the hidden folder {@code .zenit/index} of the workspace. For every
+ * trigram the file holds the sorted ids of the files containing it, delta encoded as
+ * variable-length integers, and it is memory mapped so that a query only reads the posting
+ * lists of the trigrams of the word. It also holds the path, size and modification time of
+ * every file, so that when the index is opened only the files that changed since are read
+ * again. A new workspace is indexed in the background, in parallel.
+ * </p>
+ * <p>
+ * Saved, renamed and deleted files are reported by the
+ * {@link main.zenit.filesystem.FileController} to its {@link FileChangeListener}s, see
+ * {@link #update(File)} and {@link #remove(File)}. Files changed outside of Zenit, e.g. by git
+ * or another editor, are reported by the {@link FileWatcher}, which watches the workspace
+ * while the index is open, so a query only reads posting lists and checks that its candidates
+ * still exist. Files are only read again if their size or modification time changed. Their
+ * trigrams are kept in memory on top of the file on disk, which is
+ * rewritten as a new generation when enough files have changed and when the index is closed.
+ * Index files are never replaced, since a mapped file can't be replaced on every platform.
+ * All updates run in order on a single background thread.
+ * </p>
+ */
+public class TrigramIndex implements Closeable, FileChangeListener {
+	private static final int MAGIC = 0x5A545249;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 40;
+	private static final String PREFIX = "trigrams.";
+	private static final String EXTENSION = ".idx";
+
+	/**
+	 * Number of changed files kept in memory before the index file is rewritten.
+	 */
+	private static final int MERGE_THRESHOLD = 256;
+
+	/**
+	 * Number of files read in parallel before their trigrams are added to the posting lists.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	private static final long[] NO_TRIGRAMS = new long[0];
+
+	private final Path root;
+	private final Path directory;
+	private final ExecutorService executor;
+
+	private Segment base;
+	private final Map<String, Entry> changed = new HashMap<>();
+	private final Set<String> removed = new HashSet<>();
+	private long generation;
+	private volatile boolean ready;
+
+	/**
+	 * Opens the index of a workspace and brings it up to date in the background, or indexes
+	 * the workspace if it has no index yet.
+	 * @param workspace The workspace folder
+	 */
+	public TrigramIndex(File workspace) {
+		this.root = workspace.toPath().toAbsolutePath().normalize();
+		this.directory = getDirectory(workspace);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "trigram-index");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		executor.execute(this::load);
+	}
+
+	/**
+	 * Returns the folder that holds the index of a workspace. The folder is hidden, so it is
+	 * not shown in the file tree and not indexed.
+	 * @param workspace The workspace folder
+	 * @return The folder of the index files
+	 */
+	public static Path getDirectory(File workspace) {
+		return workspace.toPath().resolve(".zenit").resolve("index");
+	}
+
+	/**
+	 * @return {@code true} once the index is up to date with the workspace on disk.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Waits until the updates reported so far have been applied.
+	 * @param timeout The most milliseconds to wait
+	 * @return {@code true} if the updates were applied, {@code false} if the time ran out
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public boolean awaitUpdates(long timeout) throws InterruptedException {
+		try {
+			executor.submit(() -> {}).get(timeout, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException | ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Finds the files that contain every trigram of a word, with or without case. Candidates
+	 * that no longer exist are left out, and those whose size or modification time differs
+	 * from the indexed one, because the watcher hasn't reported them yet, are indexed again.
+	 * @param word The word to find
+	 * @return The files that may contain the word, or {@code null} if the index can't tell,
+	 * because it is not ready yet or the word is shorter than three characters
+	 */
+	public List<File> getCandidates(String word) {
+		if (!ready || word.length() < 3) {
+			return null;
+		}
+		long[] trigrams = trigrams(word);
+
+		List<Entry> found = new ArrayList<>();
+		synchronized (this) {
+			for (int id : base.find(trigrams)) {
+				String path = base.paths[id];
+				if (!removed.contains(path) && !changed.containsKey(path)) {
+					found.add(new Entry(path, base.modified[id], base.sizes[id]));
+				}
+			}
+			for (Entry entry : changed.values()) {
+				if (entry.containsAll(trigrams)) {
+					found.add(entry);
+				}
+			}
+		}
+
+		List<File> candidates = new ArrayList<>();
+		for (Entry entry : found) {
+			File file = toFile(entry.path);
+			if (!file.isFile()) {
+				remove(file);
+			} else {
+				candidates.add(file);
+				if (file.lastModified() != entry.modified || file.length() != entry.size) {
+					update(file);
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Indexes a file again, e.g. after it was saved or created, unless its size and
+	 * modification time are those already indexed. A folder, or the whole workspace, is
+	 * brought up to date with all of its files.
+	 * @param file The file or folder that changed
+	 */
+	public void update(File file) {
+		executor.execute(() -> {
+			String path = toPath(file);
+			if (file.toPath().toAbsolutePath().normalize().equals(root)) {
+				updateFolder(file, "");
+			} else if (path == null) {
+				return;
+			} else if (file.isDirectory()) {
+				updateFolder(file, path + "/");
+			} else if (file.isFile() && !MappedTextFile.isLargeFile(file)) {
+				Entry entry = new Entry(path, file);
+				if (!isIndexed(entry)) {
+					entry.trigrams = read(entry);
+					synchronized (this) {
+						changed.put(entry.path, entry);
+						removed.remove(entry.path);
+					}
+				}
+			} else {
+				removePath(path);
+			}
+			mergeIfNeeded();
+		});
+	}
+
+	/**
+	 * Reads the files of a folder that changed or aren't indexed yet, and removes the indexed
+	 * files that are gone from it.
+	 * @param folder The folder
+	 * @param prefix The path of the folder relative to the workspace, ending with {@code /},
+	 * or an empty string for the workspace
+	 */
+	private void updateFolder(File folder, String prefix) {
+		List<Entry> found = new ArrayList<>();
+		walk(folder.toPath(), found);
+
+		Set<String> existing = new HashSet<>();
+		List<Entry> fresh = new ArrayList<>();
+		for (Entry entry : found) {
+			existing.add(entry.path);
+			if (!isIndexed(entry)) {
+				entry.trigrams = read(entry);
+				fresh.add(entry);
+			}
+		}
+
+		synchronized (this) {
+			changed.keySet().removeIf(path -> path.startsWith(prefix) && !existing.contains(path));
+			if (base != null) {
+				for (String path : base.paths) {
+					if (path.startsWith(prefix) && !existing.contains(path)) {
+						removed.add(path);
+					}
+				}
+			}
+			for (Entry entry : fresh) {
+				changed.put(entry.path, entry);
+				removed.remove(entry.path);
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if the file is indexed with the same size and modification time.
+	 */
+	private synchronized boolean isIndexed(Entry file) {
+		Entry known = changed.get(file.path);
+		if (known != null) {
+			return known.modified == file.modified && known.size == file.size;
+		}
+		Integer id = base == null || removed.contains(file.path) ? null : base.ids.get(file.path);
+		return id != null && base.modified[id] == file.modified && base.sizes[id] == file.size;
+	}
+
+	/**
+	 * Removes a file from the index, e.g. after it was deleted or before it is renamed. A
+	 * folder is removed with all of its files.
+	 * @param file The file or folder that was removed
+	 */
+	public void remove(File file) {
+		executor.execute(() -> {
+			String path = toPath(file);
+			if (path != null) {
+				removePath(path);
+				mergeIfNeeded();
+			}
+		});
+	}
+
+	@Override
+	public void fileChanged(File file) {
+		update(file);
+	}
+
+	@Override
+	public void fileRemoved(File file) {
+		remove(file);
+	}
+
+	/**
+	 * Writes the changes kept in memory to disk and stops the background thread.
+	 */
+	@Override
+	public void close() {
+		FileWatcher.getInstance().unwatchFolder(root);
+		executor.execute(() -> {
+			if (ready) {
+				merge();
+			}
+		});
+		executor.shutdown();
+	}
+
+	/**
+	 * Opens the newest index file, reads the files that changed since it was written and
+	 * writes a new generation if any did.
+	 */
+	private void load() {
+		try {
+			Files.createDirectories(directory);
+			Segment segment = openNewest();
+
+			// Watched before the workspace is listed, so that no change is missed in between
+			FileWatcher.getInstance().watchFolder(root, FindInFiles::isSearched, path -> update(path.toFile()));
+
+			List<Entry> found = new ArrayList<>();
+			walk(root, found);
+
+			Set<String> hidden = new HashSet<>();
+			List<Entry> fresh = new ArrayList<>();
+			Set<String> existing = new HashSet<>();
+			for (Entry entry : found) {
+				existing.add(entry.path);
+				Integer id = segment == null ? null : segment.ids.get(entry.path);
+				if (id == null) {
+					fresh.add(entry);
+				} else if (segment.modified[id] != entry.modified || segment.sizes[id] != entry.size) {
+					fresh.add(entry);
+					hidden.add(entry.path);
+				}
+			}
+			if (segment != null) {
+				for (String path : segment.paths) {
+					if (!existing.contains(path)) {
+						hidden.add(path);
+					}
+				}
+			}
+
+			if (segment == null || !hidden.isEmpty() || !fresh.isEmpty()) {
+				Segment written = write(segment, hidden, fresh);
+				delete(segment);
+				segment = written;
+			}
+			synchronized (this) {
+				base = segment;
+			}
+			ready = true;
+		} catch (IOException e) {
+			System.err.println("TrigramIndex.load: " + e.getMessage());
+		}
+	}
+
+	private void removePath(String path) {
+		String folder = path + "/";
+		synchronized (this) {
+			changed.keySet().removeIf(changedPath -> changedPath.equals(path) || changedPath.startsWith(folder));
+			if (base != null) {
+				for (String basePath : base.paths) {
+					if (basePath.equals(path) || basePath.startsWith(folder)) {
+						removed.add(basePath);
+					}
+				}
+			}
+		}
+	}
+
+	private void mergeIfNeeded() {
+		boolean needed;
+		synchronized (this) {
+			needed = changed.size() + removed.size() >= MERGE_THRESHOLD;
+		}
+		if (needed && ready) {
+			merge();
+		}
+	}
+
+	/**
+	 * Writes a new generation with the changes kept in memory. Files that change while it is
+	 * written stay in memory.
+	 */
+	private void merge() {
+		Segment old;
+		Map<String, Entry> merged;
+		Set<String> hidden;
+		synchronized (this) {
+			if (changed.isEmpty() && removed.isEmpty()) {
+				return;
+			}
+			old = base;
+			merged = new HashMap<>(changed);
+			hidden = new HashSet<>(removed);
+		}
+
+		try {
+			Set<String> replaced = new HashSet<>(hidden);
+			replaced.addAll(merged.keySet());
+			Segment written = write(old, replaced, new ArrayList<>(merged.values()));
+
+			synchronized (this) {
+				base = written;
+				changed.entrySet().removeIf(entry -> merged.get(entry.getKey()) == entry.getValue());
+				removed.removeAll(hidden);
+			}
+			delete(old);
+		} catch (IOException e) {
+			System.err.println("TrigramIndex.merge: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a new generation of the index file.
+	 * @param old The current generation, may be null
+	 * @param hidden The paths of the current generation that are left out
+	 * @param fresh The files to add, read if their trigrams are not known yet
+	 * @return The new generation
+	 */
+	private Segment write(Segment old, Set<String> hidden, List<Entry> fresh) throws IOException {
+		Map<Long, Postings> postings = new HashMap<>();
+		List<Entry> files = new ArrayList<>();
+
+		// The files kept from the old generation keep their order, so their ids stay sorted
+		if (old != null) {
+			int[] ids = new int[old.paths.length];
+			for (int id = 0; id < ids.length; id++) {
+				if (hidden.contains(old.paths[id])) {
+					ids[id] = -1;
+				} else {
+					ids[id] = files.size();
+					files.add(new Entry(old.paths[id], old.modified[id], old.sizes[id]));
+				}
+			}
+			for (int index = 0; index < old.trigramCount; index++) {
+				Postings kept = null;
+				for (int id : old.postings(index)) {
+					if (ids[id] >= 0) {
+						if (kept == null) {
+							kept = postings.computeIfAbsent(old.key(index), key -> new Postings());
+						}
+						kept.add(ids[id]);
+					}
+				}
+			}
+		}
+
+		for (int from = 0; from < fresh.size(); from += BATCH_SIZE) {
+			List<Entry> batch = fresh.subList(from, Math.min(from + BATCH_SIZE, fresh.size()));
+			long[][] trigrams = FindInFiles.POOL.submit(() -> batch.parallelStream()
+					.map(entry -> entry.trigrams != null ? entry.trigrams : read(entry))
+					.toArray(long[][]::new)).join();
+
+			for (int i = 0; i < batch.size(); i++) {
+				int id = files.size();
+				files.add(batch.get(i));
+				for (long trigram : trigrams[i]) {
+					postings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+				}
+			}
+		}
+
+		long[] keys = new long[postings.size()];
+		int count = 0;
+		for (long key : postings.keySet()) {
+			keys[count++] = key;
+		}
+		Arrays.sort(keys);
+
+		Path temporary = Files.createTempFile(directory, PREFIX, ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(temporary), 1 << 16))) {
+				out.write(new byte[HEADER_SIZE]);
+				long[] offsets = new long[keys.length + 1];
+				long position = 0;
+				for (int i = 0; i < keys.length; i++) {
+					Postings list = postings.get(keys[i]);
+					out.write(list.bytes, 0, list.length);
+					position += list.length;
+					offsets[i + 1] = position;
+				}
+
+				long keysOffset = HEADER_SIZE + position;
+				for (long key : keys) {
+					out.writeLong(key);
+				}
+				long offsetsOffset = keysOffset + 8L * keys.length;
+				for (long offset : offsets) {
+					out.writeLong(offset);
+				}
+				long filesOffset = offsetsOffset + 8L * offsets.length;
+				for (Entry file : files) {
+					out.writeLong(file.modified);
+					out.writeLong(file.size);
+					byte[] path = file.path.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(path.length);
+					out.write(path);
+				}
+				out.flush();
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(files.size()).putInt(keys.length)
+						.putLong(keysOffset).putLong(offsetsOffset).putLong(filesOffset).flip();
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					channel.write(header, 0);
+				}
+			}
+
+			Path target = directory.resolve(PREFIX + (++generation) + EXTENSION);
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+			return Segment.open(target);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Opens the index file of the newest generation that can be read, and deletes the others.
+	 * @return The newest generation, or {@code null} if there is none
+	 */
+	private Segment openNewest() throws IOException {
+		List<Path> generations = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*")) {
+			for (Path file : files) {
+				if (generationOf(file) >= 0) {
+					generations.add(file);
+				} else {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+		generations.sort((a, b) -> Long.compare(generationOf(b), generationOf(a)));
+
+		Segment newest = null;
+		for (Path file : generations) {
+			generation = Math.max(generation, generationOf(file));
+			if (newest == null) {
+				try {
+					newest = Segment.open(file);
+					continue;
+				} catch (IOException e) {
+					System.err.println("TrigramIndex.openNewest: " + file.getFileName() + ": " + e.getMessage());
+				}
+			}
+			deleteQuietly(file);
+		}
+		return newest;
+	}
+
+	private static long generationOf(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.endsWith(EXTENSION)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Deletes an old generation. While it is still mapped this fails on some platforms, it is
+	 * then deleted the next time the index is opened.
+	 */
+	private static void delete(Segment segment) {
+		if (segment != null) {
+			deleteQuietly(segment.path);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// Still mapped, deleted when the index is opened again
+		}
+	}
+
+	/**
+	 * Lists the files under a folder that Find in Files searches.
+	 */
+	private void walk(Path folder, List<Entry> found) {
+		File[] files = folder.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (!FindInFiles.isSearched(file)) {
+				continue;
+			}
+			if (file.isDirectory()) {
+				walk(file.toPath(), found);
+			} else if (file.isFile() && !MappedTextFile.isLargeFile(file)) {
+				String path = toPath(file);
+				if (path != null) {
+					found.add(new Entry(path, file));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The trigrams of a file, none for a binary file or a file that can't be read.
+	 */
+	private long[] read(Entry entry) {
+		try {
+			CharBuffer text = FindInFiles.readText(root.resolve(entry.path).toFile());
+			return text == null ? NO_TRIGRAMS : trigrams(text);
+		} catch (IOException e) {
+			System.err.println("TrigramIndex.read: " + entry.path + ": " + e.getMessage());
+			return NO_TRIGRAMS;
+		}
+	}
+
+	/**
+	 * @return The distinct trigrams of a text in lower case, sorted.
+	 */
+	static long[] trigrams(CharSequence text) {
+		if (text.length() < 3) {
+			return NO_TRIGRAMS;
+		}
+		long[] trigrams = new long[text.length() - 2];
+		long first = TextMatcher.foldCase(text.charAt(0));
+		long second = TextMatcher.foldCase(text.charAt(1));
+		for (int i = 2; i < text.length(); i++) {
+			long third = TextMatcher.foldCase(text.charAt(i));
+			trigrams[i - 2] = first << 32 | second << 16 | third;
+			first = second;
+			second = third;
+		}
+		Arrays.sort(trigrams);
+
+		int count = 1;
+		for (int i = 1; i < trigrams.length; i++) {
+			if (trigrams[i] != trigrams[count - 1]) {
+				trigrams[count++] = trigrams[i];
+			}
+		}
+		return Arrays.copyOf(trigrams, count);
+	}
+
+	/**
+	 * @return The path of a file relative to the workspace with {@code /} separators, or
+	 * {@code null} if it is outside of the workspace or in a folder that isn't searched.
+	 */
+	private String toPath(File file) {
+		Path path = file.toPath().toAbsolutePath().normalize();
+		if (!path.startsWith(root) || path.equals(root)) {
+			return null;
+		}
+		Path relative = root.relativize(path);
+		for (Path name : relative) {
+			if (!FindInFiles.isSearched(name.toFile())) {
+				return null;
+			}
+		}
+		return relative.toString().replace(File.separatorChar, '/');
+	}
+
+	private File toFile(String path) {
+		return root.resolve(path).toFile();
+	}
+
+	/**
+	 * A file in the index, with its trigrams if it was read since the index file was written.
+	 */
+	private static class Entry {
+		private final String path;
+		private final long modified;
+		private final long size;
+		private long[] trigrams;
+
+		private Entry(String path, File file) {
+			this(path, file.lastModified(), file.length());
+		}
+
+		private Entry(String path, long modified, long size) {
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+		}
+
+		private boolean containsAll(long[] wanted) {
+			for (long trigram : wanted) {
+				if (Arrays.binarySearch(trigrams, trigram) < 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A posting list being built, file ids added in increasing order.
+	 */
+	private static class Postings {
+		private byte[] bytes = new byte[8];
+		private int length;
+		private int last = -1;
+
+		private void add(int id) {
+			if (length + 5 > bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			int delta = id - last - 1;
+			while ((delta & ~0x7F) != 0) {
+				bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			bytes[length++] = (byte) delta;
+			last = id;
+		}
+	}
+
+	/**
+	 * A memory mapped index file.
+	 */
+	private static class Segment {
+		private final Path path;
+		private final MappedByteBuffer buffer;
+		private final int trigramCount;
+		private final int keysOffset;
+		private final int offsetsOffset;
+		private final String[] paths;
+		private final long[] modified;
+		private final long[] sizes;
+		private final Map<String, Integer> ids = new HashMap<>();
+
+		private Segment(Path path, MappedByteBuffer buffer) throws IOException {
+			this.path = path;
+			this.buffer = buffer;
+
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not an index file of version " + VERSION);
+			}
+			int fileCount = buffer.getInt(8);
+			trigramCount = buffer.getInt(12);
+			keysOffset = (int) buffer.getLong(16);
+			offsetsOffset = (int) buffer.getLong(24);
+			int filesOffset = (int) buffer.getLong(32);
+
+			paths = new String[fileCount];
+			modified = new long[fileCount];
+			sizes = new long[fileCount];
+			ByteBuffer files = buffer.duplicate().position(filesOffset);
+			for (int id = 0; id < fileCount; id++) {
+				modified[id] = files.getLong();
+				sizes[id] = files.getLong();
+				byte[] utf8 = new byte[files.getInt()];
+				files.get(utf8);
+				paths[id] = new String(utf8, StandardCharsets.UTF_8);
+				ids.put(paths[id], id);
+			}
+		}
+
+		private static Segment open(Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				if (channel.size() > Integer.MAX_VALUE) {
+					throw new IOException("The index file is too large");
+				}
+				return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+		}
+
+		private long key(int index) {
+			return buffer.getLong(keysOffset + 8 * index);
+		}
+
+		private int indexOf(long key) {
+			int low = 0;
+			int high = trigramCount - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				long found = key(middle);
+				if (found < key) {
+					low = middle + 1;
+				} else if (found > key) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		private int postingsLength(int index) {
+			return (int) (buffer.getLong(offsetsOffset + 8 * (index + 1)) - buffer.getLong(offsetsOffset + 8 * index));
+		}
+
+		/**
+		 * Decodes the posting list of a trigram.
+		 */
+		private int[] postings(int index) {
+			int position = HEADER_SIZE + (int) buffer.getLong(offsetsOffset + 8 * index);
+			int end = position + postingsLength(index);
+			int[] ids = new int[end - position];
+			int count = 0;
+			int id = -1;
+
+			while (position < end) {
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = buffer.get(position++);
+					delta |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				id += delta + 1;
+				ids[count++] = id;
+			}
+			return Arrays.copyOf(ids, count);
+		}
+
+		/**
+		 * Intersects the posting lists of some trigrams, shortest first.
+		 * @return The ids of the files containing all of them
+		 */
+		private int[] find(long[] trigrams) {
+			int[] indexes = new int[trigrams.length];
+			for (int i = 0; i < trigrams.length; i++) {
+				indexes[i] = indexOf(trigrams[i]);
+				if (indexes[i] < 0) {
+					return new int[0];
+				}
+			}
+			Integer[] order = new Integer[indexes.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = indexes[i];
+			}
+			Arrays.sort(order, (a, b) -> Integer.compare(postingsLength(a), postingsLength(b)));
+
+			int[] result = postings(order[0]);
+			for (int i = 1; i < order.length && result.length > 0; i++) {
+				result = intersect(result, postings(order[i]));
+			}
+			return result;
+		}
+
+		private static int[] intersect(int[] a, int[] b) {
+			int[] result = new int[Math.min(a.length, b.length)];
+			int count = 0;
+			for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					result[count++] = a[i];
+					i++;
+					j++;
+				}
+			}
+			return Arrays.copyOf(result, count);
+		}
+	}
+}
@@ -1,21 +1,55 @@
 package main.zenit.ui;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Pos;
 import javafx.beans.value.ChangeListener;
 import javafx.event.Event;
 import javafx.event.EventHandler;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Tab;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Tooltip;
 
+import org.antlr.v4.runtime.Token;
+import org.fxmisc.richtext.model.PlainTextChange;
+
+import main.zenit.filesystem.EditJournal;
 import main.zenit.filesystem.FileController;
+import main.zenit.filesystem.FileWatcher;
+import main.zenit.filesystem.MainMethodDetector;
+import main.zenit.filesystem.MappedTextFile;
+import main.zenit.filesystem.TextFileReader;
+import main.zenit.filesystem.TextFormat;
+import main.zenit.javacodecompiler.DebugError;
 import main.zenit.util.StringUtilities;
+import main.zenit.util.Tuple;
+import main.zenit.zencodearea.DocumentSnapshot;
+import main.zenit.zencodearea.HighlightingMetrics;
 import main.zenit.zencodearea.ZenCodeArea;
 
 /**
@@ -24,84 +58,374 @@ import main.zenit.zencodearea.ZenCodeArea;
  *
  */
 public class FileTab extends Tab {
-	private File initialFile;
 	private File file;
 	private String initialTitle;
 	private MainController mc;
 	
 	private ZenCodeArea zenCodeArea;
+	private LargeFileViewer largeFileViewer;
+	private AnchorPane anchorPane;
+	private Task<TextFormat> loading;
+	private Runnable whenLoaded;
+	private TextFormat format = TextFormat.getDefault();
 	
 	private boolean hasChanged;
 	private boolean isFileLoaded;
+
+	private Hibernation hibernation;
+	private boolean restoredChanges;
+
+	private EditJournal journal;
+	private boolean journaling = true;
+
+	private volatile DiskVersion diskVersion;
+
+	private final List<Tuple<Integer, Integer>> markedErrors = new ArrayList<>();
 	
 	/**
 	 * Constructs a new FileTab without a file, setting the title to "Untitled".
 	 */
 	public FileTab(ZenCodeArea zenCodeArea, MainController mc) {
-		this.zenCodeArea = zenCodeArea;
-		zenCodeArea.setTabAssociation(this);
 		this.mc = mc;
 		initialTitle = "Untitled";
 		
-		
-		zenCodeArea.setOnMouseClicked(new UpdateDetector());
-		zenCodeArea.setOnKeyPressed(new UpdateDetector());
-		
 		initializeUI();
+		attach(zenCodeArea);
+		zenCodeArea.getUndoManager().mark();
+		journal = mc.createEditJournal(null);
+
+		Platform.runLater(zenCodeArea::requestFocus);
 	}
 
+	/**
+	 * Returns how long a tab has to be in the background before it is hibernated, set with
+	 * the system property {@code zenit.hibernateAfterSeconds}. Defaults to five minutes, zero
+	 * turns hibernation off.
+	 */
+	public static Duration getHibernationDelay() {
+		return Duration.seconds(Long.getLong("zenit.hibernateAfterSeconds", 300));
+	}
 	
 	/**
-	 * Initializes the UI. Attaches an AnchorPane with a TextArea that fills it, 
+	 * Initializes the UI. Attaches an AnchorPane that holds the code area, 
 	 * and sets additional data.
 	 */
 	private void initializeUI() {
-		AnchorPane anchorPane = new AnchorPane();	
-		AnchorPane.setTopAnchor(zenCodeArea, 0.0);
-		AnchorPane.setRightAnchor(zenCodeArea, 0.0);
-		AnchorPane.setBottomAnchor(zenCodeArea, 0.0);
-		AnchorPane.setLeftAnchor(zenCodeArea, 0.0);
-
-		anchorPane.getChildren().add(zenCodeArea);
+		anchorPane = new AnchorPane();	
 		
 		setContent(anchorPane);
 		setText(initialTitle);
 
-		zenCodeArea.textProperty().addListener((observable, oldText, newText) -> {
-			String initialFileContent = FileController.readFile(initialFile);
+		PauseTransition idle = new PauseTransition(getHibernationDelay());
+		idle.setOnFinished(event -> hibernate());
 
-			initialFileContent = initialFileContent.trim().replaceAll("\r\n", "\n");
-			newText = newText.trim().replaceAll("\r\n", "\n");
+		selectedProperty().addListener((observable, wasSelected, selected) -> {
+			if (selected) {
+				idle.stop();
+				if (hibernation != null) {
+					rehydrate();
+				}
+			} else if (getHibernationDelay().greaterThan(Duration.ZERO)) {
+				idle.playFromStart();
+			}
+		});
 
-			hasChanged = !initialFileContent.equals(newText);
+		tabPaneProperty().addListener((observable, oldTabPane, tabPane) -> {
+			if (tabPane == null) {
+				idle.stop();
+				hibernation = null;
 
-			updateUI();
+				if (loading != null) {
+					loading.cancel();
+				}
+				if (zenCodeArea != null) {
+					detach();
+				}
+				if (journal != null) {
+					journal.reset();
+				}
+
+				if (largeFileViewer != null) {
+					largeFileViewer.close();
+				}
+
+				if (file != null) {
+					FileWatcher.getInstance().unwatch(file.toPath());
+				}
+
+				if (file != null) {
+					MainMethodDetector.forget(file.toPath());
+					mc.updateRunIndicator(file);
+				}
+			}
 		});
 
 
+		Tooltip tooltip = new Tooltip();
+		tooltip.setOnShowing(event -> tooltip.setText(getUndoHistoryReport()));
+		setTooltip(tooltip);
+
 		setStyle("-fx-background-color: #444;");
 		setStyle("-fx-stroke: #fff;");
-		
-		Platform.runLater(zenCodeArea::requestFocus);
+	}
+
+	/**
+	 * Reports the memory taken by the undo history of the code area, shown as the tooltip
+	 * of the tab.
+	 * @return The size and budget of the undo history.
+	 */
+	public String getUndoHistoryReport() {
+		if (zenCodeArea == null) {
+			return "Hibernated, no undo history";
+		}
+		return String.format("Undo history: %d changes, %.1f of %d KB", zenCodeArea.getUndoHistoryCount(),
+				zenCodeArea.getUndoHistorySize() / 1024.0, ZenCodeArea.getUndoHistoryBudget() / 1024);
+	}
+
+	/**
+	 * Shows a code area in this tab and listens to its changes.
+	 * @param area The code area.
+	 */
+	private void attach(ZenCodeArea area) {
+		zenCodeArea = area;
+		area.setTabAssociation(this);
+
+		area.setOnMouseClicked(new UpdateDetector());
+		area.setOnKeyPressed(new UpdateDetector());
+
+		AnchorPane.setTopAnchor(area, 0.0);
+		AnchorPane.setRightAnchor(area, 0.0);
+		AnchorPane.setBottomAnchor(area, 0.0);
+		AnchorPane.setLeftAnchor(area, 0.0);
+		anchorPane.getChildren().add(0, area);
+
+		// The text is unchanged as long as the undo history is at the position of the last load or save
+		area.getUndoManager().atMarkedPositionProperty().addListener((observable, wasSaved, isSaved) -> {
+			hasChanged = (!isSaved || restoredChanges) && !isLoading();
+			if (!hasChanged && journal != null) {
+				journal.reset();
+			}
+
+			updateUI();
+		});
+
+		area.plainTextChanges().subscribe(this::journal);
+
+		area.snapshotProperty().addListener((observable, oldSnapshot, snapshot) -> {
+			if (file != null && snapshot != null && MainMethodDetector.publish(file.toPath(), snapshot.hasMainMethod())) {
+				mc.updateRunIndicator(file);
+			}
+			if (isSelected() && HighlightingMetrics.isReadoutEnabled()) {
+				updateStatus();
+			}
+		});
+	}
+
+	/**
+	 * Removes the code area from this tab and stops its highlighting, so that it can be
+	 * garbage collected.
+	 */
+	private void detach() {
+		ZenCodeArea area = zenCodeArea;
+		zenCodeArea = null;
+
+		anchorPane.getChildren().remove(area);
+		area.shutdown();
+		mc.releaseZenCodeArea(area);
+	}
+
+	/**
+	 * Releases the code area of a tab that has been in the background for
+	 * {@link #getHibernationDelay()}. The text, caret and scroll position are kept as a
+	 * {@link Hibernation}, and the code area is recreated when the tab is selected again.
+	 * Tabs that are loading or show a large file are not hibernated.
+	 */
+	private void hibernate() {
+		if (isSelected() || zenCodeArea == null || isLoading() || isReadOnly() || getTabPane() == null) {
+			return;
+		}
+
+		int topParagraph = zenCodeArea.getVisibleParagraphs().isEmpty() ? 0 : zenCodeArea.firstVisibleParToAllParIndex();
+		hibernation = new Hibernation(zenCodeArea.getText(), zenCodeArea.getCaretPosition(), topParagraph, hasChanged);
+		detach();
+
+		if (file != null) {
+			MainMethodDetector.forget(file.toPath());
+		}
+	}
+
+	/**
+	 * Recreates the code area of a hibernated tab. The undo history is not restored, but a
+	 * tab with unsaved changes stays marked as changed until it is saved.
+	 */
+	private void rehydrate() {
+		Hibernation state = hibernation;
+		hibernation = null;
+
+		// Set before the undo history is marked, so that the journal of the changes is kept
+		restoredChanges = state.changed;
+
+		ZenCodeArea area = mc.createNewZenCodeArea();
+		attach(area);
+		withoutJournal(() -> area.replaceText(state.getText()));
+		area.getUndoManager().forgetHistory();
+		area.getUndoManager().mark();
+
+		hasChanged = state.changed;
+		updateUI();
+
+		area.moveTo(Math.min(state.caretPosition, area.getLength()));
+		area.showParagraphAtTop(Math.min(state.topParagraph, area.getParagraphs().size() - 1));
+	}
+
+	/**
+	 * Records an edit in the {@link EditJournal} of this tab. The journal is started with
+	 * the text before the first edit since the tab was last unchanged. Edits made while the
+	 * file is loading, or that only replace the text with the saved or hibernated text, are
+	 * not recorded.
+	 */
+	private void journal(PlainTextChange change) {
+		if (journal == null || !journaling || isLoading()) {
+			return;
+		}
+		if (!journal.isStarted()) {
+			String text = zenCodeArea.getText();
+			int end = change.getPosition() + change.getInserted().length();
+			journal.start(text.substring(0, change.getPosition()) + change.getRemoved() + text.substring(end));
+		}
+		journal.record(change.getPosition(), change.getRemoved().length(), change.getInserted());
+	}
+
+	private void withoutJournal(Runnable edit) {
+		journaling = false;
+		try {
+			edit.run();
+		} finally {
+			journaling = true;
+		}
+	}
+
+	/**
+	 * Restores the unsaved text of this tab after a crash, see {@link EditJournal#recover}.
+	 * Only the part that differs from the current text is replaced, as one edit that can be
+	 * undone.
+	 * @param text The unsaved text
+	 */
+	public void restoreUnsavedText(String text) {
+		ZenCodeArea area = getZenCodeArea();
+		String current = area.getText();
+
+		int start = 0;
+		int limit = Math.min(current.length(), text.length());
+		while (start < limit && current.charAt(start) == text.charAt(start)) {
+			start++;
+		}
+		int suffix = 0;
+		while (suffix < limit - start
+				&& current.charAt(current.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+			suffix++;
+		}
+		area.replaceText(start, current.length() - suffix, text.substring(start, text.length() - suffix));
+	}
+
+	/**
+	 * Indicates whether the code area of this tab has been released, see {@link #hibernate()}.
+	 * @return True if the tab is hibernated, else false.
+	 */
+	public boolean isHibernated() {
+		return hibernation != null;
 	}
 	
+	/**
+	 * Marks the position of an error. If the latest {@link DocumentSnapshot} is up to date,
+	 * the whole token at the position is marked, otherwise a single character.
+	 * @param row The row of the error, starting at 1
+	 * @param column The column of the error, starting at 0
+	 * @param style The style class to mark the error with
+	 */
 	public void setStyle(int row, int column, String style) {
-		
+		DocumentSnapshot snapshot = zenCodeArea.getSnapshot();
+		Token token = zenCodeArea.isCurrent(snapshot) ? snapshot.getTokenAt(row, column) : null;
+
+		if (token != null) {
+			Platform.runLater(()->
+			markRange(token.getStartIndex(), token.getStopIndex() + 1, style));
+			return;
+		}
+
+		int paragraphStart = zenCodeArea.getAbsolutePosition(row-1, 0);
 		int columnLength = zenCodeArea.getParagraph(row-1).getText().length();
 		
 		if (column >= columnLength) {
 			Platform.runLater(()->
-			zenCodeArea.setStyle(row-1,column-1,column,Arrays.asList(style)));
+			markRange(paragraphStart + column-1, paragraphStart + column, style));
 		} else {
 			Platform.runLater(()->
-			zenCodeArea.setStyle(row-1,column,column+1,Arrays.asList(style)));
+			markRange(paragraphStart + column, paragraphStart + column+1, style));
 		}
 		
 		
 	}
 	
+	/**
+	 * Marks the range of an error or warning the compiler reported in the file of this tab,
+	 * or the token at its position if the compiler didn't report a length, see
+	 * {@link #setStyle(int, int, String)}. A hibernated tab isn't marked. Must be called on
+	 * the JavaFX application thread.
+	 * @param error The error to mark
+	 * @param style The style class to mark the error with
+	 */
+	public void markError(DebugError error, String style) {
+		if (zenCodeArea == null) {
+			return;
+		}
+		if (error.getLength() == 0) {
+			setStyle(error.getRow(), error.getColumn(), style);
+			return;
+		}
+
+		int paragraph = error.getRow() - 1;
+		if (paragraph < 0 || paragraph >= zenCodeArea.getParagraphs().size()) {
+			return;
+		}
+		int lineLength = zenCodeArea.getParagraph(paragraph).length();
+		int from = Math.min(error.getColumn(), lineLength);
+		int to = Math.min(from + error.getLength(), lineLength);
+		if (from == to && from > 0) {
+			from--;
+		}
+		if (from < to) {
+			int paragraphStart = zenCodeArea.getAbsolutePosition(paragraph, 0);
+			markRange(paragraphStart + from, paragraphStart + to, style);
+		}
+	}
+	
+	/**
+	 * Restores the syntax highlighting of every range marked by
+	 * {@link #markError(DebugError, String)} since the last call, e.g. before the errors of a
+	 * new compile are marked. Must be called on the JavaFX application thread.
+	 */
+	public void clearErrors() {
+		if (zenCodeArea != null) {
+			for (Tuple<Integer, Integer> range : markedErrors) {
+				zenCodeArea.restoreHighlighting(range.fst(), range.snd());
+			}
+		}
+		markedErrors.clear();
+	}
+	
+	private void markRange(int from, int to, String style) {
+		int length = zenCodeArea.getLength();
+		from = Math.max(0, Math.min(from, length));
+		to = Math.max(from, Math.min(to, length));
+		if (from < to) {
+			zenCodeArea.setStyle(from, to, Arrays.asList(style));
+			markedErrors.add(new Tuple<>(from, to));
+		}
+	}
+
 	public void addTextPropertyListener(ChangeListener<? super String> listener) {
-		zenCodeArea.textProperty().addListener(listener);
+		getZenCodeArea().textProperty().addListener(listener);
 	}
 	
 	/**
@@ -110,38 +434,21 @@ public class FileTab extends Tab {
 	 * @author Pontus Laos, Sigge Labor 
 	 */
 	public void shortcutsTrigger() {
-		if (file == null) {
-			return;
-		}
-
-		String text = zenCodeArea.getText();
 		int caretPosition = zenCodeArea.getCaretPosition();
-		
-		if (caretPosition >= 6 && text.substring(
-			caretPosition - 6, caretPosition).equals("sysout")) 
-		{
+		String text = zenCodeArea.getText(Math.max(0, caretPosition - 6), caretPosition);
+
+		if (text.endsWith("sysout")) {
 			zenCodeArea.replaceText(caretPosition - 6, caretPosition, "System.out.println();");
 			zenCodeArea.moveTo(caretPosition + 13);
-		}
-		else if (caretPosition >= 6 && text.substring(
-			caretPosition - 6, caretPosition).equals("syserr")) 
-		{
+		} else if (text.endsWith("syserr")) {
 			zenCodeArea.replaceText(caretPosition - 6, caretPosition, "System.err.println();");
 			zenCodeArea.moveTo(caretPosition + 13);
-		}
-		else if (caretPosition >= 4 && text.substring(
-			caretPosition - 4, caretPosition).equals("main")) 
-		{
-			zenCodeArea.replaceText(
-				caretPosition - 4, caretPosition, "public static void main(String[]args) {\n \n}"
-			);
+		} else if (text.endsWith("main")) {
+			zenCodeArea.replaceText(caretPosition - 4, caretPosition, "public static void main(String[]args) {\n \n}");
 			zenCodeArea.moveTo(caretPosition + 37);
-		}
-		else if (caretPosition >= 6 && text.substring(
-			caretPosition - 6, caretPosition).equals("sout"))
-		{
-			zenCodeArea.replaceText(caretPosition - 2, caretPosition, "System.out.println();");
-			zenCodeArea.moveTo(caretPosition + 10);
+		} else if (text.endsWith("sout")) {
+			zenCodeArea.replaceText(caretPosition - 4, caretPosition, "System.out.println();");
+			zenCodeArea.moveTo(caretPosition + 15);
 		}
 	}
 
@@ -213,11 +520,13 @@ public class FileTab extends Tab {
 		};
 		
 		if (counts[0] == counts[1] + 1) {
-			zenCodeArea.insertText(zenCodeArea.getCaretPosition(), "\n");
-			zenCodeArea.insertText(
-				row, column, 
-				spaces.substring(0, spaces.length() - 4) + "}"
-			);
+			zenCodeArea.compound(() -> {
+				zenCodeArea.insertText(zenCodeArea.getCaretPosition(), "\n");
+				zenCodeArea.insertText(
+					row, column, 
+					spaces.substring(0, spaces.length() - 4) + "}"
+				);
+			});
 			zenCodeArea.moveTo(row - 1, spaces.length());
 		}
 	}
@@ -241,7 +550,17 @@ public class FileTab extends Tab {
 	 */
 	public void update(File file) {
 		setFile(file, false);
+		diskVersion = DiskVersion.of(file);
+		restoredChanges = false;
+		if (hibernation != null) {
+			hibernation.changed = false;
+		} else {
+			zenCodeArea.getUndoManager().mark();
+		}
 		hasChanged = false;
+		if (journal != null) {
+			journal.reset();
+		}
 		updateUI();
 	}
 	
@@ -258,7 +577,7 @@ public class FileTab extends Tab {
 	 * @return A String that holds the text in the Tab.
 	 */
 	public String getFileText() {
-		return zenCodeArea.getText();
+		return hibernation != null ? hibernation.getText() : zenCodeArea.getText();
 	}
 	
 	/**
@@ -268,23 +587,269 @@ public class FileTab extends Tab {
 	 * set the Tab's text content to it.
 	 */
 	public void setFile(File file, boolean shouldSetContent) {
-		this.initialFile = file;
+		if (this.file != null && !this.file.equals(file)) {
+			MainMethodDetector.forget(this.file.toPath());
+			FileWatcher.getInstance().unwatch(this.file.toPath());
+		}
+		if (file != null && !file.equals(this.file)) {
+			if (journal != null) {
+				journal.reset();
+			}
+			journal = mc.createEditJournal(file);
+		}
 		this.file = file;
 		this.initialTitle = file == null ? "Untitled" : file.getName();
 
 		setText(initialTitle);
 		
 		if (shouldSetContent && file != null) {
-			setFileText(FileController.readFile(file));
+			diskVersion = DiskVersion.of(file);
+			withoutJournal(() -> setFileText(FileController.readFile(file)));
+			restoredChanges = false;
+			zenCodeArea.getUndoManager().forgetHistory();
+			zenCodeArea.getUndoManager().mark();
+		}
+		if (file != null) {
+			FileWatcher.getInstance().watch(file.toPath(), () -> fileModified(file));
+		}
+	}
+
+	/**
+	 * Opens a file without blocking the JavaFX application thread. The file is read on a
+	 * background thread with {@link TextFileReader} and streamed into the code area in chunks,
+	 * while a placeholder with a cancel button covers the code area. Cancelling closes the tab.
+	 * Highlighting starts once the whole file has been read.
+	 * @param file The File to open.
+	 */
+	public void loadFile(File file) {
+		setFile(file, false);
+		zenCodeArea.setEditable(false);
+		zenCodeArea.setHighlightingSuspended(true);
+
+		long size = Math.max(1, file.length());
+		DiskVersion version = DiskVersion.of(file);
+		Semaphore pendingChunks = new Semaphore(4);
+
+		loading = new Task<>() {
+			private long loaded;
+
+			@Override
+			protected TextFormat call() throws Exception {
+				return TextFileReader.readWithFormat(file.toPath(), chunk -> {
+					try {
+						pendingChunks.acquire(); // Do not read further ahead of the code area
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Opening " + file.getName() + " was cancelled");
+					}
+					Platform.runLater(() -> {
+						if (!isCancelled()) {
+							zenCodeArea.appendText(chunk);
+						}
+						pendingChunks.release();
+					});
+					loaded += chunk.length();
+					updateProgress(Math.min(loaded, size), size);
+				});
+			}
+		};
+
+		ProgressBar progress = new ProgressBar();
+		progress.progressProperty().bind(loading.progressProperty());
+		Button cancel = new Button("Cancel");
+		cancel.setOnAction(event -> loading.cancel());
+
+		VBox placeholder = new VBox(8, new Label("Opening " + file.getName() + "..."), progress, cancel);
+		placeholder.setAlignment(Pos.CENTER);
+		placeholder.setStyle("-fx-background-color: rgba(0, 0, 0, 0.4);");
+		AnchorPane.setTopAnchor(placeholder, 0.0);
+		AnchorPane.setRightAnchor(placeholder, 0.0);
+		AnchorPane.setBottomAnchor(placeholder, 0.0);
+		AnchorPane.setLeftAnchor(placeholder, 0.0);
+		anchorPane.getChildren().add(placeholder);
+
+		loading.setOnSucceeded(event -> {
+			diskVersion = version;
+			format = loading.getValue();
+			loading = null;
+			anchorPane.getChildren().remove(placeholder);
+
+			zenCodeArea.moveTo(0);
+			zenCodeArea.getUndoManager().forgetHistory();
+			zenCodeArea.getUndoManager().mark();
+			zenCodeArea.setEditable(true);
+			zenCodeArea.setHighlightingSuspended(false);
+			zenCodeArea.requestFocus();
+
+			if (whenLoaded != null) {
+				whenLoaded.run();
+				whenLoaded = null;
+			}
+		});
+		loading.setOnFailed(event -> {
+			System.err.println("FileTab.loadFile: " + loading.getException().getMessage());
+			closeWithoutSaving();
+		});
+		loading.setOnCancelled(event -> closeWithoutSaving());
+
+		Thread thread = new Thread(loading, "open-" + file.getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Indicates whether the file is still being read, see {@link #loadFile(File)}.
+	 * @return True if the file is being read, else false.
+	 */
+	public boolean isLoading() {
+		return loading != null;
+	}
+
+	/**
+	 * Moves the caret to a position and scrolls it into view, after the file has been read if
+	 * it is still being read. Positions past the end of a line or the text are moved to it.
+	 * @param line The line of the position, starting at 1.
+	 * @param column The column of the position, starting at 0.
+	 */
+	public void showPosition(int line, int column) {
+		if (loading != null) {
+			whenLoaded = () -> showPosition(line, column);
+			return;
+		}
+
+		int paragraph = Math.max(0, Math.min(line - 1, zenCodeArea.getParagraphs().size() - 1));
+		zenCodeArea.moveTo(paragraph, Math.min(column, zenCodeArea.getParagraphLength(paragraph)));
+		zenCodeArea.requestFollowCaret();
+		zenCodeArea.requestFocus();
+	}
+
+	/**
+	 * Returns the charset the file was read with.
+	 * @return The charset of the file, UTF-8 for new files.
+	 */
+	public Charset getCharset() {
+		return format.getCharset();
+	}
+
+	/**
+	 * Returns the format the file was read with, which it is saved in.
+	 * @return The charset, byte order mark and line separator of the file, UTF-8 for new files.
+	 */
+	public TextFormat getTextFormat() {
+		return format;
+	}
+
+	/**
+	 * Sets the format the file is saved in, e.g. once bytes that couldn't be decoded have been
+	 * saved as U+FFFD.
+	 * @param format The charset, byte order mark and line separator of the file.
+	 */
+	public void setTextFormat(TextFormat format) {
+		this.format = format;
+	}
+
+	private void closeWithoutSaving() {
+		loading = null;
+		if (getTabPane() != null) {
+			getTabPane().getTabs().remove(this);
 		}
 	}
+
+	/**
+	 * Called on the watcher thread when the file was modified on disk. Changes this tab saved
+	 * itself are recognized by the size and modification time of the file and ignored. Other
+	 * changes are read on the watcher thread and handed to {@link #reloadFile(File,
+	 * DiskVersion, String)} on the JavaFX application thread.
+	 * @param watched The file of the tab when it was watched.
+	 */
+	private void fileModified(File watched) {
+		if (!watched.isFile()) {
+			return;
+		}
+
+		DiskVersion version = DiskVersion.of(watched);
+		if (version.equals(diskVersion)) {
+			return;
+		}
+
+		String diskText = FileController.readFile(watched);
+		if (diskText == null) {
+			return;
+		}
+		Platform.runLater(() -> reloadFile(watched, version, diskText));
+	}
+
+	/**
+	 * Takes in a file that another program modified. This is the only time the file is read
+	 * again while the tab is open. If the file now holds the text of the tab, the tab is
+	 * marked as unchanged. If the tab has no unsaved changes, the new content is loaded,
+	 * otherwise the changes of the tab are kept.
+	 * @param watched The file that was read.
+	 * @param version The size and modification time of the file when it was read.
+	 * @param diskText The content of the file.
+	 */
+	private void reloadFile(File watched, DiskVersion version, String diskText) {
+		if (!watched.equals(file) || isReadOnly() || isLoading() || version.equals(diskVersion)) {
+			return;
+		}
+		diskVersion = version;
+
+		if (normalize(diskText).equals(normalize(getFileText()))) {
+			restoredChanges = false;
+			if (hibernation != null) {
+				hibernation.changed = false;
+			} else {
+				zenCodeArea.getUndoManager().mark();
+			}
+			hasChanged = false;
+			if (journal != null) {
+				journal.reset();
+			}
+			updateUI();
+		} else if (!hasChanged && hibernation != null) {
+			hibernation = new Hibernation(diskText, hibernation.caretPosition, hibernation.topParagraph, false);
+		} else if (!hasChanged) {
+			int caretPosition = zenCodeArea.getCaretPosition();
+			withoutJournal(() -> setFileText(diskText));
+			zenCodeArea.moveTo(Math.min(caretPosition, zenCodeArea.getLength()));
+			zenCodeArea.getUndoManager().mark();
+		}
+	}
+
+	private static String normalize(String text) {
+		return text.trim().replace("\r\n", "\n");
+	}
 	
+	/**
+	 * Shows a file that is too large to be edited in a read-only {@link LargeFileViewer}
+	 * instead of the code area. The code area is left empty and can't be edited.
+	 * @param file The File to set.
+	 * @param viewer The viewer showing the file.
+	 */
+	public void setLargeFile(File file, LargeFileViewer viewer) {
+		setFile(file, false);
+		largeFileViewer = viewer;
+		zenCodeArea.setEditable(false);
+
+		setContent(viewer);
+		setTooltip(new Tooltip("Read-only, the file is larger than "
+				+ MappedTextFile.getLargeFileThreshold() / (1024 * 1024) + " MB"));
+	}
+
+	/**
+	 * Indicates whether the file is shown read-only, see {@link #setLargeFile(File, LargeFileViewer)}.
+	 * @return True if the file can't be edited in this tab, else false.
+	 */
+	public boolean isReadOnly() {
+		return largeFileViewer != null;
+	}
+
 	/**
 	 * Sets the given String to the TextArea.
 	 * @param text The String to write in the TextArea.
 	 */
 	public void setFileText(String text) {
-		zenCodeArea.replaceText(text);
+		getZenCodeArea().replaceText(text);
 	}
 	
 	/**
@@ -295,9 +860,15 @@ public class FileTab extends Tab {
 		return hasChanged;
 	}
 		
+	/**
+	 * Returns the code area of this tab, recreating it if the tab is hibernated.
+	 * @return The code area.
+	 */
 	public ZenCodeArea getZenCodeArea() {
+		if (hibernation != null) {
+			rehydrate();
+		}
 		return zenCodeArea;
-		
 	}
 	/**
 	 * Shows a confirm dialog and performs a corresponding action to whether the user 
@@ -332,13 +903,86 @@ public class FileTab extends Tab {
 		return wrapper.response;
 	}
 	
+	/**
+	 * Shows the caret position in the status bar, followed by the highlighting latency
+	 * statistics if they are enabled, see {@link HighlightingMetrics}.
+	 */
+	private void updateStatus() {
+		int row = zenCodeArea.getCurrentParagraph();
+		int col = zenCodeArea.getCaretColumn();
+		String status = (row+1) + " : " + (col+1);
+
+		if (HighlightingMetrics.isReadoutEnabled()) {
+			status += "    " + zenCodeArea.getMetrics();
+		}
+		mc.updateStatusRight(status);
+	}
+
+	/**
+	 * The state of a hibernated tab. The text is kept deflated, which takes a fraction of the
+	 * memory of a String for source code, and nothing else of the code area is kept.
+	 */
+	private static class Hibernation {
+		private final byte[] text;
+		private final int caretPosition;
+		private final int topParagraph;
+		private boolean changed;
+
+		private Hibernation(String text, int caretPosition, int topParagraph, boolean changed) {
+			ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+			try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+				out.write(text.getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.text = deflated.toByteArray();
+			this.caretPosition = caretPosition;
+			this.topParagraph = topParagraph;
+			this.changed = changed;
+		}
+
+		private String getText() {
+			try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(text))) {
+				return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * The size and modification time of the file of a tab when the tab last read or wrote it.
+	 */
+	private static final class DiskVersion {
+		private final long modified;
+		private final long size;
+
+		private DiskVersion(long modified, long size) {
+			this.modified = modified;
+			this.size = size;
+		}
+
+		private static DiskVersion of(File file) {
+			return new DiskVersion(file.lastModified(), file.length());
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof DiskVersion
+					&& ((DiskVersion) other).modified == modified && ((DiskVersion) other).size == size;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(modified) * 31 + Long.hashCode(size);
+		}
+	}
+
 	private class UpdateDetector implements EventHandler<Event> {
 
 		@Override
 		public void handle(Event event) {
-			int row = zenCodeArea.getCurrentParagraph();
-			int col = zenCodeArea.getCaretColumn();
-			mc.updateStatusRight((row+1) + " : " + (col+1));
+			updateStatus();
 		}
 	}
 }
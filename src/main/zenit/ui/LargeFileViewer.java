@@ -0,0 +1,135 @@
+package main.zenit.ui;
+
+import java.util.AbstractList;
+
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import main.zenit.filesystem.MappedTextFile;
+
+/**
+ * Read-only viewer for files that are too large for a code area.
+ * <p>
+ * The rows of a {@link MappedTextFile} are shown in a virtualized list, so only the rows in
+ * view are decoded and turned into nodes. The file is indexed on a background thread, and
+ * no syntax highlighting or semantic analysis is done.
+ * </p>
+ */
+public class LargeFileViewer extends AnchorPane {
+
+	private final MappedTextFile mappedFile;
+	private final ListView<Integer> rows;
+	private final Label info;
+	private final Task<Integer> indexing;
+
+	/**
+	 * Creates a viewer and starts indexing the file.
+	 * @param mappedFile The file to show
+	 * @param fontFamily The font family of the code areas
+	 * @param fontSize The font size of the code areas
+	 */
+	public LargeFileViewer(MappedTextFile mappedFile, String fontFamily, int fontSize) {
+		this.mappedFile = mappedFile;
+
+		info = new Label("Read-only, " + formatSize(mappedFile.getSize()));
+		info.setStyle("-fx-padding: 2 6 2 6;");
+
+		rows = new ListView<>();
+		rows.setStyle("-fx-font-family: " + fontFamily + "; -fx-font-size: " + fontSize + ";");
+		rows.setPlaceholder(new Label("Indexing " + mappedFile.getFile().getName() + "..."));
+		rows.setCellFactory(list -> new RowCell());
+
+		Text sample = new Text("X");
+		sample.setFont(Font.font(fontFamily, fontSize));
+		rows.setFixedCellSize(Math.ceil(sample.getLayoutBounds().getHeight()) + 4);
+
+		AnchorPane.setTopAnchor(info, 0.0);
+		AnchorPane.setLeftAnchor(info, 0.0);
+		AnchorPane.setRightAnchor(info, 0.0);
+		AnchorPane.setTopAnchor(rows, 24.0);
+		AnchorPane.setRightAnchor(rows, 0.0);
+		AnchorPane.setBottomAnchor(rows, 0.0);
+		AnchorPane.setLeftAnchor(rows, 0.0);
+		getChildren().addAll(info, rows);
+
+		indexing = new Task<>() {
+			@Override
+			protected Integer call() {
+				return mappedFile.index();
+			}
+		};
+		indexing.setOnSucceeded(event -> showRows(indexing.getValue()));
+		indexing.setOnFailed(event -> {
+			System.err.println("LargeFileViewer: " + indexing.getException().getMessage());
+			rows.setPlaceholder(new Label("Could not read " + mappedFile.getFile().getName()));
+		});
+
+		Thread thread = new Thread(indexing, "index-" + mappedFile.getFile().getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Shows the rows of the indexed file. The list of row numbers is computed, not stored.
+	 */
+	private void showRows(int rowCount) {
+		info.setText(info.getText() + ", " + rowCount + " lines");
+		rows.setItems(FXCollections.observableList(new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				return index;
+			}
+
+			@Override
+			public int size() {
+				return rowCount;
+			}
+		}));
+	}
+
+	/**
+	 * Returns the shown file.
+	 */
+	public MappedTextFile getMappedFile() {
+		return mappedFile;
+	}
+
+	/**
+	 * Stops indexing and releases the mapped file.
+	 */
+	public void close() {
+		indexing.cancel();
+		rows.setItems(null);
+		mappedFile.close();
+	}
+
+	private static String formatSize(long bytes) {
+		if (bytes >= 1024 * 1024) {
+			return (bytes / (1024 * 1024)) + " MB";
+		}
+		return (bytes / 1024) + " KB";
+	}
+
+	/**
+	 * A list cell that decodes the row it shows from the mapped file.
+	 */
+	private class RowCell extends ListCell<Integer> {
+
+		@Override
+		protected void updateItem(Integer row, boolean empty) {
+			super.updateItem(row, empty);
+
+			if (empty || row == null) {
+				setText(null);
+			} else {
+				setText(mappedFile.getRow(row));
+			}
+		}
+	}
+}
@@ -23,12 +23,17 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import javafx.stage.Window;
+import main.zenit.filesystem.EditJournal;
+import main.zenit.filesystem.MappedTextFile;
 import main.zenit.filesystem.ProjectFile;
 import main.zenit.filesystem.RunnableClass;
+import main.zenit.filesystem.TextFormat;
 import main.zenit.filesystem.WorkspaceHandler;
 import main.zenit.filesystem.metadata.Metadata;
 import main.zenit.javacodecompiler.JavaSourceCodeCompiler;
+import main.zenit.searchinfile.FindInFilesController;
 import main.zenit.searchinfile.Search;
+import main.zenit.searchinfile.TrigramIndex;
 import main.zenit.settingspanel.SettingsPanelController;
 import main.zenit.settingspanel.ThemeCustomizable;
 import main.zenit.ui.projectinfo.ProjectMetadataController;
@@ -42,9 +47,11 @@ import main.zenit.console.ConsoleArea;
 import main.zenit.console.ConsoleController;
 import main.zenit.filesystem.FileController; // Aggregation
 import main.zenit.javacodecompiler.DebugError;
+import main.zenit.javacodecompiler.CompileScheduler;
 import main.zenit.javacodecompiler.DebugErrorBuffer;
 import main.zenit.javacodecompiler.ProcessBuffer;
 import main.zenit.util.Tuple;
+import main.zenit.zencodearea.PieceTable;
 import main.zenit.zencodearea.ZenCodeArea;
 
 /**
@@ -57,6 +64,7 @@ public class MainController extends VBox implements ThemeCustomizable {
 	private final Stage stage;
 	
 	private FileController fileController;
+	private TrigramIndex index;
 
 	private ProjectMetadataController pmc;
 	
@@ -179,6 +187,7 @@ public class MainController extends VBox implements ThemeCustomizable {
 			if (workspace != null) {
 				// TODO: Log this
 				fileController.changeWorkspace(workspace);
+				getIndex(); // Indexes the workspace in the background
 			}
 
 			Image icon = new Image(Objects.requireNonNull(getClass().getResourceAsStream("/zenit/setup/logo.png")));
@@ -196,6 +205,7 @@ public class MainController extends VBox implements ThemeCustomizable {
 			stage.setTitle("IntelliK - " + workspace.getName());
 
 			initialize();
+			restoreUnsavedTabs();
 			
 			stage.show();
 			KeyboardShortcuts.setupMain(scene, this);
@@ -225,6 +235,31 @@ public class MainController extends VBox implements ThemeCustomizable {
 	public void setFileController(FileController fileController) {
 		this.fileController = fileController;
 	}
+
+	/**
+	 * Returns the trigram index of the workspace, opening it the first time. The index is
+	 * told about the files created, saved, renamed and deleted through the file controller.
+	 * @return The index, or {@code null} if there is no workspace
+	 */
+	private TrigramIndex getIndex() {
+		File workspace = fileController == null ? null : fileController.getWorkspace();
+		if (index == null && workspace != null && workspace.isDirectory()) {
+			index = new TrigramIndex(workspace);
+			fileController.addFileChangeListener(index);
+		}
+		return index;
+	}
+
+	/**
+	 * Closes the trigram index, e.g. before the workspace changes.
+	 */
+	private void closeIndex() {
+		if (index != null) {
+			fileController.removeFileChangeListener(index);
+			index.close();
+			index = null;
+		}
+	}
 	
 	public FileTreeItem<String> getSelectedFileTreeItem() {
 		return (FileTreeItem<String>) treeView.getSelectionModel().getSelectedItem();
@@ -308,6 +343,44 @@ public class MainController extends VBox implements ThemeCustomizable {
 		return zenCodeArea;
 	}
 
+	/**
+	 * Creates the journal of the unsaved edits of a tab, see {@link EditJournal}.
+	 * @param file The file of the tab, or {@code null} for an untitled tab
+	 * @return The journal, or {@code null} if there is no workspace to keep it in
+	 */
+	public EditJournal createEditJournal(File file) {
+		File workspace = fileController == null ? null : fileController.getWorkspace();
+		return workspace == null ? null : new EditJournal(EditJournal.getDirectory(workspace), file);
+	}
+
+	/**
+	 * Opens a tab for every text with unsaved edits left by the previous run, e.g. after a
+	 * crash, see {@link EditJournal#recover(java.nio.file.Path)}.
+	 */
+	private void restoreUnsavedTabs() {
+		File workspace = fileController.getWorkspace();
+		if (workspace == null) {
+			return;
+		}
+
+		for (EditJournal.Recovered recovered : EditJournal.recover(EditJournal.getDirectory(workspace))) {
+			FileTab tab = addTab();
+			if (recovered.getFile() != null) {
+				tab.setFile(recovered.getFile(), true);
+			}
+			tab.restoreUnsavedText(recovered.getText());
+		}
+	}
+
+	/**
+	 * Stops updating the appearance of a code area that is no longer shown, e.g. because its
+	 * tab was closed or hibernated.
+	 * @param zenCodeArea The code area to release
+	 */
+	public void releaseZenCodeArea(ZenCodeArea zenCodeArea) {
+		activeZenCodeAreas.remove(zenCodeArea);
+	}
+
 	/**
 	 * Initializes the {@link javafx.scene.control.TreeView TreeView}. Creates a
 	 * root node from the workspace-file in the fileController class. Calls
@@ -422,7 +495,7 @@ public class MainController extends VBox implements ThemeCustomizable {
 	private boolean saveFile(boolean backgroundCompile) {
 		FileTab tab = getSelectedTab();
 		
-		if (tab == null) {
+		if (tab == null || tab.isReadOnly() || tab.isLoading()) {
 			return false;
 		}
 		
@@ -432,9 +505,19 @@ public class MainController extends VBox implements ThemeCustomizable {
 			file = chooseFile();
 		}
 
-		boolean didWrite = fileController.writeFile(file, tab.getFileText());
+		TextFormat format = tab.getTextFormat();
+		if (format.hasReplacedBytes() && file != null && file.equals(tab.getFile())
+				&& DialogBoxes.twoChoiceDialog("Save file", "Some bytes of " + file.getName()
+						+ " could not be read as " + format.getCharset().name(),
+						"They are shown as \uFFFD, and saving writes \uFFFD in their place. The original bytes are lost.",
+						"Save anyway", "Cancel") != 1) {
+			return false;
+		}
+
+		boolean didWrite = fileController.writeFile(file, tab.getFileText(), format);
 
 		if (didWrite) {
+			tab.setTextFormat(format.withoutReplacedBytes());
 			tab.update(file);
 			FileTree.createParentNode((FileTreeItem<String>) treeView.getRoot(), file);
 			
@@ -498,15 +581,59 @@ public class MainController extends VBox implements ThemeCustomizable {
 	}
 
 	/**
-	 * Collects errors from buffer and displays them in code area
+	 * Collects errors from buffer and marks them in the code area of every open tab of the
+	 * files they are in, warnings with a dashed underline. The errors of the previous compile
+	 * are cleared first, also when this compile has none. Errors of a compile that a newer compile of the project has replaced
+	 * are dropped, as are those in tabs edited since they were saved, since they refer to
+	 * text that is no longer there.
 	 * @param buffer Buffer to collect errors from
+	 * @param project The project folder the compile was scheduled for
+	 * @param version The version of the compile, see {@link CompileScheduler}
 	 */
-	public void errorHandler(DebugErrorBuffer buffer) {
+	public void errorHandler(DebugErrorBuffer buffer, File project, long version) {
+		List<DebugError> errors = new ArrayList<>();
 		DebugError error;
-		while (!buffer.isEmpty()) {
-			error = buffer.get();
+		while ((error = buffer.get()) != null) {
+			errors.add(error);
+		}
+
+		Platform.runLater(() -> {
+			if (project != null && !CompileScheduler.getInstance().isLatest(project, version)) {
+				return;
+			}
+			for (Tab tab : tabPane.getTabs()) {
+				FileTab fileTab = (FileTab) tab;
+				File file = fileTab.getFile();
+				if (file == null || fileTab.hasChanged()) {
+					continue;
+				}
+
+				fileTab.clearErrors();
+				File tabFile = file.getAbsoluteFile().toPath().normalize().toFile();
+				for (DebugError found : errors) {
+					if (found.getFile().getAbsoluteFile().toPath().normalize().toFile().equals(tabFile)) {
+						String style = found.getSeverity() == DebugError.Severity.WARNING
+								? "warning-underline" : "underline";
+						fileTab.markError(found, style);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Redraws the icon of a file in the tree view, e.g. when the run indicator of an open
+	 * class changed.
+	 * @param file The file whose icon should be updated
+	 */
+	public void updateRunIndicator(File file) {
+		if (treeView == null) {
+			return;
+		}
 
-			getSelectedTab().setStyle(error.getRow(), error.getColumn(), "underline");
+		FileTreeItem<String> item = FileTree.getTreeItemFromFile((FileTreeItem<String>) treeView.getRoot(), file);
+		if (item != null) {
+			item.setIcon();
 		}
 	}
 
@@ -611,10 +738,12 @@ public class MainController extends VBox implements ThemeCustomizable {
 	public void openFile(File file) {
 		if (file != null && getTabFromFile(file) == null) {
 
-			if (supportedFileFormat(file)) {
+			if (supportedFileFormat(file) && MappedTextFile.isLargeFile(file)) {
+				openLargeFile(file);
+			} else if (supportedFileFormat(file)) {
 			
 			FileTab selectedTab = addTab();
-			selectedTab.setFile(file, true);
+			selectedTab.loadFile(file);
 
 			selectedTab.setText(file.getName());
 			} else {
@@ -627,6 +756,40 @@ public class MainController extends VBox implements ThemeCustomizable {
 		}
 	}
 	
+	/**
+	 * Opens a file like {@link #openFile(File)} and moves the caret to a position in it.
+	 * 
+	 * @param file The file to open.
+	 * @param line The line of the position, starting at 1.
+	 * @param column The column of the position, starting at 0.
+	 */
+	public void openFile(File file, int line, int column) {
+		openFile(file);
+
+		FileTab tab = getTabFromFile(file);
+		if (tab != null && !tab.isReadOnly()) {
+			tab.showPosition(line, column);
+		}
+	}
+	
+	/**
+	 * Opens a file that is larger than {@link MappedTextFile#getLargeFileThreshold()} in a
+	 * read-only tab. The file is memory mapped instead of read into the heap, and is not
+	 * highlighted or analyzed.
+	 * @param file The file to open
+	 */
+	private void openLargeFile(File file) {
+		try {
+			MappedTextFile mappedFile = new MappedTextFile(file);
+			FileTab selectedTab = addTab();
+			selectedTab.setLargeFile(file, new LargeFileViewer(mappedFile, zenCodeAreasFontFamily,
+					zenCodeAreasTextSize));
+		} catch (IOException ex) {
+			System.err.println("MainController.openLargeFile: IOException: " + ex.getMessage());
+			DialogBoxes.errorDialog("Can't open file", "", "The file " + file.getName() + " could not be read.");
+		}
+	}
+
 	/**
 	 * Checks if the file format of the file parameter is supported.
 	 * @param file File to check
@@ -984,6 +1147,9 @@ public class MainController extends VBox implements ThemeCustomizable {
 		File workspace = directoryChooser.showDialog(stage);
 		if (workspace != null) {
 			stage.close();
+			if (!workspace.equals(fileController.getWorkspace())) {
+				closeIndex();
+			}
 			boolean success = fileController.changeWorkspace(workspace);
 			if (success) {	
 				try {
@@ -1082,6 +1248,18 @@ public class MainController extends VBox implements ThemeCustomizable {
 		}
 	}
 
+	/**
+	 * Opens a window that searches every file of the workspace.
+	 */
+	@FXML
+	public void findInFiles() {
+		File workspace = fileController == null ? null : fileController.getWorkspace();
+
+		if (workspace != null) {
+			new FindInFilesController(workspace, getIndex(), this);
+		}
+	}
+
 
 
 	@Override
@@ -1155,6 +1333,9 @@ public class MainController extends VBox implements ThemeCustomizable {
 
 		boolean[] addComment = new boolean[whereToReplaceList.size()];
 		
+		//The lines are edited in a piece table and applied to the code area as one edit
+		PieceTable document = new PieceTable(zenCodeArea.getText());
+		
 		//Comment or uncomment from the top and down then moves the caret to the "new" right position
 		if (topDown == true) {
 			
@@ -1164,25 +1345,25 @@ public class MainController extends VBox implements ThemeCustomizable {
 				whereToReplace = whereToReplaceList.get(i);
 				
 				if (caretPos > length - 3) {
-					zenCodeArea.insertText(caretPos, "	  ");
+					document.insert(caretPos, "	  ");
 				}
 				
-				if (zenCodeArea.getText(whereToReplace, whereToReplace + 3).equals("// ")) {
+				if (document.getText(whereToReplace, whereToReplace + 3).equals("// ")) {
 
-					if (zenCodeArea.getText(whereToReplace, whereToReplace + 4).equals("// *")) {
-						zenCodeArea.deleteText(whereToReplace, whereToReplace + 2);
+					if (document.getText(whereToReplace, whereToReplace + 4).equals("// *")) {
+						document.delete(whereToReplace, whereToReplace + 2);
 						stepsToMove = stepsToMove - 2;
 						addComment[i] = false;
 						
 					}else {
-						zenCodeArea.replaceText(whereToReplace, whereToReplace + 2, "  ");
+						document.replace(whereToReplace, whereToReplace + 2, "  ");
 						addComment[i] = false;
 					}
 					
-				}else if (zenCodeArea.getText(whereToReplace, whereToReplace + 3).equals("// ") == false) {
+				}else if (document.getText(whereToReplace, whereToReplace + 3).equals("// ") == false) {
 					
-					if (zenCodeArea.getText(whereToReplace, whereToReplace + 2).equals("//")) {
-						zenCodeArea.deleteText(whereToReplace, whereToReplace + 2);
+					if (document.getText(whereToReplace, whereToReplace + 2).equals("//")) {
+						document.delete(whereToReplace, whereToReplace + 2);
 						addComment[i] = false;
 						
 						if (whereToReplace == caretPos) {
@@ -1194,18 +1375,20 @@ public class MainController extends VBox implements ThemeCustomizable {
 							stepsToMove = stepsToMove - 2;
 						}
 					
-					}else if(zenCodeArea.getText(whereToReplace, whereToReplace + 4).equals("    ")) {
-						zenCodeArea.replaceText(whereToReplace, whereToReplace + 2, "//");
+					}else if(document.getText(whereToReplace, whereToReplace + 4).equals("    ")) {
+						document.replace(whereToReplace, whereToReplace + 2, "//");
 						addComment[i] = false;
 						
 					}else {
-						zenCodeArea.insertText(whereToReplace, "//");
+						document.insert(whereToReplace, "//");
 						stepsToMove = stepsToMove + 2;
 						addComment[i] = true;
 					}		
 				}	
 			}
 			
+			zenCodeArea.applyEdits(document);
+			
 			if(whereToReplaceList.size() < 2) {
 				zenCodeArea.moveTo(caretPos + stepsToMove);
 				
@@ -1229,44 +1412,34 @@ public class MainController extends VBox implements ThemeCustomizable {
 				whereToReplace = whereToReplaceList.get(i);
 				
 				if (caretPos > length - 3) {
-					zenCodeArea.insertText(caretPos, "	  ");
-					zenCodeArea.moveTo(caretPos);
+					document.insert(caretPos, "	  ");
 				}
 				
-				if (zenCodeArea.getText(whereToReplace, whereToReplace + 3).equals("// ")) {
+				if (document.getText(whereToReplace, whereToReplace + 3).equals("// ")) {
 
-					if (zenCodeArea.getText(whereToReplace, whereToReplace + 4).equals("// *")) {
-						zenCodeArea.deleteText(whereToReplace, whereToReplace + 2);
+					if (document.getText(whereToReplace, whereToReplace + 4).equals("// *")) {
+						document.delete(whereToReplace, whereToReplace + 2);
 						addComment[i] = false;
 						
 					}else {
-						zenCodeArea.replaceText(whereToReplace, whereToReplace + 2, "  ");
-						zenCodeArea.moveTo(caretPos);
+						document.replace(whereToReplace, whereToReplace + 2, "  ");
 						addComment[i] = false;
 					}
 					
-				}else if (zenCodeArea.getText(whereToReplace, whereToReplace + 3).equals("// ") == false) {
+				}else if (document.getText(whereToReplace, whereToReplace + 3).equals("// ") == false) {
 					
-					if (zenCodeArea.getText(whereToReplace, whereToReplace + 2).equals("//")) {
-						zenCodeArea.deleteText(whereToReplace, whereToReplace + 2);
+					if (document.getText(whereToReplace, whereToReplace + 2).equals("//")) {
+						document.delete(whereToReplace, whereToReplace + 2);
 						addComment[i] = false;
-						
-						if (whereToReplace == caretPos) {
-							zenCodeArea.moveTo(caretPos);
-							
-						}else if (whereToReplace + 1 == caretPos) {
-							zenCodeArea.moveTo(caretPos - 1);
-							
-						}else {
-							zenCodeArea.moveTo(caretPos - 2);
-						}
 							
 					}else {
-						zenCodeArea.insertText(whereToReplace, "//");
-						zenCodeArea.moveTo(caretPos + 2);
+						document.insert(whereToReplace, "//");
 						addComment[i] = true;
 					}		
 				}	
+			}
+			
+			zenCodeArea.applyEdits(document);
 
 			if (addComment[0] && addComment[whereToReplaceList.size() - 1]) {
 				zenCodeArea.selectRange(rowNumber + whereToReplaceList.size() - 1,
@@ -1287,8 +1460,7 @@ public class MainController extends VBox implements ThemeCustomizable {
 				zenCodeArea.selectRange(rowNumber + whereToReplaceList.size() - 1,
 				endOfSelection - whereToReplaceList.get(whereToReplaceList.size() - 1) - 2,
 				rowNumber, caretColumn - 2);
-				}
-			}	
+			}
 		}
 	}
 	
@@ -10,6 +10,7 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
+import main.zenit.filesystem.MainMethodDetector;
 
 /**
  * Extension of the TreeItem class with the ability to save a corresponding File-object
@@ -73,7 +74,7 @@ public class FileTreeItem<T> extends TreeItem<T> {
 			icon.setFitWidth(16);
 			icon.setSmooth(true);
 
-			if (type == CLASS && file.getName().endsWith(".java") && RunnableClassIndicator.containsMainMethod(file.toPath())) {
+			if (type == CLASS && file.getName().endsWith(".java") && MainMethodDetector.containsMainMethod(file.toPath())) {
 				Label playIcon = new Label("▶");
 				playIcon.setTextFill(Color.LIMEGREEN);
 				playIcon.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
@@ -7,6 +7,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import main.zenit.filesystem.MainMethodDetector;
+
 public class RunnableClassIndicator {
 
     // Huvudmetod för att visa vilka klasser som är körbara
@@ -17,7 +19,7 @@ public class RunnableClassIndicator {
 
         // Kolla om de innehåller en main-metod
         for (Path file : javaFiles) {
-            boolean hasMain = containsMainMethod(file);
+            boolean hasMain = MainMethodDetector.containsMainMethod(file);
             String status = hasMain ? "RUNNABLE" : "NOT RUNNABLE";
             System.out.println(file.getFileName() + ": " + status);
         }
@@ -31,15 +33,4 @@ public class RunnableClassIndicator {
                 .forEach(javaFiles::add);
         return javaFiles;
     }
-
-    // Kontrollera om filen innehåller en main-metod
-    public static boolean containsMainMethod(Path filePath) throws IOException {
-        List<String> lines = Files.readAllLines(filePath);
-        for (String line : lines) {
-            if (line.contains("public static void main(String[] args)")) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
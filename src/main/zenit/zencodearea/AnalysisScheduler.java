@@ -0,0 +1,138 @@
+package main.zenit.zencodearea;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-wide pool of threads that run the background analysis of all open documents.
+ * <p>
+ * The pool is sized to the number of processors and uses daemon threads, so it neither grows
+ * with the number of open tabs nor keeps the application alive. Tasks of the document in the
+ * selected tab run before those of background tabs. Each document has at most one task that
+ * matters, the one for its latest text version: submitting a newer version cancels the
+ * previous task, interrupting it if it is already running.
+ * </p>
+ */
+public final class AnalysisScheduler {
+	private static final AnalysisScheduler INSTANCE =
+			new AnalysisScheduler(Runtime.getRuntime().availableProcessors());
+
+	private final ThreadPoolExecutor executor;
+	private final Map<Object, Job> latest = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	private AnalysisScheduler(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "analysis-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.NORM_PRIORITY - 1);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return The scheduler shared by all documents.
+	 */
+	public static AnalysisScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Schedules the analysis of a text version and cancels the pending or running analysis of
+	 * an older version of the same document.
+	 *
+	 * @param owner The document the task belongs to.
+	 * @param version The text version the task analyzes.
+	 * @param foreground {@code true} if the document is shown in the selected tab.
+	 * @param task The analysis to run.
+	 */
+	public void submit(Object owner, long version, boolean foreground, FutureTask<?> task) {
+		Job job = new Job(owner, version, foreground, task);
+		Job previous = latest.put(owner, job);
+
+		if (previous != null && previous.version <= version) {
+			cancel(previous);
+		}
+		executor.execute(job);
+	}
+
+	/**
+	 * Moves the pending analysis of a document ahead of or behind the other documents, e.g.
+	 * when its tab is selected.
+	 *
+	 * @param owner The document whose analysis should be moved.
+	 * @param foreground {@code true} if the document is shown in the selected tab.
+	 */
+	public void setForeground(Object owner, boolean foreground) {
+		Job job = latest.get(owner);
+
+		if (job != null && job.foreground != foreground && executor.remove(job)) {
+			Job moved = new Job(owner, job.version, foreground, job.task);
+			if (latest.replace(owner, job, moved)) {
+				executor.execute(moved);
+			}
+		}
+	}
+
+	/**
+	 * Cancels the pending or running analysis of a document, e.g. when it is closed.
+	 *
+	 * @param owner The document whose analysis should be cancelled.
+	 */
+	public void cancel(Object owner) {
+		Job job = latest.remove(owner);
+		if (job != null) {
+			cancel(job);
+		}
+	}
+
+	private void cancel(Job job) {
+		job.task.cancel(true);
+		executor.remove(job);
+	}
+
+	/**
+	 * A task in the queue, ordered by priority and then by submission.
+	 */
+	private class Job implements Runnable, Comparable<Job> {
+		private final Object owner;
+		private final long version;
+		private final boolean foreground;
+		private final FutureTask<?> task;
+		private final long order = sequence.getAndIncrement();
+
+		private Job(Object owner, long version, boolean foreground, FutureTask<?> task) {
+			this.owner = owner;
+			this.version = version;
+			this.foreground = foreground;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				latest.remove(owner, this);
+				Thread.interrupted(); // Do not leak a cancellation into the next job
+			}
+		}
+
+		@Override
+		public int compareTo(Job other) {
+			if (foreground != other.foreground) {
+				return foreground ? -1 : 1;
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package main.zenit.zencodearea;
+
+import java.util.ArrayList;
+import java.util.function.ToLongFunction;
+
+import org.fxmisc.undo.impl.ChangeQueue;
+
+/**
+ * The undo history of a {@link ZenCodeArea}, limited by the memory its changes take instead
+ * of by their number.
+ * <p>
+ * Works like the unlimited change queue of UndoFX, but after every change the oldest changes
+ * are forgotten until the estimated size of the history is within the budget. The newest
+ * change is always kept, so the last edit can be undone even if it is larger than the budget.
+ * </p>
+ *
+ * @param <C> The type of the changes.
+ */
+public class BoundedChangeQueue<C> implements ChangeQueue<C> {
+
+	private final ArrayList<Entry<C>> changes = new ArrayList<>();
+	private final ToLongFunction<C> sizeOf;
+	private final long budget;
+
+	private int currentPosition;
+	private long revision;
+	private long zeroPositionRevision;
+	private int forgottenCount;
+	private long size;
+
+	/**
+	 * @param budget The most bytes the history may take.
+	 * @param sizeOf Estimates the bytes a change takes.
+	 */
+	public BoundedChangeQueue(long budget, ToLongFunction<C> sizeOf) {
+		this.budget = budget;
+		this.sizeOf = sizeOf;
+	}
+
+	/**
+	 * @return The estimated bytes taken by the changes that can be undone or redone.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The most bytes the history may take.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return The number of changes that can be undone or redone.
+	 */
+	public int getChangeCount() {
+		return changes.size();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return currentPosition < changes.size();
+	}
+
+	@Override
+	public boolean hasPrev() {
+		return currentPosition > 0;
+	}
+
+	@Override
+	public C peekNext() {
+		return changes.get(currentPosition).change;
+	}
+
+	@Override
+	public C peekPrev() {
+		return changes.get(currentPosition - 1).change;
+	}
+
+	@Override
+	public C next() {
+		return changes.get(currentPosition++).change;
+	}
+
+	@Override
+	public C prev() {
+		return changes.get(--currentPosition).change;
+	}
+
+	@SafeVarargs
+	@Override
+	public final void push(C... pushed) {
+		clear(currentPosition, changes.size());
+
+		for (C change : pushed) {
+			Entry<C> entry = new Entry<>(change, ++revision, sizeOf.applyAsLong(change));
+			changes.add(entry);
+			size += entry.size;
+		}
+		currentPosition += pushed.length;
+
+		while (size > budget && changes.size() > 1 && currentPosition > 1) {
+			forget(1);
+		}
+	}
+
+	@Override
+	public void forgetHistory() {
+		forget(currentPosition);
+	}
+
+	/**
+	 * Forgets the oldest changes, which can then no longer be undone.
+	 */
+	private void forget(int count) {
+		if (count <= 0) {
+			return;
+		}
+		zeroPositionRevision = revisionForPosition(count);
+		clear(0, count);
+		forgottenCount += count;
+		currentPosition -= count;
+	}
+
+	private void clear(int from, int to) {
+		for (int i = from; i < to; i++) {
+			size -= changes.get(i).size;
+		}
+		changes.subList(from, to).clear();
+	}
+
+	@Override
+	public QueuePosition getCurrentPosition() {
+		return new Position(forgottenCount + currentPosition, revisionForPosition(currentPosition));
+	}
+
+	private long revisionForPosition(int position) {
+		return position == 0 ? zeroPositionRevision : changes.get(position - 1).revision;
+	}
+
+	private static class Entry<C> {
+		private final C change;
+		private final long revision;
+		private final long size;
+
+		private Entry(C change, long revision, long size) {
+			this.change = change;
+			this.revision = revision;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * A position in the history, e.g. the position of the saved text. It is invalid once
+	 * the changes up to it have been forgotten or replaced.
+	 */
+	private class Position implements QueuePosition {
+		private final int allTimePosition;
+		private final long revision;
+
+		private Position(int allTimePosition, long revision) {
+			this.allTimePosition = allTimePosition;
+			this.revision = revision;
+		}
+
+		@Override
+		public boolean isValid() {
+			int position = allTimePosition - forgottenCount;
+			return position >= 0 && position <= changes.size() && revision == revisionForPosition(position);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof BoundedChangeQueue<?>.Position
+					&& getQueue() == ((BoundedChangeQueue<?>.Position) other).getQueue()
+					&& revision == ((BoundedChangeQueue<?>.Position) other).revision;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(revision);
+		}
+
+		private BoundedChangeQueue<C> getQueue() {
+			return BoundedChangeQueue.this;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package main.zenit.zencodearea;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import generated.JavaLexer;
+
+/**
+ * The result of lexing and parsing one version of a document.
+ * <p>
+ * A snapshot is created once per text version, off the UI thread, and is then shared by
+ * everything that needs to know about the code: syntax highlighting, class-type detection,
+ * the run indicator in the file tree and the error markers. None of them lex or parse the
+ * text again.
+ * </p>
+ * <p>
+ * Snapshots are immutable. The version is the edit counter of the {@link ZenCodeArea} the
+ * text was taken from, so a consumer can tell whether a snapshot is still current.
+ * </p>
+ */
+public class DocumentSnapshot {
+	private final long version;
+	private final String text;
+	private final List<Token> tokens;
+	private final ParseTree tree;
+	private final SemanticAnalyzer facts;
+
+	private DocumentSnapshot(long version, String text, List<Token> tokens, ParseTree tree,
+			SemanticAnalyzer facts) {
+		this.version = version;
+		this.text = text;
+		this.tokens = tokens;
+		this.tree = tree;
+		this.facts = facts;
+	}
+
+	/**
+	 * Lexes and parses the given text once, see {@link JavaParserPool}, and walks the parse
+	 * tree with a {@link SemanticAnalyzer} to collect class, method and variable names.
+	 *
+	 * @param version The version of the document the text belongs to.
+	 * @param text The Java source code to analyze.
+	 * @return The snapshot for the text.
+	 */
+	public static DocumentSnapshot analyze(long version, String text) {
+		return analyze(version, text, null);
+	}
+
+	/**
+	 * Analyzes the given text like {@link #analyze(long, String)}, recording the duration of
+	 * the lexing, parsing and tree walk.
+	 *
+	 * @param version The version of the document the text belongs to.
+	 * @param text The Java source code to analyze.
+	 * @param metrics The statistics of the document, may be null.
+	 * @return The snapshot for the text.
+	 */
+	public static DocumentSnapshot analyze(long version, String text, HighlightingMetrics metrics) {
+		JavaParserPool.Result parsed = JavaParserPool.parse(text);
+
+		long start = System.nanoTime();
+		SemanticAnalyzer facts = new SemanticAnalyzer();
+		ParseTreeWalker.DEFAULT.walk(facts, parsed.tree);
+
+		if (metrics != null) {
+			metrics.record(HighlightingMetrics.Phase.LEX, parsed.lexNanos);
+			metrics.record(HighlightingMetrics.Phase.PARSE, parsed.parseNanos);
+			metrics.record(HighlightingMetrics.Phase.ANALYZE, System.nanoTime() - start);
+		}
+
+		return new DocumentSnapshot(version, text, Collections.unmodifiableList(parsed.tokens.getTokens()),
+				parsed.tree, facts);
+	}
+
+	/**
+	 * @return The version of the document this snapshot was created from.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The text this snapshot was created from.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return Every token of the text, on all channels, ending with {@link Token#EOF}.
+	 */
+	public List<Token> getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * @return A {@link TokenSource} replaying the tokens of this snapshot, so they can be
+	 * consumed like the output of a fresh {@link JavaLexer}.
+	 */
+	public TokenSource getTokenSource() {
+		return new ListTokenSource(tokens);
+	}
+
+	/**
+	 * @return The root of the parse tree ({@code compilationUnit}).
+	 */
+	public ParseTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * @return The class, method and variable names declared in the text.
+	 */
+	public SemanticAnalyzer getFacts() {
+		return facts;
+	}
+
+	/**
+	 * @return The {@link JavaClassType} of the first type declared in the text, or
+	 * {@code null} for a class without a main method.
+	 */
+	public JavaClassType getClassType() {
+		return facts.getClassType();
+	}
+
+	/**
+	 * @return {@code true} if the parse tree declares a main method, see
+	 * {@link SemanticAnalyzer#hasMainMethod()}.
+	 */
+	public boolean hasMainMethod() {
+		return facts.hasMainMethod();
+	}
+
+	/**
+	 * Finds the token covering a position, as reported by the compiler.
+	 *
+	 * @param row The line of the position, starting at 1.
+	 * @param column The column of the position, starting at 0.
+	 * @return The token at the position, or {@code null} if there is none.
+	 */
+	public Token getTokenAt(int row, int column) {
+		int low = 0;
+		int high = tokens.size() - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			Token token = tokens.get(middle);
+
+			if (token.getLine() < row || (token.getLine() == row && token.getCharPositionInLine() <= column)) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		if (high < 0) {
+			return null;
+		}
+
+		Token token = tokens.get(high);
+		int length = token.getStopIndex() - token.getStartIndex() + 1;
+		if (token.getType() == Token.EOF || token.getLine() != row
+				|| column >= token.getCharPositionInLine() + length) {
+			return null;
+		}
+		return token;
+	}
+}
@@ -0,0 +1,154 @@
+package main.zenit.zencodearea;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rolling latency statistics for the highlighting phases of one document.
+ * <p>
+ * Every {@link ZenCodeArea} keeps the durations of the last {@link #WINDOW} runs of each
+ * {@link Phase}, and reports their median and 99th percentile. The statistics can be shown
+ * next to the caret position in the status bar by starting Zenit with the system property
+ * {@code zenit.highlightingMetrics=true}, so that numbers can be attached to reports of a
+ * slow editor.
+ * </p>
+ * <p>
+ * Phases are recorded both from the analysis threads and the JavaFX application thread.
+ * </p>
+ */
+public final class HighlightingMetrics {
+
+	/**
+	 * The number of samples kept per phase.
+	 */
+	public static final int WINDOW = 256;
+
+	/**
+	 * A timed part of the highlighting of a document.
+	 */
+	public enum Phase {
+		/** Lexing the whole text in the background. */
+		LEX("lex"),
+		/** Parsing the tokens in the background. */
+		PARSE("parse"),
+		/** Walking the parse tree with the {@link SemanticAnalyzer}. */
+		ANALYZE("walk"),
+		/** Building and comparing the {@link org.fxmisc.richtext.model.StyleSpans}. */
+		STYLE("spans"),
+		/** Applying the background result on the JavaFX application thread. */
+		APPLY("apply"),
+		/** Re-lexing the edited paragraphs on the JavaFX application thread. */
+		RELEX("relex");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @return The short name of the phase used in the status bar.
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private final Map<Phase, Samples> samples = new EnumMap<>(Phase.class);
+
+	/**
+	 * Creates empty statistics.
+	 */
+	public HighlightingMetrics() {
+		for (Phase phase : Phase.values()) {
+			samples.put(phase, new Samples());
+		}
+	}
+
+	/**
+	 * @return {@code true} if the statistics should be shown in the status bar.
+	 */
+	public static boolean isReadoutEnabled() {
+		return Boolean.getBoolean("zenit.highlightingMetrics");
+	}
+
+	/**
+	 * Records one run of a phase, replacing the oldest sample once the window is full.
+	 *
+	 * @param phase The phase that ran.
+	 * @param nanos The duration of the run in nanoseconds.
+	 */
+	public void record(Phase phase, long nanos) {
+		samples.get(phase).add(nanos);
+	}
+
+	/**
+	 * @param phase A phase.
+	 * @return The number of samples in the window of the phase.
+	 */
+	public int getSampleCount(Phase phase) {
+		return samples.get(phase).count();
+	}
+
+	/**
+	 * Computes a percentile of the durations in the window of a phase, using the nearest rank.
+	 *
+	 * @param phase A phase.
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The duration in nanoseconds, or -1 if the phase has not run yet.
+	 */
+	public long getPercentile(Phase phase, double percentile) {
+		long[] sorted = samples.get(phase).sorted();
+		if (sorted.length == 0) {
+			return -1;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+
+	/**
+	 * @return The median and 99th percentile in milliseconds of every phase that has run,
+	 * e.g. {@code "lex 0.4/1.2 parse 3.1/9.8 ms (p50/p99)"}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder readout = new StringBuilder();
+
+		for (Phase phase : Phase.values()) {
+			long median = getPercentile(phase, 50);
+			if (median < 0) {
+				continue;
+			}
+			readout.append(phase.getLabel()).append(' ')
+					.append(String.format(Locale.ROOT, "%.1f/%.1f ", median / 1e6, getPercentile(phase, 99) / 1e6));
+		}
+		return readout.length() == 0 ? "" : readout.append("ms (p50/p99)").toString();
+	}
+
+	/**
+	 * A ring buffer of the latest durations of a phase.
+	 */
+	private static class Samples {
+		private final long[] values = new long[WINDOW];
+		private int next;
+		private int count;
+
+		private synchronized void add(long nanos) {
+			values[next] = nanos;
+			next = (next + 1) % WINDOW;
+			count = Math.min(count + 1, WINDOW);
+		}
+
+		private synchronized int count() {
+			return count;
+		}
+
+		private synchronized long[] sorted() {
+			long[] copy = Arrays.copyOf(values, count);
+			Arrays.sort(copy);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package main.zenit.zencodearea;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import generated.JavaLexer;
+import main.zenit.util.Tuple;
+
+/**
+ * Keeps a {@link JavaLexer} state snapshot for every paragraph of a document so that
+ * syntax highlighting can be updated incrementally.
+ * <p>
+ * After an edit only the changed paragraphs are marked dirty. {@link #relex(String)} then
+ * restarts the lexer at the closest paragraph whose snapshot is a clean token boundary and
+ * lexes forward until the lexer state at a paragraph boundary matches the old snapshot again.
+ * Only the style spans for that range are returned.
+ * </p>
+ * <p>
+ * The lexer state at the start of a paragraph is either {@link #DEFAULT_STATE} or the type of
+ * a multi-line token ({@code COMMENT} or {@code TEXT_BLOCK}) that spans the line break.
+ * Whitespace spanning a line break is treated as a clean boundary since re-lexing it from the
+ * paragraph start yields the same styling.
+ * </p>
+ */
+public class IncrementalHighlighter {
+	static final int DEFAULT_STATE = Lexer.DEFAULT_MODE;
+	private static final int INTERRUPT_CHECK_INTERVAL = 4096;
+	private static final int UNKNOWN_STATE = -1;
+
+	private final List<Line> lines = new ArrayList<>();
+	private SemanticAnalyzer facts = new SemanticAnalyzer();
+	private DocumentSnapshot snapshot;
+
+	private int dirtyFrom = -1;
+	private int dirtyTo = -1;
+	private boolean invalid;
+
+	/**
+	 * Creates a highlighter for an empty document.
+	 */
+	public IncrementalHighlighter() {
+		lines.add(new Line(DEFAULT_STATE));
+	}
+
+	/**
+	 * Lexes the whole text, records a state snapshot for every paragraph and returns the
+	 * style spans for the complete document.
+	 *
+	 * @param text The document text.
+	 * @param facts The semantic information used to style identifiers.
+	 * @return The style spans for the whole text.
+	 */
+	public StyleSpans<Collection<String>> highlightAll(String text, SemanticAnalyzer facts) {
+		reset(text, facts);
+		return lex(text, 0, 0, newLexer(text, 0));
+	}
+
+	/**
+	 * Records a state snapshot for every paragraph of an analyzed document and returns the
+	 * style spans for the complete document. The tokens of the snapshot are reused, so the
+	 * text is not lexed again.
+	 *
+	 * @param snapshot The analyzed document.
+	 * @return The style spans for the whole text.
+	 */
+	public StyleSpans<Collection<String>> highlightAll(DocumentSnapshot snapshot) {
+		reset(snapshot.getText(), snapshot.getFacts());
+		this.snapshot = snapshot;
+		return lex(snapshot.getText(), 0, 0, snapshot.getTokenSource());
+	}
+
+	private void reset(String text, SemanticAnalyzer facts) {
+		this.facts = facts;
+		lines.clear();
+		lines.add(new Line(DEFAULT_STATE));
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			lines.add(new Line(UNKNOWN_STATE));
+		}
+		dirtyFrom = 0;
+		dirtyTo = lines.size() - 1;
+		invalid = false;
+	}
+
+	/**
+	 * Updates the paragraph snapshots after an edit and marks the edited paragraphs as dirty.
+	 * Must be called once for every change, in the order the changes were made.
+	 *
+	 * @param paragraph The paragraph in which the change starts.
+	 * @param removedLines The number of line breaks removed by the change.
+	 * @param insertedLines The number of line breaks inserted by the change.
+	 */
+	public void paragraphsChanged(int paragraph, int removedLines, int insertedLines) {
+		if (invalid || paragraph + removedLines >= lines.size()) {
+			invalid = true;
+			return;
+		}
+
+		lines.subList(paragraph + 1, paragraph + 1 + removedLines).clear();
+		for (int i = 0; i < insertedLines; i++) {
+			lines.add(paragraph + 1, new Line(UNKNOWN_STATE));
+		}
+
+		int editEnd = paragraph + insertedLines;
+		if (dirtyFrom == -1) {
+			dirtyFrom = paragraph;
+			dirtyTo = editEnd;
+		} else {
+			if (dirtyTo > paragraph) {
+				dirtyTo = Math.max(paragraph, dirtyTo + insertedLines - removedLines);
+			}
+			dirtyFrom = Math.min(dirtyFrom, paragraph);
+			dirtyTo = Math.max(dirtyTo, editEnd);
+		}
+	}
+
+	/**
+	 * Forces the next update to go through {@link #highlightAll(String, SemanticAnalyzer)},
+	 * for instance after an edit too large to be worth handling incrementally.
+	 */
+	public void invalidate() {
+		invalid = true;
+	}
+
+	/**
+	 * @return {@code true} if the snapshots no longer match the document and a full
+	 * highlighting pass is required.
+	 */
+	public boolean isInvalid() {
+		return invalid;
+	}
+
+	/**
+	 * @return {@code true} if there are edited paragraphs that have not been re-lexed yet.
+	 */
+	public boolean isDirty() {
+		return dirtyFrom != -1;
+	}
+
+	/**
+	 * @return The semantic information used to style identifiers.
+	 */
+	public SemanticAnalyzer getFacts() {
+		return facts;
+	}
+
+	/**
+	 * @return The snapshot passed to {@link #highlightAll(DocumentSnapshot)}, or {@code null}
+	 * if the highlighter was not created from one.
+	 */
+	public DocumentSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Re-lexes the dirty paragraphs of {@code text} until the lexer state is back in sync with
+	 * the stored snapshots.
+	 *
+	 * @param text The current document text.
+	 * @return The offset of the first re-styled character paired with the style spans for the
+	 * re-lexed range, or {@code null} if nothing is dirty or the snapshots are invalid.
+	 */
+	public Tuple<Integer, StyleSpans<Collection<String>>> relex(String text) {
+		if (invalid || !isDirty()) {
+			return null;
+		}
+
+		int lineCount = 1;
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			lineCount++;
+		}
+		if (lineCount != lines.size()) {
+			invalid = true;
+			return null;
+		}
+
+		int restartLine = cleanLineAtOrBefore(dirtyFrom);
+
+		// An unterminated "/*" before the edit may have been closed by it
+		for (int i = 0; i < restartLine; i++) {
+			if (lines.get(i).hasOpener) {
+				restartLine = cleanLineAtOrBefore(i);
+				break;
+			}
+		}
+
+		int restartOffset = 0;
+		for (int i = 0; i < restartLine; i++) {
+			restartOffset = text.indexOf('\n', restartOffset) + 1;
+		}
+
+		return new Tuple<>(restartOffset, lex(text, restartLine, restartOffset, newLexer(text, restartOffset)));
+	}
+
+	/**
+	 * Finds where a range of paragraphs can be lexed on its own, e.g. to style it again after
+	 * temporary styles were put on it, see {@link #style(String)}.
+	 *
+	 * @param first The first paragraph of the range.
+	 * @param last The last paragraph of the range.
+	 * @return The closest paragraph at or before {@code first} and the closest paragraph after
+	 * {@code last} that start on a clean token boundary, the second one being the paragraph
+	 * count if there is none, or {@code null} if a full highlighting pass is pending.
+	 */
+	public Tuple<Integer, Integer> cleanParagraphsAround(int first, int last) {
+		if (invalid || last >= lines.size()) {
+			return null;
+		}
+
+		int after = last + 1;
+		while (after < lines.size() && lines.get(after).state != DEFAULT_STATE) {
+			after++;
+		}
+		return new Tuple<>(cleanLineAtOrBefore(first), after);
+	}
+
+	/**
+	 * Styles a part of the document that starts on a clean token boundary, with the current
+	 * semantic information. Unlike {@link #relex(String)}, the paragraph snapshots are not
+	 * changed.
+	 *
+	 * @param text The paragraphs to style, see {@link #cleanParagraphsAround(int, int)}.
+	 * @return The style spans for the text.
+	 */
+	public StyleSpans<Collection<String>> style(String text) {
+		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+		TokenSource lexer = newLexer(text, 0);
+		int lastIndex = 0;
+
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			spansBuilder.add(Collections.emptyList(), token.getStartIndex() - lastIndex);
+			spansBuilder.add(styleFor(token), token.getStopIndex() + 1 - token.getStartIndex());
+			lastIndex = token.getStopIndex() + 1;
+		}
+		spansBuilder.add(Collections.emptyList(), text.length() - lastIndex);
+		return spansBuilder.create();
+	}
+
+	/**
+	 * Walks backwards from {@code line} to the closest paragraph that starts on a clean token
+	 * boundary.
+	 */
+	private int cleanLineAtOrBefore(int line) {
+		while (line > 0 && lines.get(line).state != DEFAULT_STATE) {
+			line--;
+		}
+		return line;
+	}
+
+	private static TokenSource newLexer(String text, int startOffset) {
+		CharStream input = CharStreams.fromString(text);
+		JavaLexer lexer = new JavaLexer(input);
+		lexer.removeErrorListeners();
+		input.seek(startOffset);
+		return lexer;
+	}
+
+	/**
+	 * Styles the tokens from {@code startOffset}, the start of paragraph {@code startLine}, and
+	 * stops at the first paragraph boundary after the dirty range whose new state equals its
+	 * old snapshot.
+	 */
+	private StyleSpans<Collection<String>> lex(String text, int startLine, int startOffset, TokenSource lexer) {
+		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+
+		int line = startLine;
+		int nextBoundary = text.indexOf('\n', startOffset) + 1;
+		int lastIndex = startOffset;
+		int end = text.length();
+		lines.get(line).hasOpener = false;
+
+		Token previous = null;
+		int previousLine = line;
+		int count = 0;
+
+		tokens:
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			if (++count % INTERRUPT_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+				invalid = true;
+				throw new CancellationException("Highlighting was superseded");
+			}
+
+			int startIndex = token.getStartIndex();
+			int stopIndex = token.getStopIndex() + 1;
+
+			while (nextBoundary > 0 && nextBoundary < stopIndex) {
+				int state = startIndex < nextBoundary && isMultiLine(token.getType())
+						? token.getType() : DEFAULT_STATE;
+				line++;
+
+				if (line > dirtyTo && lines.get(line).state == state) {
+					end = nextBoundary;
+					if (startIndex < end) {
+						spansBuilder.add(Collections.emptyList(), startIndex - lastIndex);
+						spansBuilder.add(styleFor(token), end - startIndex);
+						lastIndex = end;
+					}
+					break tokens;
+				}
+
+				lines.get(line).state = state;
+				lines.get(line).hasOpener = false;
+				nextBoundary = text.indexOf('\n', nextBoundary) + 1;
+			}
+
+			if (previous != null && opensUnterminatedBlock(previous, token, text)) {
+				lines.get(previousLine).hasOpener = true;
+			}
+			previous = token;
+			previousLine = line;
+
+			spansBuilder.add(Collections.emptyList(), startIndex - lastIndex);
+			spansBuilder.add(styleFor(token), stopIndex - startIndex);
+			lastIndex = stopIndex;
+		}
+
+		if (end == text.length()) {
+			// Trailing paragraphs not covered by any token, e.g. after a final line break
+			while (nextBoundary > 0 && line + 1 < lines.size()) {
+				line++;
+				lines.get(line).state = DEFAULT_STATE;
+				lines.get(line).hasOpener = false;
+				nextBoundary = text.indexOf('\n', nextBoundary) + 1;
+			}
+		}
+
+		spansBuilder.add(Collections.emptyList(), end - lastIndex);
+
+		dirtyFrom = -1;
+		dirtyTo = -1;
+		return spansBuilder.create();
+	}
+
+	private Collection<String> styleFor(Token token) {
+		return Collections.singleton(ZenCodeArea.getStyleForToken(token.getType(), token.getText(), facts));
+	}
+
+	/**
+	 * Multi-line tokens whose continuation can not be re-lexed from the start of a paragraph.
+	 */
+	private static boolean isMultiLine(int tokenType) {
+		return tokenType == JavaLexer.COMMENT || tokenType == JavaLexer.TEXT_BLOCK;
+	}
+
+	/**
+	 * Detects the token pairs the lexer produces for a block comment or text block that has not
+	 * been closed yet, i.e. {@code "/" "*"} and {@code "\"\"" "\""}.
+	 */
+	private static boolean opensUnterminatedBlock(Token previous, Token token, String text) {
+		int next = previous.getStopIndex() + 1;
+
+		if (previous.getType() == JavaLexer.DIV) {
+			return token.getType() == JavaLexer.MUL && token.getStartIndex() == next;
+		}
+		return previous.getType() == JavaLexer.STRING_LITERAL && previous.getText().equals("\"\"")
+				&& next < text.length() && text.charAt(next) == '"';
+	}
+
+	/**
+	 * Lexer snapshot for the start of a paragraph.
+	 */
+	private static class Line {
+		private int state;
+		private boolean hasOpener;
+
+		private Line(int state) {
+			this.state = state;
+		}
+	}
+}
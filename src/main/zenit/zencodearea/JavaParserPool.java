@@ -0,0 +1,119 @@
+package main.zenit.zencodearea;
+
+import java.util.concurrent.CancellationException;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import generated.JavaLexer;
+import generated.JavaParser;
+import generated.JavaParserBaseListener;
+
+/**
+ * Reusable {@link JavaLexer} and {@link JavaParser} instances, one pair per thread.
+ * <p>
+ * ANTLR lexers and parsers are not thread safe, but they can be reset and reused with
+ * {@code setInputStream}, which avoids reallocating them for every analysis pass. The
+ * prediction caches are shared by all instances regardless.
+ * </p>
+ * <p>
+ * Parsing is done in two stages. The fast SLL prediction mode with a bail-out error strategy
+ * succeeds for almost all code. Only if it fails, because the code has a syntax error or
+ * needs full context to be predicted, the text is parsed again with full LL prediction and
+ * the default error recovery.
+ * </p>
+ * <p>
+ * A parse stops with a {@link CancellationException} as soon as the calling thread is
+ * interrupted, so a superseded analysis does not keep a thread busy.
+ * </p>
+ */
+final class JavaParserPool {
+	private static final ThreadLocal<JavaParserPool> POOL = ThreadLocal.withInitial(JavaParserPool::new);
+
+	private final JavaLexer lexer = new JavaLexer(null);
+	private final JavaParser parser = new JavaParser(null);
+
+	private JavaParserPool() {
+		lexer.removeErrorListeners();
+		parser.removeErrorListeners(); // Disable default error handling
+		parser.addParseListener(new JavaParserBaseListener() {
+			@Override
+			public void enterEveryRule(ParserRuleContext ctx) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Analysis was superseded");
+				}
+			}
+		});
+	}
+
+	/**
+	 * Lexes and parses a text with the calling thread's lexer and parser.
+	 *
+	 * @param text The Java source code to parse.
+	 * @return The complete token stream of the text, the root of the parse tree and the time
+	 * spent lexing and parsing.
+	 */
+	static Result parse(String text) {
+		return POOL.get().parseText(text);
+	}
+
+	private Result parseText(String text) {
+		long start = System.nanoTime();
+		lexer.setInputStream(CharStreams.fromString(text));
+		CommonTokenStream stream = new CommonTokenStream(lexer);
+		ParseTree tree;
+		long lexed;
+
+		try {
+			stream.fill(); // Lex everything up front, also where the parser stops early on broken code
+			lexed = System.nanoTime();
+
+			parser.setInputStream(stream);
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			parser.setErrorHandler(new BailErrorStrategy());
+
+			try {
+				tree = parser.compilationUnit();
+			} catch (ParseCancellationException e) {
+				stream.seek(0);
+				parser.reset();
+				parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				parser.setErrorHandler(new DefaultErrorStrategy());
+				tree = parser.compilationUnit();
+			}
+		} finally {
+			// Do not keep the last document alive through the pooled instances
+			parser.setInputStream(null);
+			lexer.setInputStream(null);
+			// A cancelled parse stops in enterRule, which leaves the state of the rule behind.
+			// The next root context would take it as invoking state and break error recovery.
+			parser.setState(ATNState.INVALID_STATE_NUMBER);
+		}
+
+		return new Result(stream, tree, lexed - start, System.nanoTime() - lexed);
+	}
+
+	/**
+	 * The output of a parse.
+	 */
+	static class Result {
+		final CommonTokenStream tokens;
+		final ParseTree tree;
+		final long lexNanos;
+		final long parseNanos;
+
+		private Result(CommonTokenStream tokens, ParseTree tree, long lexNanos, long parseNanos) {
+			this.tokens = tokens;
+			this.tree = tree;
+			this.lexNanos = lexNanos;
+			this.parseNanos = parseNanos;
+		}
+	}
+}
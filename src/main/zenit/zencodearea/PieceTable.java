@@ -0,0 +1,460 @@
+package main.zenit.zencodearea;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A text document stored as a piece table, for making many edits to a large text.
+ * <p>
+ * The text is never copied when it is edited. The original text and an append-only buffer
+ * with all inserted text are kept, and the document is the sequence of pieces of those two
+ * buffers. The pieces are kept in a balanced tree (a treap) that knows the length and the
+ * number of line breaks of every subtree, so inserting, deleting and finding an offset or a
+ * paragraph costs O(log n) in the number of pieces, however large the text is.
+ * </p>
+ * <p>
+ * Paragraphs are numbered and measured the same way as in {@link ZenCodeArea}, so code
+ * written against the paragraphs of the code area can run against the piece table. The
+ * document also remembers the smallest range that its edits have changed, which
+ * {@link ZenCodeArea#applyEdits(PieceTable)} replaces in the code area with one change.
+ * Styles are not stored here, the code area keeps the style spans of the unchanged text.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ */
+public class PieceTable implements CharSequence {
+
+	private final Buffer original;
+	private final Buffer added;
+	private final Random priorities = new Random(0x5eed);
+
+	private Piece root;
+
+	private boolean edited;
+	private int changeStart;
+	private int unchangedSuffix;
+
+	/**
+	 * Creates a document with a text.
+	 * @param text The original text of the document
+	 */
+	public PieceTable(String text) {
+		original = new Buffer(text);
+		added = new Buffer(new StringBuilder());
+		original.indexBreaks(0, text.length());
+
+		if (!text.isEmpty()) {
+			root = new Piece(original, 0, text.length(), priorities.nextInt());
+		}
+		changeStart = text.length();
+		unchangedSuffix = text.length();
+	}
+
+	/**
+	 * Inserts text.
+	 * @param offset Where to insert the text, from 0 to {@link #length()}
+	 * @param text The text to insert
+	 */
+	public void insert(int offset, String text) {
+		replace(offset, offset, text);
+	}
+
+	/**
+	 * Deletes the text in a range.
+	 * @param from The start of the range, inclusive
+	 * @param to The end of the range, exclusive
+	 */
+	public void delete(int from, int to) {
+		replace(from, to, "");
+	}
+
+	/**
+	 * Replaces the text in a range.
+	 * @param from The start of the range, inclusive
+	 * @param to The end of the range, exclusive
+	 * @param text The text to put in place of the range
+	 */
+	public void replace(int from, int to, String text) {
+		checkRange(from, to);
+		if (from == to && text.isEmpty()) {
+			return;
+		}
+
+		Piece[] head = split(root, from);
+		Piece[] tail = split(head[1], to - from);
+		Piece middle = null;
+
+		if (!text.isEmpty()) {
+			int start = added.text.length();
+			((StringBuilder) added.text).append(text);
+			added.indexBreaks(start, start + text.length());
+			middle = new Piece(added, start, text.length(), priorities.nextInt());
+		}
+		root = merge(merge(head[0], middle), tail[1]);
+
+		edited = true;
+		changeStart = Math.min(changeStart, from);
+		unchangedSuffix = Math.min(unchangedSuffix, length() - from - text.length());
+	}
+
+	@Override
+	public int length() {
+		return length(root);
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("Index " + index + " outside of length " + length());
+		}
+		Piece piece = root;
+		while (true) {
+			int leftLength = length(piece.left);
+			if (index < leftLength) {
+				piece = piece.left;
+			} else if (index < leftLength + piece.length) {
+				return piece.buffer.text.charAt(piece.start + index - leftLength);
+			} else {
+				index -= leftLength + piece.length;
+				piece = piece.right;
+			}
+		}
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return getText(start, end);
+	}
+
+	/**
+	 * @return The whole text of the document
+	 */
+	public String getText() {
+		return getText(0, length());
+	}
+
+	/**
+	 * Returns the text in a range.
+	 * @param from The start of the range, inclusive
+	 * @param to The end of the range, exclusive
+	 * @return The text in the range
+	 */
+	public String getText(int from, int to) {
+		checkRange(from, to);
+		StringBuilder text = new StringBuilder(to - from);
+		appendText(root, from, to, text);
+		return text.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getText();
+	}
+
+	/**
+	 * @return The number of paragraphs, one more than the number of line breaks
+	 */
+	public int getParagraphCount() {
+		return breaks(root) + 1;
+	}
+
+	/**
+	 * Returns the offset of the first character of a paragraph plus a column.
+	 * @param paragraph The index of the paragraph
+	 * @param column The column in the paragraph
+	 * @return The offset in the document
+	 */
+	public int getAbsolutePosition(int paragraph, int column) {
+		return getParagraphStart(paragraph) + column;
+	}
+
+	/**
+	 * @param paragraph The index of the paragraph
+	 * @return The length of the paragraph, without its line break
+	 */
+	public int getParagraphLength(int paragraph) {
+		return getParagraphEnd(paragraph) - getParagraphStart(paragraph);
+	}
+
+	/**
+	 * @param paragraph The index of the paragraph
+	 * @return The text of the paragraph, without its line break
+	 */
+	public String getParagraph(int paragraph) {
+		return getText(getParagraphStart(paragraph), getParagraphEnd(paragraph));
+	}
+
+	/**
+	 * @param offset An offset in the document
+	 * @return The index of the paragraph that contains the offset
+	 */
+	public int getParagraphIndex(int offset) {
+		checkRange(offset, offset);
+		int paragraph = 0;
+		Piece piece = root;
+
+		while (piece != null) {
+			int leftLength = length(piece.left);
+			if (offset < leftLength) {
+				piece = piece.left;
+			} else if (offset < leftLength + piece.length) {
+				return paragraph + breaks(piece.left)
+						+ piece.buffer.countBreaks(piece.start, piece.start + offset - leftLength);
+			} else {
+				offset -= leftLength + piece.length;
+				paragraph += breaks(piece.left) + piece.breaks;
+				piece = piece.right;
+			}
+		}
+		return paragraph;
+	}
+
+	/**
+	 * @return The number of pieces the document is made of
+	 */
+	public int getPieceCount() {
+		return count(root);
+	}
+
+	/**
+	 * @return {@code true} if the document has been edited
+	 */
+	public boolean isChanged() {
+		return edited;
+	}
+
+	/**
+	 * @return The offset of the first character that may differ from the original text
+	 */
+	public int getChangeStart() {
+		return changeStart;
+	}
+
+	/**
+	 * @return The end, in the original text, of the range replaced by the edits
+	 */
+	public int getReplacedEnd() {
+		return original.text.length() - unchangedSuffix;
+	}
+
+	/**
+	 * @return The end, in the current text, of the range changed by the edits
+	 */
+	public int getChangeEnd() {
+		return length() - unchangedSuffix;
+	}
+
+	/**
+	 * @return The current text of the range changed by the edits
+	 */
+	public String getChangedText() {
+		return getText(getChangeStart(), getChangeEnd());
+	}
+
+	/**
+	 * @return The length of the text the document was created with
+	 */
+	public int getOriginalLength() {
+		return original.text.length();
+	}
+
+	private int getParagraphStart(int paragraph) {
+		checkParagraph(paragraph);
+		return paragraph == 0 ? 0 : findBreak(paragraph - 1) + 1;
+	}
+
+	private int getParagraphEnd(int paragraph) {
+		checkParagraph(paragraph);
+		return paragraph == getParagraphCount() - 1 ? length() : findBreak(paragraph);
+	}
+
+	/**
+	 * Returns the offset of a line break.
+	 * @param index The index of the line break, the first line break has index 0
+	 */
+	private int findBreak(int index) {
+		int offset = 0;
+		Piece piece = root;
+
+		while (true) {
+			int leftBreaks = breaks(piece.left);
+			if (index < leftBreaks) {
+				piece = piece.left;
+			} else if (index < leftBreaks + piece.breaks) {
+				return offset + length(piece.left)
+						+ piece.buffer.findBreak(piece.start, index - leftBreaks) - piece.start;
+			} else {
+				index -= leftBreaks + piece.breaks;
+				offset += length(piece.left) + piece.length;
+				piece = piece.right;
+			}
+		}
+	}
+
+	private void appendText(Piece piece, int from, int to, StringBuilder text) {
+		if (piece == null || from >= to) {
+			return;
+		}
+		int leftLength = length(piece.left);
+		if (from < leftLength) {
+			appendText(piece.left, from, Math.min(to, leftLength), text);
+		}
+		int pieceFrom = Math.max(from - leftLength, 0);
+		int pieceTo = Math.min(to - leftLength, piece.length);
+		if (pieceFrom < pieceTo) {
+			text.append(piece.buffer.text, piece.start + pieceFrom, piece.start + pieceTo);
+		}
+		int rightStart = leftLength + piece.length;
+		if (to > rightStart) {
+			appendText(piece.right, Math.max(from - rightStart, 0), to - rightStart, text);
+		}
+	}
+
+	/**
+	 * Splits a tree in the pieces before an offset and the pieces after it, splitting the
+	 * piece that contains the offset in two.
+	 */
+	private Piece[] split(Piece piece, int offset) {
+		if (piece == null) {
+			return new Piece[] { null, null };
+		}
+		int leftLength = length(piece.left);
+
+		if (offset <= leftLength) {
+			Piece[] parts = split(piece.left, offset);
+			piece.left = parts[1];
+			piece.update();
+			return new Piece[] { parts[0], piece };
+		}
+		if (offset >= leftLength + piece.length) {
+			Piece[] parts = split(piece.right, offset - leftLength - piece.length);
+			piece.right = parts[0];
+			piece.update();
+			return new Piece[] { piece, parts[1] };
+		}
+
+		int cut = offset - leftLength;
+		Piece rest = new Piece(piece.buffer, piece.start + cut, piece.length - cut, priorities.nextInt());
+		Piece right = piece.right;
+		piece.length = cut;
+		piece.breaks = piece.buffer.countBreaks(piece.start, piece.start + cut);
+		piece.right = null;
+		piece.update();
+		return new Piece[] { piece, merge(rest, right) };
+	}
+
+	/**
+	 * Joins two trees, all pieces of the first tree come before the pieces of the second.
+	 */
+	private Piece merge(Piece first, Piece second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			first.update();
+			return first;
+		}
+		second.left = merge(first, second.left);
+		second.update();
+		return second;
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > length() || from > to) {
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") outside of length " + length());
+		}
+	}
+
+	private void checkParagraph(int paragraph) {
+		if (paragraph < 0 || paragraph >= getParagraphCount()) {
+			throw new IndexOutOfBoundsException("Paragraph " + paragraph + " outside of " + getParagraphCount());
+		}
+	}
+
+	private static int length(Piece piece) {
+		return piece == null ? 0 : piece.totalLength;
+	}
+
+	private static int breaks(Piece piece) {
+		return piece == null ? 0 : piece.totalBreaks;
+	}
+
+	private static int count(Piece piece) {
+		return piece == null ? 0 : piece.totalPieces;
+	}
+
+	/**
+	 * A range of one of the buffers, and a node of the tree of pieces.
+	 */
+	private static class Piece {
+		private final Buffer buffer;
+		private final int start;
+		private final int priority;
+		private int length;
+		private int breaks;
+
+		private Piece left;
+		private Piece right;
+		private int totalLength;
+		private int totalBreaks;
+		private int totalPieces;
+
+		private Piece(Buffer buffer, int start, int length, int priority) {
+			this.buffer = buffer;
+			this.start = start;
+			this.length = length;
+			this.priority = priority;
+			breaks = buffer.countBreaks(start, start + length);
+			update();
+		}
+
+		private void update() {
+			totalLength = length(left) + length + length(right);
+			totalBreaks = breaks(left) + breaks + breaks(right);
+			totalPieces = count(left) + 1 + count(right);
+		}
+	}
+
+	/**
+	 * The text of a buffer and the sorted offsets of its line breaks, so that the line
+	 * breaks of any range are found with a binary search.
+	 */
+	private static class Buffer {
+		private final CharSequence text;
+		private int[] breaks = new int[16];
+		private int breakCount;
+
+		private Buffer(CharSequence text) {
+			this.text = text;
+		}
+
+		private void indexBreaks(int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (text.charAt(i) == '\n') {
+					if (breakCount == breaks.length) {
+						breaks = Arrays.copyOf(breaks, breakCount * 2);
+					}
+					breaks[breakCount++] = i;
+				}
+			}
+		}
+
+		private int countBreaks(int from, int to) {
+			return firstBreakAtOrAfter(to) - firstBreakAtOrAfter(from);
+		}
+
+		private int findBreak(int from, int index) {
+			return breaks[firstBreakAtOrAfter(from) + index];
+		}
+
+		private int firstBreakAtOrAfter(int offset) {
+			int index = Arrays.binarySearch(breaks, 0, breakCount, offset);
+			return index >= 0 ? index : -index - 1;
+		}
+	}
+}
@@ -20,6 +20,7 @@ public class SemanticAnalyzer extends JavaParserBaseListener {
     private final Set<String> variables = new HashSet<>();
 
     private boolean hasClass = false;  // Tracks if a class has a main method
+    private boolean hasMainMethod = false;
     private JavaClassType JclassType;
 
     /**
@@ -52,7 +53,59 @@ public class SemanticAnalyzer extends JavaParserBaseListener {
      * @return {@code true} if the class contains the main method, {@code false} otherwise.
      */
     private boolean consistOfMainMethod(JavaParser.ClassDeclarationContext ctx) {
-        return ctx.getText().contains("publicstaticvoidmain(String[]args)"); //No space required
+        for (JavaParser.ClassBodyDeclarationContext member : ctx.classBody().classBodyDeclaration()) {
+            if (member.memberDeclaration() != null && member.memberDeclaration().methodDeclaration() != null
+                    && isMainMethod(member.memberDeclaration().methodDeclaration())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a method is a main method: {@code public static void main} taking a single
+     * {@code String} array, written as {@code String[] args}, {@code String args[]} or
+     * {@code String... args}. Comments and string literals never reach the parse tree.
+     *
+     * @param ctx The context object containing the method declaration.
+     * @return {@code true} if the method is a main method, {@code false} otherwise.
+     */
+    private static boolean isMainMethod(JavaParser.MethodDeclarationContext ctx) {
+        if (!ctx.identifier().getText().equals("main") || ctx.typeTypeOrVoid().VOID() == null
+                || !(ctx.getParent().getParent() instanceof JavaParser.ClassBodyDeclarationContext)) {
+            return false;
+        }
+
+        Set<String> modifiers = new HashSet<>();
+        for (JavaParser.ModifierContext modifier
+                : ((JavaParser.ClassBodyDeclarationContext) ctx.getParent().getParent()).modifier()) {
+            modifiers.add(modifier.getText());
+        }
+        if (!modifiers.contains("public") || !modifiers.contains("static")) {
+            return false;
+        }
+
+        JavaParser.FormalParameterListContext parameters = ctx.formalParameters().formalParameterList();
+        if (parameters == null || ctx.formalParameters().receiverParameter() != null) {
+            return false;
+        }
+        if (parameters.lastFormalParameter() != null) {
+            return parameters.formalParameter().isEmpty()
+                    && isString(parameters.lastFormalParameter().typeType().getText());
+        }
+        if (parameters.formalParameter().size() != 1) {
+            return false;
+        }
+
+        JavaParser.FormalParameterContext parameter = parameters.formalParameter(0);
+        String type = parameter.typeType().getText();
+        String name = parameter.variableDeclaratorId().getText();
+        return type.endsWith("[]") && isString(type.substring(0, type.length() - 2)) && !name.endsWith("]")
+                || isString(type) && name.endsWith("[]") && name.indexOf('[') == name.length() - 2;
+    }
+
+    private static boolean isString(String type) {
+        return type.equals("String") || type.equals("java.lang.String");
     }
 
     /**
@@ -65,6 +118,7 @@ public class SemanticAnalyzer extends JavaParserBaseListener {
     public void enterMethodDeclaration(JavaParser.MethodDeclarationContext ctx) {
         String methodName = ctx.identifier().getText();
         methodNames.add(methodName);
+        hasMainMethod |= isMainMethod(ctx);
     }
 
 
@@ -147,6 +201,18 @@ public class SemanticAnalyzer extends JavaParserBaseListener {
      */
     public Set<String> getVariables() { return variables; }
 
+    /**
+     * Checks if another analyzer collected exactly the same class, method and variable names,
+     * in which case both style every token of a document the same way.
+     *
+     * @param other The analyzer to compare with.
+     * @return {@code true} if all collected names are equal, {@code false} otherwise.
+     */
+    public boolean hasSameNames(SemanticAnalyzer other) {
+        return classNames.equals(other.classNames) && methodNames.equals(other.methodNames)
+                && variables.equals(other.variables);
+    }
+
 
     /**
      * Retrieves the type of the Java class being parsed (e.g., Runnable, Interface, Enum).
@@ -155,4 +221,12 @@ public class SemanticAnalyzer extends JavaParserBaseListener {
      * @return The {@link JavaClassType} of the parsed class.
      */
     public JavaClassType getClassType() {return JclassType;}
+
+    /**
+     * Checks if a main method is declared anywhere in the parsed code, also in a nested class
+     * or in a class that isn't the first one.
+     *
+     * @return {@code true} if a main method was found, {@code false} otherwise.
+     */
+    public boolean hasMainMethod() {return hasMainMethod;}
 }
@@ -0,0 +1,165 @@
+package main.zenit.zencodearea;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import main.zenit.util.Tuple;
+
+/**
+ * Computes which paragraphs of a document change style between two highlighting results, so
+ * that only those paragraphs have to be restyled and re-rendered by the code area.
+ * <p>
+ * Meant to run on a background thread; the result is a small batch of ranges that can be
+ * applied on the JavaFX application thread with
+ * {@link org.fxmisc.richtext.StyleClassedTextArea#setStyleSpans(int, StyleSpans)}.
+ * </p>
+ */
+public final class StyleSpansDiff {
+
+	private StyleSpansDiff() {
+	}
+
+	/**
+	 * Styles the tokens of a snapshot with the given semantic information, e.g. to recreate
+	 * the styles currently shown for the snapshot text.
+	 *
+	 * @param snapshot The analyzed document.
+	 * @param facts The semantic information used to style identifiers.
+	 * @return The style spans for the whole text.
+	 */
+	public static StyleSpans<Collection<String>> styleTokens(DocumentSnapshot snapshot, SemanticAnalyzer facts) {
+		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+		int lastIndex = 0;
+
+		for (Token token : snapshot.getTokens()) {
+			if (token.getType() == Token.EOF) {
+				break;
+			}
+			int startIndex = token.getStartIndex();
+			int stopIndex = token.getStopIndex() + 1;
+
+			spansBuilder.add(Collections.emptyList(), startIndex - lastIndex);
+			spansBuilder.add(Collections.singleton(
+					ZenCodeArea.getStyleForToken(token.getType(), token.getText(), facts)), stopIndex - startIndex);
+			lastIndex = stopIndex;
+		}
+		spansBuilder.add(Collections.emptyList(), snapshot.getText().length() - lastIndex);
+		return spansBuilder.create();
+	}
+
+	/**
+	 * Compares two highlighting results for the same text.
+	 *
+	 * @param text The highlighted text.
+	 * @param previous The styles currently applied to the text.
+	 * @param updated The new styles for the text.
+	 * @return The offset and new styles of every run of consecutive paragraphs whose styling
+	 * differs, in document order. Empty if nothing changed.
+	 */
+	public static List<Tuple<Integer, StyleSpans<Collection<String>>>> changedParagraphs(String text,
+			StyleSpans<Collection<String>> previous, StyleSpans<Collection<String>> updated) {
+		List<Tuple<Integer, StyleSpans<Collection<String>>>> changes = new ArrayList<>();
+		int length = Math.min(text.length(), Math.min(previous.length(), updated.length()));
+
+		Iterator<StyleSpan<Collection<String>>> oldSpans = previous.iterator();
+		Iterator<StyleSpan<Collection<String>>> newSpans = updated.iterator();
+		StyleSpan<Collection<String>> oldSpan = oldSpans.next();
+		StyleSpan<Collection<String>> newSpan = newSpans.next();
+		int oldEnd = oldSpan.getLength();
+		int newEnd = newSpan.getLength();
+
+		int position = 0;
+		int changeFrom = -1;
+		int changeTo = -1;
+		Slicer slicer = new Slicer(updated);
+
+		while (position < length) {
+			int next = Math.min(oldEnd, newEnd);
+
+			if (!oldSpan.getStyle().equals(newSpan.getStyle()) && next > position) {
+				int from = text.lastIndexOf('\n', position - 1) + 1;
+				int to = text.indexOf('\n', next - 1);
+				to = to == -1 ? length : Math.min(to + 1, length);
+
+				if (changeFrom != -1 && from > changeTo) {
+					changes.add(new Tuple<>(changeFrom, slicer.slice(changeFrom, changeTo)));
+					changeFrom = -1;
+				}
+				if (changeFrom == -1) {
+					changeFrom = from;
+				}
+				changeTo = Math.max(changeTo, to);
+			}
+
+			position = next;
+			if (position == oldEnd && oldSpans.hasNext()) {
+				oldSpan = oldSpans.next();
+				oldEnd += oldSpan.getLength();
+			}
+			if (position == newEnd && newSpans.hasNext()) {
+				newSpan = newSpans.next();
+				newEnd += newSpan.getLength();
+			}
+		}
+
+		if (changeFrom != -1) {
+			changes.add(new Tuple<>(changeFrom, slicer.slice(changeFrom, changeTo)));
+		}
+		return changes;
+	}
+
+	/**
+	 * Cuts consecutive ranges out of style spans. Unlike {@link StyleSpans#subView(int, int)},
+	 * which searches from the first span every time, the slicer continues where the previous
+	 * range ended, so cutting all changed ranges of a document takes linear time.
+	 */
+	private static class Slicer {
+		private final StyleSpans<Collection<String>> spans;
+		private int index;
+		private int spanStart;
+
+		private Slicer(StyleSpans<Collection<String>> spans) {
+			this.spans = spans;
+		}
+
+		/**
+		 * @param from The start of the range, not before the end of the previous range.
+		 * @param to The end of the range.
+		 * @return The styles of the range.
+		 */
+		private StyleSpans<Collection<String>> slice(int from, int to) {
+			while (index < spans.getSpanCount() - 1 && spanStart + spans.getStyleSpan(index).getLength() <= from) {
+				spanStart += spans.getStyleSpan(index).getLength();
+				index++;
+			}
+
+			StyleSpansBuilder<Collection<String>> builder = new StyleSpansBuilder<>();
+			int position = from;
+			int i = index;
+			int start = spanStart;
+
+			while (position < to && i < spans.getSpanCount()) {
+				StyleSpan<Collection<String>> span = spans.getStyleSpan(i);
+				int end = Math.min(start + span.getLength(), to);
+				builder.add(span.getStyle(), end - position);
+				position = end;
+				if (end == start + span.getLength()) {
+					start = end;
+					i++;
+				}
+			}
+			if (position < to) {
+				builder.add(Collections.emptyList(), to - position);
+			}
+			return builder.create();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package main.zenit.zencodearea;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import javafx.application.Platform;
+import org.fxmisc.richtext.model.StyleSpans;
+
+/**
+ * Applies the style spans of a large document viewport first.
+ * <p>
+ * The document is split into fixed-size chunks. The chunks covering the visible paragraphs
+ * are styled right away, the remaining ones are styled one chunk per event loop pass, closest
+ * to the viewport first, so that input and scrolling stay responsive in between. Scrolling
+ * styles the newly visible chunks immediately and the fill can be cancelled at any time, e.g.
+ * when the text is edited and the spans no longer match it.
+ * </p>
+ * <p>
+ * All methods must be called on the JavaFX application thread.
+ * </p>
+ */
+public class ViewportStyleFill {
+	/**
+	 * Number of characters styled by each step of the background fill.
+	 */
+	public static final int CHUNK_SIZE = 16_384;
+
+	private final ZenCodeArea area;
+	private final StyleSpans<Collection<String>> spans;
+	private final int chunkCount;
+	private final BitSet styled;
+	private boolean cancelled;
+	private boolean stepScheduled;
+
+	/**
+	 * @param area The code area to style.
+	 * @param spans The style spans of the whole text of the area.
+	 */
+	public ViewportStyleFill(ZenCodeArea area, StyleSpans<Collection<String>> spans) {
+		this.area = area;
+		this.spans = spans;
+		this.chunkCount = Math.max(1, (spans.length() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		this.styled = new BitSet(chunkCount);
+	}
+
+	/**
+	 * Styles the visible chunks and schedules the rest of the document.
+	 */
+	public void start() {
+		viewportChanged();
+	}
+
+	/**
+	 * Styles chunks that scrolled into view and moves the background fill to them.
+	 */
+	public void viewportChanged() {
+		if (isDone()) {
+			return;
+		}
+
+		int[] visible = visibleChunks();
+		for (int chunk = visible[0]; chunk <= visible[1]; chunk++) {
+			apply(chunk);
+		}
+		scheduleStep();
+	}
+
+	/**
+	 * Stops the fill. Chunks that are not styled yet keep their old styles.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return {@code true} if the fill was cancelled before styling every chunk.
+	 */
+	public boolean isIncomplete() {
+		return cancelled && styled.cardinality() < chunkCount;
+	}
+
+	private boolean isDone() {
+		return cancelled || styled.cardinality() == chunkCount;
+	}
+
+	private void scheduleStep() {
+		if (!stepScheduled && !isDone()) {
+			stepScheduled = true;
+			Platform.runLater(this::step);
+		}
+	}
+
+	/**
+	 * Styles the unstyled chunk closest to the viewport.
+	 */
+	private void step() {
+		stepScheduled = false;
+		if (isDone()) {
+			return;
+		}
+
+		int[] visible = visibleChunks();
+		int before = styled.previousClearBit(visible[0]);
+		int after = styled.nextClearBit(visible[1]);
+
+		if (after >= chunkCount || (before >= 0 && visible[0] - before < after - visible[1])) {
+			apply(before);
+		} else {
+			apply(after);
+		}
+		scheduleStep();
+	}
+
+	private void apply(int chunk) {
+		if (styled.get(chunk)) {
+			return;
+		}
+
+		int from = chunk * CHUNK_SIZE;
+		int to = Math.min(from + CHUNK_SIZE, spans.length());
+		if (from < to) {
+			area.setStyleSpans(from, spans.subView(from, to));
+		}
+		styled.set(chunk);
+	}
+
+	/**
+	 * @return The first and last chunk covering the visible paragraphs.
+	 */
+	private int[] visibleChunks() {
+		int visibleCount = area.getVisibleParagraphs().size();
+		if (visibleCount == 0) {
+			return new int[] {0, 0};
+		}
+
+		int firstParagraph = area.visibleParToAllParIndex(0);
+		int lastParagraph = area.visibleParToAllParIndex(visibleCount - 1);
+		int from = area.getAbsolutePosition(firstParagraph, 0);
+		int to = area.getAbsolutePosition(lastParagraph, area.getParagraphLength(lastParagraph));
+
+		return new int[] {
+			Math.min(from / CHUNK_SIZE, chunkCount - 1),
+			Math.min(to / CHUNK_SIZE, chunkCount - 1)
+		};
+	}
+}
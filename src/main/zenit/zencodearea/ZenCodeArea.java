@@ -1,29 +1,29 @@
 package main.zenit.zencodearea;
 
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ChangeListener;
 import javafx.concurrent.Task;
 
 import main.zenit.ui.FileTab;
-import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.Token;
-
+import main.zenit.util.Tuple;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
+import org.fxmisc.richtext.model.PlainTextChange;
 import org.fxmisc.richtext.model.StyleSpans;
-import org.fxmisc.richtext.model.StyleSpansBuilder;
-import org.fxmisc.wellbehaved.event.EventPattern;
-import org.fxmisc.wellbehaved.event.InputMap;
-import org.fxmisc.wellbehaved.event.Nodes;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import org.fxmisc.richtext.util.UndoUtils;
+import org.fxmisc.undo.impl.UndoManagerImpl;
+import org.reactfx.EventSource;
+import org.reactfx.EventStream;
+import org.reactfx.EventStreams;
+import org.reactfx.Subscription;
 
-import generated.JavaParser;
 import generated.JavaLexer;
 
 /**
@@ -31,25 +31,54 @@ import generated.JavaLexer;
  * It provides syntax highlighting and semantic analysis for Java code.
  *
  * The class uses ANTLR for lexical and syntactic analysis and provides
- * asynchronous syntax highlighting to improve performance.
+ * asynchronous syntax highlighting to improve performance. Edits are re-lexed
+ * incrementally by an {@link IncrementalHighlighter}, so only the changed
+ * paragraphs are restyled on each keystroke. Every text version is lexed and
+ * parsed at most once into a {@link DocumentSnapshot}, which is published
+ * through {@link #snapshotProperty()} for the rest of the IDE to consume.
+ * The duration of every highlighting phase is kept in {@link #getMetrics()}.
  *
  * The class also supports updating the appearance of the code area
- * and handling indentation with the TAB key.
+ * and installs the key bindings of {@link ZenKeymap#DEFAULT}, such as
+ * indentation with the TAB key.
  * @author Philip Boyde
  */
 public class ZenCodeArea extends CodeArea {
-	private final ExecutorService executor;
-	private JavaClassType oldJClass;
+	/**
+	 * Edits inserting more characters than this are left to the background pass.
+	 */
+	private static final int SYNC_RELEX_LIMIT = 100_000;
+
+	/**
+	 * Documents longer than this are restyled viewport first, see {@link ViewportStyleFill}.
+	 */
+	private static final int VIEWPORT_FIRST_LIMIT = 200_000;
+
+	private final Subscription subscriptions;
+	private IncrementalHighlighter highlighter = new IncrementalHighlighter();
+	private boolean relexScheduled;
+	private ViewportStyleFill fill;
+	private long version;
+	private boolean highlightingSuspended;
+	private final EventSource<Object> resumed = new EventSource<>();
+	private final ReadOnlyObjectWrapper<DocumentSnapshot> snapshot = new ReadOnlyObjectWrapper<>();
+	private final HighlightingMetrics metrics = new HighlightingMetrics();
+	private final BoundedChangeQueue<List<PlainTextChange>> undoHistory =
+			new BoundedChangeQueue<>(getUndoHistoryBudget(), ZenCodeArea::sizeOf);
+	private int compoundDepth;
 	private FileTab tab;
+	private final ChangeListener<Boolean> foregroundListener = (observable, wasSelected, selected) ->
+			AnalysisScheduler.getInstance().setForeground(this, selected);
 
 	/**
 	 * Constructs a {@code ZenCodeArea} with the specified text size and font.
 	 * <p>
 	 * This constructor initializes the code area with line numbers and sets up
-	 * asynchronous syntax highlighting. The highlighting task is scheduled to
-	 * run after a short delay whenever the text changes, ensuring that updates
-	 * do not block the UI thread. The method also initializes a single-threaded
-	 * executor for background tasks and applies the given font and text size.
+	 * syntax highlighting. Every edit is re-lexed incrementally in the next pulse,
+	 * while the semantic analysis is scheduled to run after a short delay whenever
+	 * the text changes, ensuring that updates do not block the UI thread. The analysis
+	 * runs on the shared {@link AnalysisScheduler}. The method also applies the given
+	 * font and text size.
 	 * </p>
 	 *
 	 * @author Philip Boyde
@@ -59,8 +88,18 @@ public class ZenCodeArea extends CodeArea {
 	public ZenCodeArea(int textSize, String font) {
 		setParagraphGraphicFactory(LineNumberFactory.get(this));
 
-		// Async syntax highlighting
-		multiPlainChanges().successionEnds(Duration.ofMillis(200))
+		// Incremental lexical highlighting of the edited paragraphs
+		Subscription relexing = plainTextChanges().subscribe(this::paragraphsChanged);
+
+		// Paragraphs scrolled into view are styled before the rest of a large document
+		Subscription viewport = viewportDirtyEvents().subscribe(e -> {
+			if (fill != null) fill.viewportChanged();
+		});
+
+		// Async semantic highlighting, held back while highlighting is suspended
+		EventStream<Object> edits = multiPlainChanges().successionEnds(Duration.ofMillis(200))
+				.filter(changes -> !highlightingSuspended).map(changes -> changes);
+		Subscription analysis = EventStreams.merge(edits, resumed)
 				.supplyTask(this::computeHighlightingAsync)
 				.awaitLatest(multiPlainChanges())  // Ensures that the task runs only after the last change is finished
 				.filterMap(t -> {
@@ -70,8 +109,15 @@ public class ZenCodeArea extends CodeArea {
 				})
 				.subscribe(this::applyHighlighting);
 
+		subscriptions = relexing.and(viewport).and(analysis);
 
-		executor = Executors.newSingleThreadExecutor();
+		// Undo history limited by memory, with typing on a line merged into one change
+		getUndoManager().close();
+		setUndoManager(new UndoManagerImpl<>(undoHistory, ZenCodeArea::invert,
+				UndoUtils.applyMultiPlainTextChange(this), this::merge,
+				changes -> changes.stream().allMatch(PlainTextChange::isIdentity), multiPlainChanges()));
+
+		ZenKeymap.DEFAULT.install(this);
 		updateAppearance(font, textSize);
 	}
 
@@ -88,31 +134,294 @@ public class ZenCodeArea extends CodeArea {
 		return computeHighlighting(getText());
 	}
 
+	/**
+	 * @return The latest analyzed version of the text. It may lag behind the text while the
+	 * user is typing, see {@link #isCurrent(DocumentSnapshot)}.
+	 */
+	public DocumentSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+	 * @return A property holding the latest {@link DocumentSnapshot}, updated on the JavaFX
+	 * application thread.
+	 */
+	public ReadOnlyObjectProperty<DocumentSnapshot> snapshotProperty() {
+		return snapshot.getReadOnlyProperty();
+	}
+
+	/**
+	 * Stops or restarts highlighting, e.g. while a file is streamed into the code area. While
+	 * suspended, edits are neither re-lexed nor analyzed. When resumed, the whole text is
+	 * analyzed and highlighted once.
+	 *
+	 * @param suspended {@code true} to stop highlighting, {@code false} to restart it.
+	 */
+	public void setHighlightingSuspended(boolean suspended) {
+		if (highlightingSuspended && !suspended) {
+			highlightingSuspended = false;
+			resumed.push(version);
+		}
+		highlightingSuspended = suspended;
+	}
+
+	/**
+	 * @return The latency statistics of the highlighting phases of this code area.
+	 */
+	public HighlightingMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @param snapshot The snapshot to check.
+	 * @return {@code true} if the snapshot was created from the current text.
+	 */
+	public boolean isCurrent(DocumentSnapshot snapshot) {
+		return snapshot != null && snapshot.getVersion() == version;
+	}
+
+	/**
+	 * Returns the most memory the undo history of a code area may take, set in kilobytes
+	 * with the system property {@code zenit.undoHistoryKB}. Defaults to 8 MB. When the
+	 * history grows larger, the oldest changes are forgotten.
+	 */
+	public static long getUndoHistoryBudget() {
+		return Math.max(1, Long.getLong("zenit.undoHistoryKB", 8 * 1024)) * 1024;
+	}
+
+	/**
+	 * @return The estimated memory, in bytes, taken by the undo history of this code area.
+	 */
+	public long getUndoHistorySize() {
+		return undoHistory.getSize();
+	}
+
+	/**
+	 * @return The number of changes that can be undone or redone.
+	 */
+	public int getUndoHistoryCount() {
+		return undoHistory.getChangeCount();
+	}
+
+	/**
+	 * Makes several edits that are undone and redone as one change, e.g. an edit of several
+	 * lines. The edits are not merged with the changes before or after them.
+	 *
+	 * @param edits Edits the code area.
+	 */
+	public void compound(Runnable edits) {
+		if (compoundDepth == 0) {
+			getUndoManager().preventMerge();
+		}
+		compoundDepth++;
+		try {
+			edits.run();
+		} finally {
+			compoundDepth--;
+			if (compoundDepth == 0) {
+				getUndoManager().preventMerge();
+			}
+		}
+	}
+
+	/**
+	 * Merges a change into the previous change of the undo history. All changes made in
+	 * {@link #compound(Runnable)} are merged, otherwise only characters typed or deleted
+	 * next to the previous change on the same line.
+	 */
+	private Optional<List<PlainTextChange>> merge(List<PlainTextChange> older, List<PlainTextChange> newer) {
+		if (compoundDepth > 0) {
+			List<PlainTextChange> merged = new ArrayList<>(older);
+			for (PlainTextChange change : newer) {
+				Optional<PlainTextChange> joined = merged.isEmpty() ? Optional.empty()
+						: merged.get(merged.size() - 1).mergeWith(change);
+				if (joined.isPresent()) {
+					merged.set(merged.size() - 1, joined.get());
+				} else {
+					merged.add(change);
+				}
+			}
+			merged.removeIf(PlainTextChange::isIdentity);
+			return Optional.of(merged);
+		}
+
+		if (older.size() == 1 && newer.size() == 1 && isOnOneLine(older.get(0)) && isOnOneLine(newer.get(0))
+				&& newer.get(0).getInserted().length() <= 1 && newer.get(0).getRemoved().length() <= 1) {
+			return older.get(0).mergeWith(newer.get(0)).map(Collections::singletonList);
+		}
+		return Optional.empty();
+	}
+
+	private static boolean isOnOneLine(PlainTextChange change) {
+		return change.getInserted().indexOf('\n') == -1 && change.getRemoved().indexOf('\n') == -1;
+	}
+
+	private static List<PlainTextChange> invert(List<PlainTextChange> changes) {
+		List<PlainTextChange> inverted = new ArrayList<>(changes.size());
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			inverted.add(changes.get(i).invert());
+		}
+		return inverted;
+	}
+
+	/**
+	 * Estimates the memory taken by a change of the undo history: its text and the objects
+	 * holding it.
+	 */
+	private static long sizeOf(List<PlainTextChange> changes) {
+		long size = 32;
+		for (PlainTextChange change : changes) {
+			size += 64 + 2L * (change.getRemoved().length() + change.getInserted().length());
+		}
+		return size;
+	}
+
+	/**
+	 * Makes many edits to the text as one change, see {@link #applyEdits(PieceTable)}.
+	 *
+	 * @param edits Edits a piece table of the current text.
+	 */
+	public void edit(Consumer<PieceTable> edits) {
+		PieceTable document = new PieceTable(getText());
+		edits.accept(document);
+		applyEdits(document);
+	}
+
+	/**
+	 * Applies the edits made to a {@link PieceTable} of the text as one change, which is
+	 * undone in one step and re-highlighted once. Only the range changed by the edits is
+	 * replaced, so the paragraphs and styles around it are kept.
+	 *
+	 * @param document A piece table created from the current text of the code area.
+	 * @throws IllegalArgumentException If the code area was edited after the piece table
+	 * was created.
+	 */
+	public void applyEdits(PieceTable document) {
+		if (document.getOriginalLength() != getLength()) {
+			throw new IllegalArgumentException("The piece table wasn't created from the current text");
+		}
+		if (document.isChanged()) {
+			replaceText(document.getChangeStart(), document.getReplacedEnd(), document.getChangedText());
+		}
+	}
+
+
+
+	/**
+	 * Gives a range back its syntax highlighting, e.g. after it was styled as a search match
+	 * or a compiler error. The paragraphs of the range are lexed again with the current
+	 * semantic information, the rest of the document is left alone.
+	 * <p>
+	 * If a full highlighting pass is pending, the range is only cleared, since that pass
+	 * restyles the whole document anyway.
+	 * </p>
+	 *
+	 * @param from The start of the range.
+	 * @param to The end of the range.
+	 */
+	public void restoreHighlighting(int from, int to) {
+		from = Math.max(0, Math.min(from, getLength()));
+		to = Math.max(from, Math.min(to, getLength()));
+
+		int first = offsetToPosition(from, Bias.Forward).getMajor();
+		int last = offsetToPosition(to, Bias.Backward).getMajor();
+		Tuple<Integer, Integer> paragraphs = highlighter.cleanParagraphsAround(first, last);
+		if (paragraphs == null) {
+			clearStyle(from, to);
+			return;
+		}
+
+		int start = getAbsolutePosition(paragraphs.fst(), 0);
+		int end = paragraphs.snd() < getParagraphs().size() ? getAbsolutePosition(paragraphs.snd(), 0) : getLength();
+		setStyleSpans(start, highlighter.style(getText(start, end)));
+	}
+
+	/**
+	 * Updates the paragraph snapshots of the {@link IncrementalHighlighter} after an edit
+	 * and schedules the dirty paragraphs to be re-lexed in the next pulse. Changes made
+	 * before that pulse are coalesced into a single re-lex.
+	 *
+	 * @param change The change made to the text.
+	 */
+	private void paragraphsChanged(PlainTextChange change) {
+		version++;
+		if (fill != null) {
+			fill.cancel(); // The pending spans no longer match the text
+		}
+
+		if (highlightingSuspended || change.getInserted().length() > SYNC_RELEX_LIMIT) {
+			highlighter.invalidate();
+			return;
+		}
 
+		int paragraph = offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+		highlighter.paragraphsChanged(paragraph, countLines(change.getRemoved()), countLines(change.getInserted()));
+
+		if (!relexScheduled) {
+			relexScheduled = true;
+			Platform.runLater(this::applyIncrementalHighlighting);
+		}
+	}
+
+	/**
+	 * Re-lexes the dirty paragraphs and restyles only the range that changed.
+	 */
+	private void applyIncrementalHighlighting() {
+		relexScheduled = false;
+
+		long start = System.nanoTime();
+		Tuple<Integer, StyleSpans<Collection<String>>> range = highlighter.relex(getText());
+		if (range != null) {
+			setStyleSpans(range.fst(), range.snd());
+			metrics.record(HighlightingMetrics.Phase.RELEX, System.nanoTime() - start);
+		}
+	}
+
+	private static int countLines(String text) {
+		int lines = 0;
+		for (int i = text.indexOf('\n'); i != -1; i = text.indexOf('\n', i + 1)) {
+			lines++;
+		}
+		return lines;
+	}
 
 	/**
 	 * Computes syntax highlighting asynchronously.
 	 * <p>
 	 * This method retrieves the current text from the editor and creates a {@link Task}
-	 * that runs the syntax highlighting computation in a background thread. The task
-	 * is executed using the single-threaded executor to ensure that syntax highlighting
-	 * does not block the UI thread.
+	 * that creates the {@link DocumentSnapshot} and a full highlighting pass in a background thread.
+	 * If the semantic information changed, the new styles are compared with the styles currently
+	 * shown, which are the lexical styles with the previous semantic information, so that only the
+	 * paragraphs that actually change have to be restyled.
+	 * The task is executed by the shared {@link AnalysisScheduler}, ahead of background tabs if
+	 * this area is in the selected tab, and supersedes the task of any older text version.
 	 * </p>
 	 *
 	 * @author Philip Boyde
-	 * @return A {@link Task} that will compute and return the {@link StyleSpans}
-	 *  containing syntax highlighting information.
+	 * @return A {@link Task} that will compute and return the {@link Highlighting} of the text.
 	 */
 
-	private Task<StyleSpans<Collection<String>>> computeHighlightingAsync() {
+	private Task<Highlighting> computeHighlightingAsync() {
 		String text = getText();
-		Task<StyleSpans<Collection<String>>> task = new Task<>() {
+		long textVersion = version;
+		SemanticAnalyzer shownFacts = highlighter.getFacts();
+		Task<Highlighting> task = new Task<>() {
 			@Override
-			protected StyleSpans<Collection<String>> call() {
-				return computeHighlighting(text);
+			protected Highlighting call() {
+				DocumentSnapshot analyzed = DocumentSnapshot.analyze(textVersion, text, metrics);
+
+				long start = System.nanoTime();
+				IncrementalHighlighter fresh = new IncrementalHighlighter();
+				StyleSpans<Collection<String>> spans = fresh.highlightAll(analyzed);
+
+				List<Tuple<Integer, StyleSpans<Collection<String>>>> changes = analyzed.getFacts().hasSameNames(shownFacts)
+						? Collections.emptyList()
+						: StyleSpansDiff.changedParagraphs(text, StyleSpansDiff.styleTokens(analyzed, shownFacts), spans);
+				metrics.record(HighlightingMetrics.Phase.STYLE, System.nanoTime() - start);
+				return new Highlighting(fresh, spans, changes);
 			}
 		};
-		executor.execute(task);
+		AnalysisScheduler.getInstance().submit(this, textVersion, tab == null || tab.isSelected(), task);
 		return task;
 
 	}
@@ -120,43 +429,43 @@ public class ZenCodeArea extends CodeArea {
 
 
 	/**
-	 * Applies syntax highlighting and sets up key bindings for indentation and auto-closing braces.
+	 * Applies syntax highlighting.
 	 * <p>
-	 * This method applies syntax highlighting to the text area using the provided {@link StyleSpans}.
-	 * Additionally, it sets up custom key bindings for better code editing experience:
+	 * This method publishes the new {@link DocumentSnapshot} and adopts the highlighter computed
+	 * in the background. Since the incremental pass already keeps the lexical styling up to date,
+	 * normally only the paragraphs whose styles changed with the semantic information are restyled.
+	 * The whole document is only restyled if the incremental snapshots were invalidated or an
+	 * earlier restyle was interrupted; large documents viewport first by a {@link ViewportStyleFill}.
 	 * </p>
-	 * <ul>
-	 *     <li><b>Tab key ({@code TAB}):</b> Inserts four spaces instead of moving focus.</li>
-	 *     <li><b>Auto-closing braces (When {@code { }} is typed, it automatically inserts a matching closing brace with a space in between and moves the caret inside. )</li>
-	 * </ul>
 	 *
 	 * @author Philip Boyde
-	 * @param highlighting The {@link StyleSpans} containing syntax highlighting information.
-	 * @return The {@link StyleSpans} object with syntax highlighting applied for testing
+	 * @param result The {@link Highlighting} computed in the background.
 	 */
 
-	private StyleSpans<Collection<String>> applyHighlighting(StyleSpans<Collection<String>> highlighting) {
-		setStyleSpans(0, highlighting);
-
-		// TAB Key for indentation
-		InputMap<KeyEvent> imTab = InputMap.consume(
-				EventPattern.keyPressed(KeyCode.TAB),
-				e -> this.replaceSelection("    ")
-		);
-
-		// Auto-closing braces: When { is typed, insert "{ }" and move the caret inside
-		InputMap<KeyEvent> imBraces = InputMap.consume(
-				EventPattern.keyTyped().onlyIf(e -> e.getCharacter().equals("{")),
-				e -> {
-					this.replaceSelection("{ }");
-					this.moveTo(this.getCaretPosition() - 2); // Move caret inside the braces
-				}
-		);
+	private void applyHighlighting(Highlighting result) {
+		long start = System.nanoTime();
+		boolean repaint = highlighter.isInvalid() || (fill != null && fill.isIncomplete());
 
+		highlighter = result.highlighter;
+		if (repaint) {
+			if (fill != null) {
+				fill.cancel();
+				fill = null;
+			}
 
-		Nodes.addInputMap(this, imTab);
-		Nodes.addInputMap(this, imBraces);
-		return highlighting;
+			if (result.spans.length() > VIEWPORT_FIRST_LIMIT) {
+				fill = new ViewportStyleFill(this, result.spans);
+				fill.start();
+			} else {
+				setStyleSpans(0, result.spans);
+			}
+		} else {
+			for (Tuple<Integer, StyleSpans<Collection<String>>> change : result.changes) {
+				setStyleSpans(change.fst(), change.snd());
+			}
+		}
+		metrics.record(HighlightingMetrics.Phase.APPLY, System.nanoTime() - start);
+		snapshot.set(highlighter.getSnapshot());
 	}
 
 
@@ -164,10 +473,10 @@ public class ZenCodeArea extends CodeArea {
 	/**
 	 * Computes syntax highlighting for a given Java source code snippet.
 	 * <p>
-	 * This method tokenizes the input text, analyzes its semantic structure using an ANTLR-based
-	 * parser, and assigns appropriate syntax highlighting styles to each token. The highlighting
-	 * information is returned as a {@link StyleSpans} object, where each span is associated
-	 * with a collection of style classes.
+	 * This method analyzes the semantic structure of the input text using an ANTLR-based
+	 * parser, then tokenizes it and assigns appropriate syntax highlighting styles to each token.
+	 * The highlighting information is returned as a {@link StyleSpans} object, where each span
+	 * is associated with a collection of style classes.
 	 * </p>
 	 *
 	 * @author Philip Boyde
@@ -175,58 +484,7 @@ public class ZenCodeArea extends CodeArea {
 	 * @return A {@link StyleSpans} object containing style information for syntax highlighting.
 	 */
 	public StyleSpans<Collection<String>> computeHighlighting(String text) {
-		StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-		List<Token> tokens = tokenize(text);
-
-		// Analyze code for semantic information
-		SemanticAnalyzer analyzer = new SemanticAnalyzer();
-		CharStream input = CharStreams.fromString(text);
-		JavaLexer lexer = new JavaLexer(input);
-		CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-		JavaParser parser = new JavaParser(tokenStream);
-		ParseTreeWalker.DEFAULT.walk(analyzer, parser.compilationUnit());
-
-		int lastIndex = 0;
-		for (Token token : tokens) {
-			String styleClass = getStyleForToken(token.getType(), token.getText(), analyzer);
-
-			int startIndex = token.getStartIndex();
-			int stopIndex = token.getStopIndex() + 1;
-			spansBuilder.add(Collections.emptyList(), startIndex - lastIndex);
-			spansBuilder.add(Collections.singleton(styleClass), stopIndex - startIndex);
-			lastIndex = stopIndex;
-		}
-
-		spansBuilder.add(Collections.emptyList(), text.length() - lastIndex);
-
-		return spansBuilder.create();
-	}
-
-	/**
-	 * Tokenizes a given Java source code string.
-	 * <p>
-	 * This method uses ANTLR to tokenize the provided Java source code. It creates a lexer
-	 * and parser, processes the input, and returns a list of tokens. Additionally, it
-	 * performs semantic analysis by walking the abstract syntax tree (AST).
-	 * </p>
-	 *
-	 * @author Philip Boyde
-	 * @param code The Java source code to tokenize.
-	 * @return A {@link List} of {@link Token} objects representing the lexical tokens in the source code.
-	 */
-	private static List<Token> tokenize(String code) {
-		CharStream input = CharStreams.fromString(code);
-		JavaLexer lexer = new JavaLexer(input);
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
-		JavaParser parser = new JavaParser(tokens);
-
-		parser.removeErrorListeners(); // Disable default error handling
-
-		ParseTree tree = parser.compilationUnit(); // Start parsing
-		SemanticAnalyzer analyzer = new SemanticAnalyzer();
-		ParseTreeWalker.DEFAULT.walk(analyzer, tree); // Walk the AST
-
-		return tokens.getTokens(); // Return the tokenized list
+		return new IncrementalHighlighter().highlightAll(DocumentSnapshot.analyze(version, text));
 	}
 
 	/**
@@ -261,7 +519,7 @@ public class ZenCodeArea extends CodeArea {
 	 * @param analyzer    The {@link SemanticAnalyzer} used to identify class names, method names, and variables.
 	 * @return A string representing the CSS style class for syntax highlighting.
 	 */
-	private static String getStyleForToken(int tokenType, String tokenText, SemanticAnalyzer analyzer) {
+	static String getStyleForToken(int tokenType, String tokenText, SemanticAnalyzer analyzer) {
 		if (analyzer.getClassNames().contains(tokenText)) {
 			return "class-name";
 		} else if (analyzer.getMethodNames().contains(tokenText)) {
@@ -314,6 +572,27 @@ public class ZenCodeArea extends CodeArea {
 		};
 	}
 
+	/**
+	 * The result of a background highlighting pass.
+	 */
+	private static class Highlighting {
+		private final IncrementalHighlighter highlighter;
+		private final StyleSpans<Collection<String>> spans;
+		private final List<Tuple<Integer, StyleSpans<Collection<String>>>> changes;
+
+		/**
+		 * @param highlighter A fresh highlighter for the analyzed text.
+		 * @param spans The styles for the whole text.
+		 * @param changes The paragraphs whose styles differ from the styles currently shown.
+		 */
+		private Highlighting(IncrementalHighlighter highlighter, StyleSpans<Collection<String>> spans,
+				List<Tuple<Integer, StyleSpans<Collection<String>>>> changes) {
+			this.highlighter = highlighter;
+			this.spans = spans;
+			this.changes = changes;
+		}
+	}
+
 	/**
 	 * Updates the appearance of the code area with the specified font family and size.
 	 *
@@ -323,5 +602,37 @@ public class ZenCodeArea extends CodeArea {
 	public void updateAppearance(String fontFamily, int size) {setStyle("-fx-font-family: " + fontFamily + "; -fx-font-size: " + size + ";");}
 
 
-	public void setTabAssociation(FileTab tab){this.tab =  tab;}
+	/**
+	 * Associates the code area with its tab. The analysis of the selected tab runs before that
+	 * of background tabs.
+	 *
+	 * @param tab The tab showing this code area.
+	 */
+	public void setTabAssociation(FileTab tab) {
+		this.tab = tab;
+		tab.selectedProperty().addListener(foregroundListener);
+	}
+
+	/**
+	 * @return The tab showing this code area, or {@code null} if it is not shown in a tab.
+	 */
+	public FileTab getTab() {
+		return tab;
+	}
+
+	/**
+	 * Stops all highlighting work of this code area and cancels its pending analysis. Called
+	 * when its tab is closed or hibernated; the code area is not highlighted anymore afterwards.
+	 */
+	public void shutdown() {
+		if (tab != null) {
+			tab.selectedProperty().removeListener(foregroundListener); // The tab may outlive this code area
+		}
+		subscriptions.unsubscribe();
+		AnalysisScheduler.getInstance().cancel(this);
+		if (fill != null) {
+			fill.cancel();
+			fill = null;
+		}
+	}
 }
\ No newline at end of file
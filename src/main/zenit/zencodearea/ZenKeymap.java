@@ -0,0 +1,137 @@
+package main.zenit.zencodearea;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+import org.fxmisc.wellbehaved.event.EventPattern;
+import org.fxmisc.wellbehaved.event.InputMap;
+import org.fxmisc.wellbehaved.event.Nodes;
+
+/**
+ * Declarative registry of the key bindings of a {@link ZenCodeArea}.
+ * <p>
+ * Bindings are declared once, and {@link #install(ZenCodeArea)} adds all of them to a code
+ * area as a single {@link InputMap}. A code area installs its keymap exactly once, in its
+ * constructor, so the event handler chain does not grow while the code area is in use.
+ * </p>
+ * <p>
+ * The {@link #DEFAULT} keymap covers:
+ * </p>
+ * <ul>
+ *     <li><b>Tab key ({@code TAB}):</b> Inserts four spaces instead of moving focus.</li>
+ *     <li><b>Auto-closing braces:</b> When <code>{</code> is typed, a matching closing brace is
+ *     inserted with a space in between and the caret is moved inside.</li>
+ * </ul>
+ * <p>
+ * Keys that also work outside of the code area, such as {@code Ctrl+Space} for expanding
+ * shortcuts and {@code Shortcut+7} for toggling comments, are accelerators of the main scene
+ * and menu instead, so they are not bound here.
+ * </p>
+ */
+public final class ZenKeymap {
+
+	/**
+	 * The bindings every {@link ZenCodeArea} is created with.
+	 */
+	public static final ZenKeymap DEFAULT = new ZenKeymap()
+			.bind(new KeyCodeCombination(KeyCode.TAB), area -> area.replaceSelection("    "))
+			.bindTyped("{", area -> {
+				area.replaceSelection("{ }");
+				area.moveTo(area.getCaretPosition() - 2); // Move caret inside the braces
+			});
+
+	private final List<Binding> bindings;
+
+	/**
+	 * Creates an empty keymap.
+	 */
+	public ZenKeymap() {
+		this(Collections.emptyList());
+	}
+
+	private ZenKeymap(List<Binding> bindings) {
+		this.bindings = bindings;
+	}
+
+	/**
+	 * Returns a keymap with an additional binding for a pressed key combination.
+	 *
+	 * @param combination The key combination.
+	 * @param action The action to run on the code area the key was pressed in.
+	 * @return A new keymap containing all bindings of this one and the new binding.
+	 */
+	public ZenKeymap bind(KeyCombination combination, Consumer<ZenCodeArea> action) {
+		return with(new Binding(KeyEvent.KEY_PRESSED, combination, null, action));
+	}
+
+	/**
+	 * Returns a keymap with an additional binding for a typed character.
+	 *
+	 * @param character The typed character.
+	 * @param action The action to run on the code area the character was typed in.
+	 * @return A new keymap containing all bindings of this one and the new binding.
+	 */
+	public ZenKeymap bindTyped(String character, Consumer<ZenCodeArea> action) {
+		return with(new Binding(KeyEvent.KEY_TYPED, null, character, action));
+	}
+
+	private ZenKeymap with(Binding binding) {
+		List<Binding> extended = new ArrayList<>(bindings);
+		extended.add(binding);
+		return new ZenKeymap(Collections.unmodifiableList(extended));
+	}
+
+	/**
+	 * @return The number of bindings in this keymap.
+	 */
+	public int size() {
+		return bindings.size();
+	}
+
+	/**
+	 * Adds all bindings to a code area as one {@link InputMap}. Bindings consume the key
+	 * events they handle.
+	 *
+	 * @param area The code area to install the keymap on.
+	 */
+	public void install(ZenCodeArea area) {
+		InputMap<KeyEvent> keymap = InputMap.empty();
+		for (Binding binding : bindings) {
+			keymap = keymap.orElse(InputMap.consume(binding.pattern(), e -> binding.action.accept(area)));
+		}
+		Nodes.addInputMap(area, keymap);
+	}
+
+	/**
+	 * A key or character bound to an action.
+	 */
+	private static class Binding {
+		private final EventType<KeyEvent> type;
+		private final KeyCombination combination;
+		private final String character;
+		private final Consumer<ZenCodeArea> action;
+
+		private Binding(EventType<KeyEvent> type, KeyCombination combination, String character,
+				Consumer<ZenCodeArea> action) {
+			this.type = type;
+			this.combination = combination;
+			this.character = character;
+			this.action = action;
+		}
+
+		private EventPattern<Event, KeyEvent> pattern() {
+			if (type == KeyEvent.KEY_TYPED) {
+				return EventPattern.keyTyped().onlyIf(e -> e.getCharacter().equals(character));
+			}
+			return EventPattern.keyPressed(combination);
+		}
+	}
+}
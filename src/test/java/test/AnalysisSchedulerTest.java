@@ -0,0 +1,62 @@
+package test;
+
+import main.zenit.zencodearea.AnalysisScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that the shared analysis scheduler only keeps the latest version of a
+ * document alive.
+ */
+class AnalysisSchedulerTest {
+
+    /**
+     * A running analysis is interrupted when a newer version of the document is submitted.
+     */
+    @Test
+    void newerVersionCancelsRunningAnalysis() throws Exception {
+        Object document = new Object();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        FutureTask<String> old = new FutureTask<>(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "old";
+        });
+        FutureTask<String> latest = new FutureTask<>(() -> "latest");
+
+        AnalysisScheduler.getInstance().submit(document, 1, true, old);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AnalysisScheduler.getInstance().submit(document, 2, true, latest);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(old.isCancelled());
+        assertEquals("latest", latest.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Cancelling a closed document stops its pending analysis.
+     */
+    @Test
+    void cancelStopsPendingAnalysis() {
+        Object document = new Object();
+        FutureTask<String> task = new FutureTask<>(() -> "done");
+
+        AnalysisScheduler.getInstance().submit(document, 1, false, task);
+        AnalysisScheduler.getInstance().cancel(document);
+
+        assertTrue(task.isDone());
+    }
+}
@@ -0,0 +1,145 @@
+package test;
+
+import main.zenit.javacodecompiler.CompileScheduler;
+import main.zenit.javacodecompiler.DebugErrorBuffer;
+import main.zenit.javacodecompiler.InProcessCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that the compiles of a project run one at a time, that compiles scheduled
+ * while one runs are replaced by the newest one, and that the running one is cancelled.
+ */
+class CompileSchedulerTest {
+
+    @TempDir
+    Path project;
+
+    private final CompileScheduler scheduler = CompileScheduler.getInstance();
+
+    /**
+     * Of the compiles scheduled while one runs, only the newest runs after it, and the one
+     * that was running learns that it has been cancelled.
+     */
+    @Test
+    void coalescesCompilesWhileOneRuns() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Long> ran = new CopyOnWriteArrayList<>();
+
+        long first = scheduler.submit(project.toFile(), version -> {
+            ran.add(version);
+            started.countDown();
+            await(release);
+            cancelled.set(CompileScheduler.isCancelled());
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.submit(project.toFile(), ran::add);
+        scheduler.submit(project.toFile(), ran::add);
+        long last = scheduler.submit(project.toFile(), version -> {
+            ran.add(version);
+            done.countDown();
+        });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(first, last), ran);
+        assertTrue(cancelled.get());
+        assertTrue(scheduler.isLatest(project.toFile(), last));
+        assertFalse(scheduler.isLatest(project.toFile(), first));
+    }
+
+    /**
+     * A running compile is stopped through the action it registered, e.g. killing its javac
+     * process, as soon as a newer compile is scheduled.
+     */
+    @Test
+    void runsCancelActionOfRunningCompile() throws InterruptedException {
+        CountDownLatch registered = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+
+        scheduler.submit(project.toFile(), version -> {
+            CompileScheduler.whenCancelled(stopped::countDown);
+            registered.countDown();
+            await(stopped);
+        });
+        assertTrue(registered.await(5, TimeUnit.SECONDS));
+
+        scheduler.submit(project.toFile(), version -> { });
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Compiles of different projects don't wait for each other.
+     */
+    @Test
+    void runsProjectsConcurrently() throws InterruptedException {
+        CountDownLatch both = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        scheduler.submit(project.resolve("a").toFile(), version -> {
+            both.countDown();
+            await(release);
+        });
+        scheduler.submit(project.resolve("b").toFile(), version -> {
+            both.countDown();
+            await(release);
+        });
+
+        assertTrue(both.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    /**
+     * A compile in Zenit's JVM that has been cancelled stops before it writes any class files.
+     */
+    @Test
+    void cancelledInProcessCompileStops() throws IOException, InterruptedException {
+        Path src = Files.createDirectories(project.resolve("src/app"));
+        Files.writeString(src.resolve("Main.java"), "package app;\npublic class Main {}\n");
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean compiled = new AtomicBoolean(true);
+
+        scheduler.submit(project.toFile(), version -> {
+            started.countDown();
+            await(release);
+            compiled.set(InProcessCompiler.compile(src.resolve("Main.java").toFile(), project.toFile(),
+                    "bin", "src", null, new DebugErrorBuffer()));
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scheduler.submit(project.toFile(), version -> done.countDown());
+        release.countDown();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertFalse(compiled.get());
+        assertFalse(Files.exists(project.resolve("bin/app/Main.class")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package test;
+
+import main.zenit.javacodecompiler.CompileWorkers;
+import main.zenit.javacodecompiler.DebugError;
+import main.zenit.javacodecompiler.DebugErrorBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that files are compiled in a worker JVM of a JDK, that the worker is kept
+ * between compiles and started again when it crashes. The JDK of the tests is used as the
+ * JDK of the worker.
+ */
+class CompileWorkersTest {
+
+    private static final String JDK = System.getProperty("java.home");
+
+    @TempDir
+    Path project;
+
+    @AfterEach
+    void stopWorkers() {
+        CompileWorkers.getInstance().stopIdleWorkers();
+    }
+
+    /**
+     * Errors are reported at their line and column, and the worker that reported them
+     * compiles the fixed file too.
+     */
+    @Test
+    void compilesInWorker() throws IOException {
+        File file = project.resolve("Main.java").toFile();
+        Files.writeString(file.toPath(), "public class Main {\n\tint x = \"text\";\n}\n");
+
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        assertFalse(CompileWorkers.getInstance().compile(JDK, file, project.toFile(), "bin", null, null, buffer));
+        DebugError error = buffer.get();
+        assertEquals("error", error.getProblemType());
+        assertEquals(2, error.getRow());
+        assertEquals(9, error.getColumn());
+        assertNull(buffer.get());
+
+        Files.writeString(file.toPath(), "public class Main {\n\tint x = 1;\n}\n");
+        assertTrue(CompileWorkers.getInstance().compile(JDK, file, project.toFile(), "bin", null, null, buffer));
+        assertTrue(buffer.isEmpty());
+        assertTrue(Files.exists(project.resolve("bin/Main.class")));
+        assertEquals(1, CompileWorkers.getInstance().getWorkerCount());
+    }
+
+    /**
+     * A worker that was killed is started again for the next compile.
+     */
+    @Test
+    void restartsCrashedWorker() throws IOException {
+        File file = project.resolve("Main.java").toFile();
+        Files.writeString(file.toPath(), "public class Main {}\n");
+        assertTrue(CompileWorkers.getInstance().compile(JDK, file, null, null, null, null, null));
+
+        ProcessHandle.current().children().forEach(ProcessHandle::destroyForcibly);
+
+        assertTrue(CompileWorkers.getInstance().compile(JDK, file, null, null, null, null, null));
+        assertEquals(1, CompileWorkers.getInstance().getWorkerCount());
+        CompileWorkers.getInstance().stopIdleWorkers();
+        assertEquals(0, CompileWorkers.getInstance().getWorkerCount());
+    }
+}
@@ -0,0 +1,114 @@
+package test;
+
+import main.zenit.zencodearea.PieceTable;
+import org.fxmisc.richtext.model.EditableStyledDocument;
+import org.fxmisc.richtext.model.ReadOnlyStyledDocument;
+import org.fxmisc.richtext.model.SegmentOps;
+import org.fxmisc.richtext.model.SimpleEditableStyledDocument;
+import org.fxmisc.richtext.model.TextOps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+
+/**
+ * Benchmark comparing bulk edits of a 100k line file made one by one to the document model
+ * of the code area, which is how comment toggling and replace all worked before, to the same
+ * edits made to a {@link PieceTable} and applied to the document model as one replacement.
+ * <p>
+ * Not a unit test. Run it with the number of lines as argument, {@code 100000} by default.
+ * </p>
+ */
+public class DocumentModelBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int ROUNDS = 5;
+    private static final TextOps<String, Collection<String>> OPS = SegmentOps.styledTextOps();
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String text = "    int value = compute(value, 42); // line\n".repeat(lines);
+        System.out.println(lines + " lines, " + text.length() + " characters");
+
+        run("comment every line", text, DocumentModelBenchmark::commentLines);
+        run("replace all", text, DocumentModelBenchmark::replaceAll);
+    }
+
+    private static void run(String name, String text, BiConsumer<String, Editor> edits) {
+        String expected = perEdit(text, edits);
+        if (!expected.equals(pieceTable(text, edits))) {
+            throw new IllegalStateException("The piece table gives a different text for " + name);
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            time(() -> perEdit(text, edits));
+            time(() -> pieceTable(text, edits));
+        }
+
+        long perEdit = 0;
+        long pieceTable = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            perEdit += time(() -> perEdit(text, edits));
+            pieceTable += time(() -> pieceTable(text, edits));
+        }
+
+        System.out.println(name + ":");
+        System.out.printf("  edit by edit: %10.2f ms per round%n", perEdit / 1e6 / ROUNDS);
+        System.out.printf("  piece table:  %10.2f ms per round%n", pieceTable / 1e6 / ROUNDS);
+    }
+
+    /**
+     * Inserts a line comment at the start of every line, from the last line up.
+     */
+    private static void commentLines(String text, Editor editor) {
+        for (int offset = text.lastIndexOf('\n', text.length() - 2); offset >= 0;
+                offset = offset == 0 ? -1 : text.lastIndexOf('\n', offset - 1)) {
+            editor.replace(offset + 1, offset + 1, "//");
+        }
+        editor.replace(0, 0, "//");
+    }
+
+    /**
+     * Replaces every occurrence of a word, from the last occurrence up.
+     */
+    private static void replaceAll(String text, Editor editor) {
+        for (int offset = text.lastIndexOf("value"); offset >= 0; offset = text.lastIndexOf("value", offset - 1)) {
+            editor.replace(offset, offset + 5, "result");
+        }
+    }
+
+    private static String perEdit(String text, BiConsumer<String, Editor> edits) {
+        EditableStyledDocument<Collection<String>, String, Collection<String>> document = newDocument(text);
+        edits.accept(text, (from, to, replacement) -> document.replace(from, to, fromString(replacement)));
+        return document.getText();
+    }
+
+    private static String pieceTable(String text, BiConsumer<String, Editor> edits) {
+        EditableStyledDocument<Collection<String>, String, Collection<String>> document = newDocument(text);
+        PieceTable pieceTable = new PieceTable(text);
+        edits.accept(text, pieceTable::replace);
+        document.replace(pieceTable.getChangeStart(), pieceTable.getReplacedEnd(),
+                fromString(pieceTable.getChangedText()));
+        return document.getText();
+    }
+
+    private static EditableStyledDocument<Collection<String>, String, Collection<String>> newDocument(String text) {
+        SimpleEditableStyledDocument<Collection<String>, Collection<String>> document =
+                new SimpleEditableStyledDocument<>(Collections.emptyList(), Collections.emptyList());
+        document.replace(0, 0, fromString(text));
+        return document;
+    }
+
+    private static ReadOnlyStyledDocument<Collection<String>, String, Collection<String>> fromString(String text) {
+        return ReadOnlyStyledDocument.fromString(text, Collections.emptyList(), Collections.emptyList(), OPS);
+    }
+
+    private static long time(Runnable round) {
+        long start = System.nanoTime();
+        round.run();
+        return System.nanoTime() - start;
+    }
+
+    private interface Editor {
+        void replace(int from, int to, String text);
+    }
+}
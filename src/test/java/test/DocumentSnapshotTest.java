@@ -0,0 +1,102 @@
+package test;
+
+import main.zenit.zencodearea.DocumentSnapshot;
+import main.zenit.zencodearea.IncrementalHighlighter;
+import main.zenit.zencodearea.JavaClassType;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that a single analysis of a document serves highlighting, class-type
+ * detection and error markers.
+ */
+class DocumentSnapshotTest {
+
+    private static final String CODE = "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        int count = 1;\n"
+            + "    }\n"
+            + "}\n";
+
+    /**
+     * Highlighting from the snapshot tokens gives the same result as lexing the text again.
+     */
+    @Test
+    void highlightingReusesSnapshotTokens() {
+        DocumentSnapshot snapshot = DocumentSnapshot.analyze(3, CODE);
+
+        assertEquals(3, snapshot.getVersion());
+        assertEquals(new IncrementalHighlighter().highlightAll(CODE, snapshot.getFacts()),
+                new IncrementalHighlighter().highlightAll(snapshot));
+    }
+
+    /**
+     * The class type and main method are taken from the parse tree.
+     */
+    @Test
+    void detectsRunnableClass() {
+        assertTrue(DocumentSnapshot.analyze(0, CODE).hasMainMethod());
+        assertEquals(JavaClassType.RUNNABLE, DocumentSnapshot.analyze(0, CODE).getClassType());
+        assertFalse(DocumentSnapshot.analyze(0, "public class Main { }").hasMainMethod());
+        assertEquals(JavaClassType.INTERFACE, DocumentSnapshot.analyze(0, "interface Shape { }").getClassType());
+    }
+
+    /**
+     * Every parameter form of a main method is found, but not the text of a main method in a
+     * comment or a string literal.
+     */
+    @Test
+    void findsMainMethodInParseTree() {
+        assertTrue(DocumentSnapshot.analyze(0, "class A { public static void main(String... a) {} }").hasMainMethod());
+        assertTrue(DocumentSnapshot.analyze(0, "class A { static public void main(String a[]) {} }").hasMainMethod());
+        assertTrue(DocumentSnapshot.analyze(0, "class A { public static final void main(final java.lang.String[] a) {} }")
+                .hasMainMethod());
+        assertTrue(DocumentSnapshot.analyze(0, "class A { class B { public static void main(String[] a) {} } }")
+                .hasMainMethod());
+
+        assertFalse(DocumentSnapshot.analyze(0, "class A { // public static void main(String[] args) {}\n }")
+                .hasMainMethod());
+        assertFalse(DocumentSnapshot.analyze(0, "class A { String s = \"public static void main(String[] args)\"; }")
+                .hasMainMethod());
+        assertFalse(DocumentSnapshot.analyze(0, "class A { public void main(String[] args) {} }").hasMainMethod());
+        assertFalse(DocumentSnapshot.analyze(0, "class A { public static void main(int[] args) {} }").hasMainMethod());
+        assertFalse(DocumentSnapshot.analyze(0, "class A { public static void main(String[] a, int b) {} }")
+                .hasMainMethod());
+    }
+
+    /**
+     * Compiler positions are resolved to the token they point at.
+     */
+    @Test
+    void findsTokenAtCompilerPosition() {
+        DocumentSnapshot snapshot = DocumentSnapshot.analyze(0, CODE);
+
+        Token token = snapshot.getTokenAt(3, 12);
+        assertEquals("count", token.getText());
+        assertEquals("count", snapshot.getTokenAt(3, 16).getText());
+        assertNull(snapshot.getTokenAt(3, 40));
+    }
+
+    /**
+     * An analysis that was cancelled half way does not break the error recovery of the next
+     * analysis on the same thread, which reuses its parser.
+     */
+    @Test
+    void analysisAfterCancelledAnalysisRecovers() {
+        Thread.currentThread().interrupt();
+        assertThrows(CancellationException.class, () -> DocumentSnapshot.analyze(0, CODE));
+        Thread.interrupted();
+
+        DocumentSnapshot broken = DocumentSnapshot.analyze(1, "aaaa{ }\nclass Main {\n    int size\n}\n");
+        assertEquals(1, broken.getVersion());
+    }
+}
@@ -0,0 +1,90 @@
+package test;
+
+import main.zenit.filesystem.EditJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that unsaved edits written to an edit journal are restored after a crash.
+ */
+class EditJournalTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Typed, deleted and replaced text is restored on top of the saved file, also when the
+     * last frame of the journal was only partly written.
+     */
+    @Test
+    void unsavedEditsAreRecovered() throws Exception {
+        File file = write("Main.java", "class Main {\n}\n");
+        Path journals = EditJournal.getDirectory(directory.toFile());
+        EditJournal journal = new EditJournal(journals, file);
+
+        journal.start("class Main {\n}\n");
+        String typed = "    int a;\n";
+        for (int i = 0; i < typed.length(); i++) {
+            journal.record(13 + i, 0, typed.substring(i, i + 1));
+        }
+        journal.record(6, 4, "Game");
+        journal.record(22, 1, "");
+        EditJournal.flushNow();
+
+        Files.write(journal.getPath(), new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        List<EditJournal.Recovered> recovered = EditJournal.recover(journals);
+        assertEquals(1, recovered.size());
+        assertEquals(file, recovered.get(0).getFile());
+        assertEquals("class Game {\n    int a\n}\n", recovered.get(0).getText());
+        assertFalse(Files.exists(journal.getPath()));
+    }
+
+    /**
+     * A reset journal is deleted, and a journal of a file that was changed afterwards is
+     * not replayed.
+     */
+    @Test
+    void savedOrChangedFilesAreNotRecovered() throws Exception {
+        File file = write("Notes.txt", "first\n");
+        Path journals = EditJournal.getDirectory(directory.toFile());
+
+        EditJournal saved = new EditJournal(journals, file);
+        saved.start("first\n");
+        saved.record(0, 0, "new ");
+        EditJournal.flushNow();
+        assertTrue(Files.exists(saved.getPath()));
+        saved.reset();
+        EditJournal.flushNow();
+        assertFalse(Files.exists(saved.getPath()));
+
+        EditJournal changed = new EditJournal(journals, file);
+        changed.start("first\n");
+        changed.record(6, 0, "second\n");
+        EditJournal.flushNow();
+        Files.writeString(file.toPath(), "changed elsewhere\n");
+
+        assertTrue(EditJournal.recover(journals).isEmpty());
+        try (Stream<Path> files = Files.list(journals)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private File write(String name, String text) throws Exception {
+        Path path = directory.resolve(name);
+        Files.writeString(path, text);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,131 @@
+package test;
+
+import javafx.stage.Stage;
+import main.zenit.ui.FileTab;
+import main.zenit.ui.MainController;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5 , ApplicationTest TestFx framework
+ * This class tests that a FileTab tracks unsaved changes without reading its file, and
+ * picks up changes made to the file by other programs.
+ */
+class FileTabDirtyStateTest extends ApplicationTest {
+
+    @TempDir
+    Path directory;
+
+    private MainController mainController;
+
+    @Override
+    public void start(Stage stage) {
+        mainController = new MainController(stage);
+    }
+
+    /**
+     * Editing marks the tab as changed, undoing the edit marks it as unchanged again.
+     */
+    @Test
+    void undoingAllEditsClearsTheChangedState() throws Exception {
+        File file = write("Shapes.txt", "circle\nsquare\n");
+        FileTab fileTab = open(file);
+
+        interact(() -> assertFalse(fileTab.hasChanged()));
+        interact(() -> fileTab.getZenCodeArea().insertText(0, "red "));
+        interact(() -> assertTrue(fileTab.hasChanged()));
+
+        interact(() -> fileTab.getZenCodeArea().undo());
+        interact(() -> assertFalse(fileTab.hasChanged()));
+    }
+
+    /**
+     * A tab without unsaved changes loads the new content when its file is modified on disk.
+     */
+    @Test
+    void unchangedTabReloadsModifiedFile() throws Exception {
+        File file = write("Colors.txt", "red\n");
+        FileTab fileTab = open(file);
+
+        Files.writeString(file.toPath(), "green\n");
+
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS,
+                () -> fileTab.getZenCodeArea().getText().trim().equals("green"));
+        interact(() -> assertFalse(fileTab.hasChanged()));
+    }
+
+    /**
+     * A tab that saved its own changes keeps them, and a tab with unsaved changes is marked
+     * as unchanged when another program writes the same text to its file.
+     */
+    @Test
+    void fileWithTheTabTextMarksTheTabUnchanged() throws Exception {
+        File file = write("Sizes.txt", "small\n");
+        FileTab fileTab = open(file);
+
+        interact(() -> fileTab.getZenCodeArea().insertText(0, "large "));
+        Files.writeString(file.toPath(), "large small\n");
+        interact(() -> {
+            fileTab.update(file);
+            fileTab.getZenCodeArea().insertText(0, "very ");
+        });
+        WaitForAsyncUtils.sleep(500, TimeUnit.MILLISECONDS);
+        interact(() -> {
+            assertEquals("very large small\n", fileTab.getZenCodeArea().getText());
+            assertTrue(fileTab.hasChanged());
+        });
+
+        Files.writeString(file.toPath(), "very large small\n");
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> !fileTab.hasChanged());
+        interact(() -> assertEquals("very large small\n", fileTab.getZenCodeArea().getText()));
+    }
+
+    /**
+     * A file opened in the background arrives completely, unchanged and highlighted.
+     */
+    @Test
+    void loadedFileIsUnchangedAndHighlighted() throws Exception {
+        String code = "class Loaded {\n    int size;\n}\n".repeat(20_000);
+        File file = write("Loaded.java", code);
+
+        FileTab[] fileTab = new FileTab[1];
+        interact(() -> {
+            fileTab[0] = new FileTab(new ZenCodeArea(13, "Menlo"), mainController);
+            fileTab[0].loadFile(file);
+        });
+
+        WaitForAsyncUtils.waitFor(20, TimeUnit.SECONDS,
+                () -> !fileTab[0].isLoading() && fileTab[0].getZenCodeArea().getSnapshot() != null);
+        interact(() -> {
+            assertEquals(code, fileTab[0].getZenCodeArea().getText());
+            assertFalse(fileTab[0].hasChanged());
+        });
+    }
+
+    private FileTab open(File file) {
+        FileTab[] fileTab = new FileTab[1];
+        interact(() -> {
+            fileTab[0] = new FileTab(new ZenCodeArea(13, "Menlo"), mainController);
+            fileTab[0].setFile(file, true);
+        });
+        return fileTab[0];
+    }
+
+    private File write(String name, String text) throws Exception {
+        Path path = directory.resolve(name);
+        Files.writeString(path, text);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,123 @@
+package test;
+
+import main.zenit.searchinfile.FindInFiles;
+import main.zenit.searchinfile.FindInFiles.Match;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that Find in Files searches every text file of a folder in parallel and
+ * skips the files the file tree leaves out.
+ */
+class FindInFilesTest {
+
+    @TempDir
+    Path workspace;
+
+    /**
+     * Matches are found in nested folders with their line and column, while bin folders,
+     * class files, hidden files and binary files are skipped.
+     */
+    @Test
+    void findsMatchesInEveryTextFile() throws Exception {
+        write("project/src/Main.java", "class Main {\r\n    String name;\r\n    string other; String last;\n}\n");
+        write("project/src/util/Util.java", "// no matches here\n");
+        write("project/notes.txt", "String");
+        write("project/bin/Main.java", "String");
+        write("project/src/Main.class", "String");
+        write("project/.hidden/Secret.java", "String");
+        Files.write(workspace.resolve("project/data.bin"), new byte[] {'S', 't', 'r', 'i', 'n', 'g', 0});
+        for (int i = 0; i < 50; i++) {
+            write("project/gen/p" + i + "/Gen.java", "String s" + i + ";\n");
+        }
+
+        List<Match> matches = find("String", true);
+
+        assertEquals(53, matches.size());
+        Match first = matches.stream()
+                .filter(match -> match.getFile().getName().equals("Main.java"))
+                .min(Comparator.comparingInt(Match::getColumn)).orElseThrow();
+        assertEquals(2, first.getLine());
+        assertEquals(4, first.getColumn());
+        assertEquals("String name;", first.getPreview());
+
+        assertEquals(54, find("string", false).size());
+    }
+
+    /**
+     * Files are decoded in the charset they are opened with: UTF-16 with a byte order mark,
+     * UTF-8 with a byte order mark and windows-1252 when they aren't valid UTF-8.
+     */
+    @Test
+    void decodesFilesInTheirCharset() throws Exception {
+        byte[] utf16 = "class A { String caf\u00e9; }".getBytes(StandardCharsets.UTF_16LE);
+        byte[] bom16 = {(byte) 0xFF, (byte) 0xFE};
+        byte[] utf8 = "class B { String caf\u00e9; }".getBytes(StandardCharsets.UTF_8);
+        byte[] bom8 = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        Files.createDirectories(workspace.resolve("project"));
+        Files.write(workspace.resolve("project/A.java"), concat(bom16, utf16));
+        Files.write(workspace.resolve("project/B.java"), concat(bom8, utf8));
+        Files.write(workspace.resolve("project/C.java"), "class C { String caf\u00e9; }".getBytes("windows-1252"));
+
+        List<Match> matches = find("caf\u00e9", true);
+
+        assertEquals(3, matches.size());
+        for (Match match : matches) {
+            assertEquals(17, match.getColumn());
+            assertTrue(match.getPreview().startsWith("class "));
+        }
+    }
+
+    /**
+     * A cancelled search stops and still reports that it finished.
+     */
+    @Test
+    void cancelledSearchFinishes() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            write("p" + i + "/A.java", "String\n".repeat(100));
+        }
+        CountDownLatch finished = new CountDownLatch(1);
+        FindInFiles search = new FindInFiles(workspace.toFile(), "String", true, matches -> {}, finished::countDown);
+        search.cancel();
+        search.start();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(search.isCancelled());
+        assertTrue(search.getSearchedFileCount() < 200);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private List<Match> find(String word, boolean caseSensitive) throws InterruptedException {
+        ConcurrentLinkedQueue<Match> found = new ConcurrentLinkedQueue<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        new FindInFiles(workspace.toFile(), word, caseSensitive, found::addAll, finished::countDown).start();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        return List.copyOf(found);
+    }
+
+    private void write(String path, String text) throws IOException {
+        Path file = workspace.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+    }
+}
@@ -0,0 +1,52 @@
+package test;
+
+import main.zenit.zencodearea.DocumentSnapshot;
+import main.zenit.zencodearea.HighlightingMetrics;
+import main.zenit.zencodearea.HighlightingMetrics.Phase;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests the rolling latency statistics of the highlighting phases.
+ */
+class HighlightingMetricsTest {
+
+    /**
+     * Percentiles are computed over the latest samples only.
+     */
+    @Test
+    void percentilesRollOverTheWindow() {
+        HighlightingMetrics metrics = new HighlightingMetrics();
+        assertEquals(-1, metrics.getPercentile(Phase.PARSE, 50));
+
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(Phase.PARSE, i);
+        }
+        assertEquals(50, metrics.getPercentile(Phase.PARSE, 50));
+        assertEquals(99, metrics.getPercentile(Phase.PARSE, 99));
+
+        for (int i = 0; i < HighlightingMetrics.WINDOW; i++) {
+            metrics.record(Phase.PARSE, 1_000_000);
+        }
+        assertEquals(HighlightingMetrics.WINDOW, metrics.getSampleCount(Phase.PARSE));
+        assertEquals(1_000_000, metrics.getPercentile(Phase.PARSE, 50));
+        assertEquals("parse 1.0/1.0 ms (p50/p99)", metrics.toString());
+    }
+
+    /**
+     * Analyzing a document records its lexing, parsing and tree walk.
+     */
+    @Test
+    void analysisRecordsItsPhases() {
+        HighlightingMetrics metrics = new HighlightingMetrics();
+        DocumentSnapshot.analyze(0, "class A { void run() { int x = 1; } }", metrics);
+
+        assertEquals(1, metrics.getSampleCount(Phase.LEX));
+        assertEquals(1, metrics.getSampleCount(Phase.PARSE));
+        assertEquals(1, metrics.getSampleCount(Phase.ANALYZE));
+        assertTrue(metrics.toString().startsWith("lex "));
+    }
+}
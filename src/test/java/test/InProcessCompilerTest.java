@@ -0,0 +1,72 @@
+package test;
+
+import main.zenit.javacodecompiler.DebugError;
+import main.zenit.javacodecompiler.DebugErrorBuffer;
+import main.zenit.javacodecompiler.InProcessCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that files are compiled in the JVM of the tests, with the options of a
+ * project, and that errors are reported like those read from a javac process.
+ */
+class InProcessCompilerTest {
+
+    @TempDir
+    Path project;
+
+    /**
+     * A project is compiled into its bin folder, and classes it uses are found in its
+     * source folder and compiled too.
+     */
+    @Test
+    void compilesProjectIntoDirectory() throws IOException {
+        Path src = Files.createDirectories(project.resolve("src/app"));
+        Files.writeString(src.resolve("Main.java"),
+                "package app;\npublic class Main { Helper helper = new Helper(); }\n");
+        Files.writeString(src.resolve("Helper.java"), "package app;\nclass Helper {}\n");
+
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        boolean compiled = InProcessCompiler.compile(src.resolve("Main.java").toFile(), project.toFile(),
+                "bin", "src", null, buffer);
+
+        assertTrue(compiled);
+        assertTrue(buffer.isEmpty());
+        assertTrue(Files.exists(project.resolve("bin/app/Main.class")));
+        assertTrue(Files.exists(project.resolve("bin/app/Helper.class")));
+    }
+
+    /**
+     * An error is reported at its line, starting at 1, and its column in characters, where a
+     * tab counts as one character, with its code and the range it covers.
+     */
+    @Test
+    void reportsErrorsWithRowAndColumn() throws IOException {
+        File file = project.resolve("Broken.java").toFile();
+        Files.writeString(file.toPath(), "public class Broken {\n\tvoid run() {\n\t\tint x = \"text\";\n\t}\n}\n");
+
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        boolean compiled = InProcessCompiler.compile(file, null, null, null, null, buffer);
+
+        assertFalse(compiled);
+        DebugError error = buffer.get();
+        assertEquals("error", error.getProblemType());
+        assertEquals(file.getAbsolutePath(), error.getPlace());
+        assertEquals(3, error.getRow());
+        assertEquals(10, error.getColumn());
+        assertEquals("compiler.err.prob.found.req", error.getCode());
+        assertEquals("\"text\"".length(), error.getLength());
+        assertNull(buffer.get());
+    }
+}
@@ -0,0 +1,156 @@
+package test;
+
+import main.zenit.javacodecompiler.DebugError;
+import main.zenit.javacodecompiler.DebugErrorBuffer;
+import main.zenit.javacodecompiler.InProcessCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that a project is compiled incrementally: only changed sources and the
+ * sources that depend on a changed signature are compiled, and class files whose source is
+ * gone are deleted.
+ */
+class IncrementalBuildTest {
+
+    @TempDir
+    Path project;
+
+    /**
+     * A change inside a method body compiles only its source, a changed signature also
+     * compiles the sources that use it.
+     */
+    @Test
+    void compilesDependentsOfChangedSignatures() throws IOException {
+        write("app/Main.java", "package app;\npublic class Main { int value() { return new Helper().get(); } }\n");
+        write("app/Helper.java", "package app;\npublic class Helper { public int get() { return 1; } }\n");
+        write("app/Other.java", "package app;\npublic class Other {}\n");
+        assertTrue(compile("app/Helper.java", new DebugErrorBuffer()));
+
+        FileTime mainCompiled = setOld("bin/app/Main.class");
+        FileTime otherCompiled = setOld("bin/app/Other.class");
+
+        write("app/Helper.java", "package app;\npublic class Helper { public int get() { return 2; } }\n");
+        assertTrue(compile("app/Helper.java", new DebugErrorBuffer()));
+        assertEquals(mainCompiled, modified("bin/app/Main.class"));
+
+        write("app/Helper.java", "package app;\npublic class Helper { public String get() { return \"\"; } }\n");
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        assertFalse(compile("app/Helper.java", buffer));
+        DebugError error = buffer.get();
+        assertTrue(error.getPlace().endsWith("Main.java"));
+        assertEquals(otherCompiled, modified("bin/app/Other.class"));
+    }
+
+    /**
+     * A method removed from a class breaks the classes that call it through a subclass, even
+     * though they only refer to the subclass.
+     */
+    @Test
+    void compilesCallersThroughSubclasses() throws IOException {
+        write("app/B.java", "package app;\npublic class B { public void foo() {} }\n");
+        write("app/A.java", "package app;\npublic class A extends B {}\n");
+        write("app/C.java", "package app;\npublic class C { void run() { new A().foo(); } }\n");
+        assertTrue(compile("app/B.java", new DebugErrorBuffer()));
+
+        write("app/B.java", "package app;\npublic class B {}\n");
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        assertFalse(compile("app/B.java", buffer));
+        DebugError error = buffer.get();
+        assertTrue(error.getPlace().endsWith("C.java"));
+    }
+
+    /**
+     * A method that starts throwing a checked exception breaks the callers that don't catch
+     * it, although its name and descriptor don't change.
+     */
+    @Test
+    void compilesCallersOfMethodWithNewThrows() throws IOException {
+        write("app/Main.java", "package app;\npublic class Main { int value() { return new Helper().get(); } }\n");
+        write("app/Helper.java", "package app;\npublic class Helper { public int get() { return 1; } }\n");
+        assertTrue(compile("app/Helper.java", new DebugErrorBuffer()));
+
+        write("app/Helper.java", "package app;\npublic class Helper { public int get() throws Exception { return 1; } }\n");
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        assertFalse(compile("app/Helper.java", buffer));
+        DebugError error = buffer.get();
+        assertTrue(error.getPlace().endsWith("Main.java"));
+    }
+
+    /**
+     * A nested class made private breaks the classes that use it, although the header of its
+     * own class file doesn't change.
+     */
+    @Test
+    void compilesUsersOfNestedClassMadePrivate() throws IOException {
+        write("app/Outer.java", "package app;\npublic class Outer { static class Nested { Nested() {} } }\n");
+        write("app/User.java", "package app;\npublic class User { Outer.Nested nested; }\n");
+        assertTrue(compile("app/Outer.java", new DebugErrorBuffer()));
+
+        write("app/Outer.java", "package app;\npublic class Outer { private static class Nested { Nested() {} } }\n");
+        DebugErrorBuffer buffer = new DebugErrorBuffer();
+        assertFalse(compile("app/Outer.java", buffer));
+        DebugError error = buffer.get();
+        assertTrue(error.getPlace().endsWith("User.java"));
+    }
+
+    /**
+     * The class files of a deleted source and of a renamed inner class are deleted.
+     */
+    @Test
+    void deletesOrphanedClassFiles() throws IOException {
+        write("app/Main.java", "package app;\npublic class Main { class Inner {} }\n");
+        write("app/Old.java", "package app;\nclass Old {}\n");
+        assertTrue(compile("app/Main.java", new DebugErrorBuffer()));
+        assertTrue(Files.exists(project.resolve("bin/app/Main$Inner.class")));
+        assertTrue(Files.exists(project.resolve("bin/app/Old.class")));
+
+        Files.delete(project.resolve("src/app/Old.java"));
+        write("app/Main.java", "package app;\npublic class Main { class Renamed {} }\n");
+        assertTrue(compile("app/Main.java", new DebugErrorBuffer()));
+
+        assertFalse(Files.exists(project.resolve("bin/app/Main$Inner.class")));
+        assertFalse(Files.exists(project.resolve("bin/app/Old.class")));
+        assertTrue(Files.exists(project.resolve("bin/app/Main$Renamed.class")));
+    }
+
+    private boolean compile(String source, DebugErrorBuffer buffer) {
+        File file = project.resolve("src").resolve(source).toFile();
+        return InProcessCompiler.compile(file, project.toFile(), "bin", "src", null, buffer);
+    }
+
+    private void write(String source, String text) throws IOException {
+        Path file = project.resolve("src").resolve(source);
+        Files.createDirectories(file.getParent());
+        boolean existed = Files.exists(file);
+        Files.writeString(file, text);
+        if (existed) {
+            // Makes the change visible on file systems with a coarse modification time
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        }
+    }
+
+    /**
+     * Moves the modification time of a class file back, so that writing it again changes it.
+     */
+    private FileTime setOld(String classFile) throws IOException {
+        FileTime old = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(project.resolve(classFile), old);
+        return old;
+    }
+
+    private FileTime modified(String classFile) throws IOException {
+        return Files.getLastModifiedTime(project.resolve(classFile));
+    }
+}
@@ -0,0 +1,104 @@
+package test;
+
+import main.zenit.util.Tuple;
+import main.zenit.zencodearea.IncrementalHighlighter;
+import main.zenit.zencodearea.SemanticAnalyzer;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that incremental re-lexing produces the same styles as highlighting the
+ * whole document again.
+ */
+class IncrementalHighlighterTest {
+
+    private static final String CODE = "public class Test {\n"
+            + "    int a = 1;\n"
+            + "    /* block\n"
+            + "       comment */\n"
+            + "    String s = \"\"\"\n"
+            + "        text\n"
+            + "        \"\"\";\n"
+            + "    void run() { a++; }\n"
+            + "}\n";
+
+    /**
+     * Typing inside a single line only re-lexes that line.
+     */
+    @Test
+    void editInsideLineIsRelexedLocally() {
+        String edited = CODE.replace("int a = 1;", "int a = 12;");
+        Tuple<Integer, StyleSpans<Collection<String>>> range = edit(CODE, CODE.indexOf("1;") + 1, 0, "2");
+
+        assertEquals(CODE.indexOf("    int a"), range.fst());
+        assertTrue(range.snd().length() < edited.length() / 2);
+        assertRangeMatches(fullStyles(edited), range);
+    }
+
+    /**
+     * Removing the end of a block comment re-styles the lines the comment used to span.
+     */
+    @Test
+    void unterminatingCommentRestylesFollowingLines() {
+        int pos = CODE.indexOf("*/");
+        String edited = CODE.substring(0, pos) + CODE.substring(pos + 2);
+        Tuple<Integer, StyleSpans<Collection<String>>> range = edit(CODE, pos, 2, "");
+
+        assertRangeMatches(fullStyles(edited), range);
+        assertEquals(CODE.indexOf("    /*"), range.fst());
+        assertTrue(range.fst() + range.snd().length() > edited.indexOf("comment"));
+    }
+
+    /**
+     * Opening a block comment comments out every following line.
+     */
+    @Test
+    void openingCommentAcrossLinesMatchesFullHighlighting() {
+        int pos = CODE.indexOf("void");
+        String edited = CODE.substring(0, pos) + "/*\n" + CODE.substring(pos);
+        Tuple<Integer, StyleSpans<Collection<String>>> range = edit(CODE, pos, 0, "/*\n");
+
+        assertEquals(CODE.indexOf("    void"), range.fst());
+        assertRangeMatches(fullStyles(edited), range);
+    }
+
+    private static Tuple<Integer, StyleSpans<Collection<String>>> edit(String text, int pos, int removed, String inserted) {
+        IncrementalHighlighter highlighter = new IncrementalHighlighter();
+        highlighter.highlightAll(text, new SemanticAnalyzer());
+
+        String edited = text.substring(0, pos) + inserted + text.substring(pos + removed);
+        int paragraph = (int) text.substring(0, pos).chars().filter(c -> c == '\n').count();
+        highlighter.paragraphsChanged(paragraph,
+                (int) text.substring(pos, pos + removed).chars().filter(c -> c == '\n').count(),
+                (int) inserted.chars().filter(c -> c == '\n').count());
+        return highlighter.relex(edited);
+    }
+
+    private static List<Collection<String>> fullStyles(String text) {
+        return flatten(new IncrementalHighlighter().highlightAll(text, new SemanticAnalyzer()));
+    }
+
+    private static void assertRangeMatches(List<Collection<String>> expected, Tuple<Integer, StyleSpans<Collection<String>>> range) {
+        int start = range.fst();
+        assertEquals(expected.subList(start, start + range.snd().length()), flatten(range.snd()));
+    }
+
+    private static List<Collection<String>> flatten(StyleSpans<Collection<String>> spans) {
+        List<Collection<String>> styles = new ArrayList<>();
+        for (StyleSpan<Collection<String>> span : spans) {
+            for (int i = 0; i < span.getLength(); i++) {
+                styles.add(span.getStyle());
+            }
+        }
+        return styles;
+    }
+}
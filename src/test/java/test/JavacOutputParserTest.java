@@ -0,0 +1,82 @@
+package test;
+
+import main.zenit.javacodecompiler.DebugError;
+import main.zenit.javacodecompiler.JavacOutputParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that the errors and warnings printed by a javac process are read with
+ * their file, row, column, severity and whole message.
+ */
+class JavacOutputParserTest {
+
+    /**
+     * Output of javac with a message that continues after the caret, a tab before the caret
+     * and a warning.
+     */
+    @Test
+    void readsErrorsAndWarnings() {
+        List<DebugError> errors = parse(new File("project"),
+                "src/M.java:2: error: cannot find symbol",
+                "\tFoo f;",
+                "\t^",
+                "  symbol:   class Foo",
+                "  location: class M",
+                "src/M.java:3: error: incompatible types: String cannot be converted to int",
+                "\tint x = \"s\";",
+                "\t        ^",
+                "src/M.java:5: warning: [deprecation] Date(int,int,int) in Date has been deprecated",
+                "\tvoid u() { new java.util.Date(1,1,1); }",
+                "\t           ^",
+                "2 errors",
+                "1 warning");
+
+        assertEquals(3, errors.size());
+        DebugError first = errors.get(0);
+        assertEquals(new File("project", "src/M.java").getPath(), first.getPlace());
+        assertEquals(2, first.getRow());
+        assertEquals(1, first.getColumn());
+        assertEquals("cannot find symbol\nsymbol:   class Foo\nlocation: class M", first.getProblem());
+        assertEquals(DebugError.Severity.ERROR, first.getSeverity());
+
+        assertEquals(9, errors.get(1).getColumn());
+        assertEquals("incompatible types: String cannot be converted to int", errors.get(1).getProblem());
+        assertEquals(DebugError.Severity.WARNING, errors.get(2).getSeverity());
+        assertEquals(5, errors.get(2).getRow());
+    }
+
+    /**
+     * A Windows path keeps its drive letter, and the last diagnostic is passed on when the
+     * output ends without a summary.
+     */
+    @Test
+    void keepsDriveLetters() {
+        List<DebugError> errors = parse(null,
+                "C:\\Users\\me\\src\\Main.java:12: error: ';' expected",
+                "        int x = 1",
+                "                 ^");
+
+        assertEquals(1, errors.size());
+        assertEquals("C:\\Users\\me\\src\\Main.java", errors.get(0).getPlace());
+        assertEquals(12, errors.get(0).getRow());
+        assertEquals(17, errors.get(0).getColumn());
+        assertEquals("';' expected", errors.get(0).getProblem());
+    }
+
+    private static List<DebugError> parse(File directory, String... lines) {
+        List<DebugError> errors = new ArrayList<>();
+        JavacOutputParser parser = new JavacOutputParser(directory, errors::add);
+        for (String line : lines) {
+            parser.line(line);
+        }
+        parser.finish();
+        return errors;
+    }
+}
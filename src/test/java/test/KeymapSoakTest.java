@@ -0,0 +1,72 @@
+package test;
+
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Stage;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.fxmisc.wellbehaved.event.InputMap;
+import org.fxmisc.wellbehaved.event.Nodes;
+import org.junit.jupiter.api.Test;
+import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test class using JUNIT5
+ * This class types 10,000 edits into a ZenCodeArea, letting the background highlighting
+ * run in between, and checks that no key handlers are added while the area is in use.
+ */
+class KeymapSoakTest extends ApplicationTest {
+
+    private static final int BATCHES = 100;
+    private static final int EDITS_PER_BATCH = 100;
+
+    private ZenCodeArea zenCodeArea;
+
+    @Override
+    public void start(Stage stage) {
+        zenCodeArea = new ZenCodeArea(13, "Menlo"); // Key handling does not need the area to be shown
+    }
+
+    /**
+     * Test case for the keymap registry -> Key handlers are installed once
+     * Every batch types characters, an auto-closed brace and a TAB indent, then starts a
+     * highlighting pass, waits until it is applied and checks that the input map of the code
+     * area is still the one installed by its constructor.
+     */
+    @Test
+    void keyHandlersAreInstalledOnce() throws Exception {
+        InputMap<?> installed = WaitForAsyncUtils.asyncFx(() -> Nodes.getInputMap(zenCodeArea)).get();
+
+        for (int batch = 0; batch < BATCHES; batch++) {
+            interact(() -> {
+                for (int edit = 0; edit < EDITS_PER_BATCH - 2; edit++) {
+                    zenCodeArea.fireEvent(new KeyEvent(KeyEvent.KEY_TYPED, "a", "", KeyCode.A,
+                            false, false, false, false));
+                }
+                zenCodeArea.fireEvent(new KeyEvent(KeyEvent.KEY_TYPED, "{", "", KeyCode.UNDEFINED,
+                        false, false, false, false));
+                zenCodeArea.fireEvent(new KeyEvent(KeyEvent.KEY_PRESSED, "", "", KeyCode.TAB,
+                        false, false, false, false));
+
+                // Resuming analyzes the text right away, without waiting for the typing pause
+                zenCodeArea.setHighlightingSuspended(true);
+                zenCodeArea.setHighlightingSuspended(false);
+            });
+
+            WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> WaitForAsyncUtils.asyncFx(() ->
+                    zenCodeArea.isCurrent(zenCodeArea.getSnapshot())).get());
+
+            int index = batch;
+            interact(() -> assertSame(installed, Nodes.getInputMap(zenCodeArea),
+                    "key handlers were added after batch " + index));
+        }
+
+        // Each batch adds 98 characters, "{ }" and four spaces
+        assertEquals(BATCHES * (EDITS_PER_BATCH - 2 + 3 + 4), zenCodeArea.getLength());
+    }
+}
@@ -0,0 +1,64 @@
+package test;
+
+import main.zenit.filesystem.MainMethodDetector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests which ways of writing a main method make a file runnable, and that open
+ * files are answered from their editor content.
+ */
+class MainMethodDetectorTest {
+
+    @TempDir
+    Path folder;
+
+    /**
+     * The array, varargs and C-style parameter forms are all main methods.
+     */
+    @Test
+    void acceptsEveryParameterForm() {
+        assertTrue(MainMethodDetector.declaresMainMethod("public static void main(String[] args) {}"));
+        assertTrue(MainMethodDetector.declaresMainMethod("public static void main(String... args) {}"));
+        assertTrue(MainMethodDetector.declaresMainMethod("public static void main(final String[] a) {}"));
+        assertTrue(MainMethodDetector.declaresMainMethod("public static void main(String args[]) {}"));
+        assertTrue(MainMethodDetector.declaresMainMethod("static public void main( String[]argv ) {}"));
+        assertTrue(MainMethodDetector.declaresMainMethod("public static void main(\n\t\tString[] args) {}"));
+    }
+
+    /**
+     * Methods that only look like a main method are not.
+     */
+    @Test
+    void rejectsOtherMethods() {
+        assertFalse(MainMethodDetector.declaresMainMethod("public void main(String[] args) {}"));
+        assertFalse(MainMethodDetector.declaresMainMethod("public static void main(int[] args) {}"));
+        assertFalse(MainMethodDetector.declaresMainMethod("public static void mainly(String[] args) {}"));
+        assertFalse(MainMethodDetector.declaresMainMethod("public class Main { }"));
+    }
+
+    /**
+     * A file open in an editor is answered from the editor until it is forgotten.
+     */
+    @Test
+    void openFilesFollowTheEditor() throws IOException {
+        Path file = folder.resolve("Main.java");
+        Files.writeString(file, "public class Main {\n    public static void main(String... args) {}\n}\n");
+        assertTrue(MainMethodDetector.containsMainMethod(file));
+
+        assertTrue(MainMethodDetector.publish(file, false));
+        assertFalse(MainMethodDetector.containsMainMethod(file));
+        assertFalse(MainMethodDetector.publish(file, false));
+
+        MainMethodDetector.forget(file);
+        assertTrue(MainMethodDetector.containsMainMethod(file));
+    }
+}
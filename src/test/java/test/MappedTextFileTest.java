@@ -0,0 +1,107 @@
+package test;
+
+import main.zenit.filesystem.MappedTextFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that large files are split into rows and decoded page by page, and that
+ * closing a file stops indexing it.
+ */
+class MappedTextFileTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Rows on several pages are decoded without their line breaks.
+     */
+    @Test
+    void rowsAreDecodedAcrossPages() throws Exception {
+        StringBuilder text = new StringBuilder();
+        int lines = MappedTextFile.PAGE_ROWS * 3 + 7;
+        for (int i = 0; i < lines; i++) {
+            text.append("line ").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+
+        try (MappedTextFile file = new MappedTextFile(write(text.toString()))) {
+            assertEquals(lines + 1, file.index()); // An empty row follows the last line break
+            assertEquals("line 0", file.getRow(0));
+            assertEquals("line " + MappedTextFile.PAGE_ROWS, file.getRow(MappedTextFile.PAGE_ROWS));
+            assertEquals("line " + (lines - 1), file.getRow(lines - 1));
+            assertEquals("", file.getRow(lines));
+        }
+    }
+
+    /**
+     * Lines longer than the maximum row length are wrapped without splitting characters.
+     */
+    @Test
+    void longLinesAreWrappedBetweenCharacters() throws Exception {
+        String line = "ö".repeat(MappedTextFile.MAX_ROW_BYTES * 2);
+
+        try (MappedTextFile file = new MappedTextFile(write(line))) {
+            int rows = file.index();
+            assertEquals(4, rows);
+
+            StringBuilder joined = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                assertTrue(file.getRow(row).length() <= MappedTextFile.MAX_ROW_BYTES);
+                joined.append(file.getRow(row));
+            }
+            assertEquals(line, joined.toString());
+        }
+    }
+
+    /**
+     * Closing a file while it is indexed on another thread waits for the indexing to stop,
+     * which either finishes or is cancelled, and a closed file can't be indexed.
+     */
+    @Test
+    void closeStopsIndexing() throws Exception {
+        Path path = directory.resolve("large.txt");
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength(64L * 1024 * 1024);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            MappedTextFile file = new MappedTextFile(path.toFile());
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread indexing = new Thread(() -> {
+                try {
+                    file.index();
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            indexing.start();
+            file.close();
+            indexing.join();
+
+            assertTrue(failure.get() == null || failure.get() instanceof CancellationException, String.valueOf(failure.get()));
+        }
+
+        MappedTextFile closed = new MappedTextFile(path.toFile());
+        closed.close();
+        assertThrows(CancellationException.class, closed::index);
+    }
+
+    private File write(String text) throws Exception {
+        Path path = directory.resolve("large.txt");
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+}
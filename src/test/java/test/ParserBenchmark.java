@@ -0,0 +1,100 @@
+package test;
+
+import generated.JavaLexer;
+import generated.JavaParser;
+import main.zenit.zencodearea.DocumentSnapshot;
+import main.zenit.zencodearea.SemanticAnalyzer;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark comparing the analysis done by {@link DocumentSnapshot#analyze(long, String)},
+ * pooled lexer and parser with SLL prediction first, to a fresh lexer and parser with full
+ * LL prediction for every pass, which is how the code was analyzed before.
+ * <p>
+ * Not a unit test. Run it with the source folder to parse as argument, e.g. {@code src}.
+ * </p>
+ */
+public class ParserBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "src");
+        List<String> sources;
+        try (Stream<Path> files = Files.walk(root)) {
+            sources = files.filter(path -> path.toString().endsWith(".java"))
+                    .map(ParserBenchmark::read)
+                    .collect(Collectors.toList());
+        }
+        long characters = sources.stream().mapToLong(String::length).sum();
+        System.out.println(sources.size() + " files, " + characters + " characters");
+
+        for (String source : sources) {
+            SemanticAnalyzer expected = analyzeFreshLL(source);
+            SemanticAnalyzer actual = DocumentSnapshot.analyze(0, source).getFacts();
+            if (!expected.hasSameNames(actual) || expected.getClassType() != actual.getClassType()) {
+                throw new IllegalStateException("Analysis differs for:\n" + source);
+            }
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runFreshLL(sources);
+            runPooledSLL(sources);
+        }
+
+        long freshLL = 0;
+        long pooledSLL = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            freshLL += runFreshLL(sources);
+            pooledSLL += runPooledSLL(sources);
+        }
+
+        System.out.printf("fresh LL:   %8.2f ms per round%n", freshLL / 1e6 / ROUNDS);
+        System.out.printf("pooled SLL: %8.2f ms per round%n", pooledSLL / 1e6 / ROUNDS);
+    }
+
+    private static long runFreshLL(List<String> sources) {
+        long start = System.nanoTime();
+        for (String source : sources) {
+            analyzeFreshLL(source);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runPooledSLL(List<String> sources) {
+        long start = System.nanoTime();
+        for (String source : sources) {
+            DocumentSnapshot.analyze(0, source);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static SemanticAnalyzer analyzeFreshLL(String source) {
+        JavaLexer lexer = new JavaLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        JavaParser parser = new JavaParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        ParseTreeWalker.DEFAULT.walk(analyzer, parser.compilationUnit());
+        return analyzer;
+    }
+
+    private static String read(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package test;
+
+import main.zenit.zencodearea.PieceTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that a piece table gives the same text and paragraphs as the edited
+ * string, and the range that a code area has to replace.
+ */
+class PieceTableTest {
+
+    /**
+     * Random inserts, deletes and replaces give the same text, paragraphs and offsets as the
+     * same edits made to a StringBuilder.
+     */
+    @Test
+    void randomEditsMatchStringBuilder() {
+        Random random = new Random(42);
+        String original = "class A {\n    int a;\n}\n".repeat(50);
+        PieceTable document = new PieceTable(original);
+        StringBuilder expected = new StringBuilder(original);
+
+        for (int edit = 0; edit < 2_000; edit++) {
+            int from = random.nextInt(expected.length() + 1);
+            int to = Math.min(expected.length(), from + random.nextInt(8));
+            String text = random.nextBoolean() ? "" : "x\ny".substring(random.nextInt(3));
+            document.replace(from, to, text);
+            expected.replace(from, to, text);
+        }
+
+        String text = expected.toString();
+        assertEquals(text, document.getText());
+        assertEquals(text.length(), document.length());
+        String[] paragraphs = text.split("\n", -1);
+        assertEquals(paragraphs.length, document.getParagraphCount());
+
+        int offset = 0;
+        for (int paragraph = 0; paragraph < paragraphs.length; paragraph++) {
+            assertEquals(paragraphs[paragraph], document.getParagraph(paragraph));
+            assertEquals(paragraphs[paragraph].length(), document.getParagraphLength(paragraph));
+            assertEquals(offset + 1, document.getAbsolutePosition(paragraph, 1));
+            assertEquals(paragraph, document.getParagraphIndex(offset));
+            offset += paragraphs[paragraph].length() + 1;
+        }
+        for (int i = 0; i < text.length(); i += 7) {
+            assertEquals(text.charAt(i), document.charAt(i));
+        }
+    }
+
+    /**
+     * Replacing the changed range of the original text with the changed text gives the
+     * edited text.
+     */
+    @Test
+    void changedRangeCoversAllEdits() {
+        String original = "one\ntwo\nthree\nfour\nfive\n";
+        PieceTable document = new PieceTable(original);
+        assertFalse(document.isChanged());
+
+        document.replace(original.indexOf("four"), original.indexOf("four") + 4, "4");
+        document.insert(original.indexOf("two"), "// ");
+
+        assertTrue(document.isChanged());
+        assertEquals(original.indexOf("two"), document.getChangeStart());
+        assertEquals(original.indexOf("four") + 4, document.getReplacedEnd());
+        assertEquals("// two\nthree\n4", document.getChangedText());
+        assertEquals(document.getText(), original.substring(0, document.getChangeStart())
+                + document.getChangedText() + original.substring(document.getReplacedEnd()));
+    }
+}
@@ -0,0 +1,98 @@
+package test;
+
+import javafx.stage.Stage;
+import main.zenit.javacodecompiler.DebugError;
+import main.zenit.ui.FileTab;
+import main.zenit.ui.MainController;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.junit.jupiter.api.Test;
+import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class using JUNIT5 , ApplicationTest TestFx framework
+ * This class tests that ranges styled as search matches or errors get their syntax
+ * highlighting back without the rest of the document being restyled.
+ */
+class RestoreHighlightingTest extends ApplicationTest {
+
+    private static final String CODE = "public class Main {\n"
+            + "    /* A comment\n"
+            + "       over two lines */\n"
+            + "    private int count = 1;\n"
+            + "    Main copy = new Main();\n"
+            + "}\n";
+
+    private ZenCodeArea area;
+    private FileTab fileTab;
+
+    @Override
+    public void start(Stage stage) {
+        area = new ZenCodeArea(13, "Menlo");
+        fileTab = new FileTab(area, new MainController(stage));
+    }
+
+    /**
+     * Matches in a keyword, inside a block comment and on a class name get the same styles
+     * back that a full highlighting pass gives them.
+     */
+    @Test
+    void restoresSyntaxStylesUnderMatches() throws Exception {
+        highlight();
+
+        int[] matches = {CODE.indexOf("class"), CODE.indexOf("over"), CODE.lastIndexOf("Main")};
+        interact(() -> {
+            for (int start : matches) {
+                area.setStyle(start, start + 4, List.of("search-light-mode"));
+            }
+            for (int start : matches) {
+                area.restoreHighlighting(start, start + 4);
+            }
+            assertFullyHighlighted();
+        });
+    }
+
+    /**
+     * Errors marked in a tab are cleared before the result of the next compile is marked.
+     */
+    @Test
+    void clearsMarkedErrors() throws Exception {
+        highlight();
+
+        int offset = CODE.indexOf("count");
+        int column = offset - CODE.lastIndexOf('\n', offset) - 1;
+        interact(() -> {
+            fileTab.markError(new DebugError("Main.java", DebugError.Severity.ERROR, null,
+                    "unused", 4, column, offset, offset + 5), "underline");
+            assertEquals(List.of("underline"), area.getStyleOfChar(offset + 4));
+
+            fileTab.clearErrors();
+            assertFullyHighlighted();
+        });
+    }
+
+    private void highlight() throws Exception {
+        interact(() -> area.replaceText(CODE));
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> WaitForAsyncUtils.asyncFx(() ->
+                area.isCurrent(area.getSnapshot())).get());
+    }
+
+    private void assertFullyHighlighted() {
+        int position = 0;
+        for (StyleSpan<Collection<String>> span : area.computeHighlighting(CODE)) {
+            for (int i = position; i < position + span.getLength(); i++) {
+                if (CODE.charAt(i) != '\n') {
+                    assertEquals(span.getStyle(), area.getStyleOfChar(i), "Style at " + i);
+                }
+            }
+            position += span.getLength();
+        }
+    }
+}
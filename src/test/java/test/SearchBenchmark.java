@@ -0,0 +1,106 @@
+package test;
+
+import main.zenit.searchinfile.TextMatcher;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark comparing how the search in a file found its matches before, by scanning the
+ * saved file line by line with lower case copies and substrings, to a {@link TextMatcher}
+ * over the text of the editor.
+ * <p>
+ * Not a unit test. Run it with the number of lines as argument, {@code 50000} by default.
+ * </p>
+ */
+public class SearchBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            builder.append("    String value").append(i).append(" = compute(value, \"string\"); // line\n");
+        }
+        String text = builder.toString();
+        File file = File.createTempFile("search", ".txt");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), text, StandardCharsets.UTF_8);
+        System.out.println(lines + " lines, " + text.length() + " characters");
+
+        run("case sensitive", () -> perLine(file, "String", true), () -> matcher(text, "String", true));
+        run("ignoring case", () -> perLine(file, "String", false), () -> matcher(text, "String", false));
+    }
+
+    private static void run(String name, Supplier<List<Integer>> perLine, Supplier<List<Integer>> matcher) {
+        if (!perLine.get().equals(matcher.get())) {
+            throw new IllegalStateException("The matcher finds other offsets when " + name);
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            time(perLine);
+            time(matcher);
+        }
+
+        long perLineTime = 0;
+        long matcherTime = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            perLineTime += time(perLine);
+            matcherTime += time(matcher);
+        }
+
+        System.out.println(name + " (" + matcher.get().size() + " matches):");
+        System.out.printf("  line by line: %10.2f ms per round%n", perLineTime / 1e6 / ROUNDS);
+        System.out.printf("  matcher:      %10.2f ms per round%n", matcherTime / 1e6 / ROUNDS);
+    }
+
+    /**
+     * Finds the offsets the way the search did before, reading the file again and turning
+     * line and column into an offset.
+     */
+    private static List<Integer> perLine(File file, String word, boolean caseSensitive) {
+        List<Integer> offsets = new ArrayList<>();
+        String searchWord = caseSensitive ? word : word.toLowerCase();
+        int lineStart = 0;
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                int lineLength = line.length();
+                String str = caseSensitive ? line : line.toLowerCase();
+                int column = 0;
+                while (str.indexOf(searchWord) != -1) {
+                    offsets.add(lineStart + str.indexOf(searchWord) + column);
+                    column += str.length() - str.substring(str.indexOf(searchWord) + word.length()).length();
+                    str = str.substring(str.indexOf(searchWord) + word.length());
+                }
+                lineStart += lineLength + 1;
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        return offsets;
+    }
+
+    private static List<Integer> matcher(String text, String word, boolean caseSensitive) {
+        List<Integer> offsets = new ArrayList<>();
+        TextMatcher matcher = new TextMatcher(word, caseSensitive);
+        for (int start = matcher.indexOf(text, 0); start != -1; start = matcher.indexOf(text, start + word.length())) {
+            offsets.add(start);
+        }
+        return offsets;
+    }
+
+    private static long time(Supplier<List<Integer>> search) {
+        long start = System.nanoTime();
+        search.get();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,68 @@
+package test;
+
+import main.zenit.searchinfile.SearchHits;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that hits reused while a word is typed or while the text is edited are
+ * the same as the hits of a new search of the whole text.
+ */
+class SearchHitsTest {
+
+    /**
+     * Typing a word one character at a time only checks the previous hits, and gives the
+     * same matches as searching the whole text for each prefix.
+     */
+    @Test
+    void typingRefinesPreviousHits() {
+        String text = "aaab Aab aAb ab aaaab\nString string STRING".repeat(20);
+        for (String word : new String[] {"aab", "String", "AAAB"}) {
+            for (boolean caseSensitive : new boolean[] {true, false}) {
+                SearchHits hits = SearchHits.empty();
+                for (int length = 1; length <= word.length(); length++) {
+                    String prefix = word.substring(0, length);
+                    assertTrue(length == 1 || hits.canRefine(prefix, caseSensitive));
+                    hits = hits.search(prefix, caseSensitive, text);
+                    assertArrayEquals(SearchHits.find(prefix, caseSensitive, text).getMatches(), hits.getMatches());
+                }
+            }
+        }
+        SearchHits hits = SearchHits.find("ab", true, text);
+        assertFalse(hits.canRefine("a", true));
+        assertFalse(hits.canRefine("abc", false));
+        assertFalse(hits.canRefine("xab", true));
+    }
+
+    /**
+     * Random edits of the text give the same matches as searching the whole edited text.
+     */
+    @Test
+    void editsOnlySearchTheEditedPart() {
+        Random random = new Random(11);
+        String alphabet = "aAb\n";
+        StringBuilder text = new StringBuilder("abaab aab\n".repeat(30));
+        SearchHits hits = SearchHits.find("aab", false, text);
+
+        for (int edit = 0; edit < 2_000; edit++) {
+            int position = random.nextInt(text.length() + 1);
+            int removed = Math.min(text.length() - position, random.nextInt(4));
+            StringBuilder inserted = new StringBuilder();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            text.replace(position, position + removed, inserted.toString());
+
+            int from = Math.max(0, position - 2);
+            int to = Math.min(text.length(), position + inserted.length() + 2);
+            hits = hits.edited(position, removed, inserted.length(), text.substring(from, to), from);
+            assertArrayEquals(SearchHits.find("aab", false, text).getMatches(), hits.getMatches());
+        }
+    }
+}
@@ -53,6 +53,7 @@ public class SearchTest extends ApplicationTest {
     public void setUp() {
         when(mockZenCodeArea.getAbsolutePosition(anyInt(), anyInt())).thenReturn(0);
         when(mockZenCodeArea.getCaretPosition()).thenReturn(0);
+        when(mockZenCodeArea.getText()).thenReturn("String String String");
         writeinitialFile();
     }
 
@@ -72,7 +73,6 @@ public class SearchTest extends ApplicationTest {
     @TestFx
     @Order(1)
     void searchForWord() {
-        when(mockZenCodeArea.getText()).thenReturn("String");
         int result = search.searchInFile("String");
         assertEquals(3, result);
     }
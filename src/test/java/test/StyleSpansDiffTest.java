@@ -0,0 +1,57 @@
+package test;
+
+import main.zenit.util.Tuple;
+import main.zenit.zencodearea.DocumentSnapshot;
+import main.zenit.zencodearea.SemanticAnalyzer;
+import main.zenit.zencodearea.StyleSpansDiff;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that only paragraphs whose styling changed are reported for restyling.
+ */
+class StyleSpansDiffTest {
+
+    private static final String CODE = "public class Shapes {\n"
+            + "    int width;\n"
+            + "    int height;\n"
+            + "\n"
+            + "    int area() { return width * height; }\n"
+            + "}\n";
+
+    /**
+     * New semantic information only restyles the paragraphs that use the new names.
+     */
+    @Test
+    void onlyParagraphsUsingChangedNamesAreRestyled() {
+        DocumentSnapshot snapshot = DocumentSnapshot.analyze(0, CODE);
+        SemanticAnalyzer previous = new SemanticAnalyzer();
+
+        List<Tuple<Integer, StyleSpans<Collection<String>>>> changes = StyleSpansDiff.changedParagraphs(CODE,
+                StyleSpansDiff.styleTokens(snapshot, previous),
+                StyleSpansDiff.styleTokens(snapshot, snapshot.getFacts()));
+
+        assertEquals(2, changes.size());
+        assertEquals(0, changes.get(0).fst());
+        assertEquals(CODE.indexOf("    int area"), changes.get(1).fst());
+        assertEquals(CODE.indexOf("}\n", CODE.indexOf("area")) + 2 - changes.get(1).fst(), changes.get(1).snd().length());
+    }
+
+    /**
+     * Identical styles give no changes.
+     */
+    @Test
+    void identicalStylesGiveNoChanges() {
+        DocumentSnapshot snapshot = DocumentSnapshot.analyze(0, CODE);
+        StyleSpans<Collection<String>> spans = StyleSpansDiff.styleTokens(snapshot, snapshot.getFacts());
+
+        assertTrue(StyleSpansDiff.changedParagraphs(CODE, spans, spans).isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package test;
+
+import javafx.scene.control.TabPane;
+import javafx.stage.Stage;
+import main.zenit.ui.FileTab;
+import main.zenit.ui.MainController;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5 , ApplicationTest TestFx framework
+ * This class tests that background tabs release their code area and get it back, with the
+ * same text, caret and unsaved state, when they are selected again.
+ */
+class TabHibernationTest extends ApplicationTest {
+
+    @TempDir
+    Path directory;
+
+    private MainController mainController;
+    private TabPane tabPane;
+
+    @BeforeAll
+    static void shortenDelay() {
+        System.setProperty("zenit.hibernateAfterSeconds", "1");
+    }
+
+    @AfterAll
+    static void resetDelay() {
+        System.clearProperty("zenit.hibernateAfterSeconds");
+    }
+
+    @Override
+    public void start(Stage stage) {
+        mainController = new MainController(stage);
+        tabPane = new TabPane();
+    }
+
+    /**
+     * A background tab with unsaved changes is hibernated and restored.
+     */
+    @Test
+    void backgroundTabIsHibernatedAndRestored() throws Exception {
+        Path path = directory.resolve("Sleepy.java");
+        Files.writeString(path, "class Sleepy {\n    int hours;\n}\n");
+        File file = path.toFile();
+
+        FileTab[] tabs = new FileTab[2];
+        interact(() -> {
+            tabs[0] = new FileTab(mainController.createNewZenCodeArea(), mainController);
+            tabs[1] = new FileTab(mainController.createNewZenCodeArea(), mainController);
+            tabPane.getTabs().addAll(tabs);
+            tabs[0].setFile(file, true);
+            tabs[0].getZenCodeArea().insertText(0, "// Edited\n");
+            tabs[0].getZenCodeArea().moveTo(15);
+            tabPane.getSelectionModel().select(tabs[1]);
+        });
+        WeakReference<ZenCodeArea> released = new WeakReference<>(tabs[0].getZenCodeArea());
+
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, tabs[0]::isHibernated);
+        interact(() -> {
+            assertTrue(tabs[0].hasChanged());
+            assertEquals("// Edited\nclass Sleepy {\n    int hours;\n}\n", tabs[0].getFileText());
+        });
+
+        for (int i = 0; i < 20 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull(released.get(), "the code area of the hibernated tab is still referenced");
+
+        interact(() -> tabPane.getSelectionModel().select(tabs[0]));
+        interact(() -> {
+            ZenCodeArea area = tabs[0].getZenCodeArea();
+            assertFalse(tabs[0].isHibernated());
+            assertNotNull(area);
+            assertEquals("// Edited\nclass Sleepy {\n    int hours;\n}\n", area.getText());
+            assertEquals(15, area.getCaretPosition());
+            assertTrue(tabs[0].hasChanged());
+
+            tabs[0].update(file); // As after saving
+            assertFalse(tabs[0].hasChanged());
+        });
+    }
+}
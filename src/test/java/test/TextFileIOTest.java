@@ -0,0 +1,117 @@
+package test;
+
+import main.zenit.filesystem.TextFileIO;
+import main.zenit.filesystem.TextFileReader;
+import main.zenit.filesystem.TextFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that text files are replaced atomically with one line separator policy,
+ * and keep their byte order mark, line separators and symbolic links when saved.
+ */
+class TextFileIOTest {
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void resetPolicy() {
+        System.clearProperty("zenit.lineSeparator");
+    }
+
+    /**
+     * Saving replaces the file without leaving temporary files behind, and reading it back
+     * gives the saved text.
+     */
+    @Test
+    void saveReplacesFileAtomically() throws Exception {
+        Path path = directory.resolve("Main.java");
+        Files.writeString(path, "old content that is longer than the new one\n");
+
+        System.setProperty("zenit.lineSeparator", "lf");
+        TextFileIO.write(path, "class Main {\r\n}\n", StandardCharsets.UTF_8);
+
+        assertEquals("class Main {\n}\n", Files.readString(path));
+        assertEquals("class Main {\n}\n", TextFileIO.read(path));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /**
+     * The line separator policy is applied when writing, reading always gives {@code \n}.
+     */
+    @Test
+    void lineSeparatorPolicyIsAppliedOnWrite() throws Exception {
+        Path path = directory.resolve("Notes.txt");
+
+        System.setProperty("zenit.lineSeparator", "crlf");
+        TextFileIO.write(path, "first\nsecond\rthird\r\n", StandardCharsets.ISO_8859_1);
+
+        assertArrayEquals("first\r\nsecond\r\nthird\r\n".getBytes(StandardCharsets.ISO_8859_1), Files.readAllBytes(path));
+        assertEquals("first\nsecond\nthird\n", TextFileIO.read(path));
+    }
+
+    /**
+     * A file read with a byte order mark is written back with it, for UTF-8 and UTF-16.
+     */
+    @Test
+    void byteOrderMarkIsKept() throws Exception {
+        Path utf16 = directory.resolve("Utf16.java");
+        Files.write(utf16, "\uFEFFclass A {}\n".getBytes(StandardCharsets.UTF_16LE));
+        TextFormat format = TextFileReader.readWithFormat(utf16, chunk -> { });
+        assertTrue(format.hasByteOrderMark());
+
+        TextFileIO.write(utf16, "class B {}\n", format);
+        assertArrayEquals("\uFEFFclass B {}\n".getBytes(StandardCharsets.UTF_16LE), Files.readAllBytes(utf16));
+
+        Path utf8 = directory.resolve("Utf8.java");
+        Files.write(utf8, "\uFEFFclass A {}\n".getBytes(StandardCharsets.UTF_8));
+        TextFileIO.write(utf8, "class B {}\n", StandardCharsets.UTF_8);
+        assertArrayEquals("\uFEFFclass B {}\n".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(utf8));
+    }
+
+    /**
+     * Without a policy, a file keeps the line separators it was read with.
+     */
+    @Test
+    void detectedLineSeparatorIsKept() throws Exception {
+        Path lf = directory.resolve("Lf.java");
+        Files.writeString(lf, "first\nsecond\n");
+        TextFileIO.write(lf, "first\nsecond\nthird\n", TextFileReader.readWithFormat(lf, chunk -> { }));
+        assertEquals("first\nsecond\nthird\n", Files.readString(lf));
+
+        Path crlf = directory.resolve("Crlf.java");
+        Files.writeString(crlf, "first\r\nsecond\n");
+        TextFileIO.write(crlf, "first\nsecond\n", StandardCharsets.UTF_8);
+        assertEquals("first\r\nsecond\r\n", Files.readString(crlf));
+    }
+
+    /**
+     * Saving through a symbolic link replaces the file it points to and keeps the link.
+     */
+    @Test
+    void symbolicLinkIsKept() throws Exception {
+        Path file = directory.resolve("Target.java");
+        Files.writeString(file, "old\n");
+        Path link = directory.resolve("Link.java");
+        Files.createSymbolicLink(link, file);
+
+        TextFileIO.write(link, "new\n", TextFormat.of(StandardCharsets.UTF_8));
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new" + System.lineSeparator(), Files.readString(file));
+    }
+}
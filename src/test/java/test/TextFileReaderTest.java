@@ -0,0 +1,91 @@
+package test;
+
+import main.zenit.filesystem.TextFileReader;
+import main.zenit.filesystem.TextFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that files are read in chunks with the right charset and line separators.
+ */
+class TextFileReaderTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * A file larger than a chunk arrives in several chunks, with every line separator
+     * converted, also where a CRLF is split between two chunks.
+     */
+    @Test
+    void chunksJoinToTheNormalizedText() throws Exception {
+        StringBuilder text = new StringBuilder("x".repeat(TextFileReader.CHUNK_SIZE - 1));
+        for (int i = 0; i < 50_000; i++) {
+            text.append("\r\nline ").append(i).append(i % 3 == 0 ? "\r" : "");
+        }
+        Path path = directory.resolve("Lines.java");
+        Files.writeString(path, text);
+
+        List<String> chunks = new ArrayList<>();
+        Charset charset = TextFileReader.read(path, chunks::add);
+
+        assertEquals(StandardCharsets.UTF_8, charset);
+        assertTrue(chunks.size() > 1);
+        assertEquals(text.toString().replace("\r\n", "\n").replace('\r', '\n'), String.join("", chunks));
+    }
+
+    /**
+     * Byte order marks and text that is not UTF-8 select the charset.
+     */
+    @Test
+    void charsetIsDetected() throws Exception {
+        Path utf16 = directory.resolve("Utf16.java");
+        Files.write(utf16, "﻿class Å {}".getBytes(StandardCharsets.UTF_16LE));
+        assertEquals(StandardCharsets.UTF_16LE, TextFileReader.read(utf16, chunk -> { }));
+        assertEquals("class Å {}", TextFileReader.readString(utf16));
+
+        Path latin = directory.resolve("Latin.java");
+        Files.write(latin, "// Smörgåsbord\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(Charset.forName("windows-1252"), TextFileReader.read(latin, chunk -> { }));
+        assertEquals("// Smörgåsbord\n", TextFileReader.readString(latin));
+    }
+
+    /**
+     * A byte that isn't UTF-8 after the first chunk is read as U+FFFD, and the format tells
+     * that bytes were replaced.
+     */
+    @Test
+    void replacedBytesAreReported() throws Exception {
+        byte[] head = "x".repeat(TextFileReader.CHUNK_SIZE).getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[head.length + 3];
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        bytes[head.length] = 'a';
+        bytes[head.length + 1] = (byte) 0xE9;
+        bytes[head.length + 2] = 'b';
+        Path path = directory.resolve("Mixed.java");
+        Files.write(path, bytes);
+
+        StringBuilder text = new StringBuilder();
+        TextFormat format = TextFileReader.readWithFormat(path, text::append);
+
+        assertEquals(StandardCharsets.UTF_8, format.getCharset());
+        assertTrue(format.hasReplacedBytes());
+        assertTrue(text.toString().endsWith("a\uFFFDb"));
+
+        Path valid = directory.resolve("Valid.java");
+        Files.writeString(valid, "class Å {}\n");
+        assertFalse(TextFileReader.readWithFormat(valid, chunk -> { }).hasReplacedBytes());
+    }
+}
@@ -0,0 +1,64 @@
+package test;
+
+import main.zenit.searchinfile.TextMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that the matcher used by the search in a file finds the same occurrences
+ * as String.indexOf, with and without case sensitivity.
+ */
+class TextMatcherTest {
+
+    /**
+     * Random texts give the same offsets as String.indexOf on the text and word, after both
+     * are converted to lower case when the case is ignored.
+     */
+    @Test
+    void matchesIndexOf() {
+        Random random = new Random(7);
+        String alphabet = "abAB \nåÅ";
+        for (int round = 0; round < 500; round++) {
+            String text = randomString(random, alphabet, random.nextInt(200));
+            String word = randomString(random, alphabet, 1 + random.nextInt(4));
+            for (boolean caseSensitive : new boolean[] {true, false}) {
+                TextMatcher matcher = new TextMatcher(word, caseSensitive);
+                String expectedText = caseSensitive ? text : text.toLowerCase();
+                String expectedWord = caseSensitive ? word : word.toLowerCase();
+
+                int expected = expectedText.indexOf(expectedWord);
+                int actual = matcher.indexOf(text, 0);
+                while (expected != -1) {
+                    assertEquals(expected, actual);
+                    expected = expectedText.indexOf(expectedWord, expected + word.length());
+                    actual = matcher.indexOf(text, actual + word.length());
+                }
+                assertEquals(-1, actual);
+            }
+        }
+    }
+
+    /**
+     * Occurrences are counted without overlapping and without case when it is ignored.
+     */
+    @Test
+    void countsOccurrences() {
+        assertEquals(3, new TextMatcher("String", true).count("String String String"));
+        assertEquals(1, new TextMatcher("String", true).count("string STRING String"));
+        assertEquals(3, new TextMatcher("String", false).count("string STRING String"));
+        assertEquals(2, new TextMatcher("aa", true).count("aaaaa"));
+        assertEquals(0, new TextMatcher("missing", false).count("String String String"));
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
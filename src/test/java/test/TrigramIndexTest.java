@@ -0,0 +1,171 @@
+package test;
+
+import main.zenit.searchinfile.TrigramIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5
+ * This class tests that the trigram index of a workspace finds the files that may contain a
+ * word, follows saved, renamed and deleted files, notices files changed outside of it and is
+ * brought up to date when it is opened.
+ */
+class TrigramIndexTest {
+
+    @TempDir
+    Path workspace;
+
+    /**
+     * Only the files containing every trigram of the word are candidates, and files the file
+     * tree leaves out are not indexed.
+     */
+    @Test
+    void findsFilesContainingTheTrigrams() throws Exception {
+        write("project/src/A.java", "class A { String needle; }");
+        write("project/src/B.java", "class B { String NEEDLE; }");
+        write("project/src/C.java", "class C { String needs; String idle; }");
+        write("project/bin/D.java", "needle");
+        write("project/.settings/E.java", "needle");
+
+        TrigramIndex index = open();
+        assertEquals(Set.of("A.java", "B.java"), names(index.getCandidates("needle")));
+        assertEquals(Set.of("A.java", "B.java", "C.java"), names(index.getCandidates("String")));
+        assertEquals(Set.of(), names(index.getCandidates("haystack")));
+        assertNull(index.getCandidates("ne"));
+        index.close();
+    }
+
+    /**
+     * Updates are seen right away, are written to disk when the index is closed, and changes
+     * made while it was closed are found when it is opened again.
+     */
+    @Test
+    void keepsUpWithChangedFiles() throws Exception {
+        File a = write("project/src/A.java", "class A { String needle; }");
+        File b = write("project/src/B.java", "class B { }");
+        write("project/src/util/C.java", "class C { String needle; }");
+
+        TrigramIndex index = open();
+        write("project/src/B.java", "class B { String needle; }");
+        index.update(b);
+        index.remove(a);
+        Files.delete(a.toPath());
+        File renamed = workspace.resolve("project/source").toFile();
+        index.remove(workspace.resolve("project/src").toFile());
+        Files.move(workspace.resolve("project/src"), renamed.toPath());
+        index.update(renamed);
+        assertTrue(index.awaitUpdates(10_000));
+        assertEquals(Set.of("source/B.java", "source/util/C.java"), paths(index.getCandidates("needle")));
+        index.close();
+
+        index = open();
+        assertEquals(Set.of("source/B.java", "source/util/C.java"), paths(index.getCandidates("needle")));
+        index.close();
+
+        write("project/source/D.java", "class D { String needle; }");
+        File c = workspace.resolve("project/source/util/C.java").toFile();
+        Files.writeString(c.toPath(), "class C { }");
+        c.setLastModified(c.lastModified() + 2_000);
+        index = open();
+        assertEquals(Set.of("source/B.java", "source/D.java"), paths(index.getCandidates("needle")));
+        index.close();
+
+        try (var files = Files.list(TrigramIndex.getDirectory(workspace.toFile()))) {
+            assertTrue(files.count() >= 1);
+        }
+    }
+
+    /**
+     * Files created, edited or deleted on disk without telling the index, e.g. by git, are
+     * reported by the file watcher and indexed again, also in new folders, and deleted files
+     * are left out right away.
+     */
+    @Test
+    void findsFilesChangedOutsideOfTheIndex() throws Exception {
+        File a = write("project/src/A.java", "class A { }");
+        File b = write("project/src/B.java", "class B { String needle; }");
+
+        TrigramIndex index = open();
+        assertEquals(Set.of("B.java"), names(index.getCandidates("needle")));
+
+        Files.delete(b.toPath());
+        assertEquals(Set.of(), names(index.getCandidates("needle")));
+
+        Files.writeString(a.toPath(), "class A { String needle; }");
+        a.setLastModified(a.lastModified() + 2_000);
+        write("project/src/C.java", "class C { String needle; }");
+        write("project/src/util/D.java", "class D { String needle; }");
+        awaitCandidates(index, "needle", Set.of("A.java", "C.java", "D.java"));
+        assertEquals(Set.of(), names(index.getCandidates("haystack")));
+        index.close();
+    }
+
+    /**
+     * A query on a large workspace only reads posting lists and checks its candidates, it
+     * doesn't list the workspace.
+     */
+    @Test
+    void answersQueriesWithoutListingTheWorkspace() throws Exception {
+        for (int folder = 0; folder < 50; folder++) {
+            for (int file = 0; file < 100; file++) {
+                write("project/src/p" + folder + "/F" + file + ".java", "class F" + file + " { int value" + folder + "; }");
+            }
+        }
+        write("project/src/Needle.java", "class Needle { }");
+        TrigramIndex index = open();
+        assertEquals(Set.of("Needle.java"), names(index.getCandidates("Needle")));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            assertEquals(1, index.getCandidates("Needle").size());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis < 1_000, "200 queries took " + millis + " ms");
+        index.close();
+    }
+
+    private TrigramIndex open() throws InterruptedException {
+        TrigramIndex index = new TrigramIndex(workspace.toFile());
+        assertTrue(index.awaitUpdates(10_000));
+        assertTrue(index.isReady());
+        return index;
+    }
+
+    private void awaitCandidates(TrigramIndex index, String word, Set<String> expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!expected.equals(names(index.getCandidates(word))) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, names(index.getCandidates(word)));
+    }
+
+    private Set<String> names(List<File> files) {
+        return files.stream().map(File::getName).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private Set<String> paths(List<File> files) {
+        Path project = workspace.resolve("project");
+        return files.stream().map(file -> project.relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private File write(String path, String text) throws IOException {
+        Path file = workspace.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+        return file.toFile();
+    }
+}
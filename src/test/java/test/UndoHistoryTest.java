@@ -0,0 +1,104 @@
+package test;
+
+import javafx.stage.Stage;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.testfx.framework.junit5.ApplicationTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5 , ApplicationTest TestFx framework
+ * This class tests that the undo history of a ZenCodeArea merges typing, keeps compound
+ * edits together and stays within its memory budget.
+ */
+class UndoHistoryTest extends ApplicationTest {
+
+    @Override
+    public void start(Stage stage) {
+    }
+
+    @AfterEach
+    void resetBudget() {
+        System.clearProperty("zenit.undoHistoryKB");
+    }
+
+    /**
+     * Characters typed on a line are undone together, a new line starts a new change.
+     */
+    @Test
+    void typingOnALineIsOneChange() {
+        interact(() -> {
+            ZenCodeArea area = new ZenCodeArea(13, "Menlo");
+            type(area, "int a;");
+            type(area, "\n");
+            type(area, "int b;");
+            area.deletePreviousChar();
+
+            assertEquals(3, area.getUndoHistoryCount());
+            area.undo();
+            assertEquals("int a;\n", area.getText());
+            area.undo();
+            area.undo();
+            assertEquals("", area.getText());
+        });
+    }
+
+    /**
+     * Edits of several lines made as a compound are undone and redone in one step.
+     */
+    @Test
+    void compoundEditIsUndoneInOneStep() {
+        interact(() -> {
+            ZenCodeArea area = new ZenCodeArea(13, "Menlo");
+            area.replaceText("first\nsecond\nthird\n");
+            area.getUndoManager().forgetHistory();
+
+            area.compound(() -> {
+                area.insertText(0, "// ");
+                area.insertText(area.getAbsolutePosition(2, 0), "// ");
+                area.deleteText(area.getAbsolutePosition(1, 0), area.getAbsolutePosition(1, 3));
+            });
+            assertEquals("// first\nond\n// third\n", area.getText());
+            assertEquals(1, area.getUndoHistoryCount());
+
+            area.undo();
+            assertEquals("first\nsecond\nthird\n", area.getText());
+            area.redo();
+            assertEquals("// first\nond\n// third\n", area.getText());
+        });
+    }
+
+    /**
+     * The oldest changes are forgotten when the history grows beyond its budget, and the
+     * text can then no longer be undone to the saved state.
+     */
+    @Test
+    void oldestChangesAreEvictedByMemory() {
+        System.setProperty("zenit.undoHistoryKB", "4");
+        interact(() -> {
+            ZenCodeArea area = new ZenCodeArea(13, "Menlo");
+            area.getUndoManager().mark();
+            for (int i = 0; i < 20; i++) {
+                area.appendText("x".repeat(500) + "\n");
+            }
+
+            assertTrue(area.getUndoHistorySize() <= ZenCodeArea.getUndoHistoryBudget());
+            assertTrue(area.getUndoHistoryCount() < 20);
+            while (area.getUndoManager().isUndoAvailable()) {
+                area.undo();
+            }
+            assertFalse(area.getText().isEmpty());
+            assertFalse(area.getUndoManager().isAtMarkedPosition());
+        });
+    }
+
+    private static void type(ZenCodeArea area, String text) {
+        for (char c : text.toCharArray()) {
+            area.replaceSelection(String.valueOf(c));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package test;
+
+import javafx.stage.Stage;
+import main.zenit.zencodearea.ViewportStyleFill;
+import main.zenit.zencodearea.ZenCodeArea;
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.junit.jupiter.api.Test;
+import org.testfx.framework.junit5.ApplicationTest;
+import org.testfx.util.WaitForAsyncUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class using JUNIT5 , ApplicationTest TestFx framework
+ * This class tests that large documents are styled chunk by chunk without gaps or overlaps at
+ * the chunk boundaries, and that the fill stops when the text changes.
+ */
+class ViewportStyleFillTest extends ApplicationTest {
+
+    private static final int CHUNK = ViewportStyleFill.CHUNK_SIZE;
+
+    private ZenCodeArea area;
+
+    @Override
+    public void start(Stage stage) {
+        area = new ZenCodeArea(13, "Menlo");
+    }
+
+    /**
+     * The first chunk is styled right away up to its last character, the following chunks on
+     * later event loop passes, including a span crossing a boundary and a short last chunk.
+     */
+    @Test
+    void stylesEveryChunkUpToItsBoundary() {
+        int length = 2 * CHUNK + 10;
+        StyleSpans<Collection<String>> spans = new StyleSpansBuilder<Collection<String>>()
+                .add(List.of("first"), CHUNK + 5)
+                .add(List.of("second"), length - CHUNK - 5)
+                .create();
+        ViewportStyleFill fill = new ViewportStyleFill(area, spans);
+
+        interact(() -> {
+            area.setHighlightingSuspended(true);
+            area.replaceText("x".repeat(length));
+            area.clearStyle(0, length);
+            fill.start();
+
+            assertEquals(List.of("first"), area.getStyleOfChar(CHUNK - 1));
+            assertEquals(Collections.emptyList(), area.getStyleOfChar(CHUNK));
+        });
+        WaitForAsyncUtils.waitForFxEvents();
+
+        interact(() -> {
+            assertEquals(List.of("first"), area.getStyleOfChar(CHUNK));
+            assertEquals(List.of("first"), area.getStyleOfChar(CHUNK + 4));
+            assertEquals(List.of("second"), area.getStyleOfChar(CHUNK + 5));
+            assertEquals(List.of("second"), area.getStyleOfChar(2 * CHUNK - 1));
+            assertEquals(List.of("second"), area.getStyleOfChar(2 * CHUNK));
+            assertEquals(List.of("second"), area.getStyleOfChar(length - 1));
+            assertFalse(fill.isIncomplete());
+        });
+    }
+
+    /**
+     * A cancelled fill leaves the chunks it has not reached yet alone and reports that it is
+     * incomplete, so that the next highlighting pass restyles the whole document.
+     */
+    @Test
+    void cancelledFillStopsAtTheStyledChunks() {
+        int length = 3 * CHUNK;
+        StyleSpans<Collection<String>> spans = new StyleSpansBuilder<Collection<String>>()
+                .add(List.of("stale"), length)
+                .create();
+        ViewportStyleFill fill = new ViewportStyleFill(area, spans);
+
+        interact(() -> {
+            area.setHighlightingSuspended(true);
+            area.replaceText("x".repeat(length));
+            area.clearStyle(0, length);
+            fill.start();
+            fill.cancel();
+        });
+        WaitForAsyncUtils.waitForFxEvents();
+
+        interact(() -> {
+            assertEquals(List.of("stale"), area.getStyleOfChar(CHUNK - 1));
+            assertEquals(Collections.emptyList(), area.getStyleOfChar(CHUNK));
+            assertEquals(Collections.emptyList(), area.getStyleOfChar(length - 1));
+            assertTrue(fill.isIncomplete());
+        });
+    }
+
+    /**
+     * Editing a large document while it is still being filled stops the fill of the old
+     * spans, and the document ends up styled like the edited text.
+     */
+    @Test
+    void editDuringFillRestylesTheEditedText() throws Exception {
+        StringBuilder code = new StringBuilder("class Large {\n");
+        for (int i = 0; code.length() < 250_000; i++) {
+            code.append("    int value").append(i).append(" = ").append(i).append(";\n");
+        }
+        code.append("}\n");
+
+        boolean[] edited = new boolean[1];
+        interact(() -> {
+            area.snapshotProperty().addListener((observable, previous, snapshot) -> {
+                // Runs right after the fill has styled the first chunk
+                if (snapshot != null && !edited[0]) {
+                    edited[0] = true;
+                    area.insertText(0, "// Edited while styling\n");
+                }
+            });
+            area.replaceText(code.toString());
+        });
+
+        WaitForAsyncUtils.waitFor(20, TimeUnit.SECONDS, () -> WaitForAsyncUtils.asyncFx(() ->
+                edited[0] && area.getSnapshot() != null && area.isCurrent(area.getSnapshot())).get());
+        WaitForAsyncUtils.waitForFxEvents(50);
+
+        interact(() -> {
+            String text = area.getText();
+            int position = 0;
+            for (StyleSpan<Collection<String>> span : area.computeHighlighting(text)) {
+                for (int i = position; i < position + span.getLength(); i++) {
+                    if (text.charAt(i) != '\n') {
+                        assertEquals(span.getStyle(), area.getStyleOfChar(i), "Style at " + i);
+                    }
+                }
+                position += span.getLength();
+            }
+        });
+    }
+}